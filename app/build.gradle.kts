@@ -2,6 +2,10 @@ plugins {
     alias(libs.plugins.android.application)
 }
 
+// Native SIMD kernels (app/src/main/cpp). Build with -Pgymmygo.nativeKernels=false to ship
+// only the Java fallback, e.g. on machines without the NDK.
+val nativeKernels = (findProperty("gymmygo.nativeKernels") as String?)?.toBoolean() ?: true
+
 android {
     namespace = "hku.cs.comp3330.section1a2024.group19.gymmygo"
     compileSdk = 34
@@ -14,6 +18,21 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        if (nativeKernels) {
+            ndk {
+                abiFilters += listOf("arm64-v8a", "armeabi-v7a", "x86_64")
+            }
+        }
+    }
+
+    if (nativeKernels) {
+        externalNativeBuild {
+            cmake {
+                path = file("src/main/cpp/CMakeLists.txt")
+                version = "3.22.1"
+            }
+        }
     }
 
     buildTypes {
@@ -25,6 +44,18 @@ android {
             )
         }
     }
+    buildFeatures {
+        buildConfig = true
+    }
+    androidResources {
+        // TensorFlow Lite models are memory mapped straight from the APK
+        noCompress += "tflite"
+    }
+    testOptions {
+        // The pipeline's unit tests build streams, whose Canvas and Matrix scratch objects
+        // stay unused without bitmaps; the android.jar stubs return defaults instead of throwing
+        unitTests.isReturnDefaultValues = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
         targetCompatibility = JavaVersion.VERSION_1_8
@@ -47,8 +78,12 @@ dependencies {
     implementation("androidx.camera:camera-lifecycle:1.4.0")
     implementation("androidx.camera:camera-view:1.4.0")
     implementation("androidx.camera:camera-video:1.4.0")
+    // Lifecycle owner for binding the camera in PostureService
+    implementation("androidx.lifecycle:lifecycle-service:2.6.2")
 
     implementation ("com.google.mlkit:pose-detection:18.0.0-beta5")
+    // Alternative pose backend, see TflitePoseBackend; XNNPACK is built in
+    implementation("org.tensorflow:tensorflow-lite:2.14.0")
 
     // CircleImageView for circular profile pictures
     implementation("de.hdodenhof:circleimageview:3.1.0")
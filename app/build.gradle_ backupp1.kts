@@ -1,58 +0,0 @@
-plugins {
-    alias(libs.plugins.android.application)
-}
-
-android {
-    namespace = "hku.cs.comp3330.section1a2024.group19.gymmygo"
-    compileSdk = 34
-
-    defaultConfig {
-        applicationId = "hku.cs.comp3330.section1a2024.group19.gymmygo"
-        minSdk = 22
-        targetSdk = 34
-        versionCode = 1
-        versionName = "1.0"
-
-        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
-    }
-
-    buildTypes {
-        release {
-            isMinifyEnabled = false
-            proguardFiles(
-                getDefaultProguardFile("proguard-android-optimize.txt"),
-                "proguard-rules.pro"
-            )
-        }
-    }
-    compileOptions {
-        sourceCompatibility = JavaVersion.VERSION_1_8
-        targetCompatibility = JavaVersion.VERSION_1_8
-    }
-}
-
-dependencies {
-
-    implementation(libs.appcompat)
-    implementation(libs.material)
-    implementation(libs.activity)
-    implementation(libs.constraintlayout)
-    testImplementation(libs.junit)
-    androidTestImplementation(libs.ext.junit)
-    androidTestImplementation(libs.espresso.core)
-
-    implementation("androidx.camera:camera-core:1.4.0")
-    implementation("androidx.camera:camera-camera2:1.4.0")
-    implementation("androidx.camera:camera-lifecycle:1.4.0")
-    implementation("androidx.camera:camera-view:1.4.0")
-    implementation("androidx.camera:camera-video:1.4.0")
-
-    implementation ("com.google.mlkit:pose-detection:18.0.0-beta5")
-
-    // CircleImageView for circular profile pictures
-    implementation("de.hdodenhof:circleimageview:3.1.0")
-
-    // Glide for image loading
-    implementation("com.github.bumptech.glide:glide:4.15.1")
-    annotationProcessor("com.github.bumptech.glide:compiler:4.15.1")
-}
\ No newline at end of file
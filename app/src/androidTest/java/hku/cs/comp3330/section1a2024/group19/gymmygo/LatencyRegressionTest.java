@@ -0,0 +1,97 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Runs the camera pipeline on a device and fails when the overlay falls too far behind the
+ * preview.
+ *
+ * A profile is seeded before the launch, so the camera is bound right away instead of after
+ * a profiler run of unknown length, and the frame window only starts once it is bound.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LatencyRegressionTest {
+
+    private static final double MAX_P95_SKEW_MS = 150;
+    // Frames are analysed for about two seconds before idle mode starts, enough without a person
+    private static final int MIN_SAMPLES = 30;
+    private static final long BIND_TIMEOUT_MS = 10_000;
+    private static final long TIMEOUT_MS = 15_000;
+
+    private File profileFile;
+
+    @Before
+    public void setUp() throws IOException {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = instrumentation.getTargetContext();
+        ParcelFileDescriptor output = instrumentation.getUiAutomation()
+                .executeShellCommand("pm grant " + context.getPackageName() + " android.permission.CAMERA");
+        output.close();
+
+        // The profiler's smallest resolution, with times well inside the frame budget
+        profileFile = new File(context.getFilesDir(), PipelineController.PROFILE_FILE);
+        new PerformanceProfile(BuildConfig.VERSION_CODE, Build.FINGERPRINT,
+                System.currentTimeMillis(), FrameKernels.isLibraryLoaded(), 640, 480,
+                5f, 30f, 3f).write(profileFile);
+    }
+
+    @After
+    public void deleteProfile() {
+        // The next real launch measures the device itself
+        profileFile.delete();
+    }
+
+    @Test
+    public void overlaySkewStaysWithinBudget() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        assumeTrue("No camera on this device",
+                context.getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY));
+
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            final LatencyProbe[] probe = new LatencyProbe[1];
+            final boolean[] bound = new boolean[1];
+            scenario.onActivity(activity -> probe[0] = activity.getLatencyProbe());
+
+            long bindDeadline = SystemClock.uptimeMillis() + BIND_TIMEOUT_MS;
+            while (!bound[0] && SystemClock.uptimeMillis() < bindDeadline) {
+                scenario.onActivity(activity -> bound[0] = activity.isCameraBound());
+                if (!bound[0]) {
+                    SystemClock.sleep(100);
+                }
+            }
+            assertTrue("Camera not bound within " + BIND_TIMEOUT_MS + " ms", bound[0]);
+
+            long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+            while (probe[0].getSampleCount() < MIN_SAMPLES && SystemClock.uptimeMillis() < deadline) {
+                SystemClock.sleep(100);
+            }
+            assertTrue("Only " + probe[0].getSampleCount() + " overlay frames in " + TIMEOUT_MS
+                            + " ms with the camera bound\n" + probe[0],
+                    probe[0].getSampleCount() >= MIN_SAMPLES);
+
+            double p95 = probe[0].getPercentileMs(LatencyProbe.SERIES_SKEW, 95);
+            assertTrue("p95 skew " + p95 + " ms over " + MAX_P95_SKEW_MS + " ms\n" + probe[0],
+                    p95 <= MAX_P95_SKEW_MS);
+        }
+    }
+}
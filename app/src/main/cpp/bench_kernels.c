@@ -0,0 +1,69 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <time.h>
+
+#include "frame_kernels.h"
+
+/*
+ * Host benchmark of the pixel kernels on a 640x480 frame, the default ImageAnalysis size.
+ * Built only outside the NDK: cmake -S app/src/main/cpp -B build/kernels && build/kernels/bench_kernels
+ */
+
+#define WIDTH 640
+#define HEIGHT 480
+#define ITERATIONS 500
+
+static double now_ms(void) {
+    struct timespec ts;
+    clock_gettime(CLOCK_MONOTONIC, &ts);
+    return ts.tv_sec * 1e3 + ts.tv_nsec / 1e6;
+}
+
+int main(void) {
+    uint8_t *y = malloc(WIDTH * HEIGHT);
+    uint8_t *uv = malloc(WIDTH * HEIGHT / 2);
+    uint8_t *nv21 = malloc(WIDTH * HEIGHT * 3 / 2);
+    uint32_t *argb = malloc(WIDTH * HEIGHT * 4);
+    uint32_t *rotated = malloc(WIDTH * HEIGHT * 4);
+    uint8_t *small = malloc(WIDTH * HEIGHT / 4);
+    for (int i = 0; i < WIDTH * HEIGHT; i++) {
+        y[i] = (uint8_t) (i * 7);
+        argb[i] = (uint32_t) i * 2654435761u;
+    }
+    for (int i = 0; i < WIDTH * HEIGHT / 2; i++) {
+        uv[i] = (uint8_t) (i * 13);
+    }
+
+    double start = now_ms();
+    for (int i = 0; i < ITERATIONS; i++) {
+        /* Semi-planar layout as most camera HALs deliver it: V and U interleaved, U = V + 1 */
+        fk_pack_nv21(y, WIDTH, uv + 1, WIDTH, 2, uv, WIDTH, 2, WIDTH, HEIGHT, nv21);
+    }
+    printf("pack_nv21      %.3f ms/frame\n", (now_ms() - start) / ITERATIONS);
+
+    start = now_ms();
+    for (int i = 0; i < ITERATIONS; i++) {
+        fk_rotate32(argb, WIDTH, WIDTH, HEIGHT, 90, rotated);
+    }
+    printf("rotate32 90    %.3f ms/frame\n", (now_ms() - start) / ITERATIONS);
+
+    start = now_ms();
+    for (int i = 0; i < ITERATIONS; i++) {
+        fk_rotate8(y, WIDTH, WIDTH, HEIGHT, 270, nv21);
+    }
+    printf("rotate8 270    %.3f ms/frame\n", (now_ms() - start) / ITERATIONS);
+
+    start = now_ms();
+    for (int i = 0; i < ITERATIONS; i++) {
+        fk_downscale_box(y, WIDTH, WIDTH, HEIGHT, 1, 2, small);
+    }
+    printf("downscale 1/2  %.3f ms/frame\n", (now_ms() - start) / ITERATIONS);
+
+    free(y);
+    free(uv);
+    free(nv21);
+    free(argb);
+    free(rotated);
+    free(small);
+    return 0;
+}
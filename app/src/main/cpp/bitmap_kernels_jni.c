@@ -0,0 +1,49 @@
+#include <android/bitmap.h>
+#include <jni.h>
+
+#include "frame_kernels.h"
+
+/*
+ * JNI entry points of BitmapKernels. The kernels run on the locked bitmap pixels, so nothing
+ * is copied. Anything unexpected returns JNI_FALSE and the Java side falls back to Canvas.
+ */
+
+#define BK_JNI(name) Java_hku_cs_comp3330_section1a2024_group19_gymmygo_BitmapKernels_##name
+
+JNIEXPORT jboolean JNICALL
+BK_JNI(nativeRotate)(JNIEnv *env, jclass clazz, jobject src, jint degrees, jobject dst) {
+    if (degrees != 90 && degrees != 180 && degrees != 270) {
+        return JNI_FALSE;
+    }
+    AndroidBitmapInfo src_info;
+    AndroidBitmapInfo dst_info;
+    if (AndroidBitmap_getInfo(env, src, &src_info) != ANDROID_BITMAP_RESULT_SUCCESS
+        || AndroidBitmap_getInfo(env, dst, &dst_info) != ANDROID_BITMAP_RESULT_SUCCESS
+        || src_info.format != ANDROID_BITMAP_FORMAT_RGBA_8888
+        || dst_info.format != ANDROID_BITMAP_FORMAT_RGBA_8888) {
+        return JNI_FALSE;
+    }
+    /* fk_rotate32 writes tightly packed rows */
+    int swap_sides = degrees != 180;
+    if (dst_info.width != (swap_sides ? src_info.height : src_info.width)
+        || dst_info.height != (swap_sides ? src_info.width : src_info.height)
+        || dst_info.stride != dst_info.width * 4
+        || src_info.stride % 4 != 0) {
+        return JNI_FALSE;
+    }
+
+    void *src_pixels;
+    void *dst_pixels;
+    if (AndroidBitmap_lockPixels(env, src, &src_pixels) != ANDROID_BITMAP_RESULT_SUCCESS) {
+        return JNI_FALSE;
+    }
+    if (AndroidBitmap_lockPixels(env, dst, &dst_pixels) != ANDROID_BITMAP_RESULT_SUCCESS) {
+        AndroidBitmap_unlockPixels(env, src);
+        return JNI_FALSE;
+    }
+    fk_rotate32(src_pixels, (int) (src_info.stride / 4), (int) src_info.width,
+                (int) src_info.height, degrees, dst_pixels);
+    AndroidBitmap_unlockPixels(env, dst);
+    AndroidBitmap_unlockPixels(env, src);
+    return JNI_TRUE;
+}
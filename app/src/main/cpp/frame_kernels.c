@@ -0,0 +1,244 @@
+#include "frame_kernels.h"
+
+#include <string.h>
+
+#if defined(__ARM_NEON) || defined(__ARM_NEON__)
+#include <arm_neon.h>
+#define FK_NEON 1
+#elif defined(__SSE2__)
+#include <emmintrin.h>
+#define FK_SSE2 1
+#endif
+
+/* ---- NV21 packing ---------------------------------------------------------------------- */
+
+static void interleave_vu_row(const uint8_t *u, int u_pixel_stride,
+                              const uint8_t *v, int v_pixel_stride,
+                              int pairs, uint8_t *out) {
+    int col = 0;
+#if FK_NEON
+    if (u_pixel_stride == 1 && v_pixel_stride == 1) {
+        for (; col + 16 <= pairs; col += 16) {
+            uint8x16x2_t vu;
+            vu.val[0] = vld1q_u8(v + col);
+            vu.val[1] = vld1q_u8(u + col);
+            vst2q_u8(out + 2 * col, vu);
+        }
+    } else if (u_pixel_stride == 2 && v_pixel_stride == 2) {
+        /* Take the even bytes of both planes; the last pair stays scalar so we never
+           read past the end of the plane */
+        for (; col + 17 <= pairs; col += 16) {
+            uint8x16x2_t vs = vld2q_u8(v + 2 * col);
+            uint8x16x2_t us = vld2q_u8(u + 2 * col);
+            uint8x16x2_t vu;
+            vu.val[0] = vs.val[0];
+            vu.val[1] = us.val[0];
+            vst2q_u8(out + 2 * col, vu);
+        }
+    }
+#elif FK_SSE2
+    if (u_pixel_stride == 1 && v_pixel_stride == 1) {
+        for (; col + 16 <= pairs; col += 16) {
+            __m128i vv = _mm_loadu_si128((const __m128i *) (v + col));
+            __m128i uu = _mm_loadu_si128((const __m128i *) (u + col));
+            _mm_storeu_si128((__m128i *) (out + 2 * col), _mm_unpacklo_epi8(vv, uu));
+            _mm_storeu_si128((__m128i *) (out + 2 * col + 16), _mm_unpackhi_epi8(vv, uu));
+        }
+    } else if (u_pixel_stride == 2 && v_pixel_stride == 2) {
+        const __m128i even = _mm_set1_epi16(0x00ff);
+        for (; col + 17 <= pairs; col += 16) {
+            /* Keep the even byte of every 16-bit lane, the odd one belongs to the other plane */
+            __m128i v0 = _mm_and_si128(_mm_loadu_si128((const __m128i *) (v + 2 * col)), even);
+            __m128i v1 = _mm_and_si128(_mm_loadu_si128((const __m128i *) (v + 2 * col + 16)), even);
+            __m128i u0 = _mm_and_si128(_mm_loadu_si128((const __m128i *) (u + 2 * col)), even);
+            __m128i u1 = _mm_and_si128(_mm_loadu_si128((const __m128i *) (u + 2 * col + 16)), even);
+            /* V in the low byte, U in the high byte of each lane is NV21 order in memory */
+            __m128i vu0 = _mm_or_si128(v0, _mm_slli_epi16(u0, 8));
+            __m128i vu1 = _mm_or_si128(v1, _mm_slli_epi16(u1, 8));
+            _mm_storeu_si128((__m128i *) (out + 2 * col), vu0);
+            _mm_storeu_si128((__m128i *) (out + 2 * col + 16), vu1);
+        }
+    }
+#endif
+    for (; col < pairs; col++) {
+        out[2 * col] = v[col * v_pixel_stride];
+        out[2 * col + 1] = u[col * u_pixel_stride];
+    }
+}
+
+void fk_pack_nv21(const uint8_t *y, int y_row_stride,
+                  const uint8_t *u, int u_row_stride, int u_pixel_stride,
+                  const uint8_t *v, int v_row_stride, int v_pixel_stride,
+                  int width, int height, uint8_t *out) {
+    for (int row = 0; row < height; row++) {
+        memcpy(out + row * width, y + row * y_row_stride, (size_t) width);
+    }
+    uint8_t *vu_out = out + width * height;
+    int pairs = width / 2;
+    for (int row = 0; row < height / 2; row++) {
+        interleave_vu_row(u + row * u_row_stride, u_pixel_stride,
+                          v + row * v_row_stride, v_pixel_stride,
+                          pairs, vu_out + row * 2 * pairs);
+    }
+}
+
+/* ---- Rotation -------------------------------------------------------------------------- */
+
+/* Destination index of source pixel (x, y) for a clockwise rotation */
+static inline int rotated_index(int x, int y, int width, int height, int degrees) {
+    switch (degrees) {
+        case 90:
+            return x * height + (height - 1 - y);
+        case 180:
+            return (height - 1 - y) * width + (width - 1 - x);
+        default: /* 270 */
+            return (width - 1 - x) * height + y;
+    }
+}
+
+void fk_rotate32(const uint32_t *src, int src_stride, int width, int height,
+                 int degrees, uint32_t *dst) {
+    if (degrees == 0) {
+        for (int y = 0; y < height; y++) {
+            memcpy(dst + y * width, src + y * src_stride, (size_t) width * 4);
+        }
+        return;
+    }
+#if FK_SSE2 || FK_NEON
+    if (degrees != 180) {
+        /* 4x4 tiles: load four rows, transpose, store as four columns */
+        int tiled_w = width & ~3;
+        int tiled_h = height & ~3;
+        for (int y = 0; y < tiled_h; y += 4) {
+            for (int x = 0; x < tiled_w; x += 4) {
+                const uint32_t *s = src + y * src_stride + x;
+#if FK_SSE2
+                __m128 r0 = _mm_castsi128_ps(_mm_loadu_si128((const __m128i *) s));
+                __m128 r1 = _mm_castsi128_ps(_mm_loadu_si128((const __m128i *) (s + src_stride)));
+                __m128 r2 = _mm_castsi128_ps(_mm_loadu_si128((const __m128i *) (s + 2 * src_stride)));
+                __m128 r3 = _mm_castsi128_ps(_mm_loadu_si128((const __m128i *) (s + 3 * src_stride)));
+                _MM_TRANSPOSE4_PS(r0, r1, r2, r3);
+                __m128i c[4] = {_mm_castps_si128(r0), _mm_castps_si128(r1),
+                                _mm_castps_si128(r2), _mm_castps_si128(r3)};
+                for (int i = 0; i < 4; i++) {
+                    if (degrees == 90) {
+                        /* Column x+i becomes row x+i, read bottom to top */
+                        _mm_storeu_si128((__m128i *) (dst + (x + i) * height + (height - 4 - y)),
+                                         _mm_shuffle_epi32(c[i], _MM_SHUFFLE(0, 1, 2, 3)));
+                    } else {
+                        _mm_storeu_si128((__m128i *) (dst + (width - 1 - x - i) * height + y), c[i]);
+                    }
+                }
+#else
+                uint32x4x2_t t01 = vtrnq_u32(vld1q_u32(s), vld1q_u32(s + src_stride));
+                uint32x4x2_t t23 = vtrnq_u32(vld1q_u32(s + 2 * src_stride),
+                                             vld1q_u32(s + 3 * src_stride));
+                uint32x4_t c[4];
+                c[0] = vcombine_u32(vget_low_u32(t01.val[0]), vget_low_u32(t23.val[0]));
+                c[1] = vcombine_u32(vget_low_u32(t01.val[1]), vget_low_u32(t23.val[1]));
+                c[2] = vcombine_u32(vget_high_u32(t01.val[0]), vget_high_u32(t23.val[0]));
+                c[3] = vcombine_u32(vget_high_u32(t01.val[1]), vget_high_u32(t23.val[1]));
+                for (int i = 0; i < 4; i++) {
+                    if (degrees == 90) {
+                        uint32x4_t r = vrev64q_u32(c[i]);
+                        r = vcombine_u32(vget_high_u32(r), vget_low_u32(r));
+                        vst1q_u32(dst + (x + i) * height + (height - 4 - y), r);
+                    } else {
+                        vst1q_u32(dst + (width - 1 - x - i) * height + y, c[i]);
+                    }
+                }
+#endif
+            }
+        }
+        /* Right and bottom edges that do not fill a whole tile */
+        for (int y = 0; y < height; y++) {
+            for (int x = (y < tiled_h ? tiled_w : 0); x < width; x++) {
+                dst[rotated_index(x, y, width, height, degrees)] = src[y * src_stride + x];
+            }
+        }
+        return;
+    }
+#endif
+    for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+            dst[rotated_index(x, y, width, height, degrees)] = src[y * src_stride + x];
+        }
+    }
+}
+
+void fk_rotate8(const uint8_t *src, int src_stride, int width, int height,
+                int degrees, uint8_t *dst) {
+    if (degrees == 0) {
+        for (int y = 0; y < height; y++) {
+            memcpy(dst + y * width, src + y * src_stride, (size_t) width);
+        }
+        return;
+    }
+    /* Walk in 32x32 tiles so both the source rows and the destination columns stay in cache */
+    const int tile = 32;
+    for (int ty = 0; ty < height; ty += tile) {
+        int ey = ty + tile < height ? ty + tile : height;
+        for (int tx = 0; tx < width; tx += tile) {
+            int ex = tx + tile < width ? tx + tile : width;
+            for (int y = ty; y < ey; y++) {
+                const uint8_t *row = src + y * src_stride;
+                for (int x = tx; x < ex; x++) {
+                    dst[rotated_index(x, y, width, height, degrees)] = row[x];
+                }
+            }
+        }
+    }
+}
+
+/* ---- Box downscale --------------------------------------------------------------------- */
+
+static int downscale_half_gray_row(const uint8_t *r0, const uint8_t *r1, int out_width,
+                                   uint8_t *out) {
+    int x = 0;
+#if FK_NEON
+    for (; x + 8 <= out_width; x += 8) {
+        uint16x8_t sum = vaddq_u16(vpaddlq_u8(vld1q_u8(r0 + 2 * x)),
+                                   vpaddlq_u8(vld1q_u8(r1 + 2 * x)));
+        vst1_u8(out + x, vrshrn_n_u16(sum, 2));
+    }
+#elif FK_SSE2
+    const __m128i low = _mm_set1_epi16(0x00ff);
+    const __m128i two = _mm_set1_epi16(2);
+    for (; x + 8 <= out_width; x += 8) {
+        __m128i a = _mm_loadu_si128((const __m128i *) (r0 + 2 * x));
+        __m128i b = _mm_loadu_si128((const __m128i *) (r1 + 2 * x));
+        __m128i sum = _mm_add_epi16(_mm_add_epi16(_mm_and_si128(a, low), _mm_srli_epi16(a, 8)),
+                                    _mm_add_epi16(_mm_and_si128(b, low), _mm_srli_epi16(b, 8)));
+        sum = _mm_srli_epi16(_mm_add_epi16(sum, two), 2);
+        _mm_storel_epi64((__m128i *) (out + x), _mm_packus_epi16(sum, sum));
+    }
+#endif
+    return x;
+}
+
+void fk_downscale_box(const uint8_t *src, int src_stride, int width, int height,
+                      int channels, int factor, uint8_t *dst) {
+    int out_width = width / factor;
+    int out_height = height / factor;
+    int area = factor * factor;
+    for (int oy = 0; oy < out_height; oy++) {
+        const uint8_t *block_row = src + oy * factor * src_stride;
+        uint8_t *out = dst + oy * out_width * channels;
+        int ox = 0;
+        if (factor == 2 && channels == 1) {
+            ox = downscale_half_gray_row(block_row, block_row + src_stride, out_width, out);
+        }
+        for (; ox < out_width; ox++) {
+            for (int c = 0; c < channels; c++) {
+                int sum = 0;
+                for (int dy = 0; dy < factor; dy++) {
+                    const uint8_t *p = block_row + dy * src_stride + ox * factor * channels + c;
+                    for (int dx = 0; dx < factor; dx++) {
+                        sum += p[dx * channels];
+                    }
+                }
+                out[ox * channels + c] = (uint8_t) ((sum + area / 2) / area);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+#ifndef GYMMYGO_FRAME_KERNELS_H
+#define GYMMYGO_FRAME_KERNELS_H
+
+#include <stdint.h>
+
+/*
+ * Pixel kernels behind FrameKernels.java. Every function has the same output as its Java
+ * fallback, bit for bit. Callers own all memory, nothing here allocates.
+ */
+
+/* Packs the planes of a YUV_420_888 image into tightly packed NV21 (Y, then interleaved VU). */
+void fk_pack_nv21(const uint8_t *y, int y_row_stride,
+                  const uint8_t *u, int u_row_stride, int u_pixel_stride,
+                  const uint8_t *v, int v_row_stride, int v_pixel_stride,
+                  int width, int height, uint8_t *out);
+
+/* Rotates a plane of 32-bit pixels clockwise by 90, 180 or 270 degrees. */
+void fk_rotate32(const uint32_t *src, int src_stride, int width, int height,
+                 int degrees, uint32_t *dst);
+
+/* Rotates a plane of 8-bit pixels clockwise by 90, 180 or 270 degrees. */
+void fk_rotate8(const uint8_t *src, int src_stride, int width, int height,
+                int degrees, uint8_t *dst);
+
+/*
+ * Averages factor x factor blocks of an interleaved plane with 1 to 4 channels, rounding to
+ * nearest. Output is (width / factor) x (height / factor), tightly packed.
+ */
+void fk_downscale_box(const uint8_t *src, int src_stride, int width, int height,
+                      int channels, int factor, uint8_t *dst);
+
+#endif
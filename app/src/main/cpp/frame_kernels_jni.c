@@ -0,0 +1,223 @@
+#include <jni.h>
+#include <stdio.h>
+
+#include "frame_kernels.h"
+
+/*
+ * JNI entry points of FrameKernels. The Java side checks the output sizes, but the planes
+ * and strides come from the camera driver, so every extent is checked again here against the
+ * real buffer capacities before a kernel touches the memory. Anything that does not fit
+ * throws IllegalArgumentException instead of reading or writing out of bounds.
+ */
+
+#define FK_JNI(name) Java_hku_cs_comp3330_section1a2024_group19_gymmygo_FrameKernels_##name
+
+static void throw_illegal_argument(JNIEnv *env, const char *message) {
+    jclass clazz = (*env)->FindClass(env, "java/lang/IllegalArgumentException");
+    if (clazz != NULL) {
+        (*env)->ThrowNew(env, clazz, message);
+    }
+}
+
+/* Bytes from the first to past the last sample of rows x cols samples, 0 if there are none */
+static jlong plane_extent(int rows, int cols, int row_stride, int pixel_stride) {
+    if (rows <= 0 || cols <= 0) {
+        return 0;
+    }
+    return (jlong) (rows - 1) * row_stride + (jlong) (cols - 1) * pixel_stride + 1;
+}
+
+static int check_size(JNIEnv *env, int width, int height) {
+    if (width < 0 || height < 0) {
+        char message[64];
+        snprintf(message, sizeof message, "Negative size %dx%d", width, height);
+        throw_illegal_argument(env, message);
+        return 0;
+    }
+    return 1;
+}
+
+static int check_strides(JNIEnv *env, const char *name, int row_stride, int pixel_stride) {
+    if (row_stride < 1 || pixel_stride < 1) {
+        char message[96];
+        snprintf(message, sizeof message, "%s strides must be positive: row %d, pixel %d",
+                 name, row_stride, pixel_stride);
+        throw_illegal_argument(env, message);
+        return 0;
+    }
+    return 1;
+}
+
+/* The address of a direct buffer holding at least needed bytes, or NULL with an exception */
+static void *checked_address(JNIEnv *env, jobject buffer, const char *name, jlong needed) {
+    void *address = (*env)->GetDirectBufferAddress(env, buffer);
+    jlong capacity = (*env)->GetDirectBufferCapacity(env, buffer);
+    char message[128];
+    if (address == NULL || capacity < 0) {
+        snprintf(message, sizeof message, "%s is not a direct buffer", name);
+        throw_illegal_argument(env, message);
+        return NULL;
+    }
+    if (capacity < needed) {
+        snprintf(message, sizeof message, "%s holds %lld bytes, needs %lld",
+                 name, (long long) capacity, (long long) needed);
+        throw_illegal_argument(env, message);
+        return NULL;
+    }
+    return address;
+}
+
+/* Checks the size, strides and input planes of a YUV_420_888 frame */
+static int check_yuv(JNIEnv *env,
+                     jobject y, jint y_row_stride, const uint8_t **y_address,
+                     jobject u, jint u_row_stride, jint u_pixel_stride, const uint8_t **u_address,
+                     jobject v, jint v_row_stride, jint v_pixel_stride, const uint8_t **v_address,
+                     jint width, jint height) {
+    if (!check_size(env, width, height)
+        || !check_strides(env, "Y", y_row_stride, 1)
+        || !check_strides(env, "U", u_row_stride, u_pixel_stride)
+        || !check_strides(env, "V", v_row_stride, v_pixel_stride)) {
+        return 0;
+    }
+    *y_address = checked_address(env, y, "Y plane", plane_extent(height, width, y_row_stride, 1));
+    if (*y_address == NULL) {
+        return 0;
+    }
+    *u_address = checked_address(env, u, "U plane",
+                                 plane_extent(height / 2, width / 2, u_row_stride, u_pixel_stride));
+    if (*u_address == NULL) {
+        return 0;
+    }
+    *v_address = checked_address(env, v, "V plane",
+                                 plane_extent(height / 2, width / 2, v_row_stride, v_pixel_stride));
+    return *v_address != NULL;
+}
+
+static jlong nv21_size(jint width, jint height) {
+    return (jlong) width * height * 3 / 2;
+}
+
+JNIEXPORT void JNICALL
+FK_JNI(nativePackNv21)(JNIEnv *env, jclass clazz,
+                       jobject y, jint y_row_stride,
+                       jobject u, jint u_row_stride, jint u_pixel_stride,
+                       jobject v, jint v_row_stride, jint v_pixel_stride,
+                       jint width, jint height, jobject out) {
+    const uint8_t *y_address;
+    const uint8_t *u_address;
+    const uint8_t *v_address;
+    if (!check_yuv(env, y, y_row_stride, &y_address, u, u_row_stride, u_pixel_stride, &u_address,
+                   v, v_row_stride, v_pixel_stride, &v_address, width, height)) {
+        return;
+    }
+    uint8_t *out_address = checked_address(env, out, "Output", nv21_size(width, height));
+    if (out_address == NULL) {
+        return;
+    }
+    fk_pack_nv21(y_address, y_row_stride, u_address, u_row_stride, u_pixel_stride,
+                 v_address, v_row_stride, v_pixel_stride, width, height, out_address);
+}
+
+JNIEXPORT void JNICALL
+FK_JNI(nativePackNv21Array)(JNIEnv *env, jclass clazz,
+                            jobject y, jint y_row_stride,
+                            jobject u, jint u_row_stride, jint u_pixel_stride,
+                            jobject v, jint v_row_stride, jint v_pixel_stride,
+                            jint width, jint height, jbyteArray out) {
+    const uint8_t *y_address;
+    const uint8_t *u_address;
+    const uint8_t *v_address;
+    if (!check_yuv(env, y, y_row_stride, &y_address, u, u_row_stride, u_pixel_stride, &u_address,
+                   v, v_row_stride, v_pixel_stride, &v_address, width, height)) {
+        return;
+    }
+    jlong needed = nv21_size(width, height);
+    if ((*env)->GetArrayLength(env, out) < needed) {
+        char message[96];
+        snprintf(message, sizeof message, "Output array holds %d bytes, needs %lld",
+                 (int) (*env)->GetArrayLength(env, out), (long long) needed);
+        throw_illegal_argument(env, message);
+        return;
+    }
+    /* Critical access pins the array instead of copying it; nothing below calls back into the VM */
+    uint8_t *out_bytes = (*env)->GetPrimitiveArrayCritical(env, out, NULL);
+    if (out_bytes == NULL) {
+        return;
+    }
+    fk_pack_nv21(y_address, y_row_stride, u_address, u_row_stride, u_pixel_stride,
+                 v_address, v_row_stride, v_pixel_stride, width, height, out_bytes);
+    (*env)->ReleasePrimitiveArrayCritical(env, out, out_bytes, 0);
+}
+
+/* Checks a rotation of width x height pixels of the given size and returns both addresses */
+static int check_rotation(JNIEnv *env, jobject src, jint src_stride, jint width, jint height,
+                          jint degrees, int bytes_per_pixel, jobject dst,
+                          void **src_address, void **dst_address) {
+    if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+        char message[48];
+        snprintf(message, sizeof message, "Unsupported rotation: %d", degrees);
+        throw_illegal_argument(env, message);
+        return 0;
+    }
+    if (!check_size(env, width, height) || !check_strides(env, "Source", src_stride, 1)) {
+        return 0;
+    }
+    *src_address = checked_address(env, src, "Source",
+                                   plane_extent(height, width, src_stride, 1) * bytes_per_pixel);
+    if (*src_address == NULL) {
+        return 0;
+    }
+    *dst_address = checked_address(env, dst, "Destination",
+                                   (jlong) width * height * bytes_per_pixel);
+    return *dst_address != NULL;
+}
+
+JNIEXPORT void JNICALL
+FK_JNI(nativeRotate32)(JNIEnv *env, jclass clazz, jobject src, jint src_stride,
+                       jint width, jint height, jint degrees, jobject dst) {
+    void *src_address;
+    void *dst_address;
+    if (check_rotation(env, src, src_stride, width, height, degrees, 4, dst,
+                       &src_address, &dst_address)) {
+        fk_rotate32(src_address, src_stride, width, height, degrees, dst_address);
+    }
+}
+
+JNIEXPORT void JNICALL
+FK_JNI(nativeRotate8)(JNIEnv *env, jclass clazz, jobject src, jint src_stride,
+                      jint width, jint height, jint degrees, jobject dst) {
+    void *src_address;
+    void *dst_address;
+    if (check_rotation(env, src, src_stride, width, height, degrees, 1, dst,
+                       &src_address, &dst_address)) {
+        fk_rotate8(src_address, src_stride, width, height, degrees, dst_address);
+    }
+}
+
+JNIEXPORT void JNICALL
+FK_JNI(nativeDownscaleBox)(JNIEnv *env, jclass clazz, jobject src, jint src_stride,
+                           jint width, jint height, jint channels, jint factor, jobject dst) {
+    if (channels < 1 || channels > 4 || factor < 1) {
+        char message[48];
+        snprintf(message, sizeof message, "channels=%d factor=%d", channels, factor);
+        throw_illegal_argument(env, message);
+        return;
+    }
+    if (!check_size(env, width, height) || !check_strides(env, "Source", src_stride, 1)) {
+        return;
+    }
+    int out_width = width / factor;
+    int out_height = height / factor;
+    /* Only whole blocks are read: out_height * factor rows of out_width * factor pixels */
+    const uint8_t *src_address = checked_address(env, src, "Source",
+            plane_extent(out_height * factor, out_width * factor * channels, src_stride, 1));
+    if (src_address == NULL) {
+        return;
+    }
+    uint8_t *dst_address = checked_address(env, dst, "Destination",
+                                           (jlong) out_width * out_height * channels);
+    if (dst_address == NULL) {
+        return;
+    }
+    fk_downscale_box(src_address, src_stride, width, height, channels, factor, dst_address);
+}
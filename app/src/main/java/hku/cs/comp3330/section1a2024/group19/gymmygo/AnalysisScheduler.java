@@ -0,0 +1,289 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The threads the analysis pipeline runs on, one lane per kind of work.
+ *
+ * Each lane is a small pool of named threads with its own priority and a bounded queue.
+ * When a queue is full the lane's rejection policy decides what happens, so a stalled stage
+ * can never grow a queue without limit. Work that may be skipped once the activity stops is
+ * submitted through a {@link Scope}; cancelling the scope drops its queued tasks and turns
+ * later submissions into no-ops, while cleanup submitted directly to a lane always runs.
+ */
+public class AnalysisScheduler {
+
+    /** Camera analyzer: YUV conversion, rotation and handing frames to the detector. */
+    public static final int LANE_CAPTURE = 0;
+    /** Detector callbacks: drawing the overlay, presence, streaming. */
+    public static final int LANE_INFERENCE = 1;
+    /** Disk writes such as the workout history. */
+    public static final int LANE_PERSISTENCE = 2;
+    /** Device benchmarks of the {@link PerformanceProfiler}. */
+    public static final int LANE_PROFILING = 3;
+    /** Hand and face models of the {@link DetailCascade}. */
+    public static final int LANE_DETAIL = 4;
+
+    /** Run a rejected task on the submitting thread. Nothing is lost, the caller pays. */
+    public static final int REJECT_CALLER_RUNS = 0;
+    /** Drop the oldest queued task to make room. */
+    public static final int REJECT_DISCARD_OLDEST = 1;
+    /** Throw RejectedExecutionException to the caller. */
+    public static final int REJECT_ABORT = 2;
+
+    /**
+     * Configuration of one lane.
+     */
+    public static class LaneConfig {
+        final String name;
+        final int threads;
+        final int priority;
+        final int queueCapacity;
+        final int rejectPolicy;
+
+        /**
+         * @param name          Thread name prefix.
+         * @param threads       Number of threads. Lanes whose tasks must run in order need 1.
+         * @param priority      Java thread priority, mapped to a nice value by Android.
+         * @param queueCapacity Tasks that may wait for a thread.
+         * @param rejectPolicy  One of the REJECT_ constants.
+         */
+        public LaneConfig(String name, int threads, int priority, int queueCapacity,
+                          int rejectPolicy) {
+            this.name = name;
+            this.threads = threads;
+            this.priority = priority;
+            this.queueCapacity = queueCapacity;
+            this.rejectPolicy = rejectPolicy;
+        }
+    }
+
+    /**
+     * The lanes of the app. Capture and inference are single threads so that frames and the
+     * callbacks of one detection run in order; inference callbacks must never be dropped
+     * because they release the frame's buffers, and their queue is far larger than the few
+     * frames in flight. Both run at normal priority, the UI thread's nice value: Android maps
+     * every Java priority above normal to a negative nice value, which would let the pipeline
+     * preempt drawing. History writes are refused rather than run on the caller, which may
+     * be the main thread. The profiler runs at normal priority so its timings match the
+     * pipeline's; a second request while one is queued replaces it. Detail models run one
+     * step below normal, which Android maps to the background nice value, so a face mesh
+     * never competes with the pipeline or the UI; at most one run per stage is queued and
+     * anything beyond that is refused, the cascade skips the run.
+     */
+    public static AnalysisScheduler createDefault() {
+        return new AnalysisScheduler(new LaneConfig[]{
+                new LaneConfig("capture", 1, Thread.NORM_PRIORITY, 4, REJECT_CALLER_RUNS),
+                new LaneConfig("inference", 1, Thread.NORM_PRIORITY, 32, REJECT_CALLER_RUNS),
+                new LaneConfig("persistence", 1, Thread.MIN_PRIORITY, 256, REJECT_ABORT),
+                new LaneConfig("profiling", 1, Thread.NORM_PRIORITY, 1, REJECT_DISCARD_OLDEST),
+                new LaneConfig("detail", 1, Thread.NORM_PRIORITY - 1, 4, REJECT_ABORT),
+        });
+    }
+
+    /**
+     * The same lanes for work while the app is not in front, such as the desk posture bursts
+     * of {@link PostureService}: nothing runs above the background nice value, so sampling
+     * every few seconds never takes the CPU from the app the user is looking at.
+     */
+    public static AnalysisScheduler createBackground() {
+        return new AnalysisScheduler(new LaneConfig[]{
+                new LaneConfig("bg-capture", 1, Thread.NORM_PRIORITY - 1, 4, REJECT_CALLER_RUNS),
+                new LaneConfig("bg-inference", 1, Thread.NORM_PRIORITY - 1, 32, REJECT_CALLER_RUNS),
+                new LaneConfig("bg-persistence", 1, Thread.MIN_PRIORITY, 256, REJECT_ABORT),
+                new LaneConfig("bg-profiling", 1, Thread.MIN_PRIORITY, 1, REJECT_DISCARD_OLDEST),
+                new LaneConfig("bg-detail", 1, Thread.MIN_PRIORITY, 4, REJECT_ABORT),
+        });
+    }
+
+    private final Lane[] lanes;
+
+    public AnalysisScheduler(LaneConfig[] configs) {
+        lanes = new Lane[configs.length];
+        for (int i = 0; i < configs.length; i++) {
+            lanes[i] = new Lane(configs[i]);
+        }
+    }
+
+    /**
+     * @return Executor of the lane. Tasks submitted here run even after scopes are cancelled.
+     */
+    public Executor getExecutor(int lane) {
+        return lanes[lane];
+    }
+
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    public long getRejectedCount(int lane) {
+        return lanes[lane].rejected.get();
+    }
+
+    public long getCompletedCount(int lane) {
+        return lanes[lane].pool.getCompletedTaskCount();
+    }
+
+    public int getPeakQueueDepth(int lane) {
+        return lanes[lane].peakQueueDepth.get();
+    }
+
+    /**
+     * Stops accepting work; queued tasks still run. Tasks submitted afterwards are rejected,
+     * caller-runs lanes run them on the caller so cleanup is not lost.
+     */
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.pool.shutdown();
+        }
+    }
+
+    /**
+     * @return True if every lane finished within the timeout.
+     */
+    public boolean awaitTermination(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        for (Lane lane : lanes) {
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            if (!lane.pool.awaitTermination(remaining, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("Scheduler");
+        for (Lane lane : lanes) {
+            builder.append(String.format(Locale.US, " [%s: done=%d peakQueue=%d/%d rejected=%d]",
+                    lane.config.name, lane.pool.getCompletedTaskCount(),
+                    lane.peakQueueDepth.get(), lane.config.queueCapacity, lane.rejected.get()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Work that belongs to one period of the lifecycle, e.g. from onStart to onStop.
+     */
+    public class Scope {
+
+        private final AtomicBoolean active = new AtomicBoolean(true);
+        private final Executor[] executors = new Executor[lanes.length];
+
+        private Scope() {
+            for (int i = 0; i < lanes.length; i++) {
+                final Lane lane = lanes[i];
+                executors[i] = task -> lane.execute(new ScopedTask(this, task));
+            }
+        }
+
+        public boolean isActive() {
+            return active.get();
+        }
+
+        /**
+         * @return Executor of the lane whose tasks are skipped once the scope is cancelled.
+         */
+        public Executor getExecutor(int lane) {
+            return executors[lane];
+        }
+
+        /**
+         * Drops the queued tasks of this scope. Running tasks finish; they can check
+         * {@link #isActive()} to stop early.
+         */
+        public void cancel() {
+            if (!active.compareAndSet(true, false)) {
+                return;
+            }
+            for (Lane lane : lanes) {
+                Iterator<Runnable> queued = lane.pool.getQueue().iterator();
+                while (queued.hasNext()) {
+                    Runnable task = queued.next();
+                    if (task instanceof ScopedTask && ((ScopedTask) task).scope == this) {
+                        queued.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    private static class ScopedTask implements Runnable {
+        final Scope scope;
+        final Runnable task;
+
+        ScopedTask(Scope scope, Runnable task) {
+            this.scope = scope;
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (scope.isActive()) {
+                task.run();
+            }
+        }
+    }
+
+    private static class Lane implements Executor {
+        final LaneConfig config;
+        final ThreadPoolExecutor pool;
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicInteger peakQueueDepth = new AtomicInteger();
+
+        Lane(final LaneConfig config) {
+            this.config = config;
+            final AtomicInteger threadCount = new AtomicInteger();
+            BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(config.queueCapacity);
+            pool = new ThreadPoolExecutor(config.threads, config.threads, 0, TimeUnit.MILLISECONDS,
+                    queue, runnable -> {
+                        Thread thread = new Thread(runnable,
+                                "gymmygo-" + config.name + "-" + threadCount.incrementAndGet());
+                        thread.setPriority(config.priority);
+                        return thread;
+                    }, newRejectionHandler());
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            pool.execute(task);
+            int depth = pool.getQueue().size();
+            int peak;
+            do {
+                peak = peakQueueDepth.get();
+            } while (depth > peak && !peakQueueDepth.compareAndSet(peak, depth));
+        }
+
+        private RejectedExecutionHandler newRejectionHandler() {
+            return (task, executor) -> {
+                rejected.incrementAndGet();
+                switch (config.rejectPolicy) {
+                    case REJECT_CALLER_RUNS:
+                        task.run();
+                        break;
+                    case REJECT_DISCARD_OLDEST:
+                        if (!executor.isShutdown()) {
+                            executor.getQueue().poll();
+                            executor.execute(task);
+                        }
+                        break;
+                    default:
+                        throw new RejectedExecutionException(
+                                "Lane " + config.name + " is full or shut down");
+                }
+            };
+        }
+    }
+}
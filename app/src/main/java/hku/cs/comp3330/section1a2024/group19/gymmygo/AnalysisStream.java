@@ -0,0 +1,129 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One camera feeding the pose pipeline. Every stream has its own in-flight flag, so a slow
+ * camera only drops its own frames, and its own metrics.
+ *
+ * Since a stream has at most one frame in flight, it also owns the scratch objects and the
+ * buffer lease of that frame, which are reused from frame to frame.
+ */
+public class AnalysisStream {
+
+    private final int id;
+    private final String name;
+    private final StreamMetrics metrics;
+    private final AtomicBoolean processing = new AtomicBoolean(false);
+
+    private final BufferPool.Lease lease;
+    private final JpegOutputStream jpegStream = new JpegOutputStream();
+    private final BitmapFactory.Options decodeOptions = new BitmapFactory.Options();
+    private final Matrix rotationMatrix = new Matrix();
+    private final Canvas rotationCanvas = new Canvas();
+    private final YuvFrame cameraFrame = new YuvFrame();
+    private final PresenceMonitor presenceMonitor;
+    private final LandmarkFilter landmarkFilter;
+
+    /**
+     * @param id   Index of the stream, also used as the stream id in the DetectorPool.
+     * @param name Name used in logs and metrics.
+     * @param pool Pool the stream's frames borrow their buffers from.
+     * @param presenceMonitor Decides when the stream idles.
+     * @param landmarkFilter  Cleans up the stream's landmarks, only used on the inference lane.
+     */
+    public AnalysisStream(int id, String name, BufferPool pool, PresenceMonitor presenceMonitor,
+                          LandmarkFilter landmarkFilter) {
+        this.id = id;
+        this.name = name;
+        this.metrics = new StreamMetrics(name);
+        this.lease = pool.newLease();
+        this.presenceMonitor = presenceMonitor;
+        this.landmarkFilter = landmarkFilter;
+        decodeOptions.inMutable = true;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public StreamMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Claims the stream for a new frame.
+     *
+     * @return False if a frame of this stream is still being processed and the new one
+     * should be dropped.
+     */
+    public boolean tryBegin() {
+        return processing.compareAndSet(false, true);
+    }
+
+    /**
+     * Marks the in-flight frame as finished so the next one can be taken.
+     */
+    public void end() {
+        processing.set(false);
+    }
+
+    public PresenceMonitor getPresenceMonitor() {
+        return presenceMonitor;
+    }
+
+    public LandmarkFilter getLandmarkFilter() {
+        return landmarkFilter;
+    }
+
+    public BufferPool.Lease getLease() {
+        return lease;
+    }
+
+    public JpegOutputStream getJpegStream() {
+        return jpegStream;
+    }
+
+    public BitmapFactory.Options getDecodeOptions() {
+        return decodeOptions;
+    }
+
+    public Matrix getRotationMatrix() {
+        return rotationMatrix;
+    }
+
+    public Canvas getRotationCanvas() {
+        return rotationCanvas;
+    }
+
+    /**
+     * @return The frame object camera images of this stream are wrapped in.
+     */
+    public YuvFrame getCameraFrame() {
+        return cameraFrame;
+    }
+
+    /**
+     * ByteArrayOutputStream whose buffer can be read without the copy toByteArray() makes.
+     * reset() keeps the buffer, so after the first few frames it no longer grows.
+     */
+    public static final class JpegOutputStream extends ByteArrayOutputStream {
+
+        public JpegOutputStream() {
+            super(256 * 1024);
+        }
+
+        public byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.ImageFormat;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.YuvImage;
+
+/**
+ * The default conversion stage: repacks the planes to NV21, goes through JPEG into a pooled
+ * bitmap and rotates it upright. All buffers are borrowed from the stream's lease, so the
+ * result is valid until the lease is closed. Stateless; the scratch objects belong to the
+ * stream.
+ */
+public class BitmapFrameConverter implements PoseFrameProcessor.FrameConverter {
+
+    private static final int KERNELS_ENABLED = 0;
+    private static final int KERNELS_NATIVE = 1;
+    private static final int KERNELS_JAVA = 2;
+
+    private final int kernels;
+
+    /**
+     * Uses the kernels {@link FrameKernels#setNativeEnabled} selects, the profile's choice.
+     */
+    public BitmapFrameConverter() {
+        kernels = KERNELS_ENABLED;
+    }
+
+    /**
+     * Uses the given kernels whatever FrameKernels has enabled, so that the profiler can
+     * time both next to the live pipeline.
+     *
+     * @param nativeKernels True for the native kernels where the library is loaded, false
+     *                      for the Java ones.
+     */
+    public BitmapFrameConverter(boolean nativeKernels) {
+        kernels = nativeKernels ? KERNELS_NATIVE : KERNELS_JAVA;
+    }
+
+    @Override
+    public Bitmap convert(YuvFrame frame, AnalysisStream stream) {
+        boolean useNative = kernels == KERNELS_ENABLED
+                ? FrameKernels.isNativeAvailable()
+                : kernels == KERNELS_NATIVE;
+        StageTimer stages = stream.getMetrics().getStageTimer();
+        long startNanos = System.nanoTime();
+        Bitmap bitmap = yuvToBitmap(frame, stream, useNative);
+        stages.record(StreamMetrics.STAGE_CONVERT, startNanos);
+        if (bitmap == null) {
+            return null;
+        }
+        long rotateNanos = System.nanoTime();
+        Bitmap rotated = rotateBitmap(bitmap, frame.rotationDegrees, stream, useNative);
+        stages.record(StreamMetrics.STAGE_ROTATE, rotateNanos);
+        return rotated;
+    }
+
+    /**
+     * Converts YUV_420_888 Image to NV21 byte array.
+     *
+     * @param image     The YUV frame.
+     * @param lease     The lease the array is borrowed from.
+     * @param useNative Whether to use the native kernel if it is loaded.
+     * @return NV21 byte array, possibly longer than the image data.
+     */
+    private static byte[] YUV_420_888toNV21(YuvFrame image, BufferPool.Lease lease,
+                                            boolean useNative) {
+        int width = image.width;
+        int height = image.height;
+
+        // Repack the planes into tight NV21, natively when libframekernels is available.
+        // YuvImage only takes an array, so the kernel writes straight into one.
+        byte[] nv21 = lease.bytes(width * height * 3 / 2);
+        FrameKernels.packNv21(
+                image.y, image.yRowStride,
+                image.u, image.uRowStride, image.uPixelStride,
+                image.v, image.vRowStride, image.vPixelStride,
+                width, height, nv21, useNative);
+        return nv21;
+    }
+
+    /**
+     * Converts YUV Image to Bitmap.
+     *
+     * @param image     The YUV frame.
+     * @param stream    The stream whose scratch objects and lease are used.
+     * @param useNative Whether to use the native kernels if they are loaded.
+     * @return The converted, mutable Bitmap, held by the stream's lease.
+     */
+    private static Bitmap yuvToBitmap(YuvFrame image, AnalysisStream stream, boolean useNative) {
+        BufferPool.Lease lease = stream.getLease();
+        byte[] nv21 = YUV_420_888toNV21(image, lease, useNative);
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.width, image.height, null);
+        AnalysisStream.JpegOutputStream out = stream.getJpegStream();
+        out.reset();
+        yuvImage.compressToJpeg(new Rect(0, 0, image.width, image.height), 100, out);
+
+        // Decode straight into a pooled bitmap
+        BitmapFactory.Options options = stream.getDecodeOptions();
+        options.inBitmap = lease.bitmap(image.width, image.height, Bitmap.Config.ARGB_8888);
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(out.getBuffer(), 0, out.size(), options);
+        } catch (IllegalArgumentException e) {
+            // inBitmap cannot be reused for this image, decode into a new bitmap instead
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(out.getBuffer(), 0, out.size(), options);
+        }
+        options.inBitmap = null;
+        return bitmap != null ? lease.adopt(bitmap) : null;
+    }
+
+    /**
+     * Rotates the bitmap to match the display orientation.
+     *
+     * @param bitmap          The original bitmap.
+     * @param rotationDegrees The rotation degrees, a multiple of 90.
+     * @param stream          The stream whose scratch objects and lease are used.
+     * @param useNative       Whether to use the native kernels if they are loaded.
+     * @return The rotated bitmap, or the original one if no rotation is needed.
+     */
+    private static Bitmap rotateBitmap(Bitmap bitmap, int rotationDegrees, AnalysisStream stream,
+                                       boolean useNative) {
+        if (rotationDegrees == 0) {
+            return bitmap;
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        boolean swapSides = rotationDegrees == 90 || rotationDegrees == 270;
+        BufferPool.Lease lease = stream.getLease();
+        Bitmap rotated = lease.bitmap(swapSides ? height : width,
+                swapSides ? width : height, Bitmap.Config.ARGB_8888);
+
+        // Rotate the locked pixels with the SIMD kernel, the Java fallback is slower than Canvas
+        if (useNative && BitmapKernels.rotate(bitmap, rotationDegrees, rotated)) {
+            return rotated;
+        }
+
+        // Rotate around the origin, then move the result back into the positive quadrant
+        Matrix matrix = stream.getRotationMatrix();
+        matrix.setRotate(rotationDegrees);
+        if (rotationDegrees == 90) {
+            matrix.postTranslate(height, 0);
+        } else if (rotationDegrees == 180) {
+            matrix.postTranslate(width, height);
+        } else {
+            matrix.postTranslate(0, width);
+        }
+
+        Canvas canvas = stream.getRotationCanvas();
+        canvas.setBitmap(rotated);
+        canvas.drawBitmap(bitmap, matrix, null);
+        canvas.setBitmap(null);
+        return rotated;
+    }
+}
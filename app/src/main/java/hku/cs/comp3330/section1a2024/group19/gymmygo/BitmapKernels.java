@@ -0,0 +1,34 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+
+/**
+ * The {@link FrameKernels} that work on bitmaps, run on the locked pixels in place instead of
+ * copying them out to a buffer and back. Android only, and native only: every method says
+ * whether it ran, so the caller can fall back to Canvas.
+ */
+public final class BitmapKernels {
+
+    private BitmapKernels() {
+    }
+
+    /**
+     * Rotates an ARGB_8888 bitmap clockwise into another one. Whether the native kernels are
+     * wanted at all is up to the caller, see {@link FrameKernels#isNativeAvailable()}.
+     *
+     * @param degrees 90, 180 or 270.
+     * @param dst     ARGB_8888, with the sides of src swapped for 90 and 270.
+     * @return False if the native library is not loaded or the bitmaps do not fit, in which
+     * case dst is left alone.
+     */
+    public static boolean rotate(Bitmap src, int degrees, Bitmap dst) {
+        if (!FrameKernels.isLibraryLoaded()
+                || src.getConfig() != Bitmap.Config.ARGB_8888
+                || dst.getConfig() != Bitmap.Config.ARGB_8888) {
+            return false;
+        }
+        return nativeRotate(src, degrees, dst);
+    }
+
+    private static native boolean nativeRotate(Bitmap src, int degrees, Bitmap dst);
+}
@@ -0,0 +1,344 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Recycles the byte arrays, direct buffers and bitmaps the frame pipeline needs every frame.
+ *
+ * Arrays and direct buffers are kept in power-of-two size buckets, so a request may get a
+ * larger one back than it asked for. Bitmaps are matched by size first, then any free bitmap
+ * with a large enough allocation is reused through {@link Bitmap#reconfigure}.
+ *
+ * With leak tracking on (debug builds) every acquire records its call site, and
+ * {@link #checkForLeaks(long)} logs objects that were never handed back.
+ */
+public class BufferPool {
+
+    private static final String TAG = "BufferPool";
+
+    private static final int BUCKET_COUNT = 31;
+    private static final int MAX_PER_BUCKET = 4;
+    private static final int MAX_FREE_BITMAPS = 6;
+    private static final int LEAK_CHECK_INTERVAL = 120;
+
+    private final List<ArrayDeque<byte[]>> byteBuckets = new ArrayList<>();
+    private final List<ArrayDeque<ByteBuffer>> directBuckets = new ArrayList<>();
+    private final ArrayList<Bitmap> freeBitmaps = new ArrayList<>();
+
+    private final boolean trackLeaks;
+    private final Map<Object, Throwable> outstanding = new IdentityHashMap<>();
+    private final Map<Object, Long> outstandingSince = new IdentityHashMap<>();
+    private int releasesSinceLeakCheck = 0;
+
+    private long byteHits, byteMisses;
+    private long directHits, directMisses;
+    private long bitmapHits, bitmapMisses;
+
+    /**
+     * @param trackLeaks True to record call sites of acquired objects, meant for debug builds.
+     */
+    public BufferPool(boolean trackLeaks) {
+        this.trackLeaks = trackLeaks;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            byteBuckets.add(new ArrayDeque<byte[]>());
+            directBuckets.add(new ArrayDeque<ByteBuffer>());
+        }
+    }
+
+    /**
+     * @param minSize The number of bytes needed.
+     * @return An array of at least minSize bytes. Its contents are undefined.
+     */
+    public synchronized byte[] acquireBytes(int minSize) {
+        int bucket = bucketFor(minSize);
+        byte[] array = byteBuckets.get(bucket).pollFirst();
+        if (array != null) {
+            byteHits++;
+        } else {
+            byteMisses++;
+            array = new byte[1 << bucket];
+        }
+        track(array);
+        return array;
+    }
+
+    public synchronized void releaseBytes(byte[] array) {
+        untrack(array);
+        int bucket = bucketFor(array.length);
+        if ((1 << bucket) == array.length && byteBuckets.get(bucket).size() < MAX_PER_BUCKET) {
+            byteBuckets.get(bucket).addFirst(array);
+        }
+    }
+
+    /**
+     * @param minSize The number of bytes needed.
+     * @return A cleared, native-order direct buffer whose limit is minSize.
+     */
+    public synchronized ByteBuffer acquireDirect(int minSize) {
+        int bucket = bucketFor(minSize);
+        ByteBuffer buffer = directBuckets.get(bucket).pollFirst();
+        if (buffer != null) {
+            directHits++;
+        } else {
+            directMisses++;
+            buffer = ByteBuffer.allocateDirect(1 << bucket).order(ByteOrder.nativeOrder());
+        }
+        buffer.clear();
+        buffer.limit(minSize);
+        track(buffer);
+        return buffer;
+    }
+
+    public synchronized void releaseDirect(ByteBuffer buffer) {
+        untrack(buffer);
+        int bucket = bucketFor(buffer.capacity());
+        if (buffer.isDirect() && (1 << bucket) == buffer.capacity()
+                && directBuckets.get(bucket).size() < MAX_PER_BUCKET) {
+            directBuckets.get(bucket).addFirst(buffer);
+        }
+    }
+
+    /**
+     * @param width  Width in pixels.
+     * @param height Height in pixels.
+     * @param config Pixel format.
+     * @return A mutable bitmap of exactly this size and format. Its pixels are undefined.
+     */
+    public synchronized Bitmap acquireBitmap(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = null;
+        for (int i = 0; i < freeBitmaps.size(); i++) {
+            Bitmap candidate = freeBitmaps.get(i);
+            if (candidate.getWidth() == width && candidate.getHeight() == height
+                    && candidate.getConfig() == config) {
+                bitmap = freeBitmaps.remove(i);
+                break;
+            }
+        }
+        if (bitmap == null) {
+            int needed = width * height * bytesPerPixel(config);
+            for (int i = 0; i < freeBitmaps.size(); i++) {
+                if (freeBitmaps.get(i).getAllocationByteCount() >= needed) {
+                    bitmap = freeBitmaps.remove(i);
+                    bitmap.reconfigure(width, height, config);
+                    break;
+                }
+            }
+        }
+        if (bitmap != null) {
+            bitmapHits++;
+        } else {
+            bitmapMisses++;
+            bitmap = Bitmap.createBitmap(width, height, config);
+        }
+        track(bitmap);
+        return bitmap;
+    }
+
+    /**
+     * Hands a bitmap back. Bitmaps that did not come from the pool are adopted if mutable.
+     *
+     * @param bitmap The bitmap, which must not be drawn or read afterwards.
+     */
+    public synchronized void releaseBitmap(Bitmap bitmap) {
+        untrack(bitmap);
+        if (bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        if (freeBitmaps.size() >= MAX_FREE_BITMAPS) {
+            // Drop the oldest so the pool follows resolution changes
+            freeBitmaps.remove(0).recycle();
+        }
+        freeBitmaps.add(bitmap);
+    }
+
+    /**
+     * Logs every acquired object that has been out longer than maxAgeMs, with the call site
+     * that acquired it. Does nothing unless leak tracking is on.
+     *
+     * @param maxAgeMs Age after which an outstanding object counts as leaked.
+     * @return The number of leaked objects found.
+     */
+    public synchronized int checkForLeaks(long maxAgeMs) {
+        if (!trackLeaks) {
+            return 0;
+        }
+        long now = SystemClock.elapsedRealtime();
+        int leaks = 0;
+        for (Map.Entry<Object, Long> entry : outstandingSince.entrySet()) {
+            if (now - entry.getValue() > maxAgeMs) {
+                leaks++;
+                Log.w(TAG, "Pooled " + entry.getKey().getClass().getSimpleName()
+                        + " not released after " + (now - entry.getValue()) + "ms",
+                        outstanding.get(entry.getKey()));
+            }
+        }
+        return leaks;
+    }
+
+    public synchronized double getHitRate() {
+        long hits = byteHits + directHits + bitmapHits;
+        long total = hits + byteMisses + directMisses + bitmapMisses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized long getMissCount() {
+        return byteMisses + directMisses + bitmapMisses;
+    }
+
+    /**
+     * Drops every pooled object, e.g. when the app goes to the background.
+     */
+    public synchronized void trim() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            byteBuckets.get(i).clear();
+            directBuckets.get(i).clear();
+        }
+        for (Bitmap bitmap : freeBitmaps) {
+            bitmap.recycle();
+        }
+        freeBitmaps.clear();
+    }
+
+    /**
+     * @return A new per-frame lease drawing from this pool.
+     */
+    public Lease newLease() {
+        return new Lease(this);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "BufferPool: hitRate=%.3f bytes=%d/%d direct=%d/%d bitmaps=%d/%d outstanding=%d",
+                getHitRate(), byteHits, byteHits + byteMisses, directHits, directHits + directMisses,
+                bitmapHits, bitmapHits + bitmapMisses, outstandingSince.size());
+    }
+
+    private void track(Object object) {
+        if (trackLeaks) {
+            outstanding.put(object, new Throwable("Acquired here"));
+            outstandingSince.put(object, SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void untrack(Object object) {
+        if (trackLeaks) {
+            outstanding.remove(object);
+            outstandingSince.remove(object);
+            if (++releasesSinceLeakCheck >= LEAK_CHECK_INTERVAL) {
+                releasesSinceLeakCheck = 0;
+                checkForLeaks(5000);
+            }
+        }
+    }
+
+    private static int bucketFor(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * Everything one frame borrows from the pool. Each analysis stream owns one lease and
+     * closes it together with its ImageProxy, which gives all buffers back at once.
+     * Not thread-safe, a lease belongs to the frame currently in flight on its stream.
+     */
+    public static final class Lease {
+
+        private static final int MAX_HELD = 12;
+
+        private final BufferPool pool;
+        private final Object[] held = new Object[MAX_HELD];
+        private int count = 0;
+
+        private Lease(BufferPool pool) {
+            this.pool = pool;
+        }
+
+        public byte[] bytes(int minSize) {
+            return hold(pool.acquireBytes(minSize));
+        }
+
+        public ByteBuffer direct(int minSize) {
+            return hold(pool.acquireDirect(minSize));
+        }
+
+        public Bitmap bitmap(int width, int height, Bitmap.Config config) {
+            return hold(pool.acquireBitmap(width, height, config));
+        }
+
+        /**
+         * Adds an object that was not acquired through this lease, e.g. a bitmap decoded
+         * without inBitmap, so that it is pooled when the lease closes.
+         */
+        public <T> T adopt(T object) {
+            for (int i = 0; i < count; i++) {
+                if (held[i] == object) {
+                    return object;
+                }
+            }
+            return hold(object);
+        }
+
+        /**
+         * Takes an object out of the lease so it outlives the frame. The caller becomes
+         * responsible for releasing it to the pool.
+         */
+        public void detach(Object object) {
+            for (int i = 0; i < count; i++) {
+                if (held[i] == object) {
+                    held[i] = held[--count];
+                    held[count] = null;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns everything still held to the pool.
+         */
+        public void close() {
+            for (int i = 0; i < count; i++) {
+                Object object = held[i];
+                if (object instanceof byte[]) {
+                    pool.releaseBytes((byte[]) object);
+                } else if (object instanceof ByteBuffer) {
+                    pool.releaseDirect((ByteBuffer) object);
+                } else if (object instanceof Bitmap) {
+                    pool.releaseBitmap((Bitmap) object);
+                }
+                held[i] = null;
+            }
+            count = 0;
+        }
+
+        private <T> T hold(T object) {
+            if (count == MAX_HELD) {
+                throw new IllegalStateException("Frame lease is full, is it closed every frame?");
+            }
+            held[count++] = object;
+            return object;
+        }
+    }
+}
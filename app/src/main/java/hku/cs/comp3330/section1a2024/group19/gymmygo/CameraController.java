@@ -0,0 +1,381 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.content.Context;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.util.Log;
+import android.util.Size;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.OptIn;
+import androidx.camera.camera2.interop.Camera2Interop;
+import androidx.camera.camera2.interop.ExperimentalCamera2Interop;
+import androidx.camera.core.CameraInfo;
+import androidx.camera.core.CameraInfoUnavailableException;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ConcurrentCamera;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.Preview;
+import androidx.camera.core.UseCase;
+import androidx.camera.core.UseCaseGroup;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.camera.view.PreviewView;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Binds the camera use cases that feed a {@link PipelineController}: the preview and the
+ * analysis of the chosen lens, and in dual mode the opposite lens as a second stream. Hands
+ * the camera to {@link PostureService} for desk posture mode and takes it back on start.
+ *
+ * Main thread only. The camera provider is shared by the whole process, so only the use
+ * cases bound here are ever unbound.
+ */
+public class CameraController {
+
+    private static final String TAG = "CameraController";
+
+    private final Context context;
+    private final LifecycleOwner lifecycleOwner;
+    private final PreviewView previewView;
+    private final Display overlay;
+    private final PipelineController pipeline;
+    private final ListenableFuture<ProcessCameraProvider> cameraProviderFuture;
+    private final List<UseCase> boundUseCases = new ArrayList<>();
+
+    private ProcessCameraProvider cameraProvider;
+    private int lensFacing = CameraSelector.LENS_FACING_BACK;
+    private boolean dualCameraMode = false;
+    // PostureService has the camera from startDeskPosture until onStart. A rebind while
+    // stopped waits for onStart.
+    private boolean started = false;
+    private boolean deskPostureActive = false;
+    private boolean rebindOnStart = false;
+
+    /**
+     * @param context        Context for the camera provider and messages.
+     * @param lifecycleOwner Lifecycle the use cases are bound to.
+     * @param previewView    View the preview is shown in.
+     * @param overlay        View the annotated frames are shown in, mirrored for the front lens.
+     * @param pipeline       Pipeline the analysis frames go to.
+     */
+    public CameraController(Context context, LifecycleOwner lifecycleOwner, PreviewView previewView,
+                            Display overlay, PipelineController pipeline) {
+        this.context = context;
+        this.lifecycleOwner = lifecycleOwner;
+        this.previewView = previewView;
+        this.overlay = overlay;
+        this.pipeline = pipeline;
+        cameraProviderFuture = ProcessCameraProvider.getInstance(context);
+    }
+
+    /**
+     * Binds the use cases once the camera provider is there, e.g. again once the camera
+     * permission is granted.
+     */
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    public void bindWhenReady() {
+        cameraProviderFuture.addListener(() -> {
+            try {
+                bind(cameraProviderFuture.get());
+            } catch (ExecutionException | InterruptedException e) {
+                Log.e(TAG, "Error starting camera", e);
+                Toast.makeText(context, "Error starting camera: " + e.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        }, ContextCompat.getMainExecutor(context));
+    }
+
+    /**
+     * Rebinds with the current profile, e.g. once a profiler run is done. Waits for
+     * {@link #onStart()} if stopped meanwhile.
+     */
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    public void rebind() {
+        if (cameraProvider != null) {
+            bind(cameraProvider);
+        }
+    }
+
+    /**
+     * @return True once use cases of this controller are bound.
+     */
+    public boolean isBound() {
+        return !boundUseCases.isEmpty();
+    }
+
+    /**
+     * Takes the camera back from desk posture mode, starts the pipeline and binds what was
+     * put off while stopped.
+     */
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    public void onStart() {
+        PostureService.stop(context);
+        deskPostureActive = false;
+        started = true;
+        pipeline.start();
+        if (rebindOnStart && cameraProvider != null) {
+            bind(cameraProvider);
+        }
+    }
+
+    public void onStop() {
+        pipeline.stop(deskPostureActive);
+        started = false;
+    }
+
+    /**
+     * Hands the camera over to {@link PostureService}. The caller moves the app to the
+     * background, a camera foreground service may only start while it is visible.
+     */
+    public void startDeskPosture() {
+        deskPostureActive = true;
+        PostureService.start(context);
+    }
+
+    /**
+     * Switches between the back and the front camera. The detectors and streams stay alive,
+     * the camera use cases are rebound and the landmark filters start over.
+     */
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    public void switchCamera() {
+        if (cameraProvider == null) {
+            return;
+        }
+        int newLensFacing = lensFacing == CameraSelector.LENS_FACING_BACK
+                ? CameraSelector.LENS_FACING_FRONT
+                : CameraSelector.LENS_FACING_BACK;
+        CameraSelector selector = new CameraSelector.Builder()
+                .requireLensFacing(newLensFacing)
+                .build();
+        try {
+            if (!cameraProvider.hasCamera(selector)) {
+                Toast.makeText(context, "No other camera available", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        } catch (CameraInfoUnavailableException e) {
+            Log.e(TAG, "Could not query cameras", e);
+            return;
+        }
+        lensFacing = newLensFacing;
+        overlay.setMirrored(lensFacing == CameraSelector.LENS_FACING_FRONT);
+        bind(cameraProvider);
+        pipeline.getFrameProcessor().resetFilters();
+    }
+
+    /**
+     * Turns analysis of a second, concurrent camera on or off.
+     */
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    public void toggleDualCamera() {
+        if (cameraProvider == null) {
+            return;
+        }
+        if (!dualCameraMode && cameraProvider.getAvailableConcurrentCameraInfos().isEmpty()) {
+            Toast.makeText(context, "This device cannot run two cameras at once", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        dualCameraMode = !dualCameraMode;
+        bind(cameraProvider);
+        pipeline.getFrameProcessor().resetFilters();
+        pipeline.logMetrics();
+    }
+
+    @ExperimentalGetImage
+    private void bind(@NonNull ProcessCameraProvider cameraProvider) {
+        this.cameraProvider = cameraProvider;
+        if (pipeline.isReplaying()) {
+            // Frames come from the recording instead
+            return;
+        }
+        if (pipeline.isWaitingForProfile()) {
+            // Bound once the profiler is done
+            return;
+        }
+
+        if (!started) {
+            // Desk posture mode or another app may have the camera now
+            rebindOnStart = true;
+            return;
+        }
+        rebindOnStart = false;
+
+        unbindOwnUseCases();
+        pipeline.getFrameProcessor().clearStreams();
+
+        if (dualCameraMode && bindDualCameraUseCases(cameraProvider)) {
+            return;
+        }
+
+        // Select the current lens, back camera by default
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(lensFacing)
+                .build();
+
+        // Preview Use Case
+        Preview preview = buildPreview();
+
+        // ImageAnalysis Use Case
+        ImageAnalysis imageAnalysis = buildImageAnalysis(0);
+
+        try {
+            // Bind use cases to lifecycle
+            cameraProvider.bindToLifecycle(lifecycleOwner, cameraSelector, preview, imageAnalysis);
+            boundUseCases.add(preview);
+            boundUseCases.add(imageAnalysis);
+            Log.d(TAG, "Camera use cases bound to lifecycle");
+
+            // Connect the preview use case to the PreviewView
+            preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+            // After the PreviewView has been laid out, log its dimensions
+            previewView.post(() -> {
+                int previewWidth = previewView.getWidth();
+                int previewHeight = previewView.getHeight();
+                Log.d(TAG, "PreviewView dimensions: " + previewWidth + "x" + previewHeight);
+                // No need to set camera info in Display view since we'll handle scaling dynamically
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Use case binding failed", e);
+            Toast.makeText(context, "Failed to bind camera use cases: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Binds the current lens and the opposite lens at the same time, if the device supports
+     * concurrent cameras. The current lens keeps the preview and the overlay, the other
+     * one is analysed as a separate stream. Concurrent cameras face opposite ways, so the
+     * two streams see different people and are not combined.
+     *
+     * @param cameraProvider The camera provider.
+     * @return True if both cameras were bound.
+     */
+    @ExperimentalGetImage
+    private boolean bindDualCameraUseCases(@NonNull ProcessCameraProvider cameraProvider) {
+        CameraSelector primarySelector = null;
+        CameraSelector secondarySelector = null;
+        for (List<CameraInfo> combination : cameraProvider.getAvailableConcurrentCameraInfos()) {
+            CameraInfo primary = null;
+            CameraInfo secondary = null;
+            for (CameraInfo info : combination) {
+                if (info.getLensFacing() == lensFacing) {
+                    primary = info;
+                } else {
+                    secondary = info;
+                }
+            }
+            if (primary != null && secondary != null) {
+                primarySelector = primary.getCameraSelector();
+                secondarySelector = secondary.getCameraSelector();
+                break;
+            }
+        }
+        if (primarySelector == null) {
+            Log.w(TAG, "No concurrent camera combination available, using a single camera");
+            return false;
+        }
+
+        Preview preview = buildPreview();
+        ImageAnalysis primaryAnalysis = buildImageAnalysis(0);
+        ImageAnalysis secondaryAnalysis = buildImageAnalysis(1);
+        UseCaseGroup primaryGroup = new UseCaseGroup.Builder()
+                .addUseCase(preview)
+                .addUseCase(primaryAnalysis)
+                .build();
+        UseCaseGroup secondaryGroup = new UseCaseGroup.Builder()
+                .addUseCase(secondaryAnalysis)
+                .build();
+
+        List<ConcurrentCamera.SingleCameraConfig> configs = new ArrayList<>();
+        configs.add(new ConcurrentCamera.SingleCameraConfig(primarySelector, primaryGroup, lifecycleOwner));
+        configs.add(new ConcurrentCamera.SingleCameraConfig(secondarySelector, secondaryGroup, lifecycleOwner));
+
+        try {
+            cameraProvider.bindToLifecycle(configs);
+            boundUseCases.add(preview);
+            boundUseCases.add(primaryAnalysis);
+            boundUseCases.add(secondaryAnalysis);
+            preview.setSurfaceProvider(previewView.getSurfaceProvider());
+            Log.d(TAG, "Concurrent camera use cases bound to lifecycle");
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "Concurrent use case binding failed", e);
+            cameraProvider.unbind(preview, primaryAnalysis, secondaryAnalysis);
+            return false;
+        }
+    }
+
+    /**
+     * Unbinds the use cases this controller bound. Unbinding everything would also stop the
+     * bursts of {@link PostureService}, which share the process-wide camera provider.
+     */
+    private void unbindOwnUseCases() {
+        if (!boundUseCases.isEmpty()) {
+            cameraProvider.unbind(boundUseCases.toArray(new UseCase[0]));
+            boundUseCases.clear();
+        }
+    }
+
+    /**
+     * Builds the preview use case. Its capture callback tells the latency probe which camera
+     * frame the preview shows, and a new preview starts a new measurement.
+     */
+    @OptIn(markerClass = ExperimentalCamera2Interop.class)
+    private Preview buildPreview() {
+        LatencyProbe latencyProbe = pipeline.getLatencyProbe();
+        latencyProbe.reset();
+        Preview.Builder builder = new Preview.Builder()
+                .setTargetRotation(previewView.getDisplay().getRotation());
+        new Camera2Interop.Extender<>(builder).setSessionCaptureCallback(
+                new CameraCaptureSession.CaptureCallback() {
+                    @Override
+                    public void onCaptureCompleted(@NonNull CameraCaptureSession session,
+                                                   @NonNull CaptureRequest request,
+                                                   @NonNull TotalCaptureResult result) {
+                        Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+                        if (timestamp != null) {
+                            latencyProbe.onPreviewFrame(timestamp);
+                        }
+                    }
+                });
+        return builder.build();
+    }
+
+    /**
+     * Builds an ImageAnalysis use case that feeds the given stream.
+     *
+     * @param stream Index of the stream the frames belong to.
+     * @return The use case.
+     */
+    @ExperimentalGetImage
+    private ImageAnalysis buildImageAnalysis(int stream) {
+        ImageAnalysis.Builder builder = new ImageAnalysis.Builder()
+                .setTargetRotation(previewView.getDisplay().getRotation())
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST);
+        PerformanceProfile profile = pipeline.getProfile();
+        if (profile != null) {
+            builder.setResolutionSelector(new ResolutionSelector.Builder()
+                    .setResolutionStrategy(new ResolutionStrategy(
+                            new Size(profile.getAnalysisWidth(), profile.getAnalysisHeight()),
+                            ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER))
+                    .build());
+        }
+        ImageAnalysis imageAnalysis = builder.build();
+
+        // Set analyzer for ImageAnalysis
+        imageAnalysis.setAnalyzer(pipeline.getScheduler().getExecutor(AnalysisScheduler.LANE_CAPTURE),
+                pipeline.getFrameProcessor().newAnalyzer(stream));
+        return imageAnalysis;
+    }
+}
@@ -0,0 +1,241 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Receives landmark packets from any number of stations and keeps the latest skeleton of
+ * each, for a coach screen that shows every station live.
+ *
+ * A single thread serves all connections through one Selector. Packets are decoded with
+ * LandmarkCodec straight out of each connection's read buffer. Runs on a plain JVM; the
+ * benchmark module runs it standalone as CoachingHubMain.
+ */
+public class CoachingHub implements Closeable {
+
+    private static final int READ_BUFFER_BYTES = 256 * 1024;
+    private static final String[] LATENCY_STAGES = {"network", "end-to-end"};
+    public static final int LATENCY_NETWORK = 0;
+    public static final int LATENCY_END_TO_END = 1;
+
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final LandmarkCodec codec = new LandmarkCodec();
+    private final LandmarkFrame[] decoded = new LandmarkFrame[255];
+    private final StageTimer latency = new StageTimer(LATENCY_STAGES, 4096);
+    private volatile boolean running = true;
+
+    // Guarded by this
+    private final Map<Integer, LandmarkFrame> latestByStation = new HashMap<>();
+    private long bytesReceived = 0;
+    private long packetsReceived = 0;
+    private long framesReceived = 0;
+    private long malformedPackets = 0;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Binds the hub and starts serving.
+     *
+     * @param port Port to listen on, 0 for any free port.
+     */
+    public CoachingHub(int port) throws IOException {
+        for (int i = 0; i < decoded.length; i++) {
+            decoded[i] = new LandmarkFrame();
+        }
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.socket().bind(new InetSocketAddress(port));
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::runLoop, "CoachingHub");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    public synchronized int getStationCount() {
+        return latestByStation.size();
+    }
+
+    /**
+     * Copies the latest skeleton of a station.
+     *
+     * @param stationId The station.
+     * @param out       Receives the landmarks.
+     * @return False if nothing was received from the station yet.
+     */
+    public synchronized boolean getLatestFrame(int stationId, LandmarkFrame out) {
+        LandmarkFrame latest = latestByStation.get(stationId);
+        if (latest == null) {
+            return false;
+        }
+        out.set(latest);
+        return true;
+    }
+
+    public synchronized long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public synchronized long getFramesReceived() {
+        return framesReceived;
+    }
+
+    public synchronized long getPacketsReceived() {
+        return packetsReceived;
+    }
+
+    /**
+     * @return Average received bytes per second since the hub started.
+     */
+    public synchronized double getBytesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds <= 0 ? 0 : bytesReceived / seconds;
+    }
+
+    /**
+     * @param stage      LATENCY_NETWORK (packet encoded to decoded) or LATENCY_END_TO_END
+     *                   (first frame of the batch queued to decoded).
+     * @param percentile Between 0 and 100.
+     * @return Latency in milliseconds.
+     */
+    public double getLatencyMs(int stage, double percentile) {
+        return latency.getPercentileMs(stage, percentile);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "CoachingHub: %d stations, %d packets, %d frames, %.0f B/s, malformed=%d%n%s",
+                latestByStation.size(), packetsReceived, framesReceived, getBytesPerSecond(),
+                malformedPackets, latency);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                selector.select(1000);
+            } catch (IOException e) {
+                return;
+            }
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                try {
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read(key);
+                    }
+                } catch (IOException e) {
+                    // The station went away, it reconnects on its own
+                    key.cancel();
+                    closeQuietly(key);
+                }
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(READ_BUFFER_BYTES));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        int read = channel.read(buffer);
+        if (read < 0) {
+            throw new IOException("Station disconnected");
+        }
+        synchronized (this) {
+            bytesReceived += read;
+        }
+
+        buffer.flip();
+        while (buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || length > buffer.capacity() - 4) {
+                synchronized (this) {
+                    malformedPackets++;
+                }
+                throw new IOException("Bad packet length " + length);
+            }
+            if (buffer.remaining() < length + 4) {
+                break;
+            }
+            int next = buffer.position() + 4 + length;
+            try {
+                int count = codec.decode(buffer, decoded);
+                onPacket(count);
+            } catch (IllegalArgumentException e) {
+                synchronized (this) {
+                    malformedPackets++;
+                }
+            }
+            buffer.position(next);
+        }
+        buffer.compact();
+    }
+
+    private void onPacket(int count) {
+        long now = LandmarkCodec.wallClockMicros();
+        latency.recordDuration(LATENCY_NETWORK, (now - codec.getSentAtMicros()) * 1000);
+        latency.recordDuration(LATENCY_END_TO_END, (now - codec.getFirstQueuedMicros()) * 1000);
+        synchronized (this) {
+            packetsReceived++;
+            framesReceived += count;
+            if (count > 0) {
+                LandmarkFrame latest = latestByStation.get(codec.getStationId());
+                if (latest == null) {
+                    latest = new LandmarkFrame();
+                    latestByStation.put(codec.getStationId(), latest);
+                }
+                latest.set(decoded[count - 1]);
+            }
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already broken
+        }
+    }
+}
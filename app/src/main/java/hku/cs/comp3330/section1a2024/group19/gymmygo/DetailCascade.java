@@ -0,0 +1,304 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.util.Log;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs hand and face {@link DetailStage}s behind the pose detector, only for the regions the
+ * active exercise's rules look at and at a lower rate than the camera.
+ *
+ * On the inference lane, at most once per interval and only while the previous run of the
+ * stage is done, the stage crops its regions from the frame; the model then runs on the
+ * detail executor. Finished results are cached. On every frame the cached keypoints that
+ * are fresh enough are moved along with their anchor joint (wrist or nose) since the crop,
+ * and the pose's own coarse hand and face landmarks are replaced by the matching detail
+ * keypoints. Rules read the full keypoint sets through {@link #getDetails}.
+ */
+public class DetailCascade implements PoseFrameProcessor.LandmarkStage {
+
+    private static final String TAG = "DetailCascade";
+
+    /** Joint group for {@link #parseJoints}: the pinky, index and thumb of both hands. */
+    public static final String JOINTS_HANDS = "hands";
+    /** Joint group for {@link #parseJoints}: the nose, eyes, ears and mouth. */
+    public static final String JOINTS_FACE = "face";
+
+    // Pose landmark type and the two detail keypoints whose midpoint replaces it, per region.
+    // Hands follow the 21 MediaPipe hand keypoints: thumb, index and pinky knuckles.
+    private static final int[][] LEFT_HAND_MAP = {
+            {17, 17, 17}, {19, 5, 5}, {21, 2, 2},
+    };
+    private static final int[][] RIGHT_HAND_MAP = {
+            {18, 17, 17}, {20, 5, 5}, {22, 2, 2},
+    };
+    // The 468 point face mesh: nose tip, eye corners, cheek contour at the ears, mouth corners
+    private static final int[][] FACE_MAP = {
+            {0, 1, 1},
+            {1, 362, 362}, {2, 362, 263}, {3, 263, 263},
+            {4, 133, 133}, {5, 133, 33}, {6, 33, 33},
+            {7, 454, 454}, {8, 234, 234},
+            {9, 291, 291}, {10, 61, 61},
+    };
+    // Indexed by region
+    private static final int[][][] REGION_MAPS = {LEFT_HAND_MAP, RIGHT_HAND_MAP, FACE_MAP};
+
+    private final DetailStage[] stages;
+    private final Executor executor;
+    private final int stream;
+    private final long intervalNanos;
+    private final long maxAgeNanos;
+    private volatile int requiredRegions = 0;
+    private volatile boolean closing = false;
+
+    // Per stage, set while a crop or run is in progress and for good once the stage is closed
+    private final AtomicBoolean[] running;
+    // Per stage, indexed by region; written on the detail executor
+    private final DetailLandmarks[][] results;
+    // Latest result per region, guarded by itself
+    private final DetailLandmarks[] cache = new DetailLandmarks[DetailStage.REGION_COUNT];
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong busySkips = new AtomicLong();
+
+    // Only used on the inference lane
+    private final long[] lastCropNanos;
+    private final DetailLandmarks[] merged = new DetailLandmarks[DetailStage.REGION_COUNT];
+
+    /**
+     * @param stages     The stages, each for different regions. The cascade takes ownership.
+     * @param executor   Executor the models run on, away from the capture and inference lanes.
+     * @param stream     The processor stream whose frames are refined.
+     * @param intervalMs Least time between two runs of a stage.
+     * @param maxAgeMs   Cached results older than this are no longer merged.
+     */
+    public DetailCascade(List<DetailStage> stages, Executor executor, int stream,
+                         long intervalMs, long maxAgeMs) {
+        this.stages = stages.toArray(new DetailStage[0]);
+        this.executor = executor;
+        this.stream = stream;
+        this.intervalNanos = intervalMs * 1_000_000;
+        this.maxAgeNanos = maxAgeMs * 1_000_000;
+
+        int[] capacity = new int[DetailStage.REGION_COUNT];
+        running = new AtomicBoolean[this.stages.length];
+        results = new DetailLandmarks[this.stages.length][DetailStage.REGION_COUNT];
+        lastCropNanos = new long[this.stages.length];
+        for (int i = 0; i < this.stages.length; i++) {
+            DetailStage stage = this.stages[i];
+            running[i] = new AtomicBoolean();
+            lastCropNanos[i] = -1;
+            for (int region = 0; region < DetailStage.REGION_COUNT; region++) {
+                if ((stage.getRegionMask() & DetailStage.bit(region)) != 0) {
+                    results[i][region] = new DetailLandmarks(stage.getKeypointCount());
+                    capacity[region] = Math.max(capacity[region], stage.getKeypointCount());
+                }
+            }
+        }
+        for (int region = 0; region < DetailStage.REGION_COUNT; region++) {
+            cache[region] = new DetailLandmarks(capacity[region]);
+            merged[region] = new DetailLandmarks(capacity[region]);
+        }
+    }
+
+    /**
+     * Sets the regions the rules of the active exercise reference, e.g. the hands for a grip
+     * check or the face for neck alignment. Stages without a required region do not run.
+     *
+     * @param regionMask Bits of {@link DetailStage#bit}, 0 to switch the cascade off.
+     */
+    public void setRequiredRegions(int regionMask) {
+        requiredRegions = regionMask;
+    }
+
+    public int getRequiredRegions() {
+        return requiredRegions;
+    }
+
+    /**
+     * @param jointMask Bit per PoseLandmark type that the rules of an exercise read, see
+     *                  {@link LandmarkFilter#bit}.
+     * @return The regions whose keypoints refine those joints: a hand for its pinky, index or
+     *         thumb, the face for the nose, eyes, ears or mouth.
+     */
+    public static int regionsFor(long jointMask) {
+        int regions = 0;
+        for (int region = 0; region < DetailStage.REGION_COUNT; region++) {
+            for (int[] entry : REGION_MAPS[region]) {
+                if ((jointMask & LandmarkFilter.bit(entry[0])) != 0) {
+                    regions |= DetailStage.bit(region);
+                }
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * @param groups Comma separated joint groups, e.g. "hands,face". Each name must match a
+     *               group exactly, surrounding spaces and empty entries are ignored.
+     * @return Bit per PoseLandmark type in the named groups, for {@link #regionsFor}.
+     * @throws IllegalArgumentException For an unknown group.
+     */
+    public static long parseJoints(String groups) {
+        long joints = 0;
+        for (String group : groups.split(",")) {
+            String name = group.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (name.equals(JOINTS_HANDS)) {
+                joints |= jointsOf(DetailStage.REGION_LEFT_HAND) | jointsOf(DetailStage.REGION_RIGHT_HAND);
+            } else if (name.equals(JOINTS_FACE)) {
+                joints |= jointsOf(DetailStage.REGION_FACE);
+            } else {
+                throw new IllegalArgumentException("Unknown joint group: " + name);
+            }
+        }
+        return joints;
+    }
+
+    private static long jointsOf(int region) {
+        long joints = 0;
+        for (int[] entry : REGION_MAPS[region]) {
+            joints |= LandmarkFilter.bit(entry[0]);
+        }
+        return joints;
+    }
+
+    @Override
+    public long process(int stream, YuvFrame frame, LandmarkFrame landmarks, long usableMask) {
+        int required = requiredRegions;
+        if (stream != this.stream || required == 0) {
+            return usableMask;
+        }
+        long now = frame.timestampNanos;
+        for (int i = 0; i < stages.length; i++) {
+            int wanted = stages[i].getRegionMask() & required;
+            if (wanted == 0 || (lastCropNanos[i] >= 0 && now - lastCropNanos[i] < intervalNanos)) {
+                continue;
+            }
+            if (!running[i].compareAndSet(false, true)) {
+                busySkips.incrementAndGet();
+                continue;
+            }
+            if (stages[i].crop(frame, landmarks, usableMask, wanted) == 0) {
+                release(i);
+                continue;
+            }
+            lastCropNanos[i] = now;
+            int index = i;
+            try {
+                executor.execute(() -> runStage(index));
+            } catch (RejectedExecutionException e) {
+                release(i);
+            }
+        }
+        return merge(landmarks, usableMask, required);
+    }
+
+    /**
+     * The keypoints of a region merged into the last frame. Only valid on the inference lane,
+     * until the next frame.
+     *
+     * @return The keypoints, or null if the region is not required or has no fresh result.
+     */
+    public DetailLandmarks getDetails(int region) {
+        DetailLandmarks details = merged[region];
+        return details.isEmpty() ? null : details;
+    }
+
+    /**
+     * Closes the stages that are idle now; a stage with a crop or run in progress is closed by
+     * the thread that finishes it, so a model is never closed during inference. Works from any
+     * thread, also once the detail executor is shut down.
+     */
+    @Override
+    public void close() {
+        closing = true;
+        for (int i = 0; i < stages.length; i++) {
+            if (running[i].compareAndSet(false, true)) {
+                stages[i].close();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "Details: regions=%s runs=%d failed=%d skippedBusy=%d",
+                Integer.toBinaryString(requiredRegions), runs.get(), failures.get(),
+                busySkips.get());
+    }
+
+    private void runStage(int index) {
+        try {
+            int written = stages[index].run(results[index]);
+            synchronized (cache) {
+                for (int region = 0; region < DetailStage.REGION_COUNT; region++) {
+                    if ((written & DetailStage.bit(region)) != 0) {
+                        cache[region].set(results[index][region]);
+                    }
+                }
+            }
+            runs.incrementAndGet();
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            Log.w(TAG, "Detail stage failed", e);
+        } finally {
+            release(index);
+        }
+    }
+
+    /**
+     * Ends a crop or run of a stage, and closes the stage if the cascade was closed meanwhile.
+     * Whichever of this and {@link #close()} sets the running flag after closing begins
+     * closes the stage, so it is closed exactly once.
+     */
+    private void release(int index) {
+        running[index].set(false);
+        if (closing && running[index].compareAndSet(false, true)) {
+            stages[index].close();
+        }
+    }
+
+    private long merge(LandmarkFrame landmarks, long usableMask, int required) {
+        long usable = usableMask;
+        for (int region = 0; region < DetailStage.REGION_COUNT; region++) {
+            DetailLandmarks details = merged[region];
+            details.clear();
+            if ((required & DetailStage.bit(region)) == 0) {
+                continue;
+            }
+            synchronized (cache) {
+                DetailLandmarks cached = cache[region];
+                if (cached.isEmpty() || landmarks.timestampNanos - cached.timestampNanos > maxAgeNanos) {
+                    continue;
+                }
+                details.set(cached);
+            }
+
+            // Follow the anchor joint from the cropped frame to this one
+            int anchor = DetailStage.anchorJoint(region);
+            if ((usable & LandmarkFilter.bit(anchor)) != 0) {
+                details.translate(landmarks.x[anchor] - details.anchorX,
+                        landmarks.y[anchor] - details.anchorY);
+            }
+
+            for (int[] entry : REGION_MAPS[region]) {
+                if (entry[1] >= details.count || entry[2] >= details.count) {
+                    continue;
+                }
+                int type = entry[0];
+                landmarks.x[type] = (details.x[entry[1]] + details.x[entry[2]]) / 2;
+                landmarks.y[type] = (details.y[entry[1]] + details.y[entry[2]]) / 2;
+                landmarks.likelihood[type] = details.likelihood;
+                usable |= LandmarkFilter.bit(type);
+            }
+        }
+        return usable;
+    }
+}
@@ -0,0 +1,71 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Keypoints of one hand or the face from a {@link DetailStage}, in pixels of the upright
+ * frame. Instances are mutable and reused like {@link LandmarkFrame}.
+ */
+public class DetailLandmarks {
+
+    public final float[] x;
+    public final float[] y;
+    public final float[] z;
+    public int count = 0;
+    /** Confidence of the whole region, taken from the pose joints it was cropped around. */
+    public float likelihood;
+    public long timestampNanos;
+    /** Position of the region's anchor joint in the frame the crop came from. */
+    public float anchorX;
+    public float anchorY;
+
+    /**
+     * @param capacity Largest number of keypoints the model reports.
+     */
+    public DetailLandmarks(int capacity) {
+        x = new float[capacity];
+        y = new float[capacity];
+        z = new float[capacity];
+    }
+
+    public int getCapacity() {
+        return x.length;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Copies another set, which must fit.
+     *
+     * @return this, for chaining.
+     */
+    public DetailLandmarks set(DetailLandmarks other) {
+        System.arraycopy(other.x, 0, x, 0, other.count);
+        System.arraycopy(other.y, 0, y, 0, other.count);
+        System.arraycopy(other.z, 0, z, 0, other.count);
+        count = other.count;
+        likelihood = other.likelihood;
+        timestampNanos = other.timestampNanos;
+        anchorX = other.anchorX;
+        anchorY = other.anchorY;
+        return this;
+    }
+
+    /**
+     * Moves all keypoints, e.g. to follow the anchor joint since the crop.
+     */
+    public void translate(float dx, float dy) {
+        for (int i = 0; i < count; i++) {
+            x[i] += dx;
+            y[i] += dy;
+        }
+        anchorX += dx;
+        anchorY += dy;
+    }
+
+    public void clear() {
+        count = 0;
+        likelihood = 0;
+        timestampNanos = 0;
+    }
+}
@@ -0,0 +1,321 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A second-stage landmark model for a small part of the body, run on crops around pose
+ * joints: a hand model on the regions around the wrists, or a face mesh on the region
+ * around the head.
+ *
+ * Work is split in two so that the camera frame can be released before the model runs.
+ * {@link #crop} samples the regions straight from the YUV planes into one input tensor per
+ * region while the frame is still held; {@link #run} runs the model on those tensors later,
+ * on another thread. The two must not overlap, which {@link DetailCascade} ensures.
+ *
+ * The model's first output must hold (x, y, z) per keypoint in input pixels, as the
+ * MediaPipe hand and face landmark models do, and be declared as
+ * {@link PoseModel#OUTPUT_KEYPOINTS_XYZ}. It runs through the same {@link PoseModel}
+ * interface as the pose backend.
+ */
+public class DetailStage implements Closeable {
+
+    public static final int REGION_LEFT_HAND = 0;
+    public static final int REGION_RIGHT_HAND = 1;
+    public static final int REGION_FACE = 2;
+    public static final int REGION_COUNT = 3;
+
+    private static final int NOSE = 0;
+    private static final int LEFT_WRIST = 15;
+    private static final int RIGHT_WRIST = 16;
+    private static final int LEFT_ELBOW = 13;
+    private static final int RIGHT_ELBOW = 14;
+    // Pinky, index and thumb of each hand
+    private static final int[] LEFT_FINGERS = {17, 19, 21};
+    private static final int[] RIGHT_FINGERS = {18, 20, 22};
+    // Eyes, ears and mouth
+    private static final int FACE_FIRST = 1;
+    private static final int FACE_LAST = 10;
+
+    // Crop side relative to the extent of the joints around the region
+    private static final float HAND_SCALE = 2.6f;
+    private static final float FACE_SCALE = 1.5f;
+    // Without fingers the hand is assumed this far past the wrist, relative to the forearm
+    private static final float HAND_OFFSET = 0.35f;
+
+    private final PoseModel model;
+    private final int[] regions;
+    private final int inputWidth;
+    private final int inputHeight;
+    private final int inputType;
+    private final float floatMean;
+    private final float floatStd;
+    private final int keypointCount;
+    private final ByteBuffer[] inputs;
+    private final float[] output;
+
+    // Written by crop, read by run; index is the slot of the region in regions
+    private final float[][] rois;
+    private final float[] anchorX;
+    private final float[] anchorY;
+    private final float[] likelihood;
+    private long cropTimestampNanos;
+    private int croppedMask = 0;
+    private final float[] roi = new float[3];
+
+    /**
+     * @param model     The model. The stage takes ownership of it.
+     * @param regions   REGION_ constants this stage handles, e.g. both hands.
+     * @param floatMean Subtracted from the 0 to 255 channel values of float inputs.
+     * @param floatStd  Divides the channel values of float inputs after the mean.
+     */
+    public DetailStage(PoseModel model, int[] regions, float floatMean, float floatStd) {
+        if (model.getOutputLayout() != PoseModel.OUTPUT_KEYPOINTS_XYZ) {
+            throw new IllegalArgumentException("Not a keypoint model layout: " + model.getOutputLayout());
+        }
+        if (model.getOutputSize() < 3) {
+            throw new IllegalArgumentException("Model output has no keypoints");
+        }
+        this.model = model;
+        this.regions = regions.clone();
+        this.inputWidth = model.getInputWidth();
+        this.inputHeight = model.getInputHeight();
+        this.inputType = model.getInputType();
+        this.floatMean = floatMean;
+        this.floatStd = floatStd;
+        this.keypointCount = model.getOutputSize() / 3;
+
+        int bytesPerChannel = inputType == PoseModel.INPUT_FLOAT32 ? 4 : 1;
+        inputs = new ByteBuffer[regions.length];
+        for (int i = 0; i < regions.length; i++) {
+            inputs[i] = ByteBuffer.allocateDirect(inputWidth * inputHeight * 3 * bytesPerChannel)
+                    .order(ByteOrder.nativeOrder());
+        }
+        output = new float[model.getOutputSize()];
+        rois = new float[regions.length][3];
+        anchorX = new float[regions.length];
+        anchorY = new float[regions.length];
+        likelihood = new float[regions.length];
+    }
+
+    public static int bit(int region) {
+        return 1 << region;
+    }
+
+    /**
+     * @return Bit per region this stage handles.
+     */
+    public int getRegionMask() {
+        int mask = 0;
+        for (int region : regions) {
+            mask |= bit(region);
+        }
+        return mask;
+    }
+
+    /**
+     * @return Number of keypoints per region, the capacity {@link #run} needs.
+     */
+    public int getKeypointCount() {
+        return keypointCount;
+    }
+
+    /**
+     * Samples the wanted regions of a frame into the input tensors.
+     *
+     * @param frame      The camera frame, only read during the call.
+     * @param pose       Filtered pose landmarks of the frame.
+     * @param usableMask Joints with a position, see {@link LandmarkFilter#getUsableMask()}.
+     * @param wanted     Bit per region to crop; regions of other stages are ignored.
+     * @return Bit per region that was cropped, 0 if the pose shows none of them.
+     */
+    public int crop(YuvFrame frame, LandmarkFrame pose, long usableMask, int wanted) {
+        croppedMask = 0;
+        cropTimestampNanos = frame.timestampNanos;
+        int uprightWidth = frame.getUprightWidth();
+        int uprightHeight = frame.getUprightHeight();
+        for (int slot = 0; slot < regions.length; slot++) {
+            int region = regions[slot];
+            if ((wanted & bit(region)) == 0 || !computeRegion(region, pose, usableMask, roi)) {
+                continue;
+            }
+            float size = roi[2];
+            float left = roi[0] - size / 2;
+            float top = roi[1] - size / 2;
+            float stepX = size / inputWidth;
+            float stepY = size / inputHeight;
+            ByteBuffer input = inputs[slot];
+            input.clear();
+            for (int oy = 0; oy < inputHeight; oy++) {
+                float fy = top + (oy + 0.5f) * stepY;
+                for (int ox = 0; ox < inputWidth; ox++) {
+                    float fx = left + (ox + 0.5f) * stepX;
+                    if (fx < 0 || fy < 0 || fx >= uprightWidth || fy >= uprightHeight) {
+                        TflitePoseBackend.putPixel(frame, -1, 0, 0, input, inputType,
+                                floatMean, floatStd);
+                        continue;
+                    }
+                    int sx = frame.getSensorX((int) fx, (int) fy);
+                    int sy = frame.getSensorY((int) fx, (int) fy);
+                    TflitePoseBackend.putPixel(frame,
+                            sy * frame.yRowStride + sx,
+                            (sy / 2) * frame.uRowStride + (sx / 2) * frame.uPixelStride,
+                            (sy / 2) * frame.vRowStride + (sx / 2) * frame.vPixelStride,
+                            input, inputType, floatMean, floatStd);
+                }
+            }
+            input.rewind();
+
+            System.arraycopy(roi, 0, rois[slot], 0, 3);
+            int anchor = anchorJoint(region);
+            anchorX[slot] = pose.x[anchor];
+            anchorY[slot] = pose.y[anchor];
+            likelihood[slot] = pose.likelihood[anchor];
+            croppedMask |= bit(region);
+        }
+        return croppedMask;
+    }
+
+    /**
+     * Runs the model on the regions of the last {@link #crop}.
+     *
+     * @param out Indexed by region, receives the keypoints in pixels of the upright frame.
+     *            Regions that were not cropped are left alone.
+     * @return Bit per region written.
+     */
+    public int run(DetailLandmarks[] out) {
+        for (int slot = 0; slot < regions.length; slot++) {
+            int region = regions[slot];
+            if ((croppedMask & bit(region)) == 0) {
+                continue;
+            }
+            model.run(inputs[slot], output);
+            inputs[slot].rewind();
+
+            float[] r = rois[slot];
+            float left = r[0] - r[2] / 2;
+            float top = r[1] - r[2] / 2;
+            float scaleX = r[2] / inputWidth;
+            float scaleY = r[2] / inputHeight;
+            DetailLandmarks landmarks = out[region];
+            int count = Math.min(keypointCount, landmarks.getCapacity());
+            for (int k = 0; k < count; k++) {
+                landmarks.x[k] = left + output[3 * k] * scaleX;
+                landmarks.y[k] = top + output[3 * k + 1] * scaleY;
+                landmarks.z[k] = output[3 * k + 2] * scaleX;
+            }
+            landmarks.count = count;
+            landmarks.likelihood = likelihood[slot];
+            landmarks.timestampNanos = cropTimestampNanos;
+            landmarks.anchorX = anchorX[slot];
+            landmarks.anchorY = anchorY[slot];
+        }
+        return croppedMask;
+    }
+
+    @Override
+    public void close() {
+        model.close();
+    }
+
+    /**
+     * @return The pose joint a region moves with: the wrist of a hand, the nose for the face.
+     */
+    static int anchorJoint(int region) {
+        switch (region) {
+            case REGION_LEFT_HAND:
+                return LEFT_WRIST;
+            case REGION_RIGHT_HAND:
+                return RIGHT_WRIST;
+            default:
+                return NOSE;
+        }
+    }
+
+    /**
+     * Finds the square crop of a region from the pose joints around it.
+     *
+     * @param roi Receives center x, center y and side length in upright pixels.
+     * @return False if the joints the region needs are not usable.
+     */
+    static boolean computeRegion(int region, LandmarkFrame pose, long usableMask, float[] roi) {
+        if (region == REGION_FACE) {
+            return computeFace(pose, usableMask, roi);
+        }
+        boolean left = region == REGION_LEFT_HAND;
+        return computeHand(pose, usableMask, left ? LEFT_WRIST : RIGHT_WRIST,
+                left ? LEFT_ELBOW : RIGHT_ELBOW, left ? LEFT_FINGERS : RIGHT_FINGERS, roi);
+    }
+
+    private static boolean computeHand(LandmarkFrame pose, long usable, int wrist, int elbow,
+                                       int[] fingers, float[] roi) {
+        if ((usable & LandmarkFilter.bit(wrist)) == 0) {
+            return false;
+        }
+        float wx = pose.x[wrist];
+        float wy = pose.y[wrist];
+        float sumX = wx;
+        float sumY = wy;
+        int points = 1;
+        float extent = 0;
+        for (int finger : fingers) {
+            if ((usable & LandmarkFilter.bit(finger)) != 0) {
+                sumX += pose.x[finger];
+                sumY += pose.y[finger];
+                points++;
+                extent = Math.max(extent, distance(wx, wy, pose.x[finger], pose.y[finger]));
+            }
+        }
+        boolean hasElbow = (usable & LandmarkFilter.bit(elbow)) != 0;
+        float forearmX = hasElbow ? wx - pose.x[elbow] : 0;
+        float forearmY = hasElbow ? wy - pose.y[elbow] : 0;
+        if (hasElbow) {
+            extent = Math.max(extent, 0.5f * distance(0, 0, forearmX, forearmY));
+        }
+        if (points > 1) {
+            roi[0] = sumX / points;
+            roi[1] = sumY / points;
+        } else if (hasElbow) {
+            roi[0] = wx + HAND_OFFSET * forearmX;
+            roi[1] = wy + HAND_OFFSET * forearmY;
+        } else {
+            return false;
+        }
+        roi[2] = HAND_SCALE * extent;
+        return roi[2] > 0;
+    }
+
+    private static boolean computeFace(LandmarkFrame pose, long usable, float[] roi) {
+        if ((usable & LandmarkFilter.bit(NOSE)) == 0) {
+            return false;
+        }
+        float minX = pose.x[NOSE];
+        float maxX = minX;
+        float minY = pose.y[NOSE];
+        float maxY = minY;
+        int points = 1;
+        for (int type = FACE_FIRST; type <= FACE_LAST; type++) {
+            if ((usable & LandmarkFilter.bit(type)) != 0) {
+                minX = Math.min(minX, pose.x[type]);
+                maxX = Math.max(maxX, pose.x[type]);
+                minY = Math.min(minY, pose.y[type]);
+                maxY = Math.max(maxY, pose.y[type]);
+                points++;
+            }
+        }
+        if (points < 3) {
+            return false;
+        }
+        roi[0] = (minX + maxX) / 2;
+        roi[1] = (minY + maxY) / 2;
+        roi[2] = FACE_SCALE * Math.max(maxX - minX, maxY - minY);
+        return roi[2] > 0;
+    }
+
+    private static float distance(float x0, float y0, float x1, float y1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+}
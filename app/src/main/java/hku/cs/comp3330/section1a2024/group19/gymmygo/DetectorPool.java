@@ -0,0 +1,158 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Fixed set of detector clients shared by all analysis streams.
+ *
+ * Streams never block on the pool: {@link #tryAcquire(int)} either hands out a detector or
+ * returns null and the caller drops the frame. To keep one fast stream from starving the
+ * other, a refused stream is marked as waiting and the next free detector is held back for
+ * it. Detectors also remember their last stream, since STREAM_MODE clients track the
+ * person across consecutive frames and work best when they keep seeing the same camera.
+ *
+ * @param <D> The detector type, e.g. PoseDetector.
+ */
+public class DetectorPool<D extends Closeable> {
+
+    private static final String TAG = "DetectorPool";
+
+    // A waiting stream that does not come back within this window loses its reservation
+    private static final long WAIT_EXPIRY_NANOS = 250_000_000L;
+
+    private final Object[] detectors;
+    private final boolean[] inUse;
+    private final int[] lastStream;
+    private final long[] waitingSince;
+    private final long[] grants;
+    private boolean closed = false;
+
+    /**
+     * @param detectors  The detector clients to share. The pool takes ownership of them.
+     * @param maxStreams Number of streams that may use the pool, ids are 0..maxStreams-1.
+     */
+    public DetectorPool(List<D> detectors, int maxStreams) {
+        if (detectors.isEmpty()) {
+            throw new IllegalArgumentException("DetectorPool needs at least one detector");
+        }
+        this.detectors = detectors.toArray();
+        this.inUse = new boolean[detectors.size()];
+        this.lastStream = new int[detectors.size()];
+        this.waitingSince = new long[maxStreams];
+        this.grants = new long[maxStreams];
+        for (int i = 0; i < lastStream.length; i++) {
+            lastStream[i] = i % maxStreams;
+        }
+    }
+
+    /**
+     * Hands out a free detector for the given stream, or null if the stream should drop
+     * this frame.
+     *
+     * @param streamId The id of the requesting stream.
+     * @return A detector that must be given back with {@link #release(Closeable)}, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized D tryAcquire(int streamId) {
+        if (closed) {
+            return null;
+        }
+        long now = System.nanoTime();
+        int free = 0;
+        int preferred = -1;
+        int fallback = -1;
+        for (int i = 0; i < detectors.length; i++) {
+            if (!inUse[i]) {
+                free++;
+                if (lastStream[i] == streamId && preferred < 0) {
+                    preferred = i;
+                } else if (fallback < 0) {
+                    fallback = i;
+                }
+            }
+        }
+
+        // Hold free detectors back for other streams that were refused more recently
+        int othersWaiting = 0;
+        for (int s = 0; s < waitingSince.length; s++) {
+            if (s != streamId && waitingSince[s] != 0) {
+                if (now - waitingSince[s] > WAIT_EXPIRY_NANOS) {
+                    waitingSince[s] = 0;
+                } else {
+                    othersWaiting++;
+                }
+            }
+        }
+
+        if (free == 0 || (waitingSince[streamId] == 0 && free <= othersWaiting)) {
+            if (waitingSince[streamId] == 0) {
+                waitingSince[streamId] = now;
+            }
+            return null;
+        }
+
+        int index = preferred >= 0 ? preferred : fallback;
+        inUse[index] = true;
+        lastStream[index] = streamId;
+        waitingSince[streamId] = 0;
+        grants[streamId]++;
+        return (D) detectors[index];
+    }
+
+    /**
+     * Gives a detector back to the pool.
+     *
+     * @param detector A detector previously returned by {@link #tryAcquire(int)}.
+     */
+    public synchronized void release(D detector) {
+        for (int i = 0; i < detectors.length; i++) {
+            if (detectors[i] == detector) {
+                inUse[i] = false;
+                return;
+            }
+        }
+        Log.w(TAG, "Released a detector that does not belong to this pool");
+    }
+
+    /**
+     * Forgets any reservation held for a stream, e.g. when its camera is unbound.
+     *
+     * @param streamId The id of the stream that went away.
+     */
+    public synchronized void clearStream(int streamId) {
+        waitingSince[streamId] = 0;
+    }
+
+    /**
+     * @param streamId The id of the stream.
+     * @return How many detectors the stream has been handed since the pool was created.
+     */
+    public synchronized long getGrantCount(int streamId) {
+        return grants[streamId];
+    }
+
+    public int size() {
+        return detectors.length;
+    }
+
+    /**
+     * Closes all detector clients. Later calls to {@link #tryAcquire(int)} return null.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Object detector : detectors) {
+            try {
+                ((Closeable) detector).close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close detector", e);
+            }
+        }
+    }
+}
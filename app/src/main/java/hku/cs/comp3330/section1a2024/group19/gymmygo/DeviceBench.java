@@ -0,0 +1,107 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.pose.PoseDetection;
+import com.google.mlkit.vision.pose.PoseDetector;
+import com.google.mlkit.vision.pose.defaults.PoseDetectorOptions;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+
+/**
+ * The real conversion, detection and drawing code on synthetic frames, for the
+ * {@link PerformanceProfiler}. Uses its own stream, converters, detector and renderer, and
+ * picks the kernels per call instead of through FrameKernels, so it can run next to the live
+ * pipeline. Only used on the profiling lane.
+ */
+public class DeviceBench implements PerformanceProfiler.Bench, Closeable {
+
+    private static final int ROTATION_DEGREES = 90;
+
+    private final PoseDetector detector = PoseDetection.getClient(
+            new PoseDetectorOptions.Builder()
+                    .setDetectorMode(PoseDetectorOptions.STREAM_MODE)
+                    .build());
+    private final AnalysisStream stream;
+    private final BitmapFrameConverter nativeConverter = new BitmapFrameConverter(true);
+    private final BitmapFrameConverter javaConverter = new BitmapFrameConverter(false);
+    private final SkeletonRenderer renderer = new SkeletonRenderer(SkeletonTopology.BODY);
+    private final Canvas canvas = new Canvas();
+    private final LandmarkFrame landmarks = new LandmarkFrame();
+    private final YuvFrame frame = new YuvFrame();
+    private Bitmap bitmap;
+
+    /**
+     * @param stream A stream of its own, whose scratch objects and buffer lease the
+     *               converters use. Not part of any processor.
+     */
+    public DeviceBench(AnalysisStream stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public void convert(int width, int height, boolean nativeKernels) {
+        (nativeKernels ? nativeConverter : javaConverter).convert(frame(width, height), stream);
+        stream.getLease().close();
+    }
+
+    @Override
+    public void detect(int width, int height) throws Exception {
+        Tasks.await(detector.process(InputImage.fromBitmap(bitmap(width, height), 0)));
+    }
+
+    @Override
+    public void drawOverlay(int width, int height) {
+        canvas.setBitmap(bitmap(width, height));
+        renderer.draw(canvas, landmarks);
+        canvas.setBitmap(null);
+    }
+
+    @Override
+    public void close() {
+        detector.close();
+        stream.getLease().close();
+    }
+
+    private YuvFrame frame(int width, int height) {
+        if (frame.width != width || frame.height != height) {
+            // Mid gray, so the JPEG encoder does real work
+            ByteBuffer y = filled(width * height);
+            ByteBuffer u = filled(width * height / 4);
+            ByteBuffer v = filled(width * height / 4);
+            frame.setPlanes(y, width, u, width / 2, 1, v, width / 2, 1)
+                    .setInfo(width, height, ROTATION_DEGREES, 0);
+        }
+        return frame;
+    }
+
+    /**
+     * An upright frame with a standing figure's landmarks spread over it.
+     */
+    private Bitmap bitmap(int width, int height) {
+        if (bitmap == null || bitmap.getWidth() != height || bitmap.getHeight() != width) {
+            bitmap = Bitmap.createBitmap(height, width, Bitmap.Config.ARGB_8888);
+            landmarks.clear();
+            for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+                landmarks.x[i] = height * (0.3f + 0.4f * (i % 2));
+                landmarks.y[i] = width * (i + 1f) / (LandmarkFrame.LANDMARK_COUNT + 1);
+                landmarks.likelihood[i] = 1f;
+            }
+            landmarks.imageWidth = height;
+            landmarks.imageHeight = width;
+        }
+        return bitmap;
+    }
+
+    private static ByteBuffer filled(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) 128);
+        }
+        return buffer;
+    }
+}
@@ -9,9 +9,44 @@ import android.view.View;
 
 import androidx.annotation.Nullable;
 
+/**
+ * Shows the annotated overlay bitmaps, scaled to the view.
+ *
+ * Bitmaps come from a pool and are written again once given back, so one is only handed to
+ * the {@link BitmapRecycler} when nothing can draw it anymore. A bitmap replaced before it
+ * was drawn goes back right away. A drawn one is kept until the frame after its replacement
+ * is drawn: the RenderThread may still read it for the frame recorded last, and only syncs
+ * the next display list once that frame is done.
+ */
 public class Display extends View {
 
-    private Bitmap bitmap;
+    /**
+     * Notified on the main thread when a new bitmap is drawn for the first time.
+     */
+    public interface OnFrameDrawnListener {
+        void onFrameDrawn(long timestampNanos);
+    }
+
+    /**
+     * Takes back bitmaps the view no longer draws. Called on the thread of
+     * {@link #setBitmap} or on the main thread.
+     */
+    public interface BitmapRecycler {
+        void recycle(Bitmap bitmap);
+    }
+
+    // Guarded by this: the latest bitmap, until onDraw takes it over
+    private Bitmap pending;
+    private long pendingTimestampNanos;
+    private boolean hasPending = false;
+
+    // Main thread only: the bitmap of the last recorded frame, and the one before it
+    private Bitmap shown;
+    private Bitmap retired;
+
+    private OnFrameDrawnListener frameDrawnListener;
+    private BitmapRecycler bitmapRecycler;
+    private boolean mirrored = false;
     private final Rect destRect = new Rect();
 
     public Display(Context context, @Nullable AttributeSet attrs) {
@@ -19,23 +54,101 @@ public class Display extends View {
     }
 
     /**
-     * Receives the processed bitmap and triggers a redraw.
+     * Receives the processed bitmap and triggers a redraw. May be called from any thread, the
+     * analysis results arrive on the inference lane.
      *
-     * @param bitmap The bitmap with drawn pose landmarks.
+     * @param bitmap The bitmap with drawn pose landmarks, or null to show nothing. It goes
+     *               to the {@link BitmapRecycler} once it is no longer drawn.
      */
     public void setBitmap(Bitmap bitmap) {
-        this.bitmap = bitmap;
-        invalidate(); // Trigger onDraw
+        setBitmap(bitmap, 0);
+    }
+
+    /**
+     * Like {@link #setBitmap(Bitmap)}, for a bitmap made from a camera frame.
+     *
+     * @param timestampNanos Sensor timestamp of the frame, passed to the
+     *                       {@link OnFrameDrawnListener} once the bitmap is drawn.
+     */
+    public void setBitmap(Bitmap bitmap, long timestampNanos) {
+        Bitmap superseded;
+        synchronized (this) {
+            superseded = hasPending ? pending : null;
+            pending = bitmap;
+            pendingTimestampNanos = timestampNanos;
+            hasPending = true;
+        }
+        if (superseded != bitmap) {
+            // Never drawn, so no display list refers to it
+            recycle(superseded);
+        }
+        postInvalidateOnAnimation(); // Trigger onDraw on the main thread
+    }
+
+    public void setOnFrameDrawnListener(OnFrameDrawnListener listener) {
+        frameDrawnListener = listener;
+    }
+
+    /**
+     * Set before the first bitmap. Without a recycler bitmaps are simply dropped.
+     */
+    public void setBitmapRecycler(BitmapRecycler recycler) {
+        bitmapRecycler = recycler;
+    }
+
+    /**
+     * Mirrors the bitmap horizontally, used for the front camera so the overlay matches the preview.
+     *
+     * @param mirrored True to flip the bitmap left to right.
+     */
+    public void setMirrored(boolean mirrored) {
+        this.mirrored = mirrored;
+        invalidate();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if (bitmap != null) {
+        // Only the hand-over is locked, so a slow draw never holds up the inference lane
+        Bitmap next;
+        long timestampNanos;
+        boolean changed;
+        synchronized (this) {
+            changed = hasPending;
+            next = pending;
+            timestampNanos = pendingTimestampNanos;
+            pending = null;
+            hasPending = false;
+        }
+        boolean newFrame = changed && next != shown;
+        if (newFrame) {
+            // Two frames back, so the RenderThread is done with it
+            recycle(retired);
+            retired = shown;
+            shown = next;
+        }
+
+        if (shown != null) {
             // Define destination rectangle to fill the entire view
             destRect.set(0, 0, getWidth(), getHeight());
             // Draw the bitmap scaled to the view's size
-            canvas.drawBitmap(bitmap, null, destRect, null);
+            if (mirrored) {
+                canvas.save();
+                canvas.scale(-1f, 1f, getWidth() / 2f, 0f);
+                canvas.drawBitmap(shown, null, destRect, null);
+                canvas.restore();
+            } else {
+                canvas.drawBitmap(shown, null, destRect, null);
+            }
+            if (newFrame && frameDrawnListener != null && timestampNanos != 0) {
+                frameDrawnListener.onFrameDrawn(timestampNanos);
+            }
+        }
+    }
+
+    private void recycle(Bitmap bitmap) {
+        if (bitmap != null && bitmapRecycler != null) {
+            bitmapRecycler.recycle(bitmap);
         }
     }
 }
@@ -0,0 +1,15 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Receives frames from a camera or a replayed recording.
+ */
+public interface FrameConsumer {
+
+    /**
+     * Processes one frame, synchronously or asynchronously.
+     *
+     * @param frame The frame. Its buffers stay valid until done is run.
+     * @param done  Must be run exactly once, from any thread, when the frame is finished.
+     */
+    void onFrame(YuvFrame frame, Runnable done);
+}
@@ -0,0 +1,309 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Pixel kernels for plane repacking, rotation and downscaling.
+ *
+ * Each kernel runs natively (libframekernels, NEON on ARM and SSE2 on x86) when the library
+ * is loaded and every buffer is direct, and falls back to plain Java otherwise. Both paths
+ * produce identical output. All buffers are addressed from index 0, their position and limit
+ * are ignored, and nothing is allocated. The native path checks every plane against its
+ * capacity first and throws IllegalArgumentException for sizes or strides that do not fit.
+ *
+ * This class only depends on java.nio, so it also runs in JVM unit tests.
+ */
+public final class FrameKernels {
+
+    private static final boolean NATIVE_LOADED = loadNative();
+    private static volatile boolean nativeEnabled = true;
+
+    private FrameKernels() {
+    }
+
+    private static boolean loadNative() {
+        try {
+            System.loadLibrary("framekernels");
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return True if the native library is loaded and enabled.
+     */
+    public static boolean isNativeAvailable() {
+        return NATIVE_LOADED && nativeEnabled;
+    }
+
+    /**
+     * @return True if the native library is loaded, whether or not it is enabled.
+     */
+    public static boolean isLibraryLoaded() {
+        return NATIVE_LOADED;
+    }
+
+    /**
+     * Turns the native path off or on again, for parity tests and benchmarks.
+     *
+     * @param enabled False to force the Java fallback.
+     */
+    public static void setNativeEnabled(boolean enabled) {
+        nativeEnabled = enabled;
+    }
+
+    /**
+     * Packs the planes of a YUV_420_888 image into tightly packed NV21: width * height bytes
+     * of Y followed by interleaved V and U for every 2x2 block.
+     *
+     * @param out Receives width * height * 3 / 2 bytes.
+     */
+    public static void packNv21(ByteBuffer y, int yRowStride,
+                                ByteBuffer u, int uRowStride, int uPixelStride,
+                                ByteBuffer v, int vRowStride, int vPixelStride,
+                                int width, int height, ByteBuffer out) {
+        checkCapacity(out, width * height * 3 / 2);
+        if (useNative(y, u, v, out)) {
+            nativePackNv21(y, yRowStride, u, uRowStride, uPixelStride,
+                    v, vRowStride, vPixelStride, width, height, out);
+        } else {
+            packNv21Java(y, yRowStride, u, uRowStride, uPixelStride,
+                    v, vRowStride, vPixelStride, width, height, out);
+        }
+    }
+
+    /**
+     * Same as {@link #packNv21(ByteBuffer, int, ByteBuffer, int, int, ByteBuffer, int, int,
+     * int, int, ByteBuffer)}, into an array, e.g. for YuvImage, which only takes one. The
+     * native path writes the array in place instead of going through a direct buffer.
+     *
+     * @param out Receives width * height * 3 / 2 bytes.
+     */
+    public static void packNv21(ByteBuffer y, int yRowStride,
+                                ByteBuffer u, int uRowStride, int uPixelStride,
+                                ByteBuffer v, int vRowStride, int vPixelStride,
+                                int width, int height, byte[] out) {
+        packNv21(y, yRowStride, u, uRowStride, uPixelStride, v, vRowStride, vPixelStride,
+                width, height, out, nativeEnabled);
+    }
+
+    /**
+     * Same as the array overload above, with the path picked by the caller instead of
+     * {@link #setNativeEnabled}, e.g. by the profiler comparing both while frames are
+     * processed with the current choice.
+     *
+     * @param allowNative True to use the native kernel if the library is loaded, false for Java.
+     */
+    public static void packNv21(ByteBuffer y, int yRowStride,
+                                ByteBuffer u, int uRowStride, int uPixelStride,
+                                ByteBuffer v, int vRowStride, int vPixelStride,
+                                int width, int height, byte[] out, boolean allowNative) {
+        int needed = width * height * 3 / 2;
+        if (out.length < needed) {
+            throw new IllegalArgumentException(
+                    "Output array holds " + out.length + " bytes, needs " + needed);
+        }
+        if (allowNative && NATIVE_LOADED && y.isDirect() && u.isDirect() && v.isDirect()) {
+            nativePackNv21Array(y, yRowStride, u, uRowStride, uPixelStride,
+                    v, vRowStride, vPixelStride, width, height, out);
+        } else {
+            packNv21Java(y, yRowStride, u, uRowStride, uPixelStride,
+                    v, vRowStride, vPixelStride, width, height, out);
+        }
+    }
+
+    /**
+     * Rotates a plane of 32-bit pixels, e.g. an ARGB_8888 bitmap, clockwise.
+     *
+     * @param srcStride Source row stride in pixels.
+     * @param degrees   0, 90, 180 or 270.
+     * @param dst       Receives the tightly packed rotated plane.
+     */
+    public static void rotate32(ByteBuffer src, int srcStride, int width, int height,
+                                int degrees, ByteBuffer dst) {
+        checkDegrees(degrees);
+        checkCapacity(dst, width * height * 4);
+        if (useNative(src, dst)) {
+            nativeRotate32(src, srcStride, width, height, degrees, dst);
+        } else {
+            rotateJava(src, srcStride, width, height, degrees, dst, 4);
+        }
+    }
+
+    /**
+     * Rotates a plane of 8-bit pixels, e.g. a Y plane, clockwise.
+     *
+     * @param srcStride Source row stride in bytes.
+     * @param degrees   0, 90, 180 or 270.
+     * @param dst       Receives the tightly packed rotated plane.
+     */
+    public static void rotate8(ByteBuffer src, int srcStride, int width, int height,
+                               int degrees, ByteBuffer dst) {
+        checkDegrees(degrees);
+        checkCapacity(dst, width * height);
+        if (useNative(src, dst)) {
+            nativeRotate8(src, srcStride, width, height, degrees, dst);
+        } else {
+            rotateJava(src, srcStride, width, height, degrees, dst, 1);
+        }
+    }
+
+    /**
+     * Averages factor x factor blocks of an interleaved 8-bit plane, rounding to nearest.
+     * Leftover rows and columns that do not fill a block are ignored.
+     *
+     * @param srcStride Source row stride in bytes.
+     * @param channels  Bytes per pixel, 1 to 4.
+     * @param factor    Block size, at least 1.
+     * @param dst       Receives (width / factor) x (height / factor) pixels, tightly packed.
+     */
+    public static void downscaleBox(ByteBuffer src, int srcStride, int width, int height,
+                                    int channels, int factor, ByteBuffer dst) {
+        if (channels < 1 || channels > 4 || factor < 1) {
+            throw new IllegalArgumentException("channels=" + channels + " factor=" + factor);
+        }
+        checkCapacity(dst, (width / factor) * (height / factor) * channels);
+        if (useNative(src, dst)) {
+            nativeDownscaleBox(src, srcStride, width, height, channels, factor, dst);
+        } else {
+            downscaleBoxJava(src, srcStride, width, height, channels, factor, dst);
+        }
+    }
+
+    static void packNv21Java(ByteBuffer y, int yRowStride,
+                             ByteBuffer u, int uRowStride, int uPixelStride,
+                             ByteBuffer v, int vRowStride, int vPixelStride,
+                             int width, int height, ByteBuffer out) {
+        for (int row = 0; row < height; row++) {
+            int src = row * yRowStride;
+            int dst = row * width;
+            for (int col = 0; col < width; col++) {
+                out.put(dst + col, y.get(src + col));
+            }
+        }
+        int index = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                // NV21 format requires V before U
+                out.put(index++, v.get(row * vRowStride + col * vPixelStride));
+                out.put(index++, u.get(row * uRowStride + col * uPixelStride));
+            }
+        }
+    }
+
+    static void packNv21Java(ByteBuffer y, int yRowStride,
+                             ByteBuffer u, int uRowStride, int uPixelStride,
+                             ByteBuffer v, int vRowStride, int vPixelStride,
+                             int width, int height, byte[] out) {
+        for (int row = 0; row < height; row++) {
+            int src = row * yRowStride;
+            int dst = row * width;
+            for (int col = 0; col < width; col++) {
+                out[dst + col] = y.get(src + col);
+            }
+        }
+        int index = width * height;
+        for (int row = 0; row < height / 2; row++) {
+            for (int col = 0; col < width / 2; col++) {
+                out[index++] = v.get(row * vRowStride + col * vPixelStride);
+                out[index++] = u.get(row * uRowStride + col * uPixelStride);
+            }
+        }
+    }
+
+    static void rotateJava(ByteBuffer src, int srcStride, int width, int height,
+                           int degrees, ByteBuffer dst, int bytesPerPixel) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int target;
+                switch (degrees) {
+                    case 0:
+                        target = y * width + x;
+                        break;
+                    case 90:
+                        target = x * height + (height - 1 - y);
+                        break;
+                    case 180:
+                        target = (height - 1 - y) * width + (width - 1 - x);
+                        break;
+                    default:
+                        target = (width - 1 - x) * height + y;
+                        break;
+                }
+                if (bytesPerPixel == 4) {
+                    dst.putInt(target * 4, src.getInt((y * srcStride + x) * 4));
+                } else {
+                    dst.put(target, src.get(y * srcStride + x));
+                }
+            }
+        }
+    }
+
+    static void downscaleBoxJava(ByteBuffer src, int srcStride, int width, int height,
+                                 int channels, int factor, ByteBuffer dst) {
+        int outWidth = width / factor;
+        int outHeight = height / factor;
+        int area = factor * factor;
+        int index = 0;
+        for (int oy = 0; oy < outHeight; oy++) {
+            for (int ox = 0; ox < outWidth; ox++) {
+                for (int c = 0; c < channels; c++) {
+                    int sum = 0;
+                    for (int dy = 0; dy < factor; dy++) {
+                        int rowStart = (oy * factor + dy) * srcStride + ox * factor * channels + c;
+                        for (int dx = 0; dx < factor; dx++) {
+                            sum += src.get(rowStart + dx * channels) & 0xFF;
+                        }
+                    }
+                    dst.put(index++, (byte) ((sum + area / 2) / area));
+                }
+            }
+        }
+    }
+
+    private static boolean useNative(ByteBuffer... buffers) {
+        if (!isNativeAvailable()) {
+            return false;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (!buffer.isDirect()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkCapacity(ByteBuffer buffer, int needed) {
+        if (buffer.capacity() < needed) {
+            throw new IllegalArgumentException(
+                    "Output buffer holds " + buffer.capacity() + " bytes, needs " + needed);
+        }
+    }
+
+    private static void checkDegrees(int degrees) {
+        if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + degrees);
+        }
+    }
+
+    private static native void nativePackNv21(ByteBuffer y, int yRowStride,
+                                              ByteBuffer u, int uRowStride, int uPixelStride,
+                                              ByteBuffer v, int vRowStride, int vPixelStride,
+                                              int width, int height, ByteBuffer out);
+
+    private static native void nativePackNv21Array(ByteBuffer y, int yRowStride,
+                                                   ByteBuffer u, int uRowStride, int uPixelStride,
+                                                   ByteBuffer v, int vRowStride, int vPixelStride,
+                                                   int width, int height, byte[] out);
+
+    private static native void nativeRotate32(ByteBuffer src, int srcStride, int width, int height,
+                                              int degrees, ByteBuffer dst);
+
+    private static native void nativeRotate8(ByteBuffer src, int srcStride, int width, int height,
+                                             int degrees, ByteBuffer dst);
+
+    private static native void nativeDownscaleBox(ByteBuffer src, int srcStride, int width,
+                                                  int height, int channels, int factor,
+                                                  ByteBuffer dst);
+}
@@ -0,0 +1,205 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Raw YUV recordings for frame replay.
+ *
+ * The file starts with a magic number and a version, followed by one record per frame:
+ * timestamp, rotation, width, height, the strides of the three planes, then each plane as
+ * a length-prefixed run of bytes exactly as the camera delivered it. Big-endian throughout.
+ */
+public final class FrameRecording {
+
+    private static final int MAGIC = 0x47475955; // "GGYU"
+    private static final int VERSION = 1;
+
+    private FrameRecording() {
+    }
+
+    /**
+     * Appends frames to a new recording file. Not thread-safe.
+     */
+    public static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+        private byte[] scratch = new byte[0];
+        private int frameCount = 0;
+
+        public Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public void write(YuvFrame frame) throws IOException {
+            out.writeLong(frame.timestampNanos);
+            out.writeInt(frame.rotationDegrees);
+            out.writeInt(frame.width);
+            out.writeInt(frame.height);
+            out.writeInt(frame.yRowStride);
+            out.writeInt(frame.uRowStride);
+            out.writeInt(frame.uPixelStride);
+            out.writeInt(frame.vRowStride);
+            out.writeInt(frame.vPixelStride);
+            writePlane(frame.y);
+            writePlane(frame.u);
+            writePlane(frame.v);
+            frameCount++;
+        }
+
+        public int getFrameCount() {
+            return frameCount;
+        }
+
+        private void writePlane(ByteBuffer plane) throws IOException {
+            // Read through a duplicate so the caller's buffer position stays untouched
+            ByteBuffer source = plane.duplicate();
+            source.position(0);
+            int length = source.limit();
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            source.get(scratch, 0, length);
+            out.writeInt(length);
+            out.write(scratch, 0, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a recording frame by frame. The returned frame and its plane buffers are reused
+     * by the next load, so after the first frames reading allocates nothing.
+     */
+    public static class Reader implements Closeable {
+
+        private final File file;
+        private DataInputStream in;
+        private final YuvFrame frame = new YuvFrame();
+        private byte[] scratch = new byte[0];
+        private ByteBuffer y = ByteBuffer.allocateDirect(0);
+        private ByteBuffer u = ByteBuffer.allocateDirect(0);
+        private ByteBuffer v = ByteBuffer.allocateDirect(0);
+
+        public Reader(File file) throws IOException {
+            this.file = file;
+            open();
+        }
+
+        /**
+         * Reads the header of the next frame. Follow it with {@link #load()} or {@link #skip()}.
+         *
+         * @return The timestamp of the next frame, or -1 at the end of the recording.
+         */
+        public long nextHeader() throws IOException {
+            long timestamp;
+            try {
+                timestamp = in.readLong();
+            } catch (EOFException e) {
+                return -1;
+            }
+            int rotation = in.readInt();
+            int width = in.readInt();
+            int height = in.readInt();
+            frame.setInfo(width, height, rotation, timestamp);
+            frame.yRowStride = in.readInt();
+            frame.uRowStride = in.readInt();
+            frame.uPixelStride = in.readInt();
+            frame.vRowStride = in.readInt();
+            frame.vPixelStride = in.readInt();
+            return timestamp;
+        }
+
+        /**
+         * Reads the planes of the frame whose header was just read.
+         *
+         * @return The frame, valid until the next call to load().
+         */
+        public YuvFrame load() throws IOException {
+            y = readPlane(y);
+            u = readPlane(u);
+            v = readPlane(v);
+            return frame.setPlanes(y, frame.yRowStride, u, frame.uRowStride, frame.uPixelStride,
+                    v, frame.vRowStride, frame.vPixelStride);
+        }
+
+        /**
+         * Skips the planes of the frame whose header was just read, leaving the buffers of
+         * the last loaded frame untouched.
+         */
+        public void skip() throws IOException {
+            for (int plane = 0; plane < 3; plane++) {
+                int length = in.readInt();
+                while (length > 0) {
+                    int skipped = in.skipBytes(length);
+                    if (skipped <= 0) {
+                        throw new EOFException("Truncated frame recording");
+                    }
+                    length -= skipped;
+                }
+            }
+        }
+
+        /**
+         * @return The next frame, or null at the end of the recording.
+         */
+        public YuvFrame next() throws IOException {
+            return nextHeader() < 0 ? null : load();
+        }
+
+        /**
+         * Starts again from the first frame.
+         */
+        public void rewind() throws IOException {
+            in.close();
+            open();
+        }
+
+        private void open() throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException(file + " is not a frame recording");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Unsupported frame recording version " + version);
+            }
+        }
+
+        private ByteBuffer readPlane(ByteBuffer buffer) throws IOException {
+            int length = in.readInt();
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+            in.readFully(scratch, 0, length);
+            if (buffer.capacity() < length) {
+                buffer = ByteBuffer.allocateDirect(length);
+            }
+            buffer.clear();
+            buffer.put(scratch, 0, length);
+            buffer.flip();
+            return buffer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format for streaming landmarks to the coaching hub.
+ *
+ * A packet carries a batch of consecutive frames of one station. Coordinates are normalised
+ * to the image size and quantised to 16 bits, likelihoods to 8 bits. The first frame of a
+ * batch is stored as is, every following frame as the difference to the frame before it,
+ * wrapped to 16 (or 8) bits and written as a zigzag varint, so small movements cost one byte
+ * per value. Since every batch starts from absolute values, the hub can decode any packet on
+ * its own and a dropped packet never corrupts the next one.
+ *
+ * Layout, big-endian:
+ * <pre>
+ * int    length of the rest of the packet
+ * short  MAGIC
+ * byte   VERSION
+ * byte   frame count
+ * int    station id
+ * short  image width, short image height
+ * long   wall clock micros when the first frame was queued
+ * long   wall clock micros when the packet was encoded
+ * frames: varint timestamp delta in micros (absolute for the first frame),
+ *         then x, y, z, likelihood of every landmark
+ * </pre>
+ */
+public class LandmarkCodec {
+
+    public static final short MAGIC = 0x4C4D; // "LM"
+    public static final byte VERSION = 1;
+
+    public static final int HEADER_BYTES = 4 + 2 + 1 + 1 + 4 + 2 + 2 + 8 + 8;
+    // Worst case per frame: 10 byte timestamp, 3 bytes per coordinate, 2 per likelihood
+    public static final int MAX_FRAME_BYTES = 10 + LandmarkFrame.LANDMARK_COUNT * (3 * 3 + 2);
+
+    // Quantisation ranges relative to the image size, landmarks may lie slightly outside it
+    private static final float XY_MIN = -0.5f;
+    private static final float XY_MAX = 1.5f;
+    private static final float Z_MIN = -2f;
+    private static final float Z_MAX = 2f;
+
+    private static final long WALL_CLOCK_BASE_MICROS = System.currentTimeMillis() * 1000;
+    private static final long WALL_CLOCK_BASE_NANOS = System.nanoTime();
+
+    // Quantised values of the previous frame while encoding or decoding a batch
+    private final int[] previous = new int[LandmarkFrame.LANDMARK_COUNT * 4];
+
+    private int stationId;
+    private long firstQueuedMicros;
+    private long sentAtMicros;
+
+    /**
+     * @return Wall clock time in microseconds, monotonic within the process.
+     */
+    public static long wallClockMicros() {
+        return WALL_CLOCK_BASE_MICROS + (System.nanoTime() - WALL_CLOCK_BASE_NANOS) / 1000;
+    }
+
+    /**
+     * @param frameCount Frames per batch.
+     * @return Buffer size that always fits a packet of that many frames.
+     */
+    public static int maxPacketBytes(int frameCount) {
+        return HEADER_BYTES + frameCount * MAX_FRAME_BYTES;
+    }
+
+    /**
+     * Writes one packet, including its length prefix, at the buffer's position.
+     *
+     * @param stationId         Id of the sending station.
+     * @param frames            The frames of the batch, all with the same image size.
+     * @param count             Number of frames to take from the array, at most 255.
+     * @param firstQueuedMicros Wall clock time the first frame was queued.
+     * @param out               Receives the packet, needs maxPacketBytes(count) remaining.
+     */
+    public void encode(int stationId, LandmarkFrame[] frames, int count, long firstQueuedMicros,
+                       ByteBuffer out) {
+        int start = out.position();
+        LandmarkFrame first = frames[0];
+        out.putInt(0); // length, filled in below
+        out.putShort(MAGIC);
+        out.put(VERSION);
+        out.put((byte) count);
+        out.putInt(stationId);
+        out.putShort((short) first.imageWidth);
+        out.putShort((short) first.imageHeight);
+        out.putLong(firstQueuedMicros);
+        out.putLong(wallClockMicros());
+
+        long previousTimestampMicros = 0;
+        for (int f = 0; f < count; f++) {
+            LandmarkFrame frame = frames[f];
+            long timestampMicros = frame.timestampNanos / 1000;
+            putVarLong(out, f == 0 ? timestampMicros : timestampMicros - previousTimestampMicros);
+            previousTimestampMicros = timestampMicros;
+
+            float width = Math.max(1, first.imageWidth);
+            float height = Math.max(1, first.imageHeight);
+            for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+                int base = i * 4;
+                putValue(out, f, base, quantize16(frame.x[i] / width, XY_MIN, XY_MAX), 0xFFFF);
+                putValue(out, f, base + 1, quantize16(frame.y[i] / height, XY_MIN, XY_MAX), 0xFFFF);
+                putValue(out, f, base + 2, quantize16(frame.z[i] / width, Z_MIN, Z_MAX), 0xFFFF);
+                putValue(out, f, base + 3, Math.round(clamp(frame.likelihood[i], 0, 1) * 255), 0xFF);
+            }
+        }
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    /**
+     * Reads one packet starting at the buffer's position, which must be at a length prefix
+     * and hold the whole packet.
+     *
+     * @param in  The packet.
+     * @param out Receives the frames, must have room for the packet's frame count.
+     * @return The number of frames decoded.
+     * @throws IllegalArgumentException If the packet is malformed.
+     */
+    public int decode(ByteBuffer in, LandmarkFrame[] out) {
+        try {
+            int length = in.getInt();
+            int end = in.position() + length;
+            if (in.getShort() != MAGIC || in.get() != VERSION) {
+                throw new IllegalArgumentException("Not a landmark packet");
+            }
+            int count = in.get() & 0xFF;
+            stationId = in.getInt();
+            int width = in.getShort() & 0xFFFF;
+            int height = in.getShort() & 0xFFFF;
+            firstQueuedMicros = in.getLong();
+            sentAtMicros = in.getLong();
+
+            long timestampMicros = 0;
+            for (int f = 0; f < count; f++) {
+                LandmarkFrame frame = out[f];
+                long delta = getVarLong(in);
+                timestampMicros = f == 0 ? delta : timestampMicros + delta;
+                frame.timestampNanos = timestampMicros * 1000;
+                frame.imageWidth = width;
+                frame.imageHeight = height;
+                for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+                    int base = i * 4;
+                    frame.x[i] = dequantize16(getValue(in, f, base, 0xFFFF), XY_MIN, XY_MAX) * width;
+                    frame.y[i] = dequantize16(getValue(in, f, base + 1, 0xFFFF), XY_MIN, XY_MAX) * height;
+                    frame.z[i] = dequantize16(getValue(in, f, base + 2, 0xFFFF), Z_MIN, Z_MAX) * width;
+                    frame.likelihood[i] = getValue(in, f, base + 3, 0xFF) / 255f;
+                }
+            }
+            if (in.position() != end) {
+                throw new IllegalArgumentException("Packet length does not match its content");
+            }
+            return count;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated landmark packet", e);
+        }
+    }
+
+    /**
+     * @return Station id of the last decoded packet.
+     */
+    public int getStationId() {
+        return stationId;
+    }
+
+    /**
+     * @return Wall clock micros when the first frame of the last decoded packet was queued.
+     */
+    public long getFirstQueuedMicros() {
+        return firstQueuedMicros;
+    }
+
+    /**
+     * @return Wall clock micros when the last decoded packet was encoded.
+     */
+    public long getSentAtMicros() {
+        return sentAtMicros;
+    }
+
+    private void putValue(ByteBuffer out, int frameIndex, int slot, int value, int mask) {
+        int encoded = frameIndex == 0 ? value : signExtend((value - previous[slot]) & mask, mask);
+        previous[slot] = value;
+        putVarLong(out, encoded);
+    }
+
+    private int getValue(ByteBuffer in, int frameIndex, int slot, int mask) {
+        int encoded = (int) getVarLong(in);
+        int value = frameIndex == 0 ? encoded : (previous[slot] + encoded) & mask;
+        previous[slot] = value;
+        return value;
+    }
+
+    // Wrapped deltas are taken as the signed value closest to zero, so small moves stay small
+    private static int signExtend(int value, int mask) {
+        int half = (mask + 1) >> 1;
+        return value >= half ? value - mask - 1 : value;
+    }
+
+    private static void putVarLong(ByteBuffer out, long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.put((byte) zigzag);
+    }
+
+    private static long getVarLong(ByteBuffer in) {
+        long zigzag = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IllegalArgumentException("Malformed varint");
+            }
+            b = in.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    private static int quantize16(float value, float min, float max) {
+        return Math.round((clamp(value, min, max) - min) / (max - min) * 0xFFFF);
+    }
+
+    private static float dequantize16(int value, float min, float max) {
+        return min + value / (float) 0xFFFF * (max - min);
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+}
@@ -0,0 +1,230 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Per-stream filtering stage run once per frame, before anything looks at the landmarks.
+ *
+ * A landmark becomes visible when its in-frame likelihood reaches the enter threshold and
+ * stays visible until it drops below the lower exit threshold, so joints near the threshold
+ * do not flicker. Hidden joints are filled in where possible: for a few frames they continue
+ * along their last motion, after that they are placed like their mirror joint relative to
+ * its parent (the left knee from the right hip-to-knee offset, for instance), mirrored when
+ * the body faces the camera.
+ *
+ * The result is exposed as bitmasks with one bit per PoseLandmark type, so angle and rule
+ * computations can skip joints that are neither visible nor filled. Filled joints get a low
+ * likelihood in the output frame. {@link #apply} does not allocate.
+ */
+public class LandmarkFilter {
+
+    // Mirror joint of each landmark, -1 for the nose
+    private static final int[] MIRROR = {
+            -1, 4, 5, 6, 1, 2, 3, 8, 7, 10, 9,          // face
+            12, 11, 14, 13, 16, 15, 18, 17, 20, 19,     // shoulders, elbows, wrists, fingers
+            22, 21, 24, 23, 26, 25, 28, 27, 30, 29,     // thumbs, hips, knees, ankles, heels
+            32, 31,                                     // foot index
+    };
+
+    // Joint the mirrored offset is taken from, always a lower index; -1 for shoulders and hips
+    private static final int[] PARENT = {
+            -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            -1, -1, 11, 12, 13, 14, 15, 16, 15, 16,
+            15, 16, 11, 12, 23, 24, 25, 26, 27, 28,
+            27, 28,
+    };
+
+    private static final int LEFT_SHOULDER = 11;
+    private static final int RIGHT_SHOULDER = 12;
+    private static final int LEFT_HIP = 23;
+    private static final int RIGHT_HIP = 24;
+
+    // Shoulders at least this fraction of the torso length apart mean the body faces the camera
+    private static final float FRONTAL_SHOULDER_RATIO = 0.35f;
+
+    private final float enterLikelihood;
+    private final float exitLikelihood;
+    private final int holdFrames;
+    private final float velocityDamping;
+    private final float filledLikelihood;
+
+    private long visibleMask = 0;
+    private long filledMask = 0;
+
+    // Last output position and motion of each joint
+    private final float[] lastX = new float[LandmarkFrame.LANDMARK_COUNT];
+    private final float[] lastY = new float[LandmarkFrame.LANDMARK_COUNT];
+    private final float[] velocityX = new float[LandmarkFrame.LANDMARK_COUNT];
+    private final float[] velocityY = new float[LandmarkFrame.LANDMARK_COUNT];
+    private final int[] framesHidden = new int[LandmarkFrame.LANDMARK_COUNT];
+
+    /**
+     * @param enterLikelihood  Likelihood at which a hidden joint becomes visible.
+     * @param exitLikelihood   Likelihood below which a visible joint becomes hidden.
+     * @param holdFrames       Frames a hidden joint follows its last motion.
+     * @param velocityDamping  Factor the motion is multiplied with on each hidden frame.
+     * @param filledLikelihood Likelihood given to filled joints in the output frame.
+     */
+    public LandmarkFilter(float enterLikelihood, float exitLikelihood, int holdFrames,
+                          float velocityDamping, float filledLikelihood) {
+        if (exitLikelihood > enterLikelihood) {
+            throw new IllegalArgumentException("Exit threshold must not exceed enter threshold");
+        }
+        this.enterLikelihood = enterLikelihood;
+        this.exitLikelihood = exitLikelihood;
+        this.holdFrames = holdFrames;
+        this.velocityDamping = velocityDamping;
+        this.filledLikelihood = filledLikelihood;
+        for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+            framesHidden[i] = Integer.MAX_VALUE;
+        }
+    }
+
+    public static long bit(int type) {
+        return 1L << type;
+    }
+
+    /**
+     * @return True if every joint in required is set in mask.
+     */
+    public static boolean containsAll(long mask, long required) {
+        return (mask & required) == required;
+    }
+
+    /**
+     * Filters one frame.
+     *
+     * @param in  Raw landmarks.
+     * @param out Receives the visible landmarks unchanged, filled joints at their estimated
+     *            position and the rest with likelihood 0. May be the same frame as in.
+     */
+    public void apply(LandmarkFrame in, LandmarkFrame out) {
+        if (out != in) {
+            out.set(in);
+        }
+
+        long visible = 0;
+        for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+            float threshold = (visibleMask & bit(i)) != 0 ? exitLikelihood : enterLikelihood;
+            if (in.likelihood[i] >= threshold && in.likelihood[i] > 0) {
+                visible |= bit(i);
+            }
+        }
+        visibleMask = visible;
+
+        boolean frontal = isFrontal(in, visible);
+        long filled = 0;
+        // Parents have lower indices, so they are final before their children are filled
+        for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+            if ((visible & bit(i)) != 0) {
+                if (framesHidden[i] == 0) {
+                    velocityX[i] = in.x[i] - lastX[i];
+                    velocityY[i] = in.y[i] - lastY[i];
+                } else {
+                    velocityX[i] = 0;
+                    velocityY[i] = 0;
+                }
+                lastX[i] = in.x[i];
+                lastY[i] = in.y[i];
+                framesHidden[i] = 0;
+                continue;
+            }
+
+            if (framesHidden[i] != Integer.MAX_VALUE) {
+                framesHidden[i]++;
+            }
+            if (framesHidden[i] <= holdFrames) {
+                // Temporal prior: keep moving the way the joint last moved, slowing down
+                velocityX[i] *= velocityDamping;
+                velocityY[i] *= velocityDamping;
+                lastX[i] += velocityX[i];
+                lastY[i] += velocityY[i];
+                out.x[i] = lastX[i];
+                out.y[i] = lastY[i];
+                out.likelihood[i] = filledLikelihood;
+                filled |= bit(i);
+            } else if (fillFromMirror(i, out, visible | filled, frontal)) {
+                lastX[i] = out.x[i];
+                lastY[i] = out.y[i];
+                velocityX[i] = 0;
+                velocityY[i] = 0;
+                out.likelihood[i] = filledLikelihood;
+                filled |= bit(i);
+            } else {
+                out.likelihood[i] = 0;
+            }
+        }
+        filledMask = filled;
+    }
+
+    /**
+     * @return Joints seen in the last frame, with hysteresis.
+     */
+    public long getVisibleMask() {
+        return visibleMask;
+    }
+
+    /**
+     * @return Joints estimated in the last frame.
+     */
+    public long getFilledMask() {
+        return filledMask;
+    }
+
+    /**
+     * @return Joints with a position in the last output frame, visible or filled.
+     */
+    public long getUsableMask() {
+        return visibleMask | filledMask;
+    }
+
+    public boolean isVisible(int type) {
+        return (visibleMask & bit(type)) != 0;
+    }
+
+    /**
+     * Forgets all history, e.g. when the camera changes.
+     */
+    public void reset() {
+        visibleMask = 0;
+        filledMask = 0;
+        for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+            framesHidden[i] = Integer.MAX_VALUE;
+            velocityX[i] = 0;
+            velocityY[i] = 0;
+        }
+    }
+
+    /**
+     * Symmetry prior: places the joint at its parent plus the offset of the mirror joint from
+     * the mirror parent.
+     */
+    private static boolean fillFromMirror(int i, LandmarkFrame out, long usable, boolean frontal) {
+        int mirror = MIRROR[i];
+        int parent = PARENT[i];
+        if (mirror < 0 || parent < 0) {
+            return false;
+        }
+        // Face landmarks share the nose as parent
+        int mirrorParent = parent == 0 ? 0 : MIRROR[parent];
+        long required = bit(mirror) | bit(parent) | bit(mirrorParent);
+        if (!containsAll(usable, required)) {
+            return false;
+        }
+        float dx = out.x[mirror] - out.x[mirrorParent];
+        float dy = out.y[mirror] - out.y[mirrorParent];
+        out.x[i] = out.x[parent] + (frontal ? -dx : dx);
+        out.y[i] = out.y[parent] + dy;
+        return true;
+    }
+
+    private static boolean isFrontal(LandmarkFrame frame, long visible) {
+        long torso = bit(LEFT_SHOULDER) | bit(RIGHT_SHOULDER) | bit(LEFT_HIP) | bit(RIGHT_HIP);
+        if (!containsAll(visible, torso)) {
+            // Without a full torso, assume the usual front view
+            return true;
+        }
+        float shoulderWidth = Math.abs(frame.x[LEFT_SHOULDER] - frame.x[RIGHT_SHOULDER]);
+        float torsoLength = Math.abs((frame.y[LEFT_HIP] + frame.y[RIGHT_HIP])
+                - (frame.y[LEFT_SHOULDER] + frame.y[RIGHT_SHOULDER])) / 2;
+        return shoulderWidth >= FRONTAL_SHOULDER_RATIO * torsoLength;
+    }
+}
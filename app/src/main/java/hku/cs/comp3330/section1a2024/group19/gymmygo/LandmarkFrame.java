@@ -0,0 +1,63 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Pose landmarks of one frame as plain float arrays, indexed by PoseLandmark type.
+ * Coordinates are in pixels of the upright (already rotated) image. Plain Java, so it also
+ * runs in JVM tests and benchmarks; detector stages fill it in.
+ */
+public class LandmarkFrame {
+
+    /** Number of landmarks ML Kit reports, PoseLandmark.NOSE (0) to RIGHT_FOOT_INDEX (32). */
+    public static final int LANDMARK_COUNT = 33;
+
+    public final float[] x = new float[LANDMARK_COUNT];
+    public final float[] y = new float[LANDMARK_COUNT];
+    public final float[] z = new float[LANDMARK_COUNT];
+    public final float[] likelihood = new float[LANDMARK_COUNT];
+
+    public int imageWidth;
+    public int imageHeight;
+    public long timestampNanos;
+
+    /**
+     * Copies another frame into this one.
+     *
+     * @param other The frame to copy.
+     * @return This frame, for chaining.
+     */
+    public LandmarkFrame set(LandmarkFrame other) {
+        System.arraycopy(other.x, 0, x, 0, LANDMARK_COUNT);
+        System.arraycopy(other.y, 0, y, 0, LANDMARK_COUNT);
+        System.arraycopy(other.z, 0, z, 0, LANDMARK_COUNT);
+        System.arraycopy(other.likelihood, 0, likelihood, 0, LANDMARK_COUNT);
+        imageWidth = other.imageWidth;
+        imageHeight = other.imageHeight;
+        timestampNanos = other.timestampNanos;
+        return this;
+    }
+
+    public void clear() {
+        for (int i = 0; i < LANDMARK_COUNT; i++) {
+            x[i] = 0;
+            y[i] = 0;
+            z[i] = 0;
+            likelihood[i] = 0;
+        }
+        imageWidth = 0;
+        imageHeight = 0;
+        timestampNanos = 0;
+    }
+
+    /**
+     * @param minLikelihood Likelihood threshold.
+     * @return True if at least one landmark reaches the threshold.
+     */
+    public boolean hasLandmarks(float minLikelihood) {
+        for (int i = 0; i < LANDMARK_COUNT; i++) {
+            if (likelihood[i] >= minLikelihood) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
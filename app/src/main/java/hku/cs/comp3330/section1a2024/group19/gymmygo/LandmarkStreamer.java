@@ -0,0 +1,258 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Sends the landmarks of one station to the coaching hub.
+ *
+ * {@link #offer(LandmarkFrame)} only copies the frame; every N frames the batch is encoded
+ * into a packet buffer and queued. The queue is bounded: when the hub or the network cannot
+ * keep up, the oldest packet is dropped, so the camera pipeline never waits on the socket.
+ * A single background thread drives a non-blocking SocketChannel and reconnects with
+ * backoff when the connection drops.
+ */
+public class LandmarkStreamer implements Closeable {
+
+    private static final long MIN_RECONNECT_DELAY_MS = 500;
+    private static final long MAX_RECONNECT_DELAY_MS = 10_000;
+
+    private final InetSocketAddress hubAddress;
+    private final int stationId;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final LandmarkCodec codec = new LandmarkCodec();
+
+    // Batch being filled, only touched by the thread calling offer()
+    private final LandmarkFrame[] batch;
+    private int batchCount = 0;
+    private long batchFirstQueuedMicros;
+
+    // Guarded by queueLock
+    private final Object queueLock = new Object();
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+    private long packetsDropped = 0;
+
+    private final Selector selector;
+    private final Thread ioThread;
+    private volatile boolean running = true;
+    private volatile boolean connected = false;
+    private volatile long bytesSent = 0;
+    private volatile long packetsSent = 0;
+
+    /**
+     * @param hubAddress    Address of the coaching hub.
+     * @param stationId     Id the hub shows this station under.
+     * @param batchSize     Frames per packet, 1 to 255.
+     * @param queueCapacity Packets kept while the hub is slow or unreachable, at least 1.
+     */
+    public LandmarkStreamer(InetSocketAddress hubAddress, int stationId, int batchSize,
+                            int queueCapacity) throws IOException {
+        if (batchSize < 1 || batchSize > 255) {
+            throw new IllegalArgumentException("Batch size must be between 1 and 255");
+        }
+        if (queueCapacity < 1) {
+            // With the spare buffer in flight there would be nothing to drop for a new packet
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        this.hubAddress = hubAddress;
+        this.stationId = stationId;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.batch = new LandmarkFrame[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            batch[i] = new LandmarkFrame();
+        }
+        // One spare buffer for the packet being written to the socket
+        for (int i = 0; i <= queueCapacity; i++) {
+            free.add(ByteBuffer.allocateDirect(LandmarkCodec.maxPacketBytes(batchSize)));
+        }
+        selector = Selector.open();
+        ioThread = new Thread(this::runLoop, "LandmarkStreamer");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Adds a frame to the current batch. Never blocks. Must always be called from the same
+     * thread.
+     *
+     * @param frame The landmarks, copied by this call.
+     */
+    public void offer(LandmarkFrame frame) {
+        if (batchCount == 0) {
+            batchFirstQueuedMicros = LandmarkCodec.wallClockMicros();
+        }
+        batch[batchCount++].set(frame);
+        if (batchCount < batchSize) {
+            return;
+        }
+        batchCount = 0;
+
+        ByteBuffer packet;
+        synchronized (queueLock) {
+            packet = free.pollFirst();
+            if (packet == null) {
+                // Drop the oldest queued packet and reuse its buffer
+                packet = pending.pollFirst();
+                packetsDropped++;
+            }
+        }
+        packet.clear();
+        codec.encode(stationId, batch, batchSize, batchFirstQueuedMicros, packet);
+        packet.flip();
+        synchronized (queueLock) {
+            pending.addLast(packet);
+        }
+        selector.wakeup();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getPacketsDropped() {
+        synchronized (queueLock) {
+            return packetsDropped;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "LandmarkStreamer to %s: connected=%b sent=%d packets (%d bytes) dropped=%d",
+                hubAddress, connected, getPacketsSent(), getBytesSent(), getPacketsDropped());
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        selector.close();
+    }
+
+    private void runLoop() {
+        SocketChannel channel = null;
+        ByteBuffer current = null;
+        long reconnectDelay = MIN_RECONNECT_DELAY_MS;
+        long nextConnectAt = 0;
+
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                if (channel == null && now >= nextConnectAt) {
+                    // Resolve here rather than on the caller's thread, and again on every retry
+                    InetSocketAddress address = hubAddress.isUnresolved()
+                            ? new InetSocketAddress(hubAddress.getHostString(), hubAddress.getPort())
+                            : hubAddress;
+                    if (address.isUnresolved()) {
+                        throw new IOException("Cannot resolve " + hubAddress.getHostString());
+                    }
+                    channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    if (channel.connect(address)) {
+                        connected = true;
+                        reconnectDelay = MIN_RECONNECT_DELAY_MS;
+                        channel.register(selector, 0);
+                    } else {
+                        channel.register(selector, SelectionKey.OP_CONNECT);
+                    }
+                }
+
+                if (channel != null && connected) {
+                    boolean hasData = current != null;
+                    if (!hasData) {
+                        synchronized (queueLock) {
+                            hasData = !pending.isEmpty();
+                        }
+                    }
+                    channel.keyFor(selector).interestOps(hasData ? SelectionKey.OP_WRITE : 0);
+                }
+
+                long timeout = channel == null ? Math.max(1, nextConnectAt - now) : 1000;
+                selector.select(timeout);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (key.isValid() && key.isConnectable() && channel.finishConnect()) {
+                        connected = true;
+                        reconnectDelay = MIN_RECONNECT_DELAY_MS;
+                        key.interestOps(0);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        current = writePending(channel, current);
+                    }
+                }
+                selector.selectedKeys().clear();
+            } catch (IOException e) {
+                // Connection lost or refused: resend the interrupted packet from the start later
+                connected = false;
+                closeQuietly(channel);
+                channel = null;
+                if (current != null) {
+                    current.rewind();
+                }
+                nextConnectAt = System.currentTimeMillis() + reconnectDelay;
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MS);
+            }
+        }
+        closeQuietly(channel);
+    }
+
+    /**
+     * Writes queued packets until the socket would block.
+     *
+     * @return The packet that is only partly written, or null.
+     */
+    private ByteBuffer writePending(SocketChannel channel, ByteBuffer current) throws IOException {
+        while (true) {
+            if (current == null) {
+                synchronized (queueLock) {
+                    current = pending.pollFirst();
+                }
+                if (current == null) {
+                    return null;
+                }
+            }
+            int written = channel.write(current);
+            bytesSent += written;
+            if (current.hasRemaining()) {
+                return current;
+            }
+            packetsSent++;
+            synchronized (queueLock) {
+                free.addLast(current);
+            }
+            current = null;
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing left to do with a broken channel
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.util.Locale;
+
+/**
+ * Measures how far the pose overlay lags behind the camera.
+ *
+ * Every overlay frame carries the sensor timestamp of the ImageProxy it was computed from.
+ * When the overlay draws it, the probe records
+ * <ul>
+ *     <li>motion-to-photon: the time from the sensor exposure to the draw, and</li>
+ *     <li>skew: how much newer the preview frame is that the camera delivered last, i.e. how
+ *     far the live preview runs ahead of the overlay.</li>
+ * </ul>
+ *
+ * Sensor timestamps use either the monotonic or the realtime clock depending on the device.
+ * The probe is given both and picks the one the first preview timestamp lies closest behind.
+ */
+public class LatencyProbe {
+
+    public static final int SERIES_SKEW = 0;
+    public static final int SERIES_MOTION_TO_PHOTON = 1;
+
+    private static final String[] SERIES_NAMES = {"skew", "motion2photon"};
+
+    /** Time source, replaceable in tests. */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    private final Clock monotonicClock;
+    private final Clock realtimeClock;
+    private volatile Clock sensorClock;
+    private final StageTimer timer;
+
+    private volatile long latestPreviewNanos = 0;
+    // Only touched by the thread that draws the overlay
+    private long lastOverlayNanos = 0;
+
+    /**
+     * @param monotonicClock E.g. System.nanoTime.
+     * @param realtimeClock  E.g. SystemClock.elapsedRealtimeNanos, which keeps counting in
+     *                       deep sleep.
+     * @param capacity       Number of recent samples kept per series.
+     */
+    public LatencyProbe(Clock monotonicClock, Clock realtimeClock, int capacity) {
+        this.monotonicClock = monotonicClock;
+        this.realtimeClock = realtimeClock;
+        this.timer = new StageTimer(SERIES_NAMES, capacity);
+    }
+
+    /**
+     * Called for every frame the camera delivers to the preview. May be called from any
+     * thread.
+     *
+     * @param sensorTimestampNanos Sensor timestamp of the frame.
+     */
+    public void onPreviewFrame(long sensorTimestampNanos) {
+        if (sensorClock == null) {
+            sensorClock = pickClock(sensorTimestampNanos);
+        }
+        if (sensorTimestampNanos > latestPreviewNanos) {
+            latestPreviewNanos = sensorTimestampNanos;
+        }
+    }
+
+    /**
+     * Called when an overlay frame is drawn. Redraws of the same frame are ignored.
+     *
+     * @param sensorTimestampNanos Sensor timestamp of the camera frame the overlay shows.
+     */
+    public void onOverlayFrame(long sensorTimestampNanos) {
+        Clock clock = sensorClock;
+        if (clock == null || sensorTimestampNanos == lastOverlayNanos) {
+            return;
+        }
+        lastOverlayNanos = sensorTimestampNanos;
+        long now = clock.nanoTime();
+        timer.recordDuration(SERIES_MOTION_TO_PHOTON, Math.max(0, now - sensorTimestampNanos));
+        timer.recordDuration(SERIES_SKEW, Math.max(0, latestPreviewNanos - sensorTimestampNanos));
+    }
+
+    /**
+     * @param series     SERIES_SKEW or SERIES_MOTION_TO_PHOTON.
+     * @param percentile Between 0 and 100.
+     */
+    public double getPercentileMs(int series, double percentile) {
+        return timer.getPercentileMs(series, percentile);
+    }
+
+    public int getSampleCount() {
+        return timer.getSampleCount(SERIES_SKEW);
+    }
+
+    /**
+     * @return How long the preview would have to be held back to match the overlay, the
+     *         median skew.
+     */
+    public long getSuggestedPreviewDelayNanos() {
+        return (long) (timer.getPercentileMs(SERIES_SKEW, 50) * 1e6);
+    }
+
+    /**
+     * @return True if the 95th percentile skew exceeds the limit.
+     */
+    public boolean isSkewAbove(double limitMs) {
+        return getSampleCount() > 0 && timer.getPercentileMs(SERIES_SKEW, 95) > limitMs;
+    }
+
+    public void reset() {
+        timer.reset();
+        latestPreviewNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "Latency (%s clock)%n%s",
+                sensorClock == null ? "no" : sensorClock == realtimeClock ? "realtime" : "monotonic",
+                timer);
+    }
+
+    private Clock pickClock(long sensorTimestampNanos) {
+        long monotonicAge = monotonicClock.nanoTime() - sensorTimestampNanos;
+        long realtimeAge = realtimeClock.nanoTime() - sensorTimestampNanos;
+        if (monotonicAge < 0) {
+            return realtimeClock;
+        }
+        if (realtimeAge < 0) {
+            return monotonicClock;
+        }
+        return monotonicAge <= realtimeAge ? monotonicClock : realtimeClock;
+    }
+}
@@ -0,0 +1,107 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.pose.Pose;
+import com.google.mlkit.vision.pose.PoseDetector;
+import com.google.mlkit.vision.pose.PoseLandmark;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+/**
+ * Detection with ML Kit pose detectors shared by all streams through a {@link DetectorPool}.
+ * Detection runs on ML Kit's own threads on the upright bitmap.
+ */
+public class MlKitDetectorStage implements PoseFrameProcessor.Detector {
+
+    private final DetectorPool<PoseDetector> pool;
+    // Detector held by each stream between tryAcquire and release
+    private final PoseDetector[] acquired;
+
+    /**
+     * @param detectors  The detector clients. The stage takes ownership of them.
+     * @param maxStreams Number of streams that use the stage.
+     */
+    public MlKitDetectorStage(List<PoseDetector> detectors, int maxStreams) {
+        pool = new DetectorPool<>(detectors, maxStreams);
+        acquired = new PoseDetector[maxStreams];
+    }
+
+    @Override
+    public boolean usesBitmap() {
+        return true;
+    }
+
+    @Override
+    public boolean tryAcquire(int stream) {
+        acquired[stream] = pool.tryAcquire(stream);
+        return acquired[stream] != null;
+    }
+
+    @Override
+    public void detect(int stream, YuvFrame frame, Bitmap upright, LandmarkFrame out,
+                       Executor executor, PoseFrameProcessor.Callback callback) {
+        long timestampNanos = frame.timestampNanos;
+        acquired[stream].process(InputImage.fromBitmap(upright, 0))
+                .addOnCompleteListener(executor, task -> {
+                    if (task.isSuccessful()) {
+                        copyLandmarks(task.getResult(), upright.getWidth(), upright.getHeight(),
+                                timestampNanos, out);
+                        callback.onDetected(null);
+                    } else {
+                        Exception error = task.getException();
+                        callback.onDetected(error != null ? error
+                                : new CancellationException("Detection cancelled"));
+                    }
+                });
+    }
+
+    @Override
+    public void release(int stream) {
+        PoseDetector detector = acquired[stream];
+        acquired[stream] = null;
+        if (detector != null) {
+            pool.release(detector);
+        }
+    }
+
+    @Override
+    public void clearStream(int stream) {
+        pool.clearStream(stream);
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * Copies the landmarks of an ML Kit pose into a frame. Missing landmarks get a
+     * likelihood of 0.
+     *
+     * @param pose           The detected pose.
+     * @param imageWidth     Width of the image the pose was detected on.
+     * @param imageHeight    Height of the image the pose was detected on.
+     * @param timestampNanos Sensor timestamp of the source frame.
+     * @param out            Receives the landmarks.
+     */
+    static void copyLandmarks(Pose pose, int imageWidth, int imageHeight, long timestampNanos,
+                              LandmarkFrame out) {
+        out.clear();
+        out.imageWidth = imageWidth;
+        out.imageHeight = imageHeight;
+        out.timestampNanos = timestampNanos;
+        for (PoseLandmark landmark : pose.getAllPoseLandmarks()) {
+            int type = landmark.getLandmarkType();
+            if (type >= 0 && type < LandmarkFrame.LANDMARK_COUNT) {
+                out.x[type] = landmark.getPosition3D().getX();
+                out.y[type] = landmark.getPosition3D().getY();
+                out.z[type] = landmark.getPosition3D().getZ();
+                out.likelihood[type] = landmark.getInFrameLikelihood();
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The pipeline configuration chosen for this device by {@link PerformanceProfiler}, together
+ * with the stage times it was chosen on.
+ *
+ * The profiler measures synthetic frames, which are not comparable to live ones, so drift
+ * is judged against the frame time of the live pipeline in the first session that ran with
+ * the profile, see {@link #withLiveFrameMs}.
+ *
+ * A profile belongs to one app version and one system build; after an update of either it
+ * is measured again. The file is a magic number and a format version followed by the
+ * fields, big-endian, and is replaced atomically.
+ */
+public class PerformanceProfile {
+
+    private static final int MAGIC = 0x47475050; // "GGPP"
+    // Version 1 had no live frame time
+    private static final int VERSION = 2;
+
+    private final long appVersion;
+    private final String deviceFingerprint;
+    private final long createdMillis;
+    private final boolean nativeKernels;
+    private final int analysisWidth;
+    private final int analysisHeight;
+    private final float convertMs;
+    private final float detectMs;
+    private final float drawMs;
+    private final float liveFrameMs;
+
+    /**
+     * @param appVersion        Version code of the app that measured the profile.
+     * @param deviceFingerprint System build the profile was measured on.
+     * @param createdMillis     Wall clock time of the measurement.
+     * @param nativeKernels     Whether the native frame kernels were faster than Java.
+     * @param analysisWidth     Chosen analysis resolution, in sensor orientation.
+     * @param analysisHeight    Chosen analysis resolution, in sensor orientation.
+     * @param convertMs         Median conversion and rotation time at that resolution.
+     * @param detectMs          Median detector latency at that resolution.
+     * @param drawMs            Median overlay drawing time at that resolution.
+     */
+    public PerformanceProfile(long appVersion, String deviceFingerprint, long createdMillis,
+                              boolean nativeKernels, int analysisWidth, int analysisHeight,
+                              float convertMs, float detectMs, float drawMs) {
+        this(appVersion, deviceFingerprint, createdMillis, nativeKernels, analysisWidth,
+                analysisHeight, convertMs, detectMs, drawMs, 0);
+    }
+
+    private PerformanceProfile(long appVersion, String deviceFingerprint, long createdMillis,
+                               boolean nativeKernels, int analysisWidth, int analysisHeight,
+                               float convertMs, float detectMs, float drawMs, float liveFrameMs) {
+        this.appVersion = appVersion;
+        this.deviceFingerprint = deviceFingerprint;
+        this.createdMillis = createdMillis;
+        this.nativeKernels = nativeKernels;
+        this.analysisWidth = analysisWidth;
+        this.analysisHeight = analysisHeight;
+        this.convertMs = convertMs;
+        this.detectMs = detectMs;
+        this.drawMs = drawMs;
+        this.liveFrameMs = liveFrameMs;
+    }
+
+    /**
+     * Reads a profile written by {@link #write}.
+     *
+     * @throws IOException If the file is missing, damaged or of another format version.
+     */
+    public static PerformanceProfile read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a performance profile: " + file);
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported profile version " + version);
+            }
+            return new PerformanceProfile(in.readLong(), in.readUTF(), in.readLong(),
+                    in.readBoolean(), in.readInt(), in.readInt(),
+                    in.readFloat(), in.readFloat(), in.readFloat(),
+                    version >= 2 ? in.readFloat() : 0);
+        }
+    }
+
+    /**
+     * Writes the profile to a temporary file and renames it over the target, so a crash
+     * leaves either the old or the new profile.
+     */
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(appVersion);
+            out.writeUTF(deviceFingerprint);
+            out.writeLong(createdMillis);
+            out.writeBoolean(nativeKernels);
+            out.writeInt(analysisWidth);
+            out.writeInt(analysisHeight);
+            out.writeFloat(convertMs);
+            out.writeFloat(detectMs);
+            out.writeFloat(drawMs);
+            out.writeFloat(liveFrameMs);
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file);
+        }
+    }
+
+    /**
+     * @return True if the profile was measured by this app version on this system build.
+     */
+    public boolean isValidFor(long appVersion, String deviceFingerprint) {
+        return this.appVersion == appVersion && this.deviceFingerprint.equals(deviceFingerprint);
+    }
+
+    /**
+     * @param liveFrameMs Median time a frame spent in conversion, detection and drawing in
+     *                    the live pipeline, in the first session with this profile.
+     * @return A copy of this profile that judges drift against that time.
+     */
+    public PerformanceProfile withLiveFrameMs(float liveFrameMs) {
+        return new PerformanceProfile(appVersion, deviceFingerprint, createdMillis, nativeKernels,
+                analysisWidth, analysisHeight, convertMs, detectMs, drawMs, liveFrameMs);
+    }
+
+    /**
+     * @return True once the live frame time is known, see {@link #withLiveFrameMs}.
+     */
+    public boolean hasLiveFrameMs() {
+        return liveFrameMs > 0;
+    }
+
+    /**
+     * @param observedFrameMs Median time a frame currently spends in conversion, detection
+     *                        and drawing in the live pipeline.
+     * @param tolerance       Allowed relative deviation, e.g. 0.5 for 50%.
+     * @return True if frames are much slower or much faster than in the first session with
+     *         this profile, e.g. because of thermal throttling or a changed workload. False
+     *         while that session's time is not known.
+     */
+    public boolean hasDrifted(double observedFrameMs, double tolerance) {
+        if (!hasLiveFrameMs()) {
+            return false;
+        }
+        return observedFrameMs > liveFrameMs * (1 + tolerance)
+                || observedFrameMs < liveFrameMs / (1 + tolerance);
+    }
+
+    public long getAppVersion() {
+        return appVersion;
+    }
+
+    public String getDeviceFingerprint() {
+        return deviceFingerprint;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public boolean isNativeKernels() {
+        return nativeKernels;
+    }
+
+    public int getAnalysisWidth() {
+        return analysisWidth;
+    }
+
+    public int getAnalysisHeight() {
+        return analysisHeight;
+    }
+
+    public float getConvertMs() {
+        return convertMs;
+    }
+
+    public float getDetectMs() {
+        return detectMs;
+    }
+
+    public float getDrawMs() {
+        return drawMs;
+    }
+
+    public float getLiveFrameMs() {
+        return liveFrameMs;
+    }
+
+    /**
+     * @return Expected time per frame from conversion to overlay.
+     */
+    public double getExpectedFrameMs() {
+        return convertMs + detectMs + drawMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "Profile v%d: %dx%d, %s kernels, convert=%.1fms detect=%.1fms draw=%.1fms live=%.1fms",
+                appVersion, analysisWidth, analysisHeight, nativeKernels ? "native" : "java",
+                convertMs, detectMs, drawMs, liveFrameMs);
+    }
+}
@@ -0,0 +1,187 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Benchmarks the pipeline stages on this device and picks the configuration to run with.
+ *
+ * For each candidate analysis resolution it times the YUV conversion with the native and
+ * the Java kernels, the detector and the overlay, taking the median of a few runs after a
+ * warm-up. The profile uses the faster conversion path and the largest resolution whose
+ * whole frame fits the frame budget, or the fastest resolution if none does. With the
+ * default settings a run takes a few seconds.
+ */
+public class PerformanceProfiler {
+
+    /** Candidate analysis resolutions in sensor orientation, smallest first. */
+    public static final int[][] DEFAULT_SIZES = {
+            {320, 240},
+            {640, 480},
+            {960, 720},
+            {1280, 960},
+    };
+
+    private static final int STAGE_CONVERT_NATIVE = 0;
+    private static final int STAGE_CONVERT_JAVA = 1;
+    private static final int STAGE_DETECT = 2;
+    private static final int STAGE_DRAW = 3;
+    private static final String[] STAGE_NAMES = {"convert-native", "convert-java", "detect", "draw"};
+
+    /**
+     * The pipeline stages being measured, each run once per call on synthetic input.
+     */
+    public interface Bench {
+        /**
+         * Converts and rotates one frame.
+         *
+         * @param nativeKernels True for the native kernels, false for the Java ones, whatever
+         *                      FrameKernels has enabled for the live pipeline.
+         */
+        void convert(int width, int height, boolean nativeKernels);
+
+        /** Runs the detector on one frame and waits for the result. */
+        void detect(int width, int height) throws Exception;
+
+        /** Draws the skeleton overlay onto one frame. */
+        void drawOverlay(int width, int height);
+    }
+
+    /** Time source, replaceable in tests. */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    /** Gets the stage times of every candidate resolution, e.g. to log them. */
+    public interface Listener {
+        /**
+         * Called on the profiling thread once a resolution is measured.
+         *
+         * @param stages Timed runs per stage: convert-native, convert-java, detect, draw.
+         *               Only valid during the call.
+         */
+        void onSizeMeasured(int width, int height, StageTimer stages);
+    }
+
+    private final Bench bench;
+    private final int[][] sizes;
+    private final double frameBudgetMs;
+    private final int warmupRuns;
+    private final int timedRuns;
+    private final Clock clock;
+    private Listener listener;
+
+    /**
+     * @param bench         The stages to measure.
+     * @param sizes         Candidate resolutions as {width, height}, smallest first.
+     * @param frameBudgetMs Time a frame may take, e.g. 1000 / 15 for 15 fps.
+     * @param warmupRuns    Untimed runs per stage and size.
+     * @param timedRuns     Timed runs per stage and size.
+     * @param clock         E.g. System::nanoTime.
+     */
+    public PerformanceProfiler(Bench bench, int[][] sizes, double frameBudgetMs,
+                               int warmupRuns, int timedRuns, Clock clock) {
+        if (sizes.length == 0 || timedRuns <= 0) {
+            throw new IllegalArgumentException("Need at least one size and one timed run");
+        }
+        this.bench = bench;
+        this.sizes = sizes;
+        this.frameBudgetMs = frameBudgetMs;
+        this.warmupRuns = warmupRuns;
+        this.timedRuns = timedRuns;
+        this.clock = clock;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Measures every candidate. Blocks for the whole benchmark, so never call it on the main
+     * thread. The native kernels are measured whenever the library is loaded, even if an
+     * earlier profile turned them off; applying the chosen path is up to the caller.
+     *
+     * @param appVersion        Stored in the profile.
+     * @param deviceFingerprint Stored in the profile.
+     * @param nowMillis         Stored in the profile.
+     * @throws Exception If the detector fails.
+     */
+    public PerformanceProfile run(long appVersion, String deviceFingerprint, long nowMillis)
+            throws Exception {
+        boolean nativeAvailable = FrameKernels.isLibraryLoaded();
+        double[][] medians = new double[sizes.length][STAGE_NAMES.length];
+        for (int i = 0; i < sizes.length; i++) {
+            measure(sizes[i][0], sizes[i][1], nativeAvailable, medians[i]);
+        }
+
+        // The faster conversion path over all sizes
+        double nativeTotal = 0;
+        double javaTotal = 0;
+        for (double[] median : medians) {
+            nativeTotal += median[STAGE_CONVERT_NATIVE];
+            javaTotal += median[STAGE_CONVERT_JAVA];
+        }
+        boolean nativeKernels = nativeAvailable && nativeTotal <= javaTotal;
+        int convertStage = nativeKernels ? STAGE_CONVERT_NATIVE : STAGE_CONVERT_JAVA;
+
+        int chosen = -1;
+        int fastest = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            double frameMs = frameMs(medians[i], convertStage);
+            if (frameMs <= frameBudgetMs
+                    && (chosen < 0 || pixels(sizes[i]) > pixels(sizes[chosen]))) {
+                chosen = i;
+            }
+            if (frameMs < frameMs(medians[fastest], convertStage)) {
+                fastest = i;
+            }
+        }
+        if (chosen < 0) {
+            chosen = fastest;
+        }
+        double[] median = medians[chosen];
+        return new PerformanceProfile(appVersion, deviceFingerprint, nowMillis, nativeKernels,
+                sizes[chosen][0], sizes[chosen][1], (float) median[convertStage],
+                (float) median[STAGE_DETECT], (float) median[STAGE_DRAW]);
+    }
+
+    private void measure(int width, int height, boolean nativeAvailable, double[] medians)
+            throws Exception {
+        StageTimer timer = new StageTimer(STAGE_NAMES, timedRuns);
+        for (int run = -warmupRuns; run < timedRuns; run++) {
+            if (nativeAvailable) {
+                time(timer, run, STAGE_CONVERT_NATIVE, () -> bench.convert(width, height, true));
+            }
+            time(timer, run, STAGE_CONVERT_JAVA, () -> bench.convert(width, height, false));
+
+            long start = clock.nanoTime();
+            bench.detect(width, height);
+            if (run >= 0) {
+                timer.recordDuration(STAGE_DETECT, clock.nanoTime() - start);
+            }
+
+            time(timer, run, STAGE_DRAW, () -> bench.drawOverlay(width, height));
+        }
+        for (int stage = 0; stage < STAGE_NAMES.length; stage++) {
+            medians[stage] = timer.getSampleCount(stage) > 0
+                    ? timer.getPercentileMs(stage, 50)
+                    : Double.MAX_VALUE;
+        }
+        if (listener != null) {
+            listener.onSizeMeasured(width, height, timer);
+        }
+    }
+
+    private void time(StageTimer timer, int run, int stage, Runnable task) {
+        long start = clock.nanoTime();
+        task.run();
+        if (run >= 0) {
+            timer.recordDuration(stage, clock.nanoTime() - start);
+        }
+    }
+
+    private static double frameMs(double[] median, int convertStage) {
+        return median[convertStage] + median[STAGE_DETECT] + median[STAGE_DRAW];
+    }
+
+    private static int pixels(int[] size) {
+        return size[0] * size[1];
+    }
+}
@@ -0,0 +1,536 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.core.content.ContextCompat;
+
+import com.google.mlkit.vision.pose.PoseDetection;
+import com.google.mlkit.vision.pose.PoseDetector;
+import com.google.mlkit.vision.pose.defaults.PoseDetectorOptions;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything of the live pose pipeline that is not the camera: the {@link PoseFrameProcessor}
+ * with the detector and detail cascade the intent asks for, the device's performance profile,
+ * workout history, landmark streaming to a coaching hub, and frame recording and replay.
+ *
+ * Created, started, stopped and closed on the main thread. The {@link CameraController}
+ * feeds it camera frames; during a replay it feeds itself from the recording.
+ */
+public class PipelineController {
+
+    private static final String TAG = "PipelineController";
+
+    /**
+     * Notified when a profiler run is done, on the main thread.
+     */
+    public interface Listener {
+        /**
+         * The profile decides the analysis resolution, so the camera is bound once it is
+         * there. Also called when profiling failed and the previous configuration stays.
+         */
+        void onProfileReady();
+    }
+
+    private static final int STREAM_COUNT = 2;
+    private static final int LATENCY_SAMPLES = 512;
+
+    // Idle mode: about two seconds without a person at 30 fps, then check every third frame for motion
+    private static final int IDLE_AFTER_EMPTY_FRAMES = 60;
+    private static final float MIN_PRESENCE_LIKELIHOOD = 0.5f;
+    private static final int IDLE_FRAME_STRIDE = 3;
+    private static final float IDLE_MOTION_FRACTION = 0.02f;
+
+    // Landmark filter: hysteresis between 0.5 and 0.3, hidden joints follow their motion for
+    // about 150 ms at 30 fps before the symmetry prior takes over
+    private static final float FILTER_ENTER_LIKELIHOOD = 0.5f;
+    private static final float FILTER_EXIT_LIKELIHOOD = 0.3f;
+    private static final int FILTER_HOLD_FRAMES = 5;
+    private static final float FILTER_VELOCITY_DAMPING = 0.7f;
+    private static final float FILTER_FILLED_LIKELIHOOD = 0.2f;
+
+    // Intent extras for frame recording and replay, e.g.
+    // adb shell am start -n <package>/.MainActivity --ez record_frames true
+    // adb shell am start -n <package>/.MainActivity --es replay_file /sdcard/.../frames.yuv
+    public static final String EXTRA_RECORD_FRAMES = "record_frames";
+    public static final String EXTRA_REPLAY_FILE = "replay_file";
+    public static final String EXTRA_REPLAY_MAX_SPEED = "replay_max_speed";
+
+    // Live landmark streaming to a coaching hub, e.g. --es hub_address 192.168.1.20:7330 --ei station_id 3
+    public static final String EXTRA_HUB_ADDRESS = "hub_address";
+    public static final String EXTRA_STATION_ID = "station_id";
+    private static final int DEFAULT_HUB_PORT = 7330;
+    private static final int HUB_BATCH_FRAMES = 5;
+    private static final int HUB_QUEUE_PACKETS = 8;
+
+    // TensorFlow Lite pose backend instead of ML Kit, e.g.
+    // --es pose_backend tflite --es tflite_variant fp16 --ei tflite_threads 4 --ez tflite_xnnpack false
+    public static final String EXTRA_POSE_BACKEND = "pose_backend";
+    public static final String EXTRA_TFLITE_VARIANT = "tflite_variant";
+    public static final String EXTRA_TFLITE_THREADS = "tflite_threads";
+    public static final String EXTRA_TFLITE_XNNPACK = "tflite_xnnpack";
+    public static final String POSE_BACKEND_TFLITE = "tflite";
+    private static final int DEFAULT_TFLITE_THREADS = 2;
+
+    // Hand and face models behind the pose, for the joint groups the exercise rules read, e.g.
+    // --es detail_regions hands,face
+    public static final String EXTRA_DETAIL_REGIONS = "detail_regions";
+    private static final String HAND_MODEL_ASSET = "hand_landmark.tflite";
+    private static final String FACE_MODEL_ASSET = "face_landmark.tflite";
+    // Five runs per second at most, results followed for a little longer than two runs
+    private static final long DETAIL_INTERVAL_MS = 200;
+    private static final long DETAIL_MAX_AGE_MS = 500;
+
+    // Per-device pipeline configuration, measured on first run and after updates
+    @VisibleForTesting
+    static final String PROFILE_FILE = "performance.profile";
+
+    private final Context context;
+    private final Intent intent;
+    private final Listener listener;
+
+    private final BufferPool bufferPool = new BufferPool(BuildConfig.DEBUG);
+    private final AnalysisScheduler scheduler = AnalysisScheduler.createDefault();
+
+    // How far the overlay lags the camera, fed by the preview capture callback and the overlay
+    private final LatencyProbe latencyProbe = new LatencyProbe(System::nanoTime,
+            SystemClock::elapsedRealtimeNanos, LATENCY_SAMPLES);
+
+    // Stream 0 follows the chosen lens and drives the overlay, stream 1 is the second camera in dual mode
+    private final PoseFrameProcessor frameProcessor;
+    // Null unless detail regions were asked for and a model loaded
+    private final DetailCascade detailCascade;
+
+    // Saves per-rep summaries on the persistence lane
+    private final WorkoutHistory workoutHistory;
+
+    // Measures the device on the profiling lane; the camera waits for the first profile
+    private final ProfileController profileController;
+
+    // Created on the main thread, fed from the inference lane
+    private LandmarkStreamer landmarkStreamer;
+
+    // Only used on the capture lane
+    private FrameRecording.Writer frameRecorder;
+
+    private final String replayFile;
+    private Thread replayThread;
+
+    // Main thread only
+    private boolean closed = false;
+
+    /**
+     * Builds the pipeline and reads the stored profile, or starts the profiler if there is
+     * none that applies.
+     *
+     * @param context  Context for the assets and files.
+     * @param intent   Intent whose extras configure the pipeline.
+     * @param overlay  View the annotated frames are shown in.
+     * @param listener Notified when a profiler run is done.
+     */
+    public PipelineController(Context context, Intent intent, Display overlay, Listener listener) {
+        this.context = context;
+        this.intent = intent;
+        this.listener = listener;
+
+        PoseFrameProcessor.Builder processorBuilder = new PoseFrameProcessor.Builder(scheduler, bufferPool)
+                .addStream("primary camera", newPresenceMonitor(), newLandmarkFilter())
+                .addStream("second camera", newPresenceMonitor(), newLandmarkFilter())
+                .setDetector(newDetector())
+                .setOverlay(new SkeletonRenderer(SkeletonTopology.BODY), overlay::setBitmap)
+                .setCaptureListener((stream, frame) -> {
+                    if (frameRecorder != null && stream == 0) {
+                        recordFrame(frame);
+                    }
+                });
+        detailCascade = newDetailCascade();
+        if (detailCascade != null) {
+            processorBuilder.addLandmarkStage(detailCascade);
+        }
+        frameProcessor = processorBuilder.build();
+        overlay.setBitmapRecycler(frameProcessor::recycleOverlay);
+        overlay.setOnFrameDrawnListener(latencyProbe::onOverlayFrame);
+        frameProcessor.addLandmarkListener(this::onLandmarks);
+
+        // Show the plain preview while nobody is in front of the camera. Called on the
+        // inference lane, behind the last overlay frame
+        frameProcessor.getStream(0).getPresenceMonitor().setListener(state -> {
+            if (state == PresenceMonitor.STATE_IDLE) {
+                overlay.setBitmap(null);
+            }
+        });
+
+        workoutHistory = new WorkoutHistory(new File(context.getFilesDir(), "history"),
+                scheduler.getExecutor(AnalysisScheduler.LANE_PERSISTENCE));
+        workoutHistory.setErrorListener(e -> Log.w(TAG, "Workout history error", e));
+
+        String hubAddress = intent.getStringExtra(EXTRA_HUB_ADDRESS);
+        if (hubAddress != null) {
+            startStreaming(hubAddress, intent.getIntExtra(EXTRA_STATION_ID, 0));
+        }
+
+        replayFile = intent.getStringExtra(EXTRA_REPLAY_FILE);
+        if (replayFile != null) {
+            startReplay(new File(replayFile), intent.getBooleanExtra(EXTRA_REPLAY_MAX_SPEED, false));
+        } else if (intent.getBooleanExtra(EXTRA_RECORD_FRAMES, false)) {
+            startRecording();
+        }
+
+        profileController = new ProfileController(new File(context.getFilesDir(), PROFILE_FILE),
+                BuildConfig.VERSION_CODE, Build.FINGERPRINT,
+                () -> new DeviceBench(new AnalysisStream(-1, "profiler", bufferPool,
+                        newPresenceMonitor(), newLandmarkFilter())),
+                scheduler.getExecutor(AnalysisScheduler.LANE_PROFILING),
+                ContextCompat.getMainExecutor(context), this::onProfileReady);
+        if (profileController.load()) {
+            applyPerformanceProfile(profileController.getProfile());
+        }
+    }
+
+    public PoseFrameProcessor getFrameProcessor() {
+        return frameProcessor;
+    }
+
+    public AnalysisScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public LatencyProbe getLatencyProbe() {
+        return latencyProbe;
+    }
+
+    /**
+     * @return The current profile, or null before the first one is there.
+     */
+    public PerformanceProfile getProfile() {
+        return profileController.getProfile();
+    }
+
+    /**
+     * @return True while the first profiler run is going; the camera waits for it.
+     */
+    public boolean isWaitingForProfile() {
+        return profileController.isWaitingForProfile();
+    }
+
+    /**
+     * @return True if frames come from a recording instead of the camera.
+     */
+    public boolean isReplaying() {
+        return replayFile != null;
+    }
+
+    /**
+     * Starts processing frames, and has the device measured again if the last session
+     * drifted from the profile. Call once the app is in front.
+     */
+    public void start() {
+        frameProcessor.start();
+        profileController.revalidateIfDrifted();
+    }
+
+    /**
+     * Stops processing frames. Results still queued for the overlay are dropped, frames in
+     * flight are still released.
+     *
+     * @param cameraHandedOver True if desk posture mode takes the camera now. The session is
+     *                         then not judged for drift, as nothing may compete with the
+     *                         posture bursts for the camera or the CPU.
+     */
+    public void stop(boolean cameraHandedOver) {
+        frameProcessor.stop();
+        if (!cameraHandedOver && !isReplaying()) {
+            profileController.checkDrift(frameProcessor.getStream(0).getMetrics().getStageTimer());
+        }
+    }
+
+    /**
+     * Tears the pipeline down in order: the producers first, i.e. replay and streaming, then
+     * the recording on the capture lane and the processor, then the history, and finally
+     * the scheduler, whose queued work still runs, e.g. closing the recording and the history.
+     */
+    public void close() {
+        closed = true;
+        if (replayThread != null) {
+            replayThread.interrupt();
+        }
+        if (landmarkStreamer != null) {
+            Log.d(TAG, landmarkStreamer.toString());
+            try {
+                landmarkStreamer.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not close landmark streamer", e);
+            }
+        }
+        scheduler.getExecutor(AnalysisScheduler.LANE_CAPTURE).execute(this::stopRecording);
+        frameProcessor.close();
+        Log.d(TAG, "Workout history: " + workoutHistory);
+        workoutHistory.close();
+        scheduler.shutdown();
+        Log.d(TAG, "Analysis scheduler shut down");
+        logMetrics();
+        bufferPool.trim();
+    }
+
+    public void logMetrics() {
+        Log.d(TAG, frameProcessor.toString());
+        if (detailCascade != null) {
+            Log.d(TAG, detailCascade.toString());
+        }
+        Log.d(TAG, bufferPool.toString());
+        Log.d(TAG, scheduler.toString());
+        Log.d(TAG, latencyProbe.toString());
+    }
+
+    private static PresenceMonitor newPresenceMonitor() {
+        return new PresenceMonitor(IDLE_AFTER_EMPTY_FRAMES, MIN_PRESENCE_LIKELIHOOD,
+                IDLE_FRAME_STRIDE, IDLE_MOTION_FRACTION);
+    }
+
+    private static LandmarkFilter newLandmarkFilter() {
+        return new LandmarkFilter(FILTER_ENTER_LIKELIHOOD, FILTER_EXIT_LIKELIHOOD,
+                FILTER_HOLD_FRAMES, FILTER_VELOCITY_DAMPING, FILTER_FILLED_LIKELIHOOD);
+    }
+
+    /**
+     * The detection stage: ML Kit, or TensorFlow Lite when the intent asks for it and the
+     * model loads.
+     */
+    private PoseFrameProcessor.Detector newDetector() {
+        if (POSE_BACKEND_TFLITE.equals(intent.getStringExtra(EXTRA_POSE_BACKEND))) {
+            PoseFrameProcessor.Detector detector = newTfliteDetector();
+            if (detector != null) {
+                return detector;
+            }
+        }
+        // STREAM_MODE for real-time detection, one detector per stream
+        PoseDetectorOptions options =
+                new PoseDetectorOptions.Builder()
+                        .setDetectorMode(PoseDetectorOptions.STREAM_MODE)
+                        .build();
+        List<PoseDetector> detectors = new ArrayList<>();
+        for (int i = 0; i < STREAM_COUNT; i++) {
+            detectors.add(PoseDetection.getClient(options));
+        }
+        return new MlKitDetectorStage(detectors, STREAM_COUNT);
+    }
+
+    private PoseFrameProcessor.Detector newTfliteDetector() {
+        String variant = intent.getStringExtra(EXTRA_TFLITE_VARIANT);
+        String assetName = TflitePoseModel.getAssetName(
+                variant != null ? variant : TflitePoseModel.VARIANT_INT8);
+        int threads = intent.getIntExtra(EXTRA_TFLITE_THREADS, DEFAULT_TFLITE_THREADS);
+        boolean useXnnpack = intent.getBooleanExtra(EXTRA_TFLITE_XNNPACK, true);
+        TflitePoseBackend[] backends = new TflitePoseBackend[STREAM_COUNT];
+        try {
+            ByteBuffer model = TflitePoseModel.mapAsset(context, assetName);
+            for (int i = 0; i < backends.length; i++) {
+                // Float inputs are scaled to [0, 1]
+                backends[i] = new TflitePoseBackend(
+                        new TflitePoseModel(model, PoseModel.OUTPUT_MOVENET, threads, useXnnpack),
+                        0f, 255f);
+            }
+            Log.d(TAG, "Using TensorFlow Lite pose model " + assetName + " with " + threads + " threads");
+            return new TfliteDetectorStage(backends);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not load " + assetName + ", using ML Kit", e);
+            for (TflitePoseBackend backend : backends) {
+                if (backend != null) {
+                    backend.close();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The hand and face stages for the joint groups named in the intent, which stand in for
+     * the joints the active exercise's rules read until exercises carry their own rules.
+     * Regions whose model is missing are left out.
+     *
+     * @return The cascade, or null if no region is wanted or no model loaded.
+     */
+    private DetailCascade newDetailCascade() {
+        String wanted = intent.getStringExtra(EXTRA_DETAIL_REGIONS);
+        if (wanted == null) {
+            return null;
+        }
+        long exerciseJoints;
+        try {
+            exerciseJoints = DetailCascade.parseJoints(wanted);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Ignoring detail regions " + wanted, e);
+            return null;
+        }
+        int regions = DetailCascade.regionsFor(exerciseJoints);
+        int handRegions = DetailStage.bit(DetailStage.REGION_LEFT_HAND)
+                | DetailStage.bit(DetailStage.REGION_RIGHT_HAND);
+        List<DetailStage> stages = new ArrayList<>();
+        if ((regions & handRegions) != 0) {
+            DetailStage hands = newDetailStage(HAND_MODEL_ASSET,
+                    new int[]{DetailStage.REGION_LEFT_HAND, DetailStage.REGION_RIGHT_HAND});
+            if (hands != null) {
+                stages.add(hands);
+            }
+        }
+        if ((regions & DetailStage.bit(DetailStage.REGION_FACE)) != 0) {
+            DetailStage face = newDetailStage(FACE_MODEL_ASSET, new int[]{DetailStage.REGION_FACE});
+            if (face != null) {
+                stages.add(face);
+            }
+        }
+        if (stages.isEmpty()) {
+            return null;
+        }
+        DetailCascade cascade = new DetailCascade(stages,
+                scheduler.getExecutor(AnalysisScheduler.LANE_DETAIL), 0,
+                DETAIL_INTERVAL_MS, DETAIL_MAX_AGE_MS);
+        cascade.setRequiredRegions(DetailCascade.regionsFor(exerciseJoints));
+        return cascade;
+    }
+
+    private DetailStage newDetailStage(String assetName, int[] regions) {
+        TflitePoseModel model = null;
+        try {
+            // One thread, the pose detector keeps the others busy; inputs scaled to [0, 1]
+            model = new TflitePoseModel(TflitePoseModel.mapAsset(context, assetName),
+                    PoseModel.OUTPUT_KEYPOINTS_XYZ, 1, true);
+            return new DetailStage(model, regions, 0f, 255f);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not load " + assetName + ", skipping its regions", e);
+            if (model != null) {
+                model.close();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Called on the inference lane with the filtered landmarks of every stream. The first
+     * stream is streamed to the coaching hub.
+     */
+    private void onLandmarks(int stream, LandmarkFrame frame, long usableMask) {
+        if (landmarkStreamer != null && stream == 0) {
+            landmarkStreamer.offer(frame);
+        }
+    }
+
+    private void applyPerformanceProfile(PerformanceProfile profile) {
+        FrameKernels.setNativeEnabled(profile.isNativeKernels());
+        Log.d(TAG, profile.toString());
+    }
+
+    private void onProfileReady(PerformanceProfile profile) {
+        if (closed) {
+            return;
+        }
+        if (profile != null) {
+            applyPerformanceProfile(profile);
+            // Drift is judged on frames processed with the new profile only
+            frameProcessor.getStream(0).getMetrics().getStageTimer().reset();
+        }
+        listener.onProfileReady();
+    }
+
+    /**
+     * Starts writing the frames of the first stream to a recording in the app's files dir.
+     */
+    private void startRecording() {
+        File file = new File(context.getExternalFilesDir(null), "frames-" + System.currentTimeMillis() + ".yuv");
+        scheduler.getExecutor(AnalysisScheduler.LANE_CAPTURE).execute(() -> {
+            try {
+                frameRecorder = new FrameRecording.Writer(file);
+                Log.d(TAG, "Recording frames to " + file);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not start frame recording", e);
+            }
+        });
+    }
+
+    private void recordFrame(YuvFrame frame) {
+        try {
+            frameRecorder.write(frame);
+        } catch (IOException e) {
+            Log.e(TAG, "Frame recording failed, stopping", e);
+            stopRecording();
+        }
+    }
+
+    private void stopRecording() {
+        if (frameRecorder == null) {
+            return;
+        }
+        try {
+            frameRecorder.close();
+            Log.d(TAG, "Recorded " + frameRecorder.getFrameCount() + " frames");
+        } catch (IOException e) {
+            Log.e(TAG, "Could not close frame recording", e);
+        }
+        frameRecorder = null;
+    }
+
+    /**
+     * Starts sending the landmarks of the first stream to a coaching hub.
+     *
+     * @param hubAddress host or host:port of the hub.
+     * @param stationId  Id the hub shows this device under.
+     */
+    private void startStreaming(String hubAddress, int stationId) {
+        int colon = hubAddress.lastIndexOf(':');
+        String host = colon < 0 ? hubAddress : hubAddress.substring(0, colon);
+        int port = DEFAULT_HUB_PORT;
+        if (colon >= 0) {
+            try {
+                port = Integer.parseInt(hubAddress.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                port = -1;
+            }
+        }
+        if (host.isEmpty() || port < 1 || port > 65535) {
+            Log.e(TAG, "Not a hub address, not streaming: " + hubAddress);
+            return;
+        }
+        try {
+            // Unresolved, so no DNS lookup happens on the main thread
+            landmarkStreamer = new LandmarkStreamer(InetSocketAddress.createUnresolved(host, port),
+                    stationId, HUB_BATCH_FRAMES, HUB_QUEUE_PACKETS);
+            Log.d(TAG, "Streaming landmarks to " + hubAddress + " as station " + stationId);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not start landmark streaming", e);
+        }
+    }
+
+    /**
+     * Feeds a recording into the first stream instead of the camera and logs the report.
+     *
+     * @param file     The recording.
+     * @param maxSpeed True to replay as fast as frames are processed.
+     */
+    private void startReplay(File file, boolean maxSpeed) {
+        replayThread = new Thread(() -> {
+            AnalysisStream stream = frameProcessor.getStream(0);
+            try (FrameRecording.Reader reader = new FrameRecording.Reader(file)) {
+                ReplayHarness harness = new ReplayHarness(reader,
+                        (frame, done) -> frameProcessor.processFrame(0, frame, done));
+                ReplayReport report = harness.run(maxSpeed, stream.getMetrics().getStageTimer());
+                Log.i(TAG, "Replay of " + file + ":\n" + report + stream.getMetrics());
+            } catch (IOException e) {
+                Log.e(TAG, "Replay failed", e);
+            } catch (InterruptedException e) {
+                Log.d(TAG, "Replay interrupted");
+            }
+        }, "FrameReplay");
+        replayThread.start();
+    }
+}
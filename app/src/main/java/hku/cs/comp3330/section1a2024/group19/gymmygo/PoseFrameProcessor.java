@@ -0,0 +1,539 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.media.Image;
+import android.util.Log;
+
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageAnalysis;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * The pose pipeline without any UI: YUV frames go in, filtered landmark frames and an
+ * annotated overlay bitmap come out.
+ *
+ * Each frame of a stream passes through the same stages: the presence check, conversion to
+ * an upright bitmap ({@link FrameConverter}), detection ({@link Detector}), the stream's
+ * presence monitor and landmark filter, optional refinement ({@link LandmarkStage}), and
+ * for the overlay stream drawing ({@link OverlayRenderer}). Converter, detector, refining
+ * stages and renderer are pluggable through the {@link Builder}.
+ *
+ * Threading contract:
+ * <ul>
+ *     <li>Frames are handed in on the capture lane of the scheduler, via {@link #newAnalyzer}
+ *     or {@link #processFrame}. A stream works on one frame at a time; frames that arrive
+ *     while it is busy are dropped.</li>
+ *     <li>Listeners are called on the inference lane, in frame order. The landmark frames
+ *     they receive are reused for the next frame, so copy what must outlive the call.</li>
+ *     <li>{@link #start()}, {@link #stop()} and {@link #close()} are called on the main
+ *     thread. After stop, queued results are dropped but frames in flight are still
+ *     released.</li>
+ *     <li>Every frame is released and its stream freed for the next one exactly once, also
+ *     when conversion or detection fails or throws.</li>
+ * </ul>
+ */
+public class PoseFrameProcessor implements Closeable {
+
+    private static final String TAG = "PoseFrameProcessor";
+
+    /** Stream whose frames are drawn for the overlay. */
+    public static final int OVERLAY_STREAM = 0;
+
+    /**
+     * Turns a YUV frame into an upright bitmap.
+     */
+    public interface FrameConverter {
+        /**
+         * Called on the capture lane. Records STAGE_CONVERT and STAGE_ROTATE of the stream.
+         * May throw a RuntimeException, the frame then counts as failed.
+         *
+         * @return The upright bitmap, held by the stream's lease, or null on failure.
+         */
+        Bitmap convert(YuvFrame frame, AnalysisStream stream);
+    }
+
+    /**
+     * Finds the landmarks of one frame, synchronously or asynchronously.
+     */
+    public interface Detector extends Closeable {
+
+        /**
+         * @return True if the detector runs on the bitmap. If not, streams without an
+         *         overlay skip the conversion.
+         */
+        boolean usesBitmap();
+
+        /**
+         * Reserves the detector for the next frame of a stream. Called on the capture lane
+         * before the frame is converted.
+         *
+         * @return False to drop the frame.
+         */
+        boolean tryAcquire(int stream);
+
+        /**
+         * Detects the landmarks of a frame. Called once after every successful
+         * {@link #tryAcquire}.
+         *
+         * @param stream   The stream.
+         * @param frame    The frame, valid until the callback has run.
+         * @param upright  The converted frame, or null if {@link #usesBitmap()} is false and
+         *                 the stream has no overlay.
+         * @param out      Receives the landmarks in pixels of the upright frame.
+         * @param executor Executor the callback must be run on.
+         * @param callback Run exactly once, unless this call throws; then it must not run.
+         */
+        void detect(int stream, YuvFrame frame, Bitmap upright, LandmarkFrame out,
+                    Executor executor, Callback callback);
+
+        /**
+         * Ends the reservation of {@link #tryAcquire}. Called on the inference lane.
+         */
+        void release(int stream);
+
+        /**
+         * Forgets what the detector knows about a stream, e.g. when its camera is unbound.
+         */
+        void clearStream(int stream);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Result of {@link Detector#detect}.
+     */
+    public interface Callback {
+        /**
+         * @param error Null if the landmarks were written.
+         */
+        void onDetected(Exception error);
+    }
+
+    /**
+     * Refines the filtered landmarks of a frame, e.g. with a finer model on part of the body.
+     */
+    public interface LandmarkStage extends Closeable {
+        /**
+         * Called on the inference lane, in order after the filter and before drawing.
+         *
+         * @param stream     The stream the frame came from.
+         * @param frame      The camera frame, only valid during the call.
+         * @param landmarks  Filtered landmarks, may be changed in place.
+         * @param usableMask Joints with a position.
+         * @return The usable mask, with joints the stage placed added.
+         */
+        long process(int stream, YuvFrame frame, LandmarkFrame landmarks, long usableMask);
+
+        /**
+         * Called on the capture lane, possibly after the scheduler has shut down. Work the
+         * stage runs on other threads may still be in progress and must not lose its model.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Draws landmarks onto the overlay bitmap.
+     */
+    public interface OverlayRenderer {
+        void draw(Canvas canvas, LandmarkFrame frame);
+    }
+
+    /**
+     * Receives the annotated overlay bitmaps.
+     */
+    public interface OverlayListener {
+        /**
+         * @param bitmap         The annotated frame. It now belongs to the listener, which
+         *                       hands it back through {@link #recycleOverlay} when done.
+         * @param timestampNanos Sensor timestamp of the frame.
+         */
+        void onOverlayFrame(Bitmap bitmap, long timestampNanos);
+    }
+
+    /**
+     * Receives the filtered landmarks of every processed frame.
+     */
+    public interface LandmarkListener {
+        /**
+         * @param stream     The stream the frame came from.
+         * @param frame      Filtered landmarks, reused for the next frame of the stream.
+         * @param usableMask Joints that are visible or filled in, see {@link LandmarkFilter},
+         *                   or placed by a {@link LandmarkStage}.
+         */
+        void onLandmarks(int stream, LandmarkFrame frame, long usableMask);
+    }
+
+    /**
+     * Sees every camera frame before it is processed, e.g. to record it.
+     */
+    public interface CaptureListener {
+        /**
+         * Called on the capture lane. The frame is only valid during the call.
+         */
+        void onCapture(int stream, YuvFrame frame);
+    }
+
+    /**
+     * Assembles a processor. Streams are numbered in the order they are added.
+     */
+    public static class Builder {
+
+        private final AnalysisScheduler scheduler;
+        private final BufferPool bufferPool;
+        private final List<AnalysisStream> streams = new ArrayList<>();
+        private final List<LandmarkStage> landmarkStages = new ArrayList<>();
+        private Detector detector;
+        private FrameConverter converter;
+        private OverlayRenderer overlayRenderer;
+        private OverlayListener overlayListener;
+        private CaptureListener captureListener;
+
+        /**
+         * @param scheduler  Lanes the processor runs on, owned by the caller.
+         * @param bufferPool Pool the frames borrow their buffers from.
+         */
+        public Builder(AnalysisScheduler scheduler, BufferPool bufferPool) {
+            this.scheduler = scheduler;
+            this.bufferPool = bufferPool;
+        }
+
+        public Builder addStream(String name, PresenceMonitor presenceMonitor,
+                                 LandmarkFilter landmarkFilter) {
+            streams.add(new AnalysisStream(streams.size(), name, bufferPool, presenceMonitor,
+                    landmarkFilter));
+            return this;
+        }
+
+        /**
+         * Required. The processor takes ownership of the detector.
+         */
+        public Builder setDetector(Detector detector) {
+            this.detector = detector;
+            return this;
+        }
+
+        /**
+         * Defaults to a {@link BitmapFrameConverter}.
+         */
+        public Builder setConverter(FrameConverter converter) {
+            this.converter = converter;
+            return this;
+        }
+
+        /**
+         * Appends a refining stage. The processor takes ownership of it.
+         */
+        public Builder addLandmarkStage(LandmarkStage stage) {
+            landmarkStages.add(stage);
+            return this;
+        }
+
+        /**
+         * Draws the frames of {@link #OVERLAY_STREAM} and hands them to the listener.
+         * Without an overlay nothing is drawn.
+         */
+        public Builder setOverlay(OverlayRenderer renderer, OverlayListener listener) {
+            this.overlayRenderer = renderer;
+            this.overlayListener = listener;
+            return this;
+        }
+
+        public Builder setCaptureListener(CaptureListener listener) {
+            this.captureListener = listener;
+            return this;
+        }
+
+        public PoseFrameProcessor build() {
+            if (streams.isEmpty()) {
+                throw new IllegalStateException("A processor needs at least one stream");
+            }
+            if (detector == null) {
+                throw new IllegalStateException("A processor needs a detector");
+            }
+            return new PoseFrameProcessor(this);
+        }
+    }
+
+    private final AnalysisScheduler scheduler;
+    private final BufferPool bufferPool;
+    private final AnalysisStream[] streams;
+    private final Detector detector;
+    private final FrameConverter converter;
+    private final LandmarkStage[] landmarkStages;
+    private final OverlayRenderer overlayRenderer;
+    private final OverlayListener overlayListener;
+    private final CaptureListener captureListener;
+    private final List<LandmarkListener> landmarkListeners = new CopyOnWriteArrayList<>();
+    private volatile AnalysisScheduler.Scope scope;
+
+    // Only used on the inference lane, except that a synchronous detector writes the raw
+    // frame on the capture lane before handing it over
+    private final LandmarkFrame[] rawFrames;
+    private final LandmarkFrame[] filteredFrames;
+    private final Canvas overlayCanvas = new Canvas();
+
+    private PoseFrameProcessor(Builder builder) {
+        scheduler = builder.scheduler;
+        bufferPool = builder.bufferPool;
+        streams = builder.streams.toArray(new AnalysisStream[0]);
+        detector = builder.detector;
+        converter = builder.converter != null ? builder.converter : new BitmapFrameConverter();
+        landmarkStages = builder.landmarkStages.toArray(new LandmarkStage[0]);
+        overlayRenderer = builder.overlayRenderer;
+        overlayListener = builder.overlayListener;
+        captureListener = builder.captureListener;
+        rawFrames = new LandmarkFrame[streams.length];
+        filteredFrames = new LandmarkFrame[streams.length];
+        for (int i = 0; i < streams.length; i++) {
+            rawFrames[i] = new LandmarkFrame();
+            filteredFrames[i] = new LandmarkFrame();
+        }
+        scope = scheduler.newScope();
+    }
+
+    public int getStreamCount() {
+        return streams.length;
+    }
+
+    public AnalysisStream getStream(int stream) {
+        return streams[stream];
+    }
+
+    public void addLandmarkListener(LandmarkListener listener) {
+        landmarkListeners.add(listener);
+    }
+
+    public void removeLandmarkListener(LandmarkListener listener) {
+        landmarkListeners.remove(listener);
+    }
+
+    /**
+     * Accepts frames again after {@link #stop()}.
+     */
+    public void start() {
+        if (!scope.isActive()) {
+            scope = scheduler.newScope();
+        }
+    }
+
+    /**
+     * Drops new frames and queued results until {@link #start()}.
+     */
+    public void stop() {
+        scope.cancel();
+    }
+
+    /**
+     * Forgets per-stream detector state, e.g. before the cameras are rebound.
+     */
+    public void clearStreams() {
+        for (int i = 0; i < streams.length; i++) {
+            detector.clearStream(i);
+        }
+    }
+
+    /**
+     * Resets every stream's landmark filter on the inference lane, where the filters run,
+     * so no joint is held or extrapolated from what another camera saw. Not scoped, the
+     * reset also happens while the processor is stopped.
+     */
+    public void resetFilters() {
+        Executor inference = scheduler.getExecutor(AnalysisScheduler.LANE_INFERENCE);
+        for (AnalysisStream stream : streams) {
+            inference.execute(stream.getLandmarkFilter()::reset);
+        }
+    }
+
+    /**
+     * Gives an overlay bitmap back once the listener no longer shows it.
+     */
+    public void recycleOverlay(Bitmap bitmap) {
+        if (bitmap != null) {
+            bufferPool.releaseBitmap(bitmap);
+        }
+    }
+
+    /**
+     * @return An analyzer for an ImageAnalysis use case, to be set with the capture lane's
+     *         executor.
+     */
+    @ExperimentalGetImage
+    public ImageAnalysis.Analyzer newAnalyzer(int stream) {
+        AnalysisStream analysisStream = streams[stream];
+        return imageProxy -> {
+            Image mediaImage = imageProxy.getImage();
+            if (mediaImage == null) {
+                analysisStream.getMetrics().onFrameReceived();
+                analysisStream.getMetrics().onFrameFailed();
+                imageProxy.close();
+                return;
+            }
+
+            Image.Plane[] planes = mediaImage.getPlanes();
+            YuvFrame frame = analysisStream.getCameraFrame()
+                    .setPlanes(planes[0].getBuffer(), planes[0].getRowStride(),
+                            planes[1].getBuffer(), planes[1].getRowStride(), planes[1].getPixelStride(),
+                            planes[2].getBuffer(), planes[2].getRowStride(), planes[2].getPixelStride())
+                    .setInfo(mediaImage.getWidth(), mediaImage.getHeight(),
+                            imageProxy.getImageInfo().getRotationDegrees(),
+                            imageProxy.getImageInfo().getTimestamp());
+            if (captureListener != null) {
+                captureListener.onCapture(stream, frame);
+            }
+            processFrame(stream, frame, imageProxy::close);
+        };
+    }
+
+    /**
+     * Runs one frame through the pipeline. This is the entry point for camera frames and for
+     * replayed recordings alike.
+     *
+     * @param stream       The stream the frame belongs to.
+     * @param frame        The frame. Its buffers must stay valid until releaseFrame is run.
+     * @param releaseFrame Gives the frame's buffers back to their source, run exactly once.
+     */
+    public void processFrame(int stream, YuvFrame frame, Runnable releaseFrame) {
+        AnalysisStream analysisStream = streams[stream];
+        StreamMetrics metrics = analysisStream.getMetrics();
+        metrics.onFrameReceived();
+
+        // Nobody in front of the camera: only a cheap motion check on the Y plane
+        PresenceMonitor presenceMonitor = analysisStream.getPresenceMonitor();
+        if (presenceMonitor.isIdle() && !presenceMonitor.onIdleFrame(frame)) {
+            metrics.onFrameIdle();
+            releaseFrame.run();
+            return;
+        }
+
+        AnalysisScheduler.Scope frameScope = scope;
+        if (!frameScope.isActive() || !analysisStream.tryBegin()) {
+            metrics.onFrameDropped();
+            releaseFrame.run();
+            return;
+        }
+
+        if (!detector.tryAcquire(stream)) {
+            metrics.onFrameDropped();
+            releaseFrame.run();
+            analysisStream.end();
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        long timestampNanos = frame.timestampNanos;
+        boolean drawsOverlay = stream == OVERLAY_STREAM && overlayListener != null;
+        try {
+            Bitmap upright = null;
+            if (drawsOverlay || detector.usesBitmap()) {
+                upright = converter.convert(frame, analysisStream);
+                if (upright == null) {
+                    metrics.onFrameFailed();
+                    finishFrame(stream, releaseFrame);
+                    return;
+                }
+            }
+
+            // Results are skipped once the scope is cancelled, but the frame is always released.
+            // The inference lane is single threaded, so a stream's frames are finished in order.
+            Bitmap detected = upright;
+            long detectNanos = System.nanoTime();
+            detector.detect(stream, frame, upright, rawFrames[stream],
+                    scheduler.getExecutor(AnalysisScheduler.LANE_INFERENCE), error -> {
+                        if (error == null) {
+                            metrics.getStageTimer().record(StreamMetrics.STAGE_DETECT, detectNanos);
+                            metrics.onFrameProcessed(System.nanoTime() - startNanos);
+                            if (frameScope.isActive()) {
+                                onLandmarksDetected(analysisStream, frame, detected, timestampNanos);
+                            }
+                        } else {
+                            metrics.onFrameFailed();
+                            Log.e(TAG, "Pose detection failed on " + analysisStream.getName(), error);
+                        }
+                        finishFrame(stream, releaseFrame);
+                    });
+        } catch (RuntimeException e) {
+            // E.g. unexpected plane strides or a failing kernel. Without this the stream
+            // would stay claimed and drop every later frame
+            metrics.onFrameFailed();
+            Log.e(TAG, "Could not process a frame of " + analysisStream.getName(), e);
+            finishFrame(stream, releaseFrame);
+        }
+    }
+
+    /**
+     * Closes the detector and the refining stages once the frames already on the capture
+     * lane are through. Call after the cameras are unbound.
+     */
+    @Override
+    public void close() {
+        scope.cancel();
+        scheduler.getExecutor(AnalysisScheduler.LANE_CAPTURE).execute(() -> {
+            detector.close();
+            for (LandmarkStage stage : landmarkStages) {
+                stage.close();
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (AnalysisStream stream : streams) {
+            builder.append(stream.getMetrics()).append('\n')
+                    .append(stream.getName()).append(' ').append(stream.getPresenceMonitor()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private void finishFrame(int stream, Runnable releaseFrame) {
+        releaseFrame.run();
+        // Everything the frame borrowed goes back together with the camera image
+        streams[stream].getLease().close();
+        detector.release(stream);
+        streams[stream].end();
+    }
+
+    /**
+     * Every stream reports the raw landmarks to its presence monitor and filters them once,
+     * then the refining stages see them while the frame is still held; the overlay stream
+     * draws the result, then the listeners get it.
+     */
+    private void onLandmarksDetected(AnalysisStream stream, YuvFrame yuvFrame, Bitmap upright,
+                                     long timestampNanos) {
+        int id = stream.getId();
+        LandmarkFrame raw = rawFrames[id];
+        stream.getPresenceMonitor().onLandmarks(raw);
+        // Hidden joints are dropped or filled in here, listeners can check the usable mask
+        LandmarkFrame frame = filteredFrames[id];
+        stream.getLandmarkFilter().apply(raw, frame);
+        long usableMask = stream.getLandmarkFilter().getUsableMask();
+        for (LandmarkStage stage : landmarkStages) {
+            usableMask = stage.process(id, yuvFrame, frame, usableMask);
+        }
+
+        if (id == OVERLAY_STREAM && overlayListener != null) {
+            long drawNanos = System.nanoTime();
+            if (overlayRenderer != null) {
+                overlayCanvas.setBitmap(upright);
+                overlayRenderer.draw(overlayCanvas, frame);
+                overlayCanvas.setBitmap(null);
+            }
+            stream.getMetrics().getStageTimer().record(StreamMetrics.STAGE_DRAW, drawNanos);
+            // The listener keeps the bitmap past this frame
+            stream.getLease().detach(upright);
+            overlayListener.onOverlayFrame(upright, timestampNanos);
+        }
+
+        for (LandmarkListener listener : landmarkListeners) {
+            listener.onLandmarks(id, frame, usableMask);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A single-person pose model as {@link TflitePoseBackend} sees it: an RGB input tensor of
+ * fixed size in, one float tensor of keypoints out. Implementations are not thread safe.
+ *
+ * The output layout cannot be told from the tensor, so it is declared together with the
+ * model file and checked against the output shape with {@link #checkOutputShape}.
+ */
+public interface PoseModel extends Closeable {
+
+    /** Input channels are unsigned bytes, 0 to 255. */
+    int INPUT_UINT8 = 0;
+    /** Input channels are signed bytes, the unsigned value minus 128. */
+    int INPUT_INT8 = 1;
+    /** Input channels are floats, normalized by the backend. */
+    int INPUT_FLOAT32 = 2;
+
+    /** MoveNet: 17 COCO keypoints as (y, x, score), normalized to the input. */
+    int OUTPUT_MOVENET = 0;
+    /** BlazePose: at least 33 landmarks as (x, y, z, visibility logit, presence logit) in input pixels. */
+    int OUTPUT_BLAZEPOSE = 1;
+    /** Hand and face landmark models: keypoints as (x, y, z) in input pixels, see {@link DetailStage}. */
+    int OUTPUT_KEYPOINTS_XYZ = 2;
+
+    int getInputWidth();
+
+    int getInputHeight();
+
+    /**
+     * @return One of the INPUT_ constants.
+     */
+    int getInputType();
+
+    /**
+     * @return One of the OUTPUT_ constants, as declared for the model file.
+     */
+    int getOutputLayout();
+
+    /**
+     * @return Number of floats {@link #run} writes.
+     */
+    int getOutputSize();
+
+    /**
+     * Runs the model once.
+     *
+     * @param input  Input tensor in NHWC order, positioned at 0.
+     * @param output Receives the keypoints, at least {@link #getOutputSize()} long.
+     */
+    void run(ByteBuffer input, float[] output);
+
+    @Override
+    void close();
+
+    /**
+     * Checks that an output tensor can hold the declared layout: MoveNet single pose is
+     * exactly [1, 1, 17, 3], BlazePose has 5 values for each of at least 33 landmarks, and
+     * keypoint models have 3 values per keypoint.
+     *
+     * @param outputLayout One of the OUTPUT_ constants.
+     * @param shape        Shape of the model's first output tensor.
+     * @throws IllegalArgumentException If the shape does not fit the layout.
+     */
+    static void checkOutputShape(int outputLayout, int[] shape) {
+        int size = 1;
+        for (int dimension : shape) {
+            size *= dimension;
+        }
+        boolean fits;
+        switch (outputLayout) {
+            case OUTPUT_MOVENET:
+                fits = Arrays.equals(shape, new int[]{1, 1, 17, 3});
+                break;
+            case OUTPUT_BLAZEPOSE:
+                fits = size % 5 == 0 && size / 5 >= LandmarkFrame.LANDMARK_COUNT;
+                break;
+            case OUTPUT_KEYPOINTS_XYZ:
+                fits = size > 0 && size % 3 == 0;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown output layout " + outputLayout);
+        }
+        if (!fits) {
+            throw new IllegalArgumentException("Output shape " + Arrays.toString(shape)
+                    + " does not fit output layout " + outputLayout);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.util.Locale;
+
+/**
+ * Judges sitting posture from sampled landmark frames and reports slouching that lasts.
+ *
+ * A frame is bad when the neck leans too far from vertical (the shoulder-to-ear line, seen
+ * from the side or leaning sideways), or when the head sinks towards the shoulders relative
+ * to their width (seen from the front). Bad frames start a streak that ends with the next
+ * good frame; frames without ears and shoulders do not count either way, and a streak with
+ * no bad sample for as long as the sustain time is over too. Once a streak lasts the
+ * sustain time the listener is told, then again every repeat interval until posture
+ * recovers.
+ *
+ * Times are taken from the frame timestamps, so the gaps between sampling bursts count.
+ * Frames arrive on the inference lane and the counters are read elsewhere, so all methods
+ * are synchronized.
+ */
+public class PostureMonitor {
+
+    public static final int POSTURE_UNKNOWN = 0;
+    public static final int POSTURE_GOOD = 1;
+    public static final int POSTURE_BAD = 2;
+
+    /**
+     * Notified on the thread that reported the frame.
+     */
+    public interface Listener {
+        /**
+         * @param badForMs How long the current streak of bad posture has lasted.
+         */
+        void onSustainedBadPosture(long badForMs);
+
+        /**
+         * Called on the first good frame after an alert.
+         */
+        void onPostureRecovered();
+    }
+
+    private static final int LEFT_EAR = 7;
+    private static final int RIGHT_EAR = 8;
+    private static final int LEFT_SHOULDER = 11;
+    private static final int RIGHT_SHOULDER = 12;
+
+    private final float maxNeckDegrees;
+    private final float minHeadRatio;
+    private final long sustainNanos;
+    private final long repeatNanos;
+    private Listener listener;
+
+    // Start and latest sample of the current streak, -1 without one
+    private long badSinceNanos = -1;
+    private long lastBadNanos = -1;
+    private long lastAlertNanos = -1;
+    private int lastPosture = POSTURE_UNKNOWN;
+    private final long[] samples = new long[3];
+    private int alerts = 0;
+
+    /**
+     * @param maxNeckDegrees Largest angle between the shoulder-to-ear line and vertical.
+     * @param minHeadRatio   Smallest height of the ears above the shoulders, relative to the
+     *                       shoulder width.
+     * @param sustainMs      How long bad posture has to last before the first alert.
+     * @param repeatMs       Time between alerts while bad posture goes on.
+     */
+    public PostureMonitor(float maxNeckDegrees, float minHeadRatio, long sustainMs, long repeatMs) {
+        this.maxNeckDegrees = maxNeckDegrees;
+        this.minHeadRatio = minHeadRatio;
+        this.sustainNanos = sustainMs * 1_000_000;
+        this.repeatNanos = repeatMs * 1_000_000;
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Classifies one frame.
+     *
+     * @param frame      The filtered landmarks.
+     * @param usableMask Joints with a position, see {@link LandmarkFilter#getUsableMask()}.
+     * @return POSTURE_GOOD, POSTURE_BAD or POSTURE_UNKNOWN.
+     */
+    public int classify(LandmarkFrame frame, long usableMask) {
+        long left = LandmarkFilter.bit(LEFT_EAR) | LandmarkFilter.bit(LEFT_SHOULDER);
+        long right = LandmarkFilter.bit(RIGHT_EAR) | LandmarkFilter.bit(RIGHT_SHOULDER);
+        boolean hasLeft = LandmarkFilter.containsAll(usableMask, left);
+        boolean hasRight = LandmarkFilter.containsAll(usableMask, right);
+        float earX;
+        float earY;
+        float shoulderX;
+        float shoulderY;
+        if (hasLeft && hasRight) {
+            earX = (frame.x[LEFT_EAR] + frame.x[RIGHT_EAR]) / 2;
+            earY = (frame.y[LEFT_EAR] + frame.y[RIGHT_EAR]) / 2;
+            shoulderX = (frame.x[LEFT_SHOULDER] + frame.x[RIGHT_SHOULDER]) / 2;
+            shoulderY = (frame.y[LEFT_SHOULDER] + frame.y[RIGHT_SHOULDER]) / 2;
+        } else if (hasLeft || hasRight) {
+            // Side view, only one side of the head is in sight
+            int ear = hasLeft ? LEFT_EAR : RIGHT_EAR;
+            int shoulder = hasLeft ? LEFT_SHOULDER : RIGHT_SHOULDER;
+            earX = frame.x[ear];
+            earY = frame.y[ear];
+            shoulderX = frame.x[shoulder];
+            shoulderY = frame.y[shoulder];
+        } else {
+            return POSTURE_UNKNOWN;
+        }
+
+        // Image y points down
+        float rise = shoulderY - earY;
+        double neckDegrees = Math.toDegrees(Math.atan2(Math.abs(earX - shoulderX), rise));
+        if (neckDegrees > maxNeckDegrees) {
+            return POSTURE_BAD;
+        }
+        if (hasLeft && hasRight) {
+            float shoulderWidth = Math.abs(frame.x[LEFT_SHOULDER] - frame.x[RIGHT_SHOULDER]);
+            if (shoulderWidth > 0 && rise / shoulderWidth < minHeadRatio) {
+                return POSTURE_BAD;
+            }
+        }
+        return POSTURE_GOOD;
+    }
+
+    /**
+     * Reports a sampled frame.
+     *
+     * @param frame      The filtered landmarks.
+     * @param usableMask Joints with a position, see {@link LandmarkFilter#getUsableMask()}.
+     * @return The posture of the frame.
+     */
+    public synchronized int onLandmarks(LandmarkFrame frame, long usableMask) {
+        int posture = classify(frame, usableMask);
+        samples[posture]++;
+        long now = frame.timestampNanos;
+        if (posture == POSTURE_BAD) {
+            if (badSinceNanos < 0 || now - lastBadNanos > sustainNanos) {
+                badSinceNanos = now;
+                lastAlertNanos = -1;
+            }
+            lastBadNanos = now;
+            long badFor = now - badSinceNanos;
+            boolean due = lastAlertNanos < 0 ? badFor >= sustainNanos
+                    : now - lastAlertNanos >= repeatNanos;
+            if (due) {
+                lastAlertNanos = now;
+                alerts++;
+                if (listener != null) {
+                    listener.onSustainedBadPosture(badFor / 1_000_000);
+                }
+            }
+        } else if (posture == POSTURE_GOOD) {
+            boolean alerted = lastAlertNanos >= 0;
+            badSinceNanos = -1;
+            lastBadNanos = -1;
+            lastAlertNanos = -1;
+            if (alerted && listener != null) {
+                listener.onPostureRecovered();
+            }
+        }
+        if (posture != POSTURE_UNKNOWN) {
+            lastPosture = posture;
+        }
+        return posture;
+    }
+
+    /**
+     * @return Posture of the last frame that could be judged.
+     */
+    public synchronized int getLastPosture() {
+        return lastPosture;
+    }
+
+    /**
+     * @param posture POSTURE_GOOD, POSTURE_BAD or POSTURE_UNKNOWN.
+     * @return Number of sampled frames with that posture.
+     */
+    public synchronized long getSampleCount(int posture) {
+        return samples[posture];
+    }
+
+    public synchronized int getAlertCount() {
+        return alerts;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long judged = samples[POSTURE_GOOD] + samples[POSTURE_BAD];
+        return String.format(Locale.US, "Posture: %d good, %d bad (%.0f%%), %d unknown, %d alerts",
+                samples[POSTURE_GOOD], samples[POSTURE_BAD],
+                judged > 0 ? 100.0 * samples[POSTURE_BAD] / judged : 0.0,
+                samples[POSTURE_UNKNOWN], alerts);
+    }
+}
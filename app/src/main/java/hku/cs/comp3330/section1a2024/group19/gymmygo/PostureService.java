@@ -0,0 +1,370 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ServiceInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.OptIn;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ExperimentalGetImage;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.resolutionselector.ResolutionSelector;
+import androidx.camera.core.resolutionselector.ResolutionStrategy;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleService;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.mlkit.vision.pose.PoseDetection;
+import com.google.mlkit.vision.pose.PoseDetector;
+import com.google.mlkit.vision.pose.defaults.PoseDetectorOptions;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Desk posture mode: watches for slouching with the front camera while the screen is off or
+ * another app is in front.
+ *
+ * The pipeline runs in short bursts. Every few seconds the analysis use case is bound, a
+ * handful of frames are detected, and the use case is unbound again, which closes the camera
+ * and gives its buffers back. The frame processor and its detector stay alive in between, so
+ * a burst does not pay for loading the model. Sustained bad posture raises a notification;
+ * CPU time and battery drain are logged with the pipeline metrics and shown in the ongoing
+ * notification.
+ *
+ * A camera foreground service may only start while the app is visible, so it is started
+ * from {@link MainActivity}, which stops it again when it comes back to the front.
+ */
+public class PostureService extends LifecycleService {
+
+    private static final String TAG = "PostureService";
+
+    public static final String ACTION_STOP = "hku.cs.comp3330.section1a2024.group19.gymmygo.STOP_POSTURE";
+
+    private static final String CHANNEL_STATUS = "posture_status";
+    private static final String CHANNEL_ALERTS = "posture_alerts";
+    private static final int NOTIFICATION_STATUS = 1;
+    private static final int NOTIFICATION_ALERT = 2;
+
+    // Duty cycle: a burst of five detections every five seconds, given up after two seconds
+    // without a person in front of the camera
+    private static final long SAMPLE_PERIOD_MS = 5_000;
+    private static final int BURST_FRAMES = 5;
+    private static final long BURST_TIMEOUT_MS = 2_000;
+    private static final Size ANALYSIS_SIZE = new Size(640, 480);
+
+    // Slouching for half a minute raises the first alert, then one every five minutes
+    private static final float MAX_NECK_DEGREES = 25f;
+    private static final float MIN_HEAD_RATIO = 0.25f;
+    private static final long BAD_POSTURE_SUSTAIN_MS = 30_000;
+    private static final long BAD_POSTURE_REPEAT_MS = 5 * 60_000;
+
+    private static final long METRICS_PERIOD_MS = 60_000;
+
+    // Same filtering as the activity, without idling: bursts are too short to go idle in
+    private static final float MIN_PRESENCE_LIKELIHOOD = 0.5f;
+    private static final float FILTER_ENTER_LIKELIHOOD = 0.5f;
+    private static final float FILTER_EXIT_LIKELIHOOD = 0.3f;
+    private static final int FILTER_HOLD_FRAMES = 5;
+    private static final float FILTER_VELOCITY_DAMPING = 0.7f;
+    private static final float FILTER_FILLED_LIKELIHOOD = 0.2f;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final AnalysisScheduler scheduler = AnalysisScheduler.createBackground();
+    private final BufferPool bufferPool = new BufferPool(BuildConfig.DEBUG);
+    private final PostureMonitor postureMonitor = new PostureMonitor(MAX_NECK_DEGREES,
+            MIN_HEAD_RATIO, BAD_POSTURE_SUSTAIN_MS, BAD_POSTURE_REPEAT_MS);
+    private final ResourceMeter resourceMeter = new ResourceMeter();
+
+    private PoseFrameProcessor frameProcessor;
+    private ProcessCameraProvider cameraProvider;
+    private boolean running = false;
+
+    // Main thread only: the use case of the current burst, null between bursts
+    private ImageAnalysis burstAnalysis;
+    private long burstStartMs;
+    private int burstCount = 0;
+    // Detections in the current burst, counted on the inference lane
+    private final AtomicInteger burstDetections = new AtomicInteger();
+
+    private final Runnable startBurst = this::startBurst;
+    private final Runnable endBurst = this::endBurst;
+    private final Runnable sampleResources = this::sampleResources;
+
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, PostureService.class));
+    }
+
+    public static void stop(Context context) {
+        context.stopService(new Intent(context, PostureService.class));
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        super.onStartCommand(intent, flags, startId);
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        if (running) {
+            return START_NOT_STICKY;
+        }
+
+        createChannels();
+        try {
+            ServiceCompat.startForeground(this, NOTIFICATION_STATUS, buildStatusNotification(),
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_CAMERA);
+        } catch (RuntimeException e) {
+            // Without the camera permission, or when started from the background
+            Log.e(TAG, "Could not start desk posture mode", e);
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        running = true;
+
+        PoseDetectorOptions options = new PoseDetectorOptions.Builder()
+                .setDetectorMode(PoseDetectorOptions.STREAM_MODE)
+                .build();
+        List<PoseDetector> detectors = Collections.singletonList(PoseDetection.getClient(options));
+        frameProcessor = new PoseFrameProcessor.Builder(scheduler, bufferPool)
+                .addStream("desk", new PresenceMonitor(Integer.MAX_VALUE, MIN_PRESENCE_LIKELIHOOD, 1, 1f),
+                        new LandmarkFilter(FILTER_ENTER_LIKELIHOOD, FILTER_EXIT_LIKELIHOOD,
+                                FILTER_HOLD_FRAMES, FILTER_VELOCITY_DAMPING, FILTER_FILLED_LIKELIHOOD))
+                .setDetector(new MlKitDetectorStage(detectors, 1))
+                .build();
+        frameProcessor.addLandmarkListener(this::onLandmarks);
+        postureMonitor.setListener(new PostureMonitor.Listener() {
+            @Override
+            public void onSustainedBadPosture(long badForMs) {
+                handler.post(() -> showPostureAlert(badForMs));
+            }
+
+            @Override
+            public void onPostureRecovered() {
+                handler.post(() -> NotificationManagerCompat.from(PostureService.this)
+                        .cancel(NOTIFICATION_ALERT));
+            }
+        });
+
+        ListenableFuture<ProcessCameraProvider> future = ProcessCameraProvider.getInstance(this);
+        future.addListener(() -> {
+            if (!running) {
+                // Stopped before the provider was there
+                return;
+            }
+            try {
+                cameraProvider = future.get();
+                startBurst();
+            } catch (ExecutionException | InterruptedException e) {
+                Log.e(TAG, "Error starting camera", e);
+                stopSelf();
+            }
+        }, ContextCompat.getMainExecutor(this));
+
+        sampleResources();
+        Log.d(TAG, "Desk posture mode started");
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacksAndMessages(null);
+        if (running) {
+            running = false;
+            // Unbound here rather than with the lifecycle in super.onDestroy(), so no frame
+            // reaches the analyzer once the processor is closed
+            if (burstAnalysis != null) {
+                cameraProvider.unbind(burstAnalysis);
+                burstAnalysis.clearAnalyzer();
+                burstAnalysis = null;
+            }
+            sampleResources();
+            frameProcessor.close();
+            NotificationManagerCompat.from(this).cancel(NOTIFICATION_ALERT);
+        }
+        scheduler.shutdown();
+        Log.d(TAG, "Desk posture mode stopped");
+        super.onDestroy();
+    }
+
+    /**
+     * Binds the analysis use case for one burst of frames. Does nothing once the service is
+     * destroyed, as the processor is closed and the lifecycle can no longer be bound to.
+     */
+    @OptIn(markerClass = ExperimentalGetImage.class)
+    private void startBurst() {
+        if (!running) {
+            return;
+        }
+        burstStartMs = SystemClock.elapsedRealtime();
+        burstCount++;
+        burstDetections.set(0);
+        // Landmarks from the last burst are seconds old, nothing to follow them from
+        frameProcessor.resetFilters();
+
+        ImageAnalysis analysis = new ImageAnalysis.Builder()
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setResolutionSelector(new ResolutionSelector.Builder()
+                        .setResolutionStrategy(new ResolutionStrategy(ANALYSIS_SIZE,
+                                ResolutionStrategy.FALLBACK_RULE_CLOSEST_LOWER_THEN_HIGHER))
+                        .build())
+                .build();
+        analysis.setAnalyzer(scheduler.getExecutor(AnalysisScheduler.LANE_CAPTURE),
+                frameProcessor.newAnalyzer(0));
+        try {
+            cameraProvider.bindToLifecycle(this, CameraSelector.DEFAULT_FRONT_CAMERA, analysis);
+            burstAnalysis = analysis;
+            handler.postDelayed(endBurst, BURST_TIMEOUT_MS);
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // Another use of the camera, try again at the next sample
+            Log.w(TAG, "Could not bind the camera for a posture sample", e);
+            scheduleNextBurst();
+        }
+    }
+
+    /**
+     * Unbinds the use case once the burst has its detections or timed out, and lets the
+     * camera and the buffers go until the next one.
+     */
+    private void endBurst() {
+        if (burstAnalysis == null) {
+            return;
+        }
+        handler.removeCallbacks(endBurst);
+        cameraProvider.unbind(burstAnalysis);
+        burstAnalysis.clearAnalyzer();
+        burstAnalysis = null;
+        // After the frames already on the capture lane
+        scheduler.getExecutor(AnalysisScheduler.LANE_CAPTURE).execute(bufferPool::trim);
+        scheduleNextBurst();
+    }
+
+    private void scheduleNextBurst() {
+        if (!running) {
+            // onDestroy already removed the callbacks, nothing may be posted after it
+            return;
+        }
+        long nextMs = burstStartMs + SAMPLE_PERIOD_MS;
+        handler.postDelayed(startBurst, Math.max(0, nextMs - SystemClock.elapsedRealtime()));
+    }
+
+    /**
+     * Called on the inference lane.
+     */
+    private void onLandmarks(int stream, LandmarkFrame frame, long usableMask) {
+        postureMonitor.onLandmarks(frame, usableMask);
+        if (burstDetections.incrementAndGet() == BURST_FRAMES) {
+            handler.post(endBurst);
+        }
+    }
+
+    private void sampleResources() {
+        Intent battery = registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        int percent = 0;
+        boolean charging = false;
+        if (battery != null) {
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, 0);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+            percent = scale > 0 ? level * 100 / scale : 0;
+            charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+        }
+        BatteryManager batteryManager = (BatteryManager) getSystemService(Context.BATTERY_SERVICE);
+        long chargeMicroAh = batteryManager != null
+                ? batteryManager.getLongProperty(BatteryManager.BATTERY_PROPERTY_CHARGE_COUNTER) : 0;
+        resourceMeter.sample(SystemClock.elapsedRealtime(), Process.getElapsedCpuTime(), percent,
+                chargeMicroAh, charging);
+
+        logMetrics();
+        if (running) {
+            NotificationManagerCompat.from(this).notify(NOTIFICATION_STATUS, buildStatusNotification());
+            handler.postDelayed(sampleResources, METRICS_PERIOD_MS);
+        }
+    }
+
+    private void logMetrics() {
+        Log.d(TAG, burstCount + " bursts");
+        if (frameProcessor != null) {
+            Log.d(TAG, frameProcessor.toString());
+        }
+        Log.d(TAG, postureMonitor.toString());
+        Log.d(TAG, resourceMeter.toString());
+        Log.d(TAG, bufferPool.toString());
+        Log.d(TAG, scheduler.toString());
+    }
+
+    private void createChannels() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        manager.createNotificationChannel(new NotificationChannel(CHANNEL_STATUS,
+                getString(R.string.posture_channel_status), NotificationManager.IMPORTANCE_LOW));
+        manager.createNotificationChannel(new NotificationChannel(CHANNEL_ALERTS,
+                getString(R.string.posture_channel_alerts), NotificationManager.IMPORTANCE_HIGH));
+    }
+
+    private Notification buildStatusNotification() {
+        Intent stop = new Intent(this, PostureService.class).setAction(ACTION_STOP);
+        double batteryPerHour = resourceMeter.getBatteryPercentPerHour();
+        String text = Double.isNaN(batteryPerHour)
+                ? getString(R.string.posture_status_text)
+                : String.format(Locale.getDefault(), "%s · %.1f%%/h",
+                        getString(R.string.posture_status_text), batteryPerHour);
+        return new NotificationCompat.Builder(this, CHANNEL_STATUS)
+                .setSmallIcon(R.drawable.ic_stat_posture)
+                .setContentTitle(getString(R.string.posture_status_title))
+                .setContentText(text)
+                .setContentIntent(activityIntent())
+                .addAction(0, getString(R.string.posture_stop),
+                        PendingIntent.getService(this, 0, stop, pendingIntentFlags()))
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .build();
+    }
+
+    private void showPostureAlert(long badForMs) {
+        NotificationManagerCompat manager = NotificationManagerCompat.from(this);
+        if (!manager.areNotificationsEnabled()) {
+            Log.d(TAG, "Bad posture for " + badForMs + " ms, notifications are off");
+            return;
+        }
+        manager.notify(NOTIFICATION_ALERT, new NotificationCompat.Builder(this, CHANNEL_ALERTS)
+                .setSmallIcon(R.drawable.ic_stat_posture)
+                .setContentTitle(getString(R.string.posture_alert_title))
+                .setContentText(getString(R.string.posture_alert_text, badForMs / 60_000 + 1))
+                .setContentIntent(activityIntent())
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_REMINDER)
+                .setAutoCancel(true)
+                .build());
+    }
+
+    private PendingIntent activityIntent() {
+        return PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class),
+                pendingIntentFlags());
+    }
+
+    private static int pendingIntentFlags() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0;
+    }
+}
@@ -0,0 +1,201 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Decides whether a stream runs the full pose pipeline or idles until someone shows up.
+ *
+ * The stream goes idle after a number of consecutive detections without any landmark above
+ * the likelihood threshold. While idle only every few frames are looked at, and only as a
+ * heavily downscaled copy of the Y plane compared to the previous one. As soon as enough of
+ * it changes, the monitor is active again and that same frame goes through the full pipeline.
+ *
+ * Idle frames arrive on the capture lane and pose results on the inference lane of the
+ * {@link AnalysisScheduler}, while the statistics are read from the main thread. These are
+ * different threads that may all touch the state at once, so all methods are synchronized.
+ */
+public class PresenceMonitor {
+
+    public static final int STATE_ACTIVE = 0;
+    public static final int STATE_IDLE = 1;
+
+    /** Time source, replaceable in tests. */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    /**
+     * Notified on every state change, on the thread that caused it.
+     */
+    public interface Listener {
+        void onPresenceStateChanged(int newState);
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    // Y plane is reduced by this factor in both directions before comparing
+    private static final int MOTION_DOWNSCALE = 8;
+    // A small pixel counts as changed when its brightness moves by more than this
+    private static final int MOTION_PIXEL_THRESHOLD = 12;
+
+    private final int framesUntilIdle;
+    private final float minLikelihood;
+    private final int idleFrameStride;
+    private final float motionFraction;
+    private final Clock clock;
+
+    private int state = STATE_ACTIVE;
+    private int emptyFrames = 0;
+    private int idleFrameCounter = 0;
+    private long stateSinceNanos;
+    private final long[] timeInStateNanos = new long[2];
+    private final int[] transitionsInto = new int[2];
+    private Listener listener;
+
+    private ByteBuffer current = ByteBuffer.allocateDirect(0);
+    private ByteBuffer previous = ByteBuffer.allocateDirect(0);
+    private boolean hasPrevious = false;
+
+    /**
+     * @param framesUntilIdle Consecutive empty detections before going idle.
+     * @param minLikelihood   In-frame likelihood a landmark needs to count as a person.
+     * @param idleFrameStride While idle, only every n-th frame is checked for motion.
+     * @param motionFraction  Fraction of the downscaled Y plane that must change to wake up.
+     */
+    public PresenceMonitor(int framesUntilIdle, float minLikelihood, int idleFrameStride,
+                           float motionFraction) {
+        this(framesUntilIdle, minLikelihood, idleFrameStride, motionFraction, SYSTEM_CLOCK);
+    }
+
+    PresenceMonitor(int framesUntilIdle, float minLikelihood, int idleFrameStride,
+                    float motionFraction, Clock clock) {
+        this.framesUntilIdle = framesUntilIdle;
+        this.minLikelihood = minLikelihood;
+        this.idleFrameStride = idleFrameStride;
+        this.motionFraction = motionFraction;
+        this.clock = clock;
+        this.stateSinceNanos = clock.nanoTime();
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public synchronized int getState() {
+        return state;
+    }
+
+    public synchronized boolean isIdle() {
+        return state == STATE_IDLE;
+    }
+
+    /**
+     * Reports the landmarks of a finished detection.
+     *
+     * @param frame The detected landmarks.
+     */
+    public synchronized void onLandmarks(LandmarkFrame frame) {
+        if (frame.hasLandmarks(minLikelihood)) {
+            emptyFrames = 0;
+        } else if (state == STATE_ACTIVE && ++emptyFrames >= framesUntilIdle) {
+            setState(STATE_IDLE);
+        }
+    }
+
+    /**
+     * Looks at a frame that arrived while idle.
+     *
+     * @param frame The camera frame, only its Y plane is read.
+     * @return True if the monitor woke up and the frame should get the full pipeline.
+     */
+    public synchronized boolean onIdleFrame(YuvFrame frame) {
+        if (state != STATE_IDLE) {
+            return true;
+        }
+        if (idleFrameCounter++ % idleFrameStride != 0) {
+            return false;
+        }
+
+        int width = frame.width / MOTION_DOWNSCALE;
+        int height = frame.height / MOTION_DOWNSCALE;
+        int size = width * height;
+        if (current.capacity() < size) {
+            current = ByteBuffer.allocateDirect(size);
+            previous = ByteBuffer.allocateDirect(size);
+            hasPrevious = false;
+        }
+        FrameKernels.downscaleBox(frame.y, frame.yRowStride, frame.width, frame.height,
+                1, MOTION_DOWNSCALE, current);
+
+        boolean motion = false;
+        if (hasPrevious) {
+            int changed = 0;
+            for (int i = 0; i < size; i++) {
+                int diff = (current.get(i) & 0xFF) - (previous.get(i) & 0xFF);
+                if (diff > MOTION_PIXEL_THRESHOLD || diff < -MOTION_PIXEL_THRESHOLD) {
+                    changed++;
+                }
+            }
+            motion = changed > size * motionFraction;
+        }
+
+        ByteBuffer swap = previous;
+        previous = current;
+        current = swap;
+        hasPrevious = true;
+
+        if (motion) {
+            setState(STATE_ACTIVE);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param state STATE_ACTIVE or STATE_IDLE.
+     * @return Total time spent in the state, including the ongoing stretch.
+     */
+    public synchronized long getTimeInStateMs(int state) {
+        long total = timeInStateNanos[state];
+        if (this.state == state) {
+            total += clock.nanoTime() - stateSinceNanos;
+        }
+        return total / 1_000_000;
+    }
+
+    /**
+     * @param state STATE_ACTIVE or STATE_IDLE.
+     * @return How often the monitor switched into the state.
+     */
+    public synchronized int getTransitionsInto(int state) {
+        return transitionsInto[state];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "Presence: %s, active %dms (%d times), idle %dms (%d times)",
+                state == STATE_IDLE ? "idle" : "active",
+                getTimeInStateMs(STATE_ACTIVE), transitionsInto[STATE_ACTIVE],
+                getTimeInStateMs(STATE_IDLE), transitionsInto[STATE_IDLE]);
+    }
+
+    private void setState(int newState) {
+        long now = clock.nanoTime();
+        timeInStateNanos[state] += now - stateSinceNanos;
+        stateSinceNanos = now;
+        state = newState;
+        transitionsInto[newState]++;
+        emptyFrames = 0;
+        idleFrameCounter = 0;
+        hasPrevious = false;
+        if (listener != null) {
+            listener.onPresenceStateChanged(newState);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the device's {@link PerformanceProfile}: reads the stored one, measures the device
+ * with the {@link PerformanceProfiler} when there is none for this app version and system
+ * build, and measures again when live frames drift away from those of the first session
+ * with the profile.
+ *
+ * Called on the main thread. The profiler runs on the given profiling executor, one run at
+ * a time, and its result is handed to the listener on the main executor.
+ */
+public class ProfileController {
+
+    private static final String TAG = "ProfileController";
+
+    private static final double FRAME_BUDGET_MS = 1000.0 / 15;
+    private static final int WARMUP_RUNS = 2;
+    private static final int TIMED_RUNS = 5;
+    private static final double DRIFT_TOLERANCE = 0.5;
+    private static final int MIN_SAMPLES = 30;
+
+    /**
+     * Creates the bench a profiler run measures with.
+     */
+    public interface BenchFactory {
+        /**
+         * Called on the profiling executor. The bench is closed after the run if it is
+         * {@link Closeable}.
+         */
+        PerformanceProfiler.Bench newBench() throws Exception;
+    }
+
+    /**
+     * Gets the result of every profiler run.
+     */
+    public interface Listener {
+        /**
+         * Called on the main executor.
+         *
+         * @param profile The new profile, already returned by {@link #getProfile()}, or null
+         *                if profiling failed and the previous configuration stays.
+         */
+        void onProfileReady(PerformanceProfile profile);
+    }
+
+    private final File file;
+    private final long appVersion;
+    private final String deviceFingerprint;
+    private final BenchFactory benchFactory;
+    private final Executor profilingExecutor;
+    private final Executor mainExecutor;
+    private final Listener listener;
+
+    // Read when use cases are bound; written on the main thread
+    private volatile PerformanceProfile profile;
+    // Main thread only
+    private boolean waitingForProfile = false;
+    private boolean profilerRunning = false;
+    private boolean revalidatePending = false;
+
+    /**
+     * @param file              Where the profile is stored.
+     * @param appVersion        Version code the profile must have been made with.
+     * @param deviceFingerprint System build the profile must have been made on.
+     * @param benchFactory      Creates the bench of each run.
+     * @param profilingExecutor Executor the profiler runs on.
+     * @param mainExecutor      Executor of the main thread.
+     * @param listener          Gets the result of each run.
+     */
+    public ProfileController(File file, long appVersion, String deviceFingerprint,
+                             BenchFactory benchFactory, Executor profilingExecutor,
+                             Executor mainExecutor, Listener listener) {
+        this.file = file;
+        this.appVersion = appVersion;
+        this.deviceFingerprint = deviceFingerprint;
+        this.benchFactory = benchFactory;
+        this.profilingExecutor = profilingExecutor;
+        this.mainExecutor = mainExecutor;
+        this.listener = listener;
+    }
+
+    /**
+     * Reads the stored profile, or starts the profiler if there is none that applies. Until
+     * that first run is done {@link #isWaitingForProfile()} is true.
+     *
+     * @return True if a stored profile applies and {@link #getProfile()} returns it.
+     */
+    public boolean load() {
+        try {
+            PerformanceProfile stored = PerformanceProfile.read(file);
+            if (stored.isValidFor(appVersion, deviceFingerprint)) {
+                profile = stored;
+                return true;
+            }
+            Log.d(TAG, "Performance profile is from another version, measuring again");
+        } catch (FileNotFoundException e) {
+            Log.d(TAG, "No performance profile yet, measuring");
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read performance profile", e);
+        }
+        waitingForProfile = true;
+        run();
+        return false;
+    }
+
+    /**
+     * @return The current profile, or null before the first one is there.
+     */
+    public PerformanceProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return True while the first profiler run is going; the camera waits for it.
+     */
+    public boolean isWaitingForProfile() {
+        return waitingForProfile;
+    }
+
+    /**
+     * Judges the frames of the session that just ended. The first session with a profile only
+     * records its frame time, as the profiler's synthetic frames are not comparable; after
+     * that, a session much slower or faster than the first one has the device measured again
+     * on the next {@link #revalidateIfDrifted()}.
+     *
+     * @param stages Stage times of the live frames since the profile was applied.
+     */
+    public void checkDrift(StageTimer stages) {
+        PerformanceProfile current = profile;
+        if (current == null || profilerRunning
+                || stages.getSampleCount(StreamMetrics.STAGE_DETECT) < MIN_SAMPLES) {
+            return;
+        }
+        double observedMs = stages.getPercentileMs(StreamMetrics.STAGE_CONVERT, 50)
+                + stages.getPercentileMs(StreamMetrics.STAGE_ROTATE, 50)
+                + stages.getPercentileMs(StreamMetrics.STAGE_DETECT, 50)
+                + stages.getPercentileMs(StreamMetrics.STAGE_DRAW, 50);
+        if (!current.hasLiveFrameMs()) {
+            PerformanceProfile calibrated = current.withLiveFrameMs((float) observedMs);
+            profile = calibrated;
+            profilingExecutor.execute(() -> {
+                try {
+                    calibrated.write(file);
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not store the live frame time", e);
+                }
+            });
+            return;
+        }
+        if (current.hasDrifted(observedMs, DRIFT_TOLERANCE)) {
+            Log.i(TAG, String.format(Locale.US, "Frames take %.1fms, first session took %.1fms, revalidating on the next start",
+                    observedMs, current.getLiveFrameMs()));
+            revalidatePending = true;
+        }
+    }
+
+    /**
+     * Starts the profiler if the last {@link #checkDrift} found drift. Call once the app is
+     * in front again, so the measurement competes with nothing in the background.
+     */
+    public void revalidateIfDrifted() {
+        if (revalidatePending) {
+            revalidatePending = false;
+            run();
+        }
+    }
+
+    /**
+     * Measures the device on the profiling executor and stores the result.
+     */
+    private void run() {
+        if (profilerRunning) {
+            return;
+        }
+        profilerRunning = true;
+        profilingExecutor.execute(() -> {
+            PerformanceProfile measured = null;
+            try {
+                PerformanceProfiler.Bench bench = benchFactory.newBench();
+                try {
+                    PerformanceProfiler profiler = new PerformanceProfiler(bench,
+                            PerformanceProfiler.DEFAULT_SIZES, FRAME_BUDGET_MS, WARMUP_RUNS,
+                            TIMED_RUNS, System::nanoTime);
+                    profiler.setListener((width, height, stages) ->
+                            Log.d(TAG, String.format(Locale.US, "Profiled %dx%d%n%s", width, height, stages)));
+                    measured = profiler.run(appVersion, deviceFingerprint, System.currentTimeMillis());
+                    measured.write(file);
+                } finally {
+                    if (bench instanceof Closeable) {
+                        ((Closeable) bench).close();
+                    }
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Profiling failed, keeping the previous configuration", e);
+            }
+            PerformanceProfile result = measured;
+            mainExecutor.execute(() -> onRunDone(result));
+        });
+    }
+
+    private void onRunDone(PerformanceProfile result) {
+        profilerRunning = false;
+        waitingForProfile = false;
+        if (result != null) {
+            profile = result;
+        }
+        listener.onProfileReady(result);
+    }
+}
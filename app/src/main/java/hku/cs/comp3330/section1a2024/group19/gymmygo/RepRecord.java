@@ -0,0 +1,71 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Summary of one repetition as kept in the workout history. Instances are mutable so that
+ * writers and query visitors can reuse them.
+ */
+public class RepRecord {
+
+    /** Size of a record on disk. */
+    public static final int BYTES = 32;
+
+    public long timestampMillis;
+    public int sessionId;
+    public short exercise;
+    public short repIndex;
+    public float formScore;
+    /** Exercise specific range of motion, e.g. squat depth as hip-to-knee angle in degrees. */
+    public float depth;
+    /** Bit per violated form rule. */
+    public int violations;
+    public int durationMillis;
+
+    public RepRecord set(RepRecord other) {
+        timestampMillis = other.timestampMillis;
+        sessionId = other.sessionId;
+        exercise = other.exercise;
+        repIndex = other.repIndex;
+        formScore = other.formScore;
+        depth = other.depth;
+        violations = other.violations;
+        durationMillis = other.durationMillis;
+        return this;
+    }
+
+    /**
+     * @return Days since the epoch (UTC) of this record, the granularity of the index.
+     */
+    public int getDay() {
+        return dayOf(timestampMillis);
+    }
+
+    public static int dayOf(long timestampMillis) {
+        long day = Math.floorDiv(timestampMillis, 86_400_000L);
+        // Saturate so that open ranges like Long.MAX_VALUE still work
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, day));
+    }
+
+    void write(ByteBuffer out) {
+        out.putLong(timestampMillis);
+        out.putInt(sessionId);
+        out.putShort(exercise);
+        out.putShort(repIndex);
+        out.putFloat(formScore);
+        out.putFloat(depth);
+        out.putInt(violations);
+        out.putInt(durationMillis);
+    }
+
+    void read(ByteBuffer in) {
+        timestampMillis = in.getLong();
+        sessionId = in.getInt();
+        exercise = in.getShort();
+        repIndex = in.getShort();
+        formScore = in.getFloat();
+        depth = in.getFloat();
+        violations = in.getInt();
+        durationMillis = in.getInt();
+    }
+}
@@ -0,0 +1,113 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.IOException;
+
+/**
+ * Feeds a frame recording into a FrameConsumer, either at the recorded frame rate or as fast
+ * as the consumer finishes frames, and reports throughput, latency and dropped frames.
+ *
+ * At the recorded rate a frame that arrives while the previous one is still being processed
+ * is dropped, like ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST together with the in-flight check
+ * of an AnalysisStream. At maximum speed no frame is dropped.
+ *
+ * Runs on a plain JVM too; the benchmark module has a command line front end, ReplayMain.
+ */
+public class ReplayHarness {
+
+    private static final String[] END_TO_END = {"end-to-end"};
+
+    private final FrameRecording.Reader reader;
+    private final FrameConsumer consumer;
+    private final StageTimer latency;
+
+    private final Object lock = new Object();
+    private boolean busy = false;
+    private long frameStartNanos;
+    private int completed;
+
+    private final Runnable done = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                latency.record(0, frameStartNanos);
+                completed++;
+                busy = false;
+                lock.notifyAll();
+            }
+        }
+    };
+
+    /**
+     * @param reader   The recording to replay.
+     * @param consumer Where the frames go.
+     */
+    public ReplayHarness(FrameRecording.Reader reader, FrameConsumer consumer) {
+        this.reader = reader;
+        this.consumer = consumer;
+        this.latency = new StageTimer(END_TO_END, 4096);
+    }
+
+    /**
+     * Replays the recording once from its current position.
+     *
+     * @param maxSpeed True to feed frames as fast as they are consumed, false to keep the
+     *                 recorded timing.
+     * @param stages   Stage timer the consumer records into, included in the report. May be null.
+     * @return The report of this run.
+     */
+    public ReplayReport run(boolean maxSpeed, StageTimer stages)
+            throws IOException, InterruptedException {
+        int delivered = 0;
+        int dropped = 0;
+        long firstTimestamp = -1;
+        long startNanos = System.nanoTime();
+        synchronized (lock) {
+            completed = 0;
+        }
+        latency.reset();
+        if (stages != null) {
+            stages.reset();
+        }
+
+        long timestamp;
+        while ((timestamp = reader.nextHeader()) >= 0) {
+            if (firstTimestamp < 0) {
+                firstTimestamp = timestamp;
+            }
+            if (maxSpeed) {
+                awaitIdle();
+            } else {
+                long waitNanos = startNanos + (timestamp - firstTimestamp) - System.nanoTime();
+                if (waitNanos > 0) {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                }
+            }
+
+            synchronized (lock) {
+                if (busy) {
+                    dropped++;
+                    reader.skip();
+                    continue;
+                }
+                busy = true;
+                frameStartNanos = System.nanoTime();
+            }
+            delivered++;
+            consumer.onFrame(reader.load(), done);
+        }
+        awaitIdle();
+
+        long elapsedNanos = System.nanoTime() - startNanos;
+        synchronized (lock) {
+            return new ReplayReport(delivered, completed, dropped, elapsedNanos, latency, stages);
+        }
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        synchronized (lock) {
+            while (busy) {
+                lock.wait();
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.util.Locale;
+
+/**
+ * Result of one replay run.
+ */
+public class ReplayReport {
+
+    private final int framesDelivered;
+    private final int framesCompleted;
+    private final int framesDropped;
+    private final long elapsedNanos;
+    private final StageTimer latency;
+    private final StageTimer stages;
+
+    ReplayReport(int framesDelivered, int framesCompleted, int framesDropped, long elapsedNanos,
+                 StageTimer latency, StageTimer stages) {
+        this.framesDelivered = framesDelivered;
+        this.framesCompleted = framesCompleted;
+        this.framesDropped = framesDropped;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        this.stages = stages;
+    }
+
+    public int getFramesDelivered() {
+        return framesDelivered;
+    }
+
+    public int getFramesCompleted() {
+        return framesCompleted;
+    }
+
+    public int getFramesDropped() {
+        return framesDropped;
+    }
+
+    public double getElapsedMs() {
+        return elapsedNanos / 1e6;
+    }
+
+    /**
+     * @return Completed frames per second of wall time.
+     */
+    public double getThroughputFps() {
+        return elapsedNanos == 0 ? 0 : framesCompleted * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return End-to-end latency of a frame in milliseconds.
+     */
+    public double getLatencyMs(double percentile) {
+        return latency.getPercentileMs(0, percentile);
+    }
+
+    /**
+     * @return Per-stage timings recorded by the consumer, or null.
+     */
+    public StageTimer getStages() {
+        return stages;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US,
+                "frames delivered=%d completed=%d dropped=%d in %.1fms, %.1f fps%n",
+                framesDelivered, framesCompleted, framesDropped, getElapsedMs(), getThroughputFps()));
+        builder.append(latency);
+        if (stages != null) {
+            builder.append(stages);
+        }
+        return builder.toString();
+    }
+}
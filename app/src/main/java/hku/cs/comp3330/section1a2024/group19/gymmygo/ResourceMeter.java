@@ -0,0 +1,118 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.util.Locale;
+
+/**
+ * Turns periodic readings of the process CPU time and the battery into hourly rates, to
+ * tell what a long-running mode costs.
+ *
+ * CPU time counts from the first sample. Battery drain only counts the stretches between
+ * two samples during which the device was not charging, so plugging in does not show up as
+ * negative drain. The charge counter is preferred when the device reports one, since the
+ * battery level only moves in whole percent.
+ */
+public class ResourceMeter {
+
+    private boolean hasSample = false;
+    private long firstElapsedMs;
+    private long firstCpuMs;
+    private long lastElapsedMs;
+    private long lastCpuMs;
+    private int lastBatteryPercent;
+    private long lastChargeMicroAh;
+    private boolean lastCharging;
+    private int samples = 0;
+
+    // Sums over the intervals spent on battery
+    private long dischargingMs = 0;
+    private int drainedPercent = 0;
+    private long chargeMs = 0;
+    private long drainedMicroAh = 0;
+
+    /**
+     * Adds a reading.
+     *
+     * @param elapsedMs      Monotonic time, e.g. SystemClock.elapsedRealtime().
+     * @param cpuMs          CPU time used by the process so far.
+     * @param batteryPercent Battery level, 0 to 100.
+     * @param chargeMicroAh  Remaining charge, or 0 or less if the device does not report it.
+     * @param charging       True if the device is plugged in.
+     */
+    public synchronized void sample(long elapsedMs, long cpuMs, int batteryPercent,
+                                    long chargeMicroAh, boolean charging) {
+        if (!hasSample) {
+            hasSample = true;
+            firstElapsedMs = elapsedMs;
+            firstCpuMs = cpuMs;
+        } else if (!charging && !lastCharging) {
+            long interval = elapsedMs - lastElapsedMs;
+            dischargingMs += interval;
+            drainedPercent += lastBatteryPercent - batteryPercent;
+            if (chargeMicroAh > 0 && lastChargeMicroAh > 0) {
+                chargeMs += interval;
+                drainedMicroAh += lastChargeMicroAh - chargeMicroAh;
+            }
+        }
+        lastElapsedMs = elapsedMs;
+        lastCpuMs = cpuMs;
+        lastBatteryPercent = batteryPercent;
+        lastChargeMicroAh = chargeMicroAh;
+        lastCharging = charging;
+        samples++;
+    }
+
+    public synchronized int getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * @return Milliseconds of CPU time used per hour, or NaN before two samples.
+     */
+    public synchronized double getCpuMsPerHour() {
+        long elapsed = lastElapsedMs - firstElapsedMs;
+        return elapsed > 0 ? perHour(lastCpuMs - firstCpuMs, elapsed) : Double.NaN;
+    }
+
+    /**
+     * @return Average load in percent of one core, or NaN before two samples.
+     */
+    public synchronized double getCpuPercent() {
+        return getCpuMsPerHour() / 3_600_000.0 * 100;
+    }
+
+    /**
+     * @return Battery level lost per hour on battery, or NaN without time on battery.
+     */
+    public synchronized double getBatteryPercentPerHour() {
+        return dischargingMs > 0 ? perHour(drainedPercent, dischargingMs) : Double.NaN;
+    }
+
+    /**
+     * @return Average current drawn from the battery in mA, or NaN if the device reports no
+     *         charge counter.
+     */
+    public synchronized double getDrainMilliamps() {
+        return chargeMs > 0 ? perHour(drainedMicroAh, chargeMs) / 1000 : Double.NaN;
+    }
+
+    public synchronized void reset() {
+        hasSample = false;
+        samples = 0;
+        dischargingMs = 0;
+        drainedPercent = 0;
+        chargeMs = 0;
+        drainedMicroAh = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "Resources: %d samples over %ds, CPU %.0f ms/h (%.2f%%), battery %.2f %%/h, drain %.1f mA",
+                samples, (lastElapsedMs - firstElapsedMs) / 1000,
+                getCpuMsPerHour(), getCpuPercent(), getBatteryPercentPerHour(), getDrainMilliamps());
+    }
+
+    private static double perHour(double amount, long elapsedMs) {
+        return amount * 3_600_000.0 / elapsedMs;
+    }
+}
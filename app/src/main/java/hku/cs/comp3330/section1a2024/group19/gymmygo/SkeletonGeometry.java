@@ -0,0 +1,153 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Turns a {@link LandmarkFrame} into flat coordinate arrays for Canvas.drawLines and
+ * Canvas.drawPoints, one array per confidence level, so that a whole skeleton takes a
+ * handful of draw calls. The arrays are allocated once and reused for every frame.
+ */
+public class SkeletonGeometry {
+
+    public static final int CONFIDENCE_HIGH = 0;
+    public static final int CONFIDENCE_MEDIUM = 1;
+    public static final int CONFIDENCE_LOW = 2;
+    public static final int CONFIDENCE_LEVELS = 3;
+
+    private final float highLikelihood;
+    private final float mediumLikelihood;
+    private final float minLikelihood;
+
+    private SkeletonTopology topology;
+    private final float[][] lines = new float[CONFIDENCE_LEVELS][];
+    private final int[] lineLengths = new int[CONFIDENCE_LEVELS];
+    private final float[][] points = new float[CONFIDENCE_LEVELS][];
+    private final int[] pointLengths = new int[CONFIDENCE_LEVELS];
+    private float[] highlights;
+    private int highlightLength;
+    private long highlightMask = 0;
+
+    /**
+     * @param topology         The skeleton to draw.
+     * @param highLikelihood   Landmarks at or above this are high confidence.
+     * @param mediumLikelihood Landmarks at or above this are medium confidence, the rest low.
+     * @param minLikelihood    Landmarks at or below this are not drawn.
+     */
+    public SkeletonGeometry(SkeletonTopology topology, float highLikelihood,
+                            float mediumLikelihood, float minLikelihood) {
+        this.highLikelihood = highLikelihood;
+        this.mediumLikelihood = mediumLikelihood;
+        this.minLikelihood = minLikelihood;
+        setTopology(topology);
+    }
+
+    public void setTopology(SkeletonTopology topology) {
+        this.topology = topology;
+        for (int level = 0; level < CONFIDENCE_LEVELS; level++) {
+            lines[level] = new float[topology.getConnectionCount() * 4];
+            points[level] = new float[topology.getPointCount() * 2];
+            lineLengths[level] = 0;
+            pointLengths[level] = 0;
+        }
+        highlights = new float[topology.getPointCount() * 2];
+        highlightLength = 0;
+    }
+
+    public SkeletonTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @param mask Bit per PoseLandmark type of joints drawn highlighted, e.g. a joint that
+     *             breaks a form rule.
+     */
+    public void setHighlightedJoints(long mask) {
+        highlightMask = mask;
+    }
+
+    /**
+     * Fills the arrays from a frame. A bone takes the confidence of its weaker end.
+     */
+    public void build(LandmarkFrame frame) {
+        for (int level = 0; level < CONFIDENCE_LEVELS; level++) {
+            lineLengths[level] = 0;
+            pointLengths[level] = 0;
+        }
+        highlightLength = 0;
+
+        for (int i = 0; i < topology.getConnectionCount(); i++) {
+            int start = topology.getConnectionStart(i);
+            int end = topology.getConnectionEnd(i);
+            int level = level(Math.min(frame.likelihood[start], frame.likelihood[end]));
+            if (level < 0) {
+                continue;
+            }
+            float[] out = lines[level];
+            int n = lineLengths[level];
+            out[n] = frame.x[start];
+            out[n + 1] = frame.y[start];
+            out[n + 2] = frame.x[end];
+            out[n + 3] = frame.y[end];
+            lineLengths[level] = n + 4;
+        }
+
+        for (int i = 0; i < topology.getPointCount(); i++) {
+            int type = topology.getPoint(i);
+            int level = level(frame.likelihood[type]);
+            if (level < 0) {
+                continue;
+            }
+            float[] out;
+            int n;
+            if ((highlightMask & (1L << type)) != 0) {
+                out = highlights;
+                n = highlightLength;
+                highlightLength = n + 2;
+            } else {
+                out = points[level];
+                n = pointLengths[level];
+                pointLengths[level] = n + 2;
+            }
+            out[n] = frame.x[type];
+            out[n + 1] = frame.y[type];
+        }
+    }
+
+    public float[] getLines(int level) {
+        return lines[level];
+    }
+
+    /**
+     * @return Number of floats used in {@link #getLines(int)}, four per bone.
+     */
+    public int getLineLength(int level) {
+        return lineLengths[level];
+    }
+
+    public float[] getPoints(int level) {
+        return points[level];
+    }
+
+    /**
+     * @return Number of floats used in {@link #getPoints(int)}, two per joint.
+     */
+    public int getPointLength(int level) {
+        return pointLengths[level];
+    }
+
+    public float[] getHighlights() {
+        return highlights;
+    }
+
+    public int getHighlightLength() {
+        return highlightLength;
+    }
+
+    private int level(float likelihood) {
+        if (likelihood <= minLikelihood) {
+            return -1;
+        }
+        if (likelihood >= highLikelihood) {
+            return CONFIDENCE_HIGH;
+        }
+        return likelihood >= mediumLikelihood ? CONFIDENCE_MEDIUM : CONFIDENCE_LOW;
+    }
+}
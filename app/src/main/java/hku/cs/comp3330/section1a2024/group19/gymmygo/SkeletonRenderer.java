@@ -0,0 +1,73 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Draws a skeleton with one drawLines and one drawPoints call per confidence level, plus one
+ * for highlighted joints. Paints are built once; lower confidence is drawn more transparent.
+ */
+public class SkeletonRenderer implements PoseFrameProcessor.OverlayRenderer {
+
+    private static final float HIGH_LIKELIHOOD = 0.8f;
+    private static final float MEDIUM_LIKELIHOOD = 0.5f;
+    private static final int[] LEVEL_ALPHA = {255, 160, 64};
+
+    private static final float LINE_WIDTH = 5;
+    // Round points of this width look like the circles the overlay used to draw
+    private static final float POINT_WIDTH = 26;
+    private static final float HIGHLIGHT_WIDTH = 36;
+
+    private final SkeletonGeometry geometry;
+    private final Paint[] linePaints = new Paint[SkeletonGeometry.CONFIDENCE_LEVELS];
+    private final Paint[] pointPaints = new Paint[SkeletonGeometry.CONFIDENCE_LEVELS];
+    private final Paint highlightPaint;
+
+    public SkeletonRenderer(SkeletonTopology topology) {
+        geometry = new SkeletonGeometry(topology, HIGH_LIKELIHOOD, MEDIUM_LIKELIHOOD, 0f);
+        for (int level = 0; level < SkeletonGeometry.CONFIDENCE_LEVELS; level++) {
+            linePaints[level] = newPaint(Color.RED, LEVEL_ALPHA[level], LINE_WIDTH);
+            pointPaints[level] = newPaint(Color.GREEN, LEVEL_ALPHA[level], POINT_WIDTH);
+        }
+        highlightPaint = newPaint(Color.YELLOW, 255, HIGHLIGHT_WIDTH);
+    }
+
+    public SkeletonGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Draws the landmarks of a frame. Bones go first so that joints stay on top.
+     */
+    @Override
+    public void draw(Canvas canvas, LandmarkFrame frame) {
+        geometry.build(frame);
+        for (int level = 0; level < SkeletonGeometry.CONFIDENCE_LEVELS; level++) {
+            int length = geometry.getLineLength(level);
+            if (length > 0) {
+                canvas.drawLines(geometry.getLines(level), 0, length, linePaints[level]);
+            }
+        }
+        for (int level = 0; level < SkeletonGeometry.CONFIDENCE_LEVELS; level++) {
+            int length = geometry.getPointLength(level);
+            if (length > 0) {
+                canvas.drawPoints(geometry.getPoints(level), 0, length, pointPaints[level]);
+            }
+        }
+        if (geometry.getHighlightLength() > 0) {
+            canvas.drawPoints(geometry.getHighlights(), 0, geometry.getHighlightLength(),
+                    highlightPaint);
+        }
+    }
+
+    private static Paint newPaint(int color, int alpha, float width) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setAlpha(alpha);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeWidth(width);
+        return paint;
+    }
+}
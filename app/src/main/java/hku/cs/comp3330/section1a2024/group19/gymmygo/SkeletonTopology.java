@@ -0,0 +1,135 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Which landmarks of a pose are drawn and which pairs are connected, by PoseLandmark type.
+ */
+public class SkeletonTopology {
+
+    /** All joints with arms, trunk and legs connected, the skeleton the overlay has always shown. */
+    public static final SkeletonTopology BODY = new SkeletonTopology(range(0, 32), new int[]{
+            11, 13, 13, 15,     // left shoulder - elbow - wrist
+            12, 14, 14, 16,     // right shoulder - elbow - wrist
+            11, 12, 23, 24,     // shoulders, hips
+            11, 23, 12, 24,     // sides
+            23, 25, 25, 27,     // left hip - knee - ankle
+            24, 26, 26, 28,     // right hip - knee - ankle
+    });
+
+    /** Nose, eyes, ears and mouth. */
+    public static final SkeletonTopology FACE = new SkeletonTopology(range(0, 10), new int[]{
+            0, 1, 1, 2, 2, 3, 3, 7,     // nose - left eye - left ear
+            0, 4, 4, 5, 5, 6, 6, 8,     // nose - right eye - right ear
+            9, 10,                      // mouth
+    });
+
+    /** Wrists with pinky, index and thumb. */
+    public static final SkeletonTopology HANDS = new SkeletonTopology(range(15, 22), new int[]{
+            15, 17, 15, 19, 17, 19, 15, 21,
+            16, 18, 16, 20, 18, 20, 16, 22,
+    });
+
+    /** All 33 landmarks with the connections of the full ML Kit pose model. */
+    public static final SkeletonTopology FULL = BODY.plus(FACE).plus(HANDS).plus(
+            new SkeletonTopology(new int[0], new int[]{
+                    27, 29, 29, 31, 27, 31,     // left ankle - heel - foot index
+                    28, 30, 30, 32, 28, 32,     // right ankle - heel - foot index
+            }));
+
+    private final int[] points;
+    private final int[] connections;
+
+    /**
+     * @param points      Landmark types drawn as joints.
+     * @param connections Pairs of landmark types drawn as bones, two entries per bone.
+     */
+    public SkeletonTopology(int[] points, int[] connections) {
+        if (connections.length % 2 != 0) {
+            throw new IllegalArgumentException("Connections must come in pairs");
+        }
+        for (int type : points) {
+            checkType(type);
+        }
+        for (int type : connections) {
+            checkType(type);
+        }
+        this.points = points.clone();
+        this.connections = connections.clone();
+    }
+
+    public int getPointCount() {
+        return points.length;
+    }
+
+    public int getPoint(int index) {
+        return points[index];
+    }
+
+    public int getConnectionCount() {
+        return connections.length / 2;
+    }
+
+    public int getConnectionStart(int index) {
+        return connections[2 * index];
+    }
+
+    public int getConnectionEnd(int index) {
+        return connections[2 * index + 1];
+    }
+
+    /**
+     * @return A topology with the points and connections of both, without duplicates.
+     */
+    public SkeletonTopology plus(SkeletonTopology other) {
+        int[] mergedPoints = new int[points.length + other.points.length];
+        int pointCount = 0;
+        long seen = 0;
+        for (int[] source : new int[][]{points, other.points}) {
+            for (int type : source) {
+                if ((seen & (1L << type)) == 0) {
+                    seen |= 1L << type;
+                    mergedPoints[pointCount++] = type;
+                }
+            }
+        }
+
+        int[] mergedConnections = new int[connections.length + other.connections.length];
+        int connectionLength = 0;
+        for (int[] source : new int[][]{connections, other.connections}) {
+            for (int i = 0; i < source.length; i += 2) {
+                if (!contains(mergedConnections, connectionLength, source[i], source[i + 1])) {
+                    mergedConnections[connectionLength++] = source[i];
+                    mergedConnections[connectionLength++] = source[i + 1];
+                }
+            }
+        }
+        int[] trimmedPoints = new int[pointCount];
+        System.arraycopy(mergedPoints, 0, trimmedPoints, 0, pointCount);
+        int[] trimmedConnections = new int[connectionLength];
+        System.arraycopy(mergedConnections, 0, trimmedConnections, 0, connectionLength);
+        return new SkeletonTopology(trimmedPoints, trimmedConnections);
+    }
+
+    private static boolean contains(int[] connections, int length, int a, int b) {
+        for (int i = 0; i < length; i += 2) {
+            if ((connections[i] == a && connections[i + 1] == b)
+                    || (connections[i] == b && connections[i + 1] == a)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void checkType(int type) {
+        if (type < 0 || type >= LandmarkFrame.LANDMARK_COUNT) {
+            throw new IllegalArgumentException("Not a landmark type: " + type);
+        }
+    }
+
+    private static int[] range(int first, int last) {
+        int[] types = new int[last - first + 1];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = first + i;
+        }
+        return types;
+    }
+}
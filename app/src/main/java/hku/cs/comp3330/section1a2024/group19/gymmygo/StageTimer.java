@@ -0,0 +1,87 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Keeps the most recent durations of each pipeline stage for percentile reports.
+ * Recording is allocation-free and may happen from any thread.
+ */
+public class StageTimer {
+
+    private final String[] stageNames;
+    private final long[][] samples;
+    private final int[] counts;
+
+    /**
+     * @param stageNames Name of each stage, the stage index is the position in this array.
+     * @param capacity   Number of recent samples kept per stage.
+     */
+    public StageTimer(String[] stageNames, int capacity) {
+        this.stageNames = stageNames.clone();
+        this.samples = new long[stageNames.length][capacity];
+        this.counts = new int[stageNames.length];
+    }
+
+    /**
+     * Records how long a stage took.
+     *
+     * @param stage      Index of the stage.
+     * @param startNanos System.nanoTime() when the stage started.
+     */
+    public void record(int stage, long startNanos) {
+        recordDuration(stage, System.nanoTime() - startNanos);
+    }
+
+    public synchronized void recordDuration(int stage, long durationNanos) {
+        long[] stageSamples = samples[stage];
+        stageSamples[counts[stage] % stageSamples.length] = durationNanos;
+        counts[stage]++;
+    }
+
+    public int getStageCount() {
+        return stageNames.length;
+    }
+
+    public String getStageName(int stage) {
+        return stageNames[stage];
+    }
+
+    /**
+     * @return Number of samples recorded for the stage, including those no longer kept.
+     */
+    public synchronized int getSampleCount(int stage) {
+        return counts[stage];
+    }
+
+    /**
+     * @param stage      Index of the stage.
+     * @param percentile Between 0 and 100.
+     * @return The percentile of the kept samples in milliseconds, 0 without samples.
+     */
+    public synchronized double getPercentileMs(int stage, double percentile) {
+        int kept = Math.min(counts[stage], samples[stage].length);
+        if (kept == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples[stage], kept);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * kept) - 1;
+        return sorted[Math.max(0, Math.min(kept - 1, index))] / 1e6;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int stage = 0; stage < stageNames.length; stage++) {
+            builder.append(String.format(Locale.US, "%-12s n=%-6d p50=%7.2fms p95=%7.2fms max=%7.2fms%n",
+                    stageNames[stage], getSampleCount(stage), getPercentileMs(stage, 50),
+                    getPercentileMs(stage, 95), getPercentileMs(stage, 100)));
+        }
+        return builder.toString();
+    }
+}
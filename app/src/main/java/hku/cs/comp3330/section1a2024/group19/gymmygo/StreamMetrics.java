@@ -0,0 +1,125 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-stream frame counters and latency stats.
+ * Written from the analyzer thread and the detector callbacks, read from the UI.
+ */
+public class StreamMetrics {
+
+    public static final int STAGE_CONVERT = 0;
+    public static final int STAGE_ROTATE = 1;
+    public static final int STAGE_DETECT = 2;
+    public static final int STAGE_DRAW = 3;
+
+    private static final String[] STAGE_NAMES = {"convert", "rotate", "detect", "draw"};
+
+    private final String name;
+    private final StageTimer stageTimer = new StageTimer(STAGE_NAMES, 512);
+
+    private final AtomicLong framesReceived = new AtomicLong();
+    private final AtomicLong framesProcessed = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong framesIdle = new AtomicLong();
+    private final AtomicLong framesFailed = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public StreamMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Recent durations of the conversion, rotation, detection and overlay drawing stages.
+     */
+    public StageTimer getStageTimer() {
+        return stageTimer;
+    }
+
+    public void onFrameReceived() {
+        framesReceived.incrementAndGet();
+    }
+
+    public void onFrameDropped() {
+        framesDropped.incrementAndGet();
+    }
+
+    /**
+     * Records a frame that only got the cheap idle check.
+     */
+    public void onFrameIdle() {
+        framesIdle.incrementAndGet();
+    }
+
+    public void onFrameFailed() {
+        framesFailed.incrementAndGet();
+    }
+
+    /**
+     * Records a frame that made it through the whole pipeline.
+     *
+     * @param latencyNanos Time from the analyzer callback to the detection result.
+     */
+    public void onFrameProcessed(long latencyNanos) {
+        framesProcessed.incrementAndGet();
+        totalLatencyNanos.addAndGet(latencyNanos);
+        long max;
+        do {
+            max = maxLatencyNanos.get();
+        } while (latencyNanos > max && !maxLatencyNanos.compareAndSet(max, latencyNanos));
+    }
+
+    public long getFramesReceived() {
+        return framesReceived.get();
+    }
+
+    public long getFramesProcessed() {
+        return framesProcessed.get();
+    }
+
+    public long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    public long getFramesIdle() {
+        return framesIdle.get();
+    }
+
+    public long getFramesFailed() {
+        return framesFailed.get();
+    }
+
+    public double getAverageLatencyMs() {
+        long processed = framesProcessed.get();
+        return processed == 0 ? 0 : totalLatencyNanos.get() / 1e6 / processed;
+    }
+
+    public double getMaxLatencyMs() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    public void reset() {
+        framesReceived.set(0);
+        framesProcessed.set(0);
+        framesDropped.set(0);
+        framesIdle.set(0);
+        framesFailed.set(0);
+        totalLatencyNanos.set(0);
+        maxLatencyNanos.set(0);
+        stageTimer.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s: received=%d processed=%d dropped=%d idle=%d failed=%d avg=%.1fms max=%.1fms",
+                name, getFramesReceived(), getFramesProcessed(), getFramesDropped(), getFramesIdle(),
+                getFramesFailed(), getAverageLatencyMs(), getMaxLatencyMs());
+    }
+}
@@ -0,0 +1,61 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Detection with one {@link TflitePoseBackend} per stream. The model reads the YUV planes
+ * directly and runs synchronously on the capture lane, so streams without an overlay skip
+ * the bitmap conversion entirely.
+ */
+public class TfliteDetectorStage implements PoseFrameProcessor.Detector {
+
+    private final TflitePoseBackend[] backends;
+
+    /**
+     * @param backends One backend per stream. The stage takes ownership of them.
+     */
+    public TfliteDetectorStage(TflitePoseBackend[] backends) {
+        this.backends = backends.clone();
+    }
+
+    @Override
+    public boolean usesBitmap() {
+        return false;
+    }
+
+    @Override
+    public boolean tryAcquire(int stream) {
+        // Each stream has its own backend and at most one frame in flight
+        return true;
+    }
+
+    @Override
+    public void detect(int stream, YuvFrame frame, Bitmap upright, LandmarkFrame out,
+                       Executor executor, PoseFrameProcessor.Callback callback) {
+        Exception error = null;
+        try {
+            backends[stream].estimate(frame, out);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        Exception result = error;
+        executor.execute(() -> callback.onDetected(result));
+    }
+
+    @Override
+    public void release(int stream) {
+    }
+
+    @Override
+    public void clearStream(int stream) {
+    }
+
+    @Override
+    public void close() {
+        for (TflitePoseBackend backend : backends) {
+            backend.close();
+        }
+    }
+}
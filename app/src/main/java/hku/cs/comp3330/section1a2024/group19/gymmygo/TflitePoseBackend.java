@@ -0,0 +1,236 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Pose detection with a MoveNet or BlazePose style model instead of ML Kit.
+ *
+ * The input tensor is filled straight from the YUV planes: the frame is rotated upright,
+ * letterboxed into the model's input size and converted to RGB in one pass, sampling the
+ * planes through index tables that are only rebuilt when the frame geometry changes. The
+ * tensor lives in a direct buffer that is reused for every frame. The keypoints are mapped
+ * back to pixels of the upright frame and written into a {@link LandmarkFrame} by
+ * PoseLandmark type, the same form the ML Kit path produces, so filtering and drawing do
+ * not care which backend ran.
+ *
+ * Not thread safe; use one backend per stream.
+ */
+public class TflitePoseBackend implements Closeable {
+
+    // PoseLandmark type of each MoveNet (COCO) keypoint
+    private static final int[] MOVENET_LANDMARKS = {
+            0,                          // nose
+            2, 5, 7, 8,                 // left eye, right eye, left ear, right ear
+            11, 12, 13, 14, 15, 16,     // shoulders, elbows, wrists
+            23, 24, 25, 26, 27, 28,     // hips, knees, ankles
+    };
+
+    private static final int BLAZEPOSE_VALUES = 5;
+
+    private final PoseModel model;
+    private final int inputWidth;
+    private final int inputHeight;
+    private final int inputType;
+    private final float floatMean;
+    private final float floatStd;
+    private final ByteBuffer input;
+    private final float[] output;
+
+    // Plane offsets sampled for each input pixel, -1 for letterbox padding
+    private final int[] yIndex;
+    private final int[] uIndex;
+    private final int[] vIndex;
+
+    // Geometry the tables were built for
+    private int tableWidth = -1;
+    private int tableHeight;
+    private int tableRotation;
+    private int tableYRowStride;
+    private int tableURowStride;
+    private int tableUPixelStride;
+    private int tableVRowStride;
+    private int tableVPixelStride;
+    private float scale;
+    private float padX;
+    private float padY;
+
+    /**
+     * @param model     The model. The backend takes ownership of it.
+     * @param floatMean Subtracted from the 0 to 255 channel values of float inputs.
+     * @param floatStd  Divides the channel values of float inputs after the mean, e.g. 255
+     *                  for inputs in [0, 1].
+     */
+    public TflitePoseBackend(PoseModel model, float floatMean, float floatStd) {
+        if (model.getOutputLayout() != PoseModel.OUTPUT_MOVENET
+                && model.getOutputLayout() != PoseModel.OUTPUT_BLAZEPOSE) {
+            throw new IllegalArgumentException("Not a pose model layout: " + model.getOutputLayout());
+        }
+        int required = model.getOutputLayout() == PoseModel.OUTPUT_MOVENET
+                ? 3 * MOVENET_LANDMARKS.length
+                : BLAZEPOSE_VALUES * LandmarkFrame.LANDMARK_COUNT;
+        if (model.getOutputSize() < required) {
+            throw new IllegalArgumentException("Model output has " + model.getOutputSize()
+                    + " values, expected at least " + required);
+        }
+        this.model = model;
+        this.inputWidth = model.getInputWidth();
+        this.inputHeight = model.getInputHeight();
+        this.inputType = model.getInputType();
+        this.floatMean = floatMean;
+        this.floatStd = floatStd;
+
+        int pixels = inputWidth * inputHeight;
+        int bytesPerChannel = inputType == PoseModel.INPUT_FLOAT32 ? 4 : 1;
+        input = ByteBuffer.allocateDirect(pixels * 3 * bytesPerChannel).order(ByteOrder.nativeOrder());
+        output = new float[model.getOutputSize()];
+        yIndex = new int[pixels];
+        uIndex = new int[pixels];
+        vIndex = new int[pixels];
+    }
+
+    /**
+     * Detects the pose in one frame. Does not allocate once the frame geometry is known.
+     *
+     * @param frame The frame, its buffers must be valid until this returns.
+     * @param out   Receives the landmarks in pixels of the upright frame. Landmarks the
+     *              model does not report get a likelihood of 0.
+     * @return out, for chaining.
+     */
+    public LandmarkFrame estimate(YuvFrame frame, LandmarkFrame out) {
+        fillInput(frame);
+        model.run(input, output);
+
+        out.clear();
+        out.imageWidth = frame.getUprightWidth();
+        out.imageHeight = frame.getUprightHeight();
+        out.timestampNanos = frame.timestampNanos;
+        if (model.getOutputLayout() == PoseModel.OUTPUT_MOVENET) {
+            for (int k = 0; k < MOVENET_LANDMARKS.length; k++) {
+                int type = MOVENET_LANDMARKS[k];
+                out.y[type] = (output[3 * k] * inputHeight - padY) / scale;
+                out.x[type] = (output[3 * k + 1] * inputWidth - padX) / scale;
+                out.likelihood[type] = output[3 * k + 2];
+            }
+        } else {
+            for (int type = 0; type < LandmarkFrame.LANDMARK_COUNT; type++) {
+                int base = BLAZEPOSE_VALUES * type;
+                out.x[type] = (output[base] - padX) / scale;
+                out.y[type] = (output[base + 1] - padY) / scale;
+                out.z[type] = output[base + 2] / scale;
+                out.likelihood[type] = sigmoid(output[base + 3]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Writes the upright, letterboxed RGB image of the frame into the input tensor.
+     *
+     * @return The input tensor, positioned at 0. Valid until the next call.
+     */
+    ByteBuffer fillInput(YuvFrame frame) {
+        updateTables(frame);
+        input.clear();
+        for (int i = 0; i < yIndex.length; i++) {
+            putPixel(frame, yIndex[i], uIndex[i], vIndex[i], input, inputType, floatMean, floatStd);
+        }
+        input.rewind();
+        return input;
+    }
+
+    @Override
+    public void close() {
+        model.close();
+    }
+
+    /**
+     * Converts one pixel to RGB and appends it to a model input. Shared with
+     * {@link DetailStage}, which samples crops of the same planes.
+     *
+     * @param yIndex Offset in the Y plane, or -1 for a black padding pixel.
+     */
+    static void putPixel(YuvFrame frame, int yIndex, int uIndex, int vIndex, ByteBuffer input,
+                         int inputType, float floatMean, float floatStd) {
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        if (yIndex >= 0) {
+            // BT.601 full range, 16.16 fixed point
+            int luma = frame.y.get(yIndex) & 0xff;
+            int cb = (frame.u.get(uIndex) & 0xff) - 128;
+            int cr = (frame.v.get(vIndex) & 0xff) - 128;
+            r = clamp(luma + ((91881 * cr) >> 16));
+            g = clamp(luma - ((22554 * cb + 46802 * cr) >> 16));
+            b = clamp(luma + ((116130 * cb) >> 16));
+        }
+        putChannel(input, inputType, floatMean, floatStd, r);
+        putChannel(input, inputType, floatMean, floatStd, g);
+        putChannel(input, inputType, floatMean, floatStd, b);
+    }
+
+    private static void putChannel(ByteBuffer input, int inputType, float floatMean,
+                                   float floatStd, int value) {
+        switch (inputType) {
+            case PoseModel.INPUT_UINT8:
+                input.put((byte) value);
+                break;
+            case PoseModel.INPUT_INT8:
+                input.put((byte) (value - 128));
+                break;
+            default:
+                input.putFloat((value - floatMean) / floatStd);
+                break;
+        }
+    }
+
+    private void updateTables(YuvFrame frame) {
+        if (frame.width == tableWidth && frame.height == tableHeight
+                && frame.rotationDegrees == tableRotation
+                && frame.yRowStride == tableYRowStride
+                && frame.uRowStride == tableURowStride && frame.uPixelStride == tableUPixelStride
+                && frame.vRowStride == tableVRowStride && frame.vPixelStride == tableVPixelStride) {
+            return;
+        }
+        tableWidth = frame.width;
+        tableHeight = frame.height;
+        tableRotation = frame.rotationDegrees;
+        tableYRowStride = frame.yRowStride;
+        tableURowStride = frame.uRowStride;
+        tableUPixelStride = frame.uPixelStride;
+        tableVRowStride = frame.vRowStride;
+        tableVPixelStride = frame.vPixelStride;
+
+        int uprightWidth = frame.getUprightWidth();
+        int uprightHeight = frame.getUprightHeight();
+        scale = Math.min((float) inputWidth / uprightWidth, (float) inputHeight / uprightHeight);
+        padX = (inputWidth - uprightWidth * scale) / 2;
+        padY = (inputHeight - uprightHeight * scale) / 2;
+
+        int i = 0;
+        for (int oy = 0; oy < inputHeight; oy++) {
+            float fy = (oy + 0.5f - padY) / scale;
+            for (int ox = 0; ox < inputWidth; ox++, i++) {
+                float fx = (ox + 0.5f - padX) / scale;
+                if (fx < 0 || fy < 0 || fx >= uprightWidth || fy >= uprightHeight) {
+                    yIndex[i] = -1;
+                    continue;
+                }
+                int sx = frame.getSensorX((int) fx, (int) fy);
+                int sy = frame.getSensorY((int) fx, (int) fy);
+                yIndex[i] = sy * frame.yRowStride + sx;
+                uIndex[i] = (sy / 2) * frame.uRowStride + (sx / 2) * frame.uPixelStride;
+                vIndex[i] = (sy / 2) * frame.vRowStride + (sx / 2) * frame.vPixelStride;
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : value > 255 ? 255 : value;
+    }
+
+    private static float sigmoid(float logit) {
+        return (float) (1 / (1 + Math.exp(-logit)));
+    }
+}
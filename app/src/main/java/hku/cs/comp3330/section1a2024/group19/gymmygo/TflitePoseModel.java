@@ -0,0 +1,140 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A {@link PoseModel} run by the TensorFlow Lite interpreter on the CPU.
+ *
+ * The model file decides the precision: the int8 variant runs quantized kernels, the float16
+ * variant stores half precision weights that are expanded on load. XNNPACK accelerates both
+ * on ARM and x86. The benchmark module runs the same files on a desktop JVM through its
+ * DesktopTflitePoseModel.
+ */
+public class TflitePoseModel implements PoseModel {
+
+    public static final String VARIANT_INT8 = "int8";
+    public static final String VARIANT_FP16 = "fp16";
+
+    private final Interpreter interpreter;
+    private final int inputWidth;
+    private final int inputHeight;
+    private final int inputType;
+    private final int outputLayout;
+    private final int outputSize;
+    private final ByteBuffer outputBuffer;
+    private final FloatBuffer outputFloats;
+
+    /**
+     * @param model        The flatbuffer, e.g. mapped with {@link #mapAsset}.
+     * @param outputLayout OUTPUT_ constant of the model file.
+     * @param threads      Interpreter threads.
+     * @param useXnnpack   Whether to delegate supported operations to XNNPACK.
+     * @throws IllegalArgumentException If the tensors do not fit an RGB input or the layout.
+     */
+    public TflitePoseModel(ByteBuffer model, int outputLayout, int threads, boolean useXnnpack) {
+        Interpreter.Options options = new Interpreter.Options()
+                .setNumThreads(threads)
+                .setUseXNNPACK(useXnnpack);
+        interpreter = new Interpreter(model, options);
+
+        Tensor input = interpreter.getInputTensor(0);
+        int[] shape = input.shape();
+        if (shape.length != 4 || shape[3] != 3) {
+            interpreter.close();
+            throw new IllegalArgumentException("Expected an NHWC RGB input, got "
+                    + Arrays.toString(shape));
+        }
+        inputHeight = shape[1];
+        inputWidth = shape[2];
+        if (input.dataType() == DataType.UINT8) {
+            inputType = INPUT_UINT8;
+        } else if (input.dataType() == DataType.INT8) {
+            inputType = INPUT_INT8;
+        } else {
+            inputType = INPUT_FLOAT32;
+        }
+
+        Tensor output = interpreter.getOutputTensor(0);
+        try {
+            PoseModel.checkOutputShape(outputLayout, output.shape());
+        } catch (IllegalArgumentException e) {
+            interpreter.close();
+            throw e;
+        }
+        this.outputLayout = outputLayout;
+        outputSize = output.numElements();
+        outputBuffer = ByteBuffer.allocateDirect(4 * outputSize).order(ByteOrder.nativeOrder());
+        outputFloats = outputBuffer.asFloatBuffer();
+    }
+
+    /**
+     * @return The name of the bundled MoveNet Lightning model of a variant, whose output
+     *         layout is {@link #OUTPUT_MOVENET}.
+     */
+    public static String getAssetName(String variant) {
+        return "movenet_lightning_" + variant + ".tflite";
+    }
+
+    /**
+     * Maps a model from the assets without copying it. The asset must be stored uncompressed.
+     */
+    public static MappedByteBuffer mapAsset(Context context, String assetName) throws IOException {
+        try (AssetFileDescriptor descriptor = context.getAssets().openFd(assetName);
+             FileInputStream stream = new FileInputStream(descriptor.getFileDescriptor())) {
+            return stream.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                    descriptor.getStartOffset(), descriptor.getDeclaredLength());
+        }
+    }
+
+    @Override
+    public int getInputWidth() {
+        return inputWidth;
+    }
+
+    @Override
+    public int getInputHeight() {
+        return inputHeight;
+    }
+
+    @Override
+    public int getInputType() {
+        return inputType;
+    }
+
+    @Override
+    public int getOutputLayout() {
+        return outputLayout;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public void run(ByteBuffer input, float[] output) {
+        outputBuffer.clear();
+        interpreter.run(input, outputBuffer);
+        outputFloats.rewind();
+        outputFloats.get(output, 0, outputSize);
+    }
+
+    @Override
+    public void close() {
+        interpreter.close();
+    }
+}
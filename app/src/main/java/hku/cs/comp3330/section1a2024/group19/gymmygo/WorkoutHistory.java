@@ -0,0 +1,136 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs a {@link WorkoutHistoryStore} on a background executor, normally the persistence lane
+ * of the {@link AnalysisScheduler}, so that saving reps never competes with frame analysis and
+ * never touches the disk on the main thread. The executor must run tasks in order. Calls
+ * return immediately; errors, including a full queue, go to the {@link ErrorListener}.
+ */
+public class WorkoutHistory {
+
+    /** Default budget, about 30 000 reps. */
+    public static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    public static final int DEFAULT_SEGMENT_BYTES = 128 * 1024;
+    public static final int DEFAULT_FLUSH_RECORDS = 64;
+
+    public interface QueryCallback {
+        /**
+         * Called on the history thread with the matching records, ordered by day.
+         */
+        void onResult(List<RepRecord> records);
+    }
+
+    public interface ErrorListener {
+        void onError(IOException e);
+    }
+
+    private final Executor executor;
+    private volatile WorkoutHistoryStore store;
+    private volatile ErrorListener errorListener;
+
+    public WorkoutHistory(final File dir, Executor executor) {
+        this(dir, executor, DEFAULT_MAX_BYTES, DEFAULT_SEGMENT_BYTES, DEFAULT_FLUSH_RECORDS);
+    }
+
+    public WorkoutHistory(final File dir, Executor executor, final long maxBytes,
+                          final int segmentBytes, final int flushRecords) {
+        this.executor = executor;
+        submit(() -> {
+            try {
+                store = new WorkoutHistoryStore(dir, maxBytes, segmentBytes, flushRecords);
+            } catch (IOException e) {
+                reportError(e);
+            }
+        });
+    }
+
+    public void setErrorListener(ErrorListener listener) {
+        errorListener = listener;
+    }
+
+    /**
+     * Saves a copy of the record.
+     */
+    public void record(RepRecord record) {
+        final RepRecord copy = new RepRecord().set(record);
+        execute(store -> store.append(copy));
+    }
+
+    /**
+     * Writes buffered records, e.g. when a session ends.
+     */
+    public void flush() {
+        execute(WorkoutHistoryStore::flush);
+    }
+
+    /**
+     * Looks up the records of an exercise with timestamps in [fromMillis, toMillis).
+     *
+     * @param exercise Exercise id, or {@link WorkoutHistoryStore#ALL_EXERCISES}.
+     */
+    public void query(final int exercise, final long fromMillis, final long toMillis,
+                      final QueryCallback callback) {
+        execute(store -> {
+            final List<RepRecord> records = new ArrayList<>();
+            store.query(exercise, fromMillis, toMillis, record -> {
+                records.add(new RepRecord().set(record));
+                return true;
+            });
+            callback.onResult(records);
+        });
+    }
+
+    /**
+     * Flushes and closes the store. Work queued before the call still runs.
+     */
+    public void close() {
+        execute(WorkoutHistoryStore::close);
+    }
+
+    @Override
+    public String toString() {
+        WorkoutHistoryStore current = store;
+        return current != null ? current.toString() : "not open";
+    }
+
+    private interface Task {
+        void run(WorkoutHistoryStore store) throws IOException;
+    }
+
+    private void execute(final Task task) {
+        submit(() -> {
+            WorkoutHistoryStore current = store;
+            if (current == null) {
+                // Opening failed, already reported
+                return;
+            }
+            try {
+                task.run(current);
+            } catch (IOException e) {
+                reportError(e);
+            }
+        });
+    }
+
+    private void submit(Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            reportError(new IOException("Workout history queue is full", e));
+        }
+    }
+
+    private void reportError(IOException e) {
+        ErrorListener listener = errorListener;
+        if (listener != null) {
+            listener.onError(e);
+        }
+    }
+}
@@ -0,0 +1,682 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * Append-only store of {@link RepRecord}s, bounded in size.
+ *
+ * Records are buffered and written in blocks, each block holding the reps of one exercise on
+ * one day. Blocks go to numbered segment files; a small index file lists every block as
+ * (day, exercise, segment, offset, count) and is kept in memory, so a query for a date range
+ * and exercise only reads the blocks it needs instead of scanning every session.
+ *
+ * When the active segment is full it is sealed and compacted: blocks of the same day and
+ * exercise are merged, which keeps the index small no matter how often the store is flushed.
+ * When the store grows beyond its byte budget the oldest segments are deleted.
+ *
+ * Data is written before the index entry that points to it, so after a crash the store opens
+ * with at most the last unflushed block missing. A compacted segment is written next to the
+ * original and only moved into place once the index describing it has replaced the old one;
+ * that index carries a marker entry for the segment, which tells recovery whether the
+ * compaction was committed.
+ *
+ * All methods block on file I/O and must not be called on the main thread;
+ * {@link WorkoutHistory} runs them on a background thread.
+ */
+public class WorkoutHistoryStore implements Closeable {
+
+    /** Receives query results. Return false to stop the query. */
+    public interface Visitor {
+        boolean onRecord(RepRecord record);
+    }
+
+    /** Pass as exercise to query all exercises. */
+    public static final int ALL_EXERCISES = -1;
+
+    private static final int INDEX_ENTRY_BYTES = 18;
+    private static final String INDEX_FILE = "index.dat";
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String TMP_SUFFIX = ".tmp";
+    // Day of the record-less index entry that marks a segment's compacted layout as committed
+    private static final int COMPACTED_MARKER = Integer.MIN_VALUE;
+    // Compaction sorts blocks by a key holding the block number in 16 bits
+    private static final int MAX_SEGMENT_RECORDS = 1 << 16;
+
+    private static final Comparator<RepRecord> BLOCK_ORDER = new Comparator<RepRecord>() {
+        @Override
+        public int compare(RepRecord a, RepRecord b) {
+            int c = Integer.compare(a.getDay(), b.getDay());
+            if (c == 0) {
+                c = Short.compare(a.exercise, b.exercise);
+            }
+            return c != 0 ? c : Long.compare(a.timestampMillis, b.timestampMillis);
+        }
+    };
+
+    private final File dir;
+    private final long maxBytes;
+    private final int segmentBytes;
+
+    // Block index, one entry per block
+    private int entries = 0;
+    private int[] entryDay = new int[64];
+    private short[] entryExercise = new short[64];
+    private int[] entrySegment = new int[64];
+    private int[] entryOffset = new int[64];
+    private int[] entryCount = new int[64];
+    private long recordCount = 0;
+
+    private FileChannel indexChannel;
+    private final ByteBuffer indexBuffer;
+    private int uncommittedEntries = 0;
+
+    private int oldestSegment;
+    private int activeSegment;
+    private FileChannel activeChannel;
+    private int activeSize;
+
+    private final RepRecord[] pending;
+    private int pendingCount = 0;
+    private final ByteBuffer writeBuffer;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(64 * RepRecord.BYTES);
+    private final RepRecord scratch = new RepRecord();
+    private long compactions = 0;
+    private long segmentsDeleted = 0;
+
+    // Steps of a compaction, for crash tests
+    static final int STEP_SEGMENT_WRITTEN = 1;
+    static final int STEP_INDEX_WRITTEN = 2;
+    static final int STEP_INDEX_REPLACED = 3;
+    // Step after which a compaction stops as if the process died, 0 to finish normally
+    int crashAfterStep = 0;
+
+    /**
+     * @param dir          Directory owned by the store, created if missing.
+     * @param maxBytes     Size on disk above which the oldest segments are deleted.
+     * @param segmentBytes Size of one segment, the unit of compaction and deletion.
+     * @param flushRecords Records buffered in memory before they are written.
+     */
+    public WorkoutHistoryStore(File dir, long maxBytes, int segmentBytes, int flushRecords)
+            throws IOException {
+        if (segmentBytes < flushRecords * RepRecord.BYTES) {
+            throw new IllegalArgumentException("Segment must hold at least one flush");
+        }
+        if (segmentBytes / RepRecord.BYTES > MAX_SEGMENT_RECORDS) {
+            throw new IllegalArgumentException("Segment too large");
+        }
+        if (maxBytes < 2L * segmentBytes) {
+            throw new IllegalArgumentException("Budget must hold at least two segments");
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.segmentBytes = segmentBytes;
+        this.pending = new RepRecord[flushRecords];
+        for (int i = 0; i < flushRecords; i++) {
+            pending[i] = new RepRecord();
+        }
+        this.writeBuffer = ByteBuffer.allocate(flushRecords * RepRecord.BYTES);
+        this.indexBuffer = ByteBuffer.allocate(flushRecords * INDEX_ENTRY_BYTES);
+
+        recoverCompaction();
+        oldestSegment = Integer.MAX_VALUE;
+        activeSegment = 0;
+        String[] names = dir.list();
+        if (names != null) {
+            for (String name : names) {
+                int id = parseSegmentId(name);
+                if (id >= 0) {
+                    oldestSegment = Math.min(oldestSegment, id);
+                    activeSegment = Math.max(activeSegment, id);
+                }
+            }
+        }
+        if (oldestSegment == Integer.MAX_VALUE) {
+            oldestSegment = 0;
+        }
+
+        indexChannel = openIndex();
+        boolean dropped = loadIndex();
+        activeChannel = openSegment(activeSegment);
+        // Drop data written after the last committed index entry
+        activeSize = 0;
+        for (int i = 0; i < entries; i++) {
+            if (entrySegment[i] == activeSegment) {
+                activeSize = Math.max(activeSize, entryOffset[i] + entryCount[i] * RepRecord.BYTES);
+            }
+        }
+        activeChannel.truncate(activeSize);
+        if (dropped) {
+            rewriteIndex();
+        }
+    }
+
+    /**
+     * Buffers a copy of the record; it is written once the buffer is full or on {@link #flush()}.
+     */
+    public synchronized void append(RepRecord record) throws IOException {
+        pending[pendingCount++].set(record);
+        if (pendingCount == pending.length) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes buffered records, then enforces the size budget.
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingCount == 0) {
+            return;
+        }
+        Arrays.sort(pending, 0, pendingCount, BLOCK_ORDER);
+        int start = 0;
+        while (start < pendingCount) {
+            int day = pending[start].getDay();
+            short exercise = pending[start].exercise;
+            int end = start + 1;
+            while (end < pendingCount && pending[end].getDay() == day
+                    && pending[end].exercise == exercise) {
+                end++;
+            }
+            int bytes = (end - start) * RepRecord.BYTES;
+            if (activeSize > 0 && activeSize + bytes > segmentBytes) {
+                rollSegment();
+            }
+            writeBuffer.clear();
+            for (int i = start; i < end; i++) {
+                pending[i].write(writeBuffer);
+            }
+            writeBuffer.flip();
+            writeFully(activeChannel, writeBuffer, activeSize);
+            addEntry(day, exercise, activeSegment, activeSize, end - start);
+            activeSize += bytes;
+            start = end;
+        }
+        pendingCount = 0;
+        commitIndex();
+        applyRetention();
+    }
+
+    /**
+     * Visits the records of an exercise with timestamps in [fromMillis, toMillis), ordered by
+     * day. Only blocks of matching days and exercise are read.
+     *
+     * @param exercise Exercise id, or {@link #ALL_EXERCISES}.
+     * @param visitor  Receives a reused record; copy it to keep it.
+     * @return Number of records visited.
+     */
+    public synchronized int query(int exercise, long fromMillis, long toMillis, Visitor visitor)
+            throws IOException {
+        int fromDay = RepRecord.dayOf(fromMillis);
+        int toDay = RepRecord.dayOf(toMillis - 1);
+
+        // Sort matching blocks by day, then by position on disk
+        long[] matches = new long[16];
+        int matchCount = 0;
+        for (int i = 0; i < entries; i++) {
+            if (entryDay[i] < fromDay || entryDay[i] > toDay
+                    || (exercise != ALL_EXERCISES && entryExercise[i] != exercise)) {
+                continue;
+            }
+            if (matchCount == matches.length) {
+                matches = Arrays.copyOf(matches, matchCount * 2);
+            }
+            matches[matchCount++] = ((long) entryDay[i] << 32) | i;
+        }
+        Arrays.sort(matches, 0, matchCount);
+
+        int visited = 0;
+        int openSegment = -1;
+        FileChannel channel = null;
+        try {
+            for (int m = 0; m < matchCount; m++) {
+                int i = (int) matches[m];
+                if (entrySegment[i] != openSegment) {
+                    if (channel != null && channel != activeChannel) {
+                        channel.close();
+                    }
+                    openSegment = entrySegment[i];
+                    channel = openSegment == activeSegment
+                            ? activeChannel
+                            : new RandomAccessFile(segmentFile(openSegment), "r").getChannel();
+                }
+                ByteBuffer block = readBlock(channel, entryOffset[i], entryCount[i]);
+                for (int r = 0; r < entryCount[i]; r++) {
+                    scratch.read(block);
+                    if (scratch.timestampMillis < fromMillis || scratch.timestampMillis >= toMillis) {
+                        continue;
+                    }
+                    visited++;
+                    if (!visitor.onRecord(scratch)) {
+                        return visited;
+                    }
+                }
+            }
+        } finally {
+            if (channel != null && channel != activeChannel) {
+                channel.close();
+            }
+        }
+
+        // Records not written yet
+        for (int i = 0; i < pendingCount; i++) {
+            RepRecord record = pending[i];
+            if (record.timestampMillis < fromMillis || record.timestampMillis >= toMillis
+                    || (exercise != ALL_EXERCISES && record.exercise != exercise)) {
+                continue;
+            }
+            visited++;
+            if (!visitor.onRecord(scratch.set(record))) {
+                break;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * @return Records kept, including buffered ones.
+     */
+    public synchronized long getRecordCount() {
+        return recordCount + pendingCount;
+    }
+
+    public synchronized int getIndexEntryCount() {
+        return entries;
+    }
+
+    public synchronized int getSegmentCount() {
+        return activeSegment - oldestSegment + 1;
+    }
+
+    /**
+     * @return Bytes used by segments and index.
+     */
+    public synchronized long getSizeBytes() throws IOException {
+        long size = indexChannel.size() + activeSize;
+        for (int id = oldestSegment; id < activeSegment; id++) {
+            size += segmentFile(id).length();
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            activeChannel.close();
+            indexChannel.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "records=%d segments=%d index=%d compactions=%d deleted=%d",
+                getRecordCount(), getSegmentCount(), entries, compactions, segmentsDeleted);
+    }
+
+    /**
+     * Seals the active segment, merges its blocks and starts a new one.
+     */
+    private void rollSegment() throws IOException {
+        commitIndex();
+        activeChannel.force(true);
+        activeChannel.close();
+        compactSegment(activeSegment);
+        activeSegment++;
+        activeChannel = openSegment(activeSegment);
+        activeSize = 0;
+    }
+
+    /**
+     * Rewrites a sealed segment with one block per day and exercise.
+     */
+    private void compactSegment(int segment) throws IOException {
+        int[] blocks = new int[entries];
+        int blockCount = 0;
+        for (int i = 0; i < entries; i++) {
+            if (entrySegment[i] == segment) {
+                blocks[blockCount++] = i;
+            }
+        }
+        // Stable ordering by key keeps blocks of one key in write order
+        long[] keys = new long[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            int i = blocks[b];
+            keys[b] = ((long) entryDay[i] << 32) | ((entryExercise[i] & 0xffffL) << 16) | b;
+        }
+        Arrays.sort(keys);
+        int distinct = 0;
+        for (int b = 0; b < blockCount; b++) {
+            if (b == 0 || keys[b] >>> 16 != keys[b - 1] >>> 16) {
+                distinct++;
+            }
+        }
+        if (distinct == blockCount) {
+            return;
+        }
+
+        File source = segmentFile(segment);
+        File target = new File(dir, source.getName() + TMP_SUFFIX);
+        int[] newDay = new int[distinct];
+        short[] newExercise = new short[distinct];
+        int[] newOffset = new int[distinct];
+        int[] newCount = new int[distinct];
+        int newEntries = -1;
+        try (FileChannel in = new RandomAccessFile(source, "r").getChannel();
+             FileChannel out = new RandomAccessFile(target, "rw").getChannel()) {
+            out.truncate(0);
+            int position = 0;
+            for (int b = 0; b < blockCount; b++) {
+                int i = blocks[(int) (keys[b] & 0xffff)];
+                if (b == 0 || keys[b] >>> 16 != keys[b - 1] >>> 16) {
+                    newEntries++;
+                    newDay[newEntries] = entryDay[i];
+                    newExercise[newEntries] = entryExercise[i];
+                    newOffset[newEntries] = position;
+                }
+                ByteBuffer block = readBlock(in, entryOffset[i], entryCount[i]);
+                writeFully(out, block, position);
+                position += entryCount[i] * RepRecord.BYTES;
+                newCount[newEntries] += entryCount[i];
+            }
+            out.force(true);
+        }
+        checkpoint(STEP_SEGMENT_WRITTEN);
+        removeSegmentEntries(segment);
+        for (int e = 0; e < distinct; e++) {
+            putEntry(newDay[e], newExercise[e], segment, newOffset[e], newCount[e]);
+        }
+        // Replacing the index with one that marks the segment commits the compaction, see
+        // recoverCompaction()
+        rewriteIndex(segment);
+        checkpoint(STEP_INDEX_REPLACED);
+        if (!target.renameTo(source)) {
+            throw new IOException("Could not replace " + source);
+        }
+        compactions++;
+    }
+
+    /**
+     * Deletes the oldest sealed segments until the store fits its budget.
+     */
+    private void applyRetention() throws IOException {
+        boolean changed = false;
+        while (oldestSegment < activeSegment && getSizeBytes() > maxBytes) {
+            File file = segmentFile(oldestSegment);
+            removeSegmentEntries(oldestSegment);
+            if (!file.delete() && file.exists()) {
+                throw new IOException("Could not delete " + file);
+            }
+            oldestSegment++;
+            segmentsDeleted++;
+            changed = true;
+        }
+        if (changed) {
+            rewriteIndex();
+        }
+    }
+
+    private void addEntry(int day, short exercise, int segment, int offset, int count)
+            throws IOException {
+        putEntry(day, exercise, segment, offset, count);
+        if (!indexBuffer.hasRemaining()) {
+            commitIndex();
+        }
+        indexBuffer.putInt(day).putShort(exercise).putInt(segment).putInt(offset).putInt(count);
+        uncommittedEntries++;
+    }
+
+    /**
+     * Adds an entry to the in-memory index only.
+     */
+    private void putEntry(int day, short exercise, int segment, int offset, int count) {
+        if (entries == entryDay.length) {
+            int capacity = entries * 2;
+            entryDay = Arrays.copyOf(entryDay, capacity);
+            entryExercise = Arrays.copyOf(entryExercise, capacity);
+            entrySegment = Arrays.copyOf(entrySegment, capacity);
+            entryOffset = Arrays.copyOf(entryOffset, capacity);
+            entryCount = Arrays.copyOf(entryCount, capacity);
+        }
+        entryDay[entries] = day;
+        entryExercise[entries] = exercise;
+        entrySegment[entries] = segment;
+        entryOffset[entries] = offset;
+        entryCount[entries] = count;
+        entries++;
+        recordCount += count;
+    }
+
+    private void removeSegmentEntries(int segment) {
+        int kept = 0;
+        for (int i = 0; i < entries; i++) {
+            if (entrySegment[i] == segment) {
+                recordCount -= entryCount[i];
+                continue;
+            }
+            entryDay[kept] = entryDay[i];
+            entryExercise[kept] = entryExercise[i];
+            entrySegment[kept] = entrySegment[i];
+            entryOffset[kept] = entryOffset[i];
+            entryCount[kept] = entryCount[i];
+            kept++;
+        }
+        entries = kept;
+    }
+
+    /**
+     * Makes written blocks durable, then appends their index entries.
+     */
+    private void commitIndex() throws IOException {
+        if (uncommittedEntries == 0) {
+            return;
+        }
+        activeChannel.force(false);
+        indexBuffer.flip();
+        writeFully(indexChannel, indexBuffer, indexChannel.size());
+        indexBuffer.clear();
+        uncommittedEntries = 0;
+    }
+
+    /**
+     * Replaces the index file with the in-memory index.
+     */
+    private void rewriteIndex() throws IOException {
+        rewriteIndex(-1);
+    }
+
+    /**
+     * Replaces the index file with the in-memory index.
+     *
+     * @param compactedSegment Segment whose compacted layout the index describes, marked in
+     *                         the file until the next rewrite; -1 for none.
+     */
+    private void rewriteIndex(int compactedSegment) throws IOException {
+        int marker = compactedSegment >= 0 ? 1 : 0;
+        ByteBuffer out = ByteBuffer.allocate((entries + marker) * INDEX_ENTRY_BYTES);
+        for (int i = 0; i < entries; i++) {
+            out.putInt(entryDay[i]).putShort(entryExercise[i]).putInt(entrySegment[i])
+                    .putInt(entryOffset[i]).putInt(entryCount[i]);
+        }
+        if (marker != 0) {
+            out.putInt(COMPACTED_MARKER).putShort((short) 0).putInt(compactedSegment)
+                    .putInt(0).putInt(0);
+        }
+        out.flip();
+        File index = new File(dir, INDEX_FILE);
+        File tmp = new File(dir, INDEX_FILE + TMP_SUFFIX);
+        try (FileChannel channel = new RandomAccessFile(tmp, "rw").getChannel()) {
+            channel.truncate(0);
+            writeFully(channel, out, 0);
+            channel.force(true);
+        }
+        if (compactedSegment >= 0) {
+            checkpoint(STEP_INDEX_WRITTEN);
+        }
+        indexChannel.close();
+        if (!tmp.renameTo(index)) {
+            throw new IOException("Could not replace " + index);
+        }
+        indexChannel = openIndex();
+    }
+
+    /**
+     * Finishes or rolls back a compaction interrupted by a crash. A compacted segment is only
+     * moved into place after an index that marks it has replaced the old one, so the
+     * compaction is committed exactly if the index file holds that marker. An index.tmp left
+     * behind was never renamed and is discarded.
+     */
+    private void recoverCompaction() throws IOException {
+        new File(dir, INDEX_FILE + TMP_SUFFIX).delete();
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            if (!name.endsWith(TMP_SUFFIX)) {
+                continue;
+            }
+            File tmp = new File(dir, name);
+            File segment = new File(dir, name.substring(0, name.length() - TMP_SUFFIX.length()));
+            int id = parseSegmentId(segment.getName());
+            if (id < 0 || !isCompactionCommitted(id) || !tmp.renameTo(segment)) {
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * @return Whether the index file marks the segment as compacted.
+     */
+    private boolean isCompactionCommitted(int segment) throws IOException {
+        File index = new File(dir, INDEX_FILE);
+        if (!index.exists()) {
+            return false;
+        }
+        try (FileChannel channel = new RandomAccessFile(index, "r").getChannel()) {
+            int size = (int) channel.size();
+            ByteBuffer in = ByteBuffer.allocate(size - size % INDEX_ENTRY_BYTES);
+            while (in.hasRemaining()) {
+                if (channel.read(in, in.position()) < 0) {
+                    break;
+                }
+            }
+            in.flip();
+            while (in.remaining() >= INDEX_ENTRY_BYTES) {
+                int day = in.getInt();
+                in.getShort();
+                int id = in.getInt();
+                in.getInt();
+                int count = in.getInt();
+                if (day == COMPACTED_MARKER && count == 0 && id == segment) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the index file, dropping entries whose data is missing.
+     *
+     * @return Whether any entry was dropped.
+     */
+    private boolean loadIndex() throws IOException {
+        int size = (int) indexChannel.size();
+        ByteBuffer in = ByteBuffer.allocate(size - size % INDEX_ENTRY_BYTES);
+        while (in.hasRemaining()) {
+            if (indexChannel.read(in, in.position()) < 0) {
+                break;
+            }
+        }
+        in.flip();
+        boolean dropped = size % INDEX_ENTRY_BYTES != 0;
+        long[] segmentLength = new long[activeSegment - oldestSegment + 1];
+        for (int id = oldestSegment; id <= activeSegment; id++) {
+            segmentLength[id - oldestSegment] = segmentFile(id).length();
+        }
+        while (in.remaining() >= INDEX_ENTRY_BYTES) {
+            int day = in.getInt();
+            short exercise = in.getShort();
+            int segment = in.getInt();
+            int offset = in.getInt();
+            int count = in.getInt();
+            if (day == COMPACTED_MARKER && count == 0) {
+                // Only needed by recoverCompaction(), dropped by the next rewrite
+                continue;
+            }
+            if (segment < oldestSegment || segment > activeSegment
+                    || offset + (long) count * RepRecord.BYTES > segmentLength[segment - oldestSegment]) {
+                dropped = true;
+                continue;
+            }
+            putEntry(day, exercise, segment, offset, count);
+        }
+        return dropped;
+    }
+
+    private ByteBuffer readBlock(FileChannel channel, int offset, int count) throws IOException {
+        int bytes = count * RepRecord.BYTES;
+        if (readBuffer.capacity() < bytes) {
+            readBuffer = ByteBuffer.allocate(Integer.highestOneBit(bytes) * 2);
+        }
+        readBuffer.clear().limit(bytes);
+        while (readBuffer.hasRemaining()) {
+            if (channel.read(readBuffer, offset + readBuffer.position()) < 0) {
+                throw new IOException("Block truncated at " + offset);
+            }
+        }
+        readBuffer.flip();
+        return readBuffer;
+    }
+
+    private void checkpoint(int step) throws IOException {
+        if (crashAfterStep == step) {
+            throw new IOException("Simulated crash after compaction step " + step);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private FileChannel openIndex() throws IOException {
+        return new RandomAccessFile(new File(dir, INDEX_FILE), "rw").getChannel();
+    }
+
+    private FileChannel openSegment(int id) throws IOException {
+        return new RandomAccessFile(segmentFile(id), "rw").getChannel();
+    }
+
+    private File segmentFile(int id) {
+        return new File(dir, String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static int parseSegmentId(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
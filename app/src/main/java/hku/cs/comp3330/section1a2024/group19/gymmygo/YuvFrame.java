@@ -0,0 +1,95 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One YUV_420_888 frame as the planes, strides and metadata the pipeline needs, without any
+ * Android types. Camera frames wrap the ImageProxy planes, replayed frames wrap buffers read
+ * from a recording, and both go through the same processing entry point.
+ */
+public class YuvFrame {
+
+    public ByteBuffer y;
+    public ByteBuffer u;
+    public ByteBuffer v;
+    public int yRowStride;
+    public int uRowStride;
+    public int uPixelStride;
+    public int vRowStride;
+    public int vPixelStride;
+
+    public int width;
+    public int height;
+    public int rotationDegrees;
+    public long timestampNanos;
+
+    public YuvFrame setPlanes(ByteBuffer y, int yRowStride,
+                              ByteBuffer u, int uRowStride, int uPixelStride,
+                              ByteBuffer v, int vRowStride, int vPixelStride) {
+        this.y = y;
+        this.yRowStride = yRowStride;
+        this.u = u;
+        this.uRowStride = uRowStride;
+        this.uPixelStride = uPixelStride;
+        this.v = v;
+        this.vRowStride = vRowStride;
+        this.vPixelStride = vPixelStride;
+        return this;
+    }
+
+    public YuvFrame setInfo(int width, int height, int rotationDegrees, long timestampNanos) {
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+        this.timestampNanos = timestampNanos;
+        return this;
+    }
+
+    /**
+     * @return Width of the frame once rotated upright.
+     */
+    public int getUprightWidth() {
+        return rotationDegrees == 90 || rotationDegrees == 270 ? height : width;
+    }
+
+    /**
+     * @return Height of the frame once rotated upright.
+     */
+    public int getUprightHeight() {
+        return rotationDegrees == 90 || rotationDegrees == 270 ? width : height;
+    }
+
+    /**
+     * @return Column of the sensor pixel that ends up at (uprightX, uprightY) after rotating
+     *         clockwise by rotationDegrees.
+     */
+    public int getSensorX(int uprightX, int uprightY) {
+        switch (rotationDegrees) {
+            case 90:
+                return uprightY;
+            case 180:
+                return width - 1 - uprightX;
+            case 270:
+                return width - 1 - uprightY;
+            default:
+                return uprightX;
+        }
+    }
+
+    /**
+     * @return Row of the sensor pixel that ends up at (uprightX, uprightY), see
+     *         {@link #getSensorX}.
+     */
+    public int getSensorY(int uprightX, int uprightY) {
+        switch (rotationDegrees) {
+            case 90:
+                return height - 1 - uprightX;
+            case 180:
+                return height - 1 - uprightY;
+            case 270:
+                return uprightX;
+            default:
+                return uprightY;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AnalysisSchedulerTest {
+
+    private static final int LANE = 0;
+
+    private AnalysisScheduler scheduler;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(1000));
+    }
+
+    private Executor lane(int capacity, int policy) {
+        scheduler = new AnalysisScheduler(new AnalysisScheduler.LaneConfig[]{
+                new AnalysisScheduler.LaneConfig("test", 1, Thread.MAX_PRIORITY, capacity, policy)
+        });
+        return scheduler.getExecutor(LANE);
+    }
+
+    /**
+     * Occupies the lane's only thread until the test ends.
+     */
+    private void block(Executor executor) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void runsOnNamedThreadsWithLanePriority() throws InterruptedException {
+        Executor executor = lane(4, AnalysisScheduler.REJECT_ABORT);
+        final String[] name = new String[1];
+        final int[] priority = new int[1];
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(() -> {
+            name[0] = Thread.currentThread().getName();
+            priority[0] = Thread.currentThread().getPriority();
+            done.countDown();
+        });
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals("gymmygo-test-1", name[0]);
+        assertEquals(Thread.MAX_PRIORITY, priority[0]);
+    }
+
+    @Test
+    public void noLaneRunsAboveTheUiThread() throws InterruptedException {
+        AnalysisScheduler foreground = AnalysisScheduler.createDefault();
+        scheduler = AnalysisScheduler.createBackground();
+        try {
+            for (int lane = AnalysisScheduler.LANE_CAPTURE; lane <= AnalysisScheduler.LANE_DETAIL; lane++) {
+                assertTrue(priorityOf(foreground, lane) <= Thread.NORM_PRIORITY);
+                assertTrue(priorityOf(scheduler, lane) < Thread.NORM_PRIORITY);
+            }
+            assertTrue(priorityOf(foreground, AnalysisScheduler.LANE_DETAIL)
+                    < priorityOf(foreground, AnalysisScheduler.LANE_CAPTURE));
+        } finally {
+            foreground.shutdown();
+        }
+    }
+
+    private static int priorityOf(AnalysisScheduler scheduler, int lane) throws InterruptedException {
+        final int[] priority = new int[1];
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.getExecutor(lane).execute(() -> {
+            priority[0] = Thread.currentThread().getPriority();
+            done.countDown();
+        });
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        return priority[0];
+    }
+
+    @Test
+    public void abortRejectsWhenQueueIsFull() throws InterruptedException {
+        Executor executor = lane(2, AnalysisScheduler.REJECT_ABORT);
+        block(executor);
+        executor.execute(() -> { });
+        executor.execute(() -> { });
+        try {
+            executor.execute(() -> { });
+            fail("Expected the full queue to reject");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertEquals(1, scheduler.getRejectedCount(LANE));
+        assertEquals(2, scheduler.getPeakQueueDepth(LANE));
+    }
+
+    @Test
+    public void callerRunsWhenQueueIsFull() throws InterruptedException {
+        Executor executor = lane(1, AnalysisScheduler.REJECT_CALLER_RUNS);
+        block(executor);
+        executor.execute(() -> { });
+        final Thread[] ranOn = new Thread[1];
+        executor.execute(() -> ranOn[0] = Thread.currentThread());
+        assertEquals(Thread.currentThread(), ranOn[0]);
+    }
+
+    @Test
+    public void discardOldestKeepsNewestTasks() throws InterruptedException {
+        Executor executor = lane(2, AnalysisScheduler.REJECT_DISCARD_OLDEST);
+        block(executor);
+        final StringBuffer order = new StringBuffer();
+        CountDownLatch done = new CountDownLatch(2);
+        for (final String task : new String[]{"a", "b", "c"}) {
+            executor.execute(() -> {
+                order.append(task);
+                done.countDown();
+            });
+        }
+        release.countDown();
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals("bc", order.toString());
+    }
+
+    @Test
+    public void cancelledScopeSkipsItsTasksButNotCleanup() throws InterruptedException {
+        Executor executor = lane(8, AnalysisScheduler.REJECT_ABORT);
+        AnalysisScheduler.Scope scope = scheduler.newScope();
+        final AtomicInteger results = new AtomicInteger();
+        final CountDownLatch cleanup = new CountDownLatch(2);
+
+        block(executor);
+        scope.getExecutor(LANE).execute(results::incrementAndGet);
+        executor.execute(cleanup::countDown);
+        scope.cancel();
+        assertFalse(scope.isActive());
+        // Submitted after the cancel
+        scope.getExecutor(LANE).execute(results::incrementAndGet);
+        executor.execute(cleanup::countDown);
+
+        release.countDown();
+        assertTrue(cleanup.await(1, TimeUnit.SECONDS));
+        assertEquals(0, results.get());
+
+        // A new scope works again
+        final CountDownLatch next = new CountDownLatch(1);
+        scheduler.newScope().getExecutor(LANE).execute(next::countDown);
+        assertTrue(next.await(1, TimeUnit.SECONDS));
+    }
+}
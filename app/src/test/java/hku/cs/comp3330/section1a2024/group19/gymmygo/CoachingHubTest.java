@@ -0,0 +1,67 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streams from several stations to a hub on the loopback interface.
+ */
+public class CoachingHubTest {
+
+    private static final int STATIONS = 3;
+    private static final int FRAMES_PER_STATION = 60;
+    private static final int BATCH = 10;
+
+    @Test
+    public void aggregatesAllStations() throws Exception {
+        try (CoachingHub hub = new CoachingHub(0)) {
+            InetSocketAddress address = new InetSocketAddress("127.0.0.1", hub.getPort());
+            LandmarkStreamer[] streamers = new LandmarkStreamer[STATIONS];
+            for (int s = 0; s < STATIONS; s++) {
+                streamers[s] = new LandmarkStreamer(address, s + 1, BATCH, 16);
+            }
+
+            LandmarkFrame frame = new LandmarkFrame();
+            frame.imageWidth = 480;
+            frame.imageHeight = 640;
+            for (int f = 0; f < FRAMES_PER_STATION; f++) {
+                for (int s = 0; s < STATIONS; s++) {
+                    frame.timestampNanos = f * 33_333_000L;
+                    frame.x[0] = 100 + s * 50 + f;
+                    frame.likelihood[0] = 0.9f;
+                    streamers[s].offer(frame);
+                }
+                Thread.sleep(2);
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (hub.getFramesReceived() < STATIONS * FRAMES_PER_STATION
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            assertEquals(STATIONS * FRAMES_PER_STATION, hub.getFramesReceived());
+            assertEquals(STATIONS, hub.getStationCount());
+            assertTrue(hub.getBytesPerSecond() > 0);
+            assertTrue(hub.getLatencyMs(CoachingHub.LATENCY_END_TO_END, 95)
+                    >= hub.getLatencyMs(CoachingHub.LATENCY_NETWORK, 50));
+
+            LandmarkFrame latest = new LandmarkFrame();
+            for (int s = 0; s < STATIONS; s++) {
+                assertTrue(hub.getLatestFrame(s + 1, latest));
+                assertEquals(100 + s * 50 + FRAMES_PER_STATION - 1, latest.x[0], 0.1f);
+                assertEquals(0, streamers[s].getPacketsDropped());
+                streamers[s].close();
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void streamerNeedsRoomForAQueuedPacket() throws Exception {
+        new LandmarkStreamer(InetSocketAddress.createUnresolved("localhost", 1), 1, BATCH, 0);
+    }
+}
@@ -0,0 +1,214 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DetailCascadeTest {
+
+    private static final long MS = 1_000_000L;
+    private static final int INPUT_SIZE = 4;
+    private static final int LEFT_WRIST = 15;
+    private static final int LEFT_PINKY = 17;
+    private static final int LEFT_INDEX = 19;
+    private static final int LEFT_THUMB = 21;
+    private static final long LEFT_HAND = LandmarkFilter.bit(LEFT_WRIST) | LandmarkFilter.bit(LEFT_PINKY)
+            | LandmarkFilter.bit(LEFT_INDEX) | LandmarkFilter.bit(LEFT_THUMB);
+
+    /** A 21 keypoint hand model answering keypoint k at (k / 8, k / 8) of its 4 pixel input. */
+    private static class FakeHandModel implements PoseModel {
+        int runs = 0;
+        boolean closed = false;
+
+        @Override
+        public int getInputWidth() {
+            return INPUT_SIZE;
+        }
+
+        @Override
+        public int getInputHeight() {
+            return INPUT_SIZE;
+        }
+
+        @Override
+        public int getInputType() {
+            return INPUT_UINT8;
+        }
+
+        @Override
+        public int getOutputLayout() {
+            return OUTPUT_KEYPOINTS_XYZ;
+        }
+
+        @Override
+        public int getOutputSize() {
+            return 21 * 3;
+        }
+
+        @Override
+        public void run(ByteBuffer input, float[] output) {
+            assertFalse("Ran after close", closed);
+            runs++;
+            for (int k = 0; k < 21; k++) {
+                output[3 * k] = k / 8f;
+                output[3 * k + 1] = k / 8f;
+            }
+        }
+
+        @Override
+        public void close() {
+            assertFalse("Closed twice", closed);
+            closed = true;
+        }
+    }
+
+    private final FakeHandModel model = new FakeHandModel();
+    private final List<Runnable> queued = new ArrayList<>();
+    private DetailCascade cascade;
+    private final YuvFrame frame = new YuvFrame();
+    private final LandmarkFrame pose = new LandmarkFrame();
+
+    @Before
+    public void setUp() {
+        DetailStage hands = new DetailStage(model,
+                new int[]{DetailStage.REGION_LEFT_HAND, DetailStage.REGION_RIGHT_HAND}, 0, 255);
+        cascade = new DetailCascade(Collections.singletonList(hands), queued::add, 0, 200, 500);
+        frame.setPlanes(ByteBuffer.allocate(64 * 48), 64,
+                ByteBuffer.allocate(32 * 24), 32, 1,
+                ByteBuffer.allocate(32 * 24), 32, 1);
+    }
+
+    private long process(long timestampNanos, float wristX, float wristY) {
+        frame.setInfo(64, 48, 0, timestampNanos);
+        pose.clear();
+        pose.timestampNanos = timestampNanos;
+        set(LEFT_WRIST, wristX, wristY);
+        set(LEFT_PINKY, wristX + 2, wristY + 4);
+        set(LEFT_INDEX, wristX + 4, wristY + 2);
+        set(LEFT_THUMB, wristX, wristY + 4);
+        return cascade.process(0, frame, pose, LEFT_HAND);
+    }
+
+    private void set(int type, float x, float y) {
+        pose.x[type] = x;
+        pose.y[type] = y;
+        pose.likelihood[type] = 0.9f;
+    }
+
+    private void runQueued() {
+        List<Runnable> tasks = new ArrayList<>(queued);
+        queued.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void runsOnlyForRequiredRegionsAtTheInterval() {
+        process(0, 20, 20);
+        assertEquals(0, queued.size());
+
+        cascade.setRequiredRegions(DetailCascade.regionsFor(LandmarkFilter.bit(LEFT_INDEX)));
+        process(10 * MS, 20, 20);
+        assertEquals(1, queued.size());
+        // Too soon, and the first run is still pending
+        process(100 * MS, 20, 20);
+        process(300 * MS, 20, 20);
+        assertEquals(1, queued.size());
+
+        runQueued();
+        assertEquals(1, model.runs);
+        process(320 * MS, 20, 20);
+        assertEquals(1, queued.size());
+    }
+
+    @Test
+    public void mergesCachedKeypointsFollowingTheWrist() {
+        cascade.setRequiredRegions(DetailStage.bit(DetailStage.REGION_LEFT_HAND));
+        process(0, 20, 20);
+        float[] roi = new float[3];
+        assertTrue(DetailStage.computeRegion(DetailStage.REGION_LEFT_HAND, pose, LEFT_HAND, roi));
+        runQueued();
+
+        // The hand moved by (10, 5) since the crop
+        long usable = process(100 * MS, 30, 25);
+        float left = roi[0] - roi[2] / 2 + 10;
+        float top = roi[1] - roi[2] / 2 + 5;
+        float step = roi[2] / INPUT_SIZE;
+        // Pinky knuckle is keypoint 17, index knuckle 5, thumb 2
+        assertEquals(left + 17 / 8f * step, pose.x[LEFT_PINKY], 1e-4);
+        assertEquals(top + 5 / 8f * step, pose.y[LEFT_INDEX], 1e-4);
+        assertEquals(left + 2 / 8f * step, pose.x[LEFT_THUMB], 1e-4);
+        assertEquals(LEFT_HAND, usable);
+
+        DetailLandmarks details = cascade.getDetails(DetailStage.REGION_LEFT_HAND);
+        assertNotNull(details);
+        assertEquals(21, details.count);
+        assertNull(cascade.getDetails(DetailStage.REGION_RIGHT_HAND));
+
+        // Too old to merge, and the new run is not done yet
+        process(600 * MS, 30, 25);
+        assertEquals(32, pose.x[LEFT_PINKY], 0f);
+        assertNull(cascade.getDetails(DetailStage.REGION_LEFT_HAND));
+    }
+
+    @Test
+    public void mapsRuleJointsToRegions() {
+        assertEquals(0, DetailCascade.regionsFor(LandmarkFilter.bit(LEFT_WRIST)));
+        assertEquals(DetailStage.bit(DetailStage.REGION_FACE), DetailCascade.regionsFor(LandmarkFilter.bit(7)));
+        assertEquals(DetailStage.bit(DetailStage.REGION_LEFT_HAND) | DetailStage.bit(DetailStage.REGION_RIGHT_HAND),
+                DetailCascade.regionsFor(LandmarkFilter.bit(LEFT_THUMB) | LandmarkFilter.bit(22)));
+    }
+
+    @Test
+    public void parsesJointGroupsByName() {
+        int hands = DetailStage.bit(DetailStage.REGION_LEFT_HAND) | DetailStage.bit(DetailStage.REGION_RIGHT_HAND);
+        long handJoints = DetailCascade.parseJoints("hands");
+        assertTrue(LandmarkFilter.containsAll(handJoints, LandmarkFilter.bit(LEFT_THUMB) | LandmarkFilter.bit(22)));
+        assertFalse(LandmarkFilter.containsAll(handJoints, LandmarkFilter.bit(LEFT_WRIST)));
+        assertEquals(hands, DetailCascade.regionsFor(handJoints));
+        assertEquals(hands | DetailStage.bit(DetailStage.REGION_FACE),
+                DetailCascade.regionsFor(DetailCascade.parseJoints(" face, hands,")));
+        assertEquals(0, DetailCascade.parseJoints(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownJointGroups() {
+        DetailCascade.parseJoints("nohands");
+    }
+
+    @Test
+    public void closesAStageOnlyAfterItsRunFinished() {
+        cascade.setRequiredRegions(DetailStage.bit(DetailStage.REGION_LEFT_HAND));
+        process(0, 20, 20);
+        assertEquals(1, queued.size());
+
+        // The run is still queued on the detail executor
+        cascade.close();
+        assertFalse(model.closed);
+        runQueued();
+        assertEquals(1, model.runs);
+        assertTrue(model.closed);
+
+        // A closed cascade starts no new run
+        process(300 * MS, 20, 20);
+        assertEquals(0, queued.size());
+    }
+
+    @Test
+    public void closesIdleStagesAtOnce() {
+        cascade.close();
+        assertTrue(model.closed);
+        cascade.close();
+    }
+}
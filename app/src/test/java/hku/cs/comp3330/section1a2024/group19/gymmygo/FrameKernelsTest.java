@@ -0,0 +1,228 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks the Java kernels against known output, and the native kernels against the Java
+ * ones when libframekernels is on java.library.path (host build from app/src/main/cpp).
+ */
+public class FrameKernelsTest {
+
+    private final Random random = new Random(3330);
+
+    @After
+    public void enableNative() {
+        FrameKernels.setNativeEnabled(true);
+    }
+
+    @Test
+    public void packNv21_interleavesVBeforeU() {
+        // 4x2 image, Y row stride 6, planar chroma with row stride 3
+        ByteBuffer y = bytes(0, 1, 2, 3, 99, 99, 4, 5, 6, 7, 99, 99);
+        ByteBuffer u = bytes(20, 21, 99);
+        ByteBuffer v = bytes(30, 31, 99);
+        ByteBuffer out = ByteBuffer.allocateDirect(12);
+
+        FrameKernels.setNativeEnabled(false);
+        FrameKernels.packNv21(y, 6, u, 3, 1, v, 3, 1, 4, 2, out);
+        byte[] array = new byte[12];
+        FrameKernels.packNv21(y, 6, u, 3, 1, v, 3, 1, 4, 2, array);
+
+        assertBytes(out, 0, 1, 2, 3, 4, 5, 6, 7, 30, 20, 31, 21);
+        assertBytes(ByteBuffer.wrap(array), 0, 1, 2, 3, 4, 5, 6, 7, 30, 20, 31, 21);
+    }
+
+    @Test
+    public void rotate8_rotatesClockwise() {
+        // 3x2 plane:  1 2 3      90:  4 1     180: 6 5 4     270: 3 6
+        //             4 5 6           5 2          3 2 1          2 5
+        //                             6 3                         1 4
+        ByteBuffer src = bytes(1, 2, 3, 4, 5, 6);
+        ByteBuffer dst = ByteBuffer.allocateDirect(6);
+        FrameKernels.setNativeEnabled(false);
+
+        FrameKernels.rotate8(src, 3, 3, 2, 90, dst);
+        assertBytes(dst, 4, 1, 5, 2, 6, 3);
+        FrameKernels.rotate8(src, 3, 3, 2, 180, dst);
+        assertBytes(dst, 6, 5, 4, 3, 2, 1);
+        FrameKernels.rotate8(src, 3, 3, 2, 270, dst);
+        assertBytes(dst, 3, 6, 2, 5, 1, 4);
+    }
+
+    @Test
+    public void downscaleBox_roundsToNearest() {
+        // One 2x2 block per channel: (0 + 1 + 1 + 1) / 4 = 0.75 -> 1, (10 + 10 + 11 + 10) / 4 -> 10
+        ByteBuffer src = bytes(0, 10, 1, 10, 1, 11, 1, 10);
+        ByteBuffer dst = ByteBuffer.allocateDirect(2);
+
+        FrameKernels.setNativeEnabled(false);
+        FrameKernels.downscaleBox(src, 4, 2, 2, 2, 2, dst);
+
+        assertBytes(dst, 1, 10);
+    }
+
+    @Test
+    public void nativeMatchesJava_packNv21() {
+        assumeTrue(FrameKernels.isNativeAvailable());
+        int[][] sizes = {{640, 480}, {34, 18}, {2, 2}};
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            for (int pixelStride = 1; pixelStride <= 2; pixelStride++) {
+                int yStride = width + 16;
+                int uvStride = width / 2 * pixelStride + 8;
+                ByteBuffer y = randomDirect(yStride * height);
+                ByteBuffer u = randomDirect(uvStride * height / 2);
+                ByteBuffer v = randomDirect(uvStride * height / 2);
+                ByteBuffer expected = ByteBuffer.allocateDirect(width * height * 3 / 2);
+                ByteBuffer actual = ByteBuffer.allocateDirect(width * height * 3 / 2);
+
+                FrameKernels.setNativeEnabled(false);
+                FrameKernels.packNv21(y, yStride, u, uvStride, pixelStride, v, uvStride, pixelStride,
+                        width, height, expected);
+                FrameKernels.setNativeEnabled(true);
+                FrameKernels.packNv21(y, yStride, u, uvStride, pixelStride, v, uvStride, pixelStride,
+                        width, height, actual);
+                byte[] array = new byte[width * height * 3 / 2];
+                FrameKernels.packNv21(y, yStride, u, uvStride, pixelStride, v, uvStride, pixelStride,
+                        width, height, array);
+
+                assertEquals("packNv21 " + width + "x" + height + " pixelStride " + pixelStride,
+                        expected, actual);
+                assertEquals("packNv21 into an array " + width + "x" + height,
+                        expected, ByteBuffer.wrap(array));
+            }
+        }
+    }
+
+    @Test
+    public void nativeAcceptsPlanesEndingAtTheirLastSample() {
+        assumeTrue(FrameKernels.isNativeAvailable());
+        // Interleaved chroma as most drivers report it: the last V byte has no U after it
+        int width = 64;
+        int height = 4;
+        ByteBuffer y = randomDirect(width * height);
+        ByteBuffer u = randomDirect(width * (height / 2 - 1) + width - 1);
+        ByteBuffer v = randomDirect(width * (height / 2 - 1) + width - 1);
+        ByteBuffer out = ByteBuffer.allocateDirect(width * height * 3 / 2);
+
+        FrameKernels.packNv21(y, width, u, width, 2, v, width, 2, width, height, out);
+    }
+
+    @Test
+    public void nativeRejectsPlanesThatDoNotFit() {
+        assumeTrue(FrameKernels.isNativeAvailable());
+        int width = 64;
+        int height = 4;
+        ByteBuffer y = randomDirect(width * height);
+        ByteBuffer chroma = randomDirect(width * height / 4);
+        ByteBuffer out = ByteBuffer.allocateDirect(width * height * 3 / 2);
+
+        // A row stride the Y plane is too short for
+        assertRejected(() -> FrameKernels.packNv21(y, width + 16, chroma, width / 2, 1,
+                chroma, width / 2, 1, width, height, out));
+        // A pixel stride of 2 on planar chroma
+        assertRejected(() -> FrameKernels.packNv21(y, width, chroma, width / 2, 2,
+                chroma, width / 2, 2, width, height, new byte[width * height * 3 / 2]));
+        assertRejected(() -> FrameKernels.packNv21(y, width, chroma, 0, 1,
+                chroma, width / 2, 1, width, height, out));
+        assertRejected(() -> FrameKernels.rotate8(y, width + 1, width, height, 90,
+                ByteBuffer.allocateDirect(width * height)));
+        assertRejected(() -> FrameKernels.rotate32(y, width, width, height, 90,
+                ByteBuffer.allocateDirect(width * height * 4)));
+        assertRejected(() -> FrameKernels.downscaleBox(chroma, width, width, height, 1, 2,
+                ByteBuffer.allocateDirect(width * height / 4)));
+    }
+
+    private static void assertRejected(Runnable kernel) {
+        try {
+            kernel.run();
+            fail("Kernel accepted planes that do not fit");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void nativeMatchesJava_rotate() {
+        assumeTrue(FrameKernels.isNativeAvailable());
+        int[][] sizes = {{640, 480}, {13, 7}, {4, 4}, {1, 5}};
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            int stride = width + 3;
+            ByteBuffer src8 = randomDirect(stride * height);
+            ByteBuffer src32 = randomDirect(stride * height * 4);
+            for (int degrees = 0; degrees < 360; degrees += 90) {
+                ByteBuffer expected = ByteBuffer.allocateDirect(width * height * 4);
+                ByteBuffer actual = ByteBuffer.allocateDirect(width * height * 4);
+
+                FrameKernels.setNativeEnabled(false);
+                FrameKernels.rotate32(src32, stride, width, height, degrees, expected);
+                FrameKernels.setNativeEnabled(true);
+                FrameKernels.rotate32(src32, stride, width, height, degrees, actual);
+                assertEquals("rotate32 " + width + "x" + height + " by " + degrees, expected, actual);
+
+                FrameKernels.setNativeEnabled(false);
+                FrameKernels.rotate8(src8, stride, width, height, degrees, expected);
+                FrameKernels.setNativeEnabled(true);
+                FrameKernels.rotate8(src8, stride, width, height, degrees, actual);
+                assertEquals("rotate8 " + width + "x" + height + " by " + degrees, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void nativeMatchesJava_downscaleBox() {
+        assumeTrue(FrameKernels.isNativeAvailable());
+        int width = 101;
+        int height = 37;
+        for (int channels = 1; channels <= 4; channels++) {
+            int stride = width * channels + 5;
+            ByteBuffer src = randomDirect(stride * height);
+            for (int factor = 1; factor <= 4; factor++) {
+                int size = (width / factor) * (height / factor) * channels;
+                ByteBuffer expected = ByteBuffer.allocateDirect(size);
+                ByteBuffer actual = ByteBuffer.allocateDirect(size);
+
+                FrameKernels.setNativeEnabled(false);
+                FrameKernels.downscaleBox(src, stride, width, height, channels, factor, expected);
+                FrameKernels.setNativeEnabled(true);
+                FrameKernels.downscaleBox(src, stride, width, height, channels, factor, actual);
+
+                assertEquals("downscaleBox channels " + channels + " factor " + factor,
+                        expected, actual);
+            }
+        }
+    }
+
+    private ByteBuffer randomDirect(int size) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(data).clear();
+        return buffer;
+    }
+
+    private static ByteBuffer bytes(int... values) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(values.length);
+        for (int value : values) {
+            buffer.put((byte) value);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static void assertBytes(ByteBuffer buffer, int... expected) {
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("byte " + i, (byte) expected[i], buffer.get(i));
+        }
+    }
+}
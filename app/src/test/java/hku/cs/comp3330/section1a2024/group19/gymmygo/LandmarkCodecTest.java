@@ -0,0 +1,92 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LandmarkCodecTest {
+
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 640;
+
+    @Test
+    public void roundTripsWithinQuantisationError() {
+        LandmarkFrame[] frames = movingFrames(8, 3f);
+        ByteBuffer packet = ByteBuffer.allocate(LandmarkCodec.maxPacketBytes(frames.length));
+        new LandmarkCodec().encode(42, frames, frames.length, 1234L, packet);
+        packet.flip();
+
+        LandmarkFrame[] decoded = newFrames(frames.length);
+        LandmarkCodec decoder = new LandmarkCodec();
+        assertEquals(frames.length, decoder.decode(packet, decoded));
+        assertEquals(42, decoder.getStationId());
+        assertEquals(1234L, decoder.getFirstQueuedMicros());
+        assertEquals(0, packet.remaining());
+
+        for (int f = 0; f < frames.length; f++) {
+            assertEquals(frames[f].timestampNanos, decoded[f].timestampNanos);
+            assertEquals(WIDTH, decoded[f].imageWidth);
+            for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+                assertEquals(frames[f].x[i], decoded[f].x[i], 0.02f);
+                assertEquals(frames[f].y[i], decoded[f].y[i], 0.03f);
+                assertEquals(frames[f].z[i], decoded[f].z[i], 0.1f);
+                assertEquals(frames[f].likelihood[i], decoded[f].likelihood[i], 0.005f);
+            }
+        }
+    }
+
+    @Test
+    public void deltasMakeSlowMovementCheap() {
+        LandmarkFrame[] still = movingFrames(10, 0f);
+        LandmarkFrame[] moving = movingFrames(10, 40f);
+        ByteBuffer stillPacket = ByteBuffer.allocate(LandmarkCodec.maxPacketBytes(10));
+        ByteBuffer movingPacket = ByteBuffer.allocate(LandmarkCodec.maxPacketBytes(10));
+
+        new LandmarkCodec().encode(1, still, 10, 0, stillPacket);
+        new LandmarkCodec().encode(1, moving, 10, 0, movingPacket);
+
+        // A still skeleton costs about one byte per value after the first frame
+        int firstFrameBytes = LandmarkCodec.HEADER_BYTES + 10 + LandmarkFrame.LANDMARK_COUNT * 11;
+        assertTrue(stillPacket.position() < firstFrameBytes + 9 * (4 + LandmarkFrame.LANDMARK_COUNT * 4));
+        assertTrue(stillPacket.position() < movingPacket.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedPackets() {
+        LandmarkFrame[] frames = movingFrames(2, 1f);
+        ByteBuffer packet = ByteBuffer.allocate(LandmarkCodec.maxPacketBytes(2));
+        new LandmarkCodec().encode(1, frames, 2, 0, packet);
+        packet.flip();
+        packet.limit(packet.limit() - 5);
+
+        new LandmarkCodec().decode(packet, newFrames(2));
+    }
+
+    private static LandmarkFrame[] movingFrames(int count, float stepPixels) {
+        LandmarkFrame[] frames = newFrames(count);
+        for (int f = 0; f < count; f++) {
+            LandmarkFrame frame = frames[f];
+            frame.imageWidth = WIDTH;
+            frame.imageHeight = HEIGHT;
+            frame.timestampNanos = 5_000_000_000L + f * 33_333_000L;
+            for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+                frame.x[i] = 100 + i * 10 + f * stepPixels;
+                frame.y[i] = 50 + i * 15 - f * stepPixels;
+                frame.z[i] = -200 + i * 7;
+                frame.likelihood[i] = i % 2 == 0 ? 0.99f : 0.3f;
+            }
+        }
+        return frames;
+    }
+
+    private static LandmarkFrame[] newFrames(int count) {
+        LandmarkFrame[] frames = new LandmarkFrame[count];
+        for (int i = 0; i < count; i++) {
+            frames[i] = new LandmarkFrame();
+        }
+        return frames;
+    }
+}
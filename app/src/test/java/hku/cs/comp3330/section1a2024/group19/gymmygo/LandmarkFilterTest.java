@@ -0,0 +1,164 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the filter over synthetic occlusion sequences.
+ */
+public class LandmarkFilterTest {
+
+    private static final int NOSE = 0;
+    private static final int LEFT_SHOULDER = 11;
+    private static final int RIGHT_SHOULDER = 12;
+    private static final int LEFT_HIP = 23;
+    private static final int RIGHT_HIP = 24;
+    private static final int LEFT_KNEE = 25;
+    private static final int RIGHT_KNEE = 26;
+    private static final int HOLD_FRAMES = 3;
+
+    private LandmarkFilter filter;
+    private final LandmarkFrame in = new LandmarkFrame();
+    private final LandmarkFrame out = new LandmarkFrame();
+
+    @Before
+    public void setUp() {
+        filter = new LandmarkFilter(0.5f, 0.3f, HOLD_FRAMES, 0.5f, 0.2f);
+    }
+
+    private void place(int type, float x, float y, float likelihood) {
+        in.x[type] = x;
+        in.y[type] = y;
+        in.likelihood[type] = likelihood;
+    }
+
+    /**
+     * A person facing the camera: shoulders 120 px apart over a 200 px torso.
+     */
+    private void frontalBody() {
+        place(LEFT_SHOULDER, 260, 100, 0.9f);
+        place(RIGHT_SHOULDER, 140, 100, 0.9f);
+        place(LEFT_HIP, 240, 300, 0.9f);
+        place(RIGHT_HIP, 160, 300, 0.9f);
+        place(RIGHT_KNEE, 150, 450, 0.9f);
+    }
+
+    @Test
+    public void hysteresisKeepsJointsFromFlickering() {
+        float[] likelihoods = {0.4f, 0.6f, 0.4f, 0.35f, 0.25f, 0.45f, 0.5f};
+        boolean[] expected = {false, true, true, true, false, false, true};
+        for (int f = 0; f < likelihoods.length; f++) {
+            place(NOSE, 100, 100, likelihoods[f]);
+            filter.apply(in, out);
+            assertEquals("frame " + f, expected[f], filter.isVisible(NOSE));
+        }
+    }
+
+    @Test
+    public void hiddenJointFollowsItsMotionThenDisappears() {
+        for (int f = 0; f < 5; f++) {
+            place(NOSE, 100 + 10 * f, 50, 0.9f);
+            filter.apply(in, out);
+        }
+        // Last seen at x = 140, moving 10 px per frame; the motion halves every hidden frame
+        in.likelihood[NOSE] = 0;
+        float[] expectedX = {145, 147.5f, 148.75f};
+        for (float x : expectedX) {
+            filter.apply(in, out);
+            assertTrue(LandmarkFilter.containsAll(filter.getFilledMask(), LandmarkFilter.bit(NOSE)));
+            assertEquals(x, out.x[NOSE], 0.01f);
+            assertEquals(0.2f, out.likelihood[NOSE], 0f);
+        }
+        // The nose has no mirror, so after the hold it is gone
+        filter.apply(in, out);
+        assertFalse(LandmarkFilter.containsAll(filter.getUsableMask(), LandmarkFilter.bit(NOSE)));
+        assertEquals(0f, out.likelihood[NOSE], 0f);
+    }
+
+    @Test
+    public void occludedKneeIsMirroredFromTheOtherLeg() {
+        frontalBody();
+        place(LEFT_KNEE, 255, 445, 0.1f);
+        filter.apply(in, out);
+
+        // Right knee is 10 px outside and 150 px below the right hip, mirrored to the left
+        assertTrue(LandmarkFilter.containsAll(filter.getFilledMask(), LandmarkFilter.bit(LEFT_KNEE)));
+        assertEquals(250f, out.x[LEFT_KNEE], 0.01f);
+        assertEquals(450f, out.y[LEFT_KNEE], 0.01f);
+        assertEquals(0.2f, out.likelihood[LEFT_KNEE], 0f);
+        // Visible joints pass through unchanged
+        assertEquals(150f, out.x[RIGHT_KNEE], 0f);
+        assertEquals(0.9f, out.likelihood[RIGHT_KNEE], 0f);
+    }
+
+    @Test
+    public void sideViewCopiesTheOffsetWithoutMirroring() {
+        place(LEFT_SHOULDER, 205, 100, 0.9f);
+        place(RIGHT_SHOULDER, 195, 100, 0.9f);
+        place(LEFT_HIP, 210, 300, 0.9f);
+        place(RIGHT_HIP, 200, 300, 0.9f);
+        place(RIGHT_KNEE, 260, 420, 0.9f);
+        filter.apply(in, out);
+
+        assertEquals(270f, out.x[LEFT_KNEE], 0.01f);
+        assertEquals(420f, out.y[LEFT_KNEE], 0.01f);
+    }
+
+    @Test
+    public void shortOcclusionUsesTemporalPriorBeforeSymmetry() {
+        frontalBody();
+        place(LEFT_KNEE, 250, 450, 0.9f);
+        filter.apply(in, out);
+        place(LEFT_KNEE, 250, 460, 0.9f);
+        filter.apply(in, out);
+
+        // The leg is hidden for longer than the hold
+        in.likelihood[LEFT_KNEE] = 0;
+        for (int f = 0; f < HOLD_FRAMES; f++) {
+            filter.apply(in, out);
+            assertTrue(out.y[LEFT_KNEE] > 460);
+        }
+        filter.apply(in, out);
+        assertEquals(450f, out.y[LEFT_KNEE], 0.01f);
+
+        // Both legs hidden: nothing left to mirror from
+        in.likelihood[RIGHT_KNEE] = 0;
+        for (int f = 0; f <= HOLD_FRAMES; f++) {
+            filter.apply(in, out);
+        }
+        assertFalse(LandmarkFilter.containsAll(filter.getUsableMask(),
+                LandmarkFilter.bit(LEFT_KNEE) | LandmarkFilter.bit(RIGHT_KNEE)));
+        assertEquals(0f, out.likelihood[LEFT_KNEE], 0f);
+    }
+
+    @Test
+    public void applyDoesNotAllocate() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        long thread = Thread.currentThread().getId();
+        frontalBody();
+
+        // Warm up so that the JIT is done allocating for itself
+        for (int f = 0; f < 20_000; f++) {
+            in.likelihood[LEFT_KNEE] = (f / 7) % 2 == 0 ? 0.9f : 0f;
+            filter.apply(in, out);
+        }
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int f = 0; f < 10_000; f++) {
+            in.likelihood[LEFT_KNEE] = (f / 7) % 2 == 0 ? 0.9f : 0f;
+            filter.apply(in, out);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        // getThreadAllocatedBytes itself may allocate a little
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+}
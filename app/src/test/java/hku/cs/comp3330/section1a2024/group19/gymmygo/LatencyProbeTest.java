@@ -0,0 +1,115 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the probe against a simulated camera, pipeline and display on fake clocks.
+ */
+public class LatencyProbeTest {
+
+    private static final long FRAME_NANOS = 33_333_333L;
+    private static final long VSYNC_NANOS = 16_666_667L;
+    // p95 skew the simulated pipeline must stay under, as the instrumented test does on devices
+    private static final double MAX_P95_SKEW_MS = 150;
+
+    // Realtime runs ahead of the monotonic clock by the time the device slept
+    private static final long SLEPT_NANOS = 3_600_000_000_000L;
+
+    private long monotonicNow;
+    private LatencyProbe probe;
+
+    @Before
+    public void setUp() {
+        monotonicNow = 1_000_000_000_000L;
+        probe = new LatencyProbe(() -> monotonicNow, () -> monotonicNow + SLEPT_NANOS, 1024);
+    }
+
+    /**
+     * Simulates a camera streaming for the given time. Each frame reaches the preview right
+     * away, the overlay gets it after the pipeline latency and draws it on the next vsync;
+     * frames arriving while the pipeline is busy are dropped.
+     *
+     * @param realtimeSensor True if the sensor timestamps use the realtime clock.
+     */
+    private void simulate(long durationNanos, long minLatencyNanos, long jitterNanos,
+                          boolean realtimeSensor) {
+        Random random = new Random(7);
+        long sensorOffset = realtimeSensor ? SLEPT_NANOS : 0;
+        ArrayDeque<long[]> inFlight = new ArrayDeque<>();
+        long end = monotonicNow + durationNanos;
+        long nextFrame = monotonicNow;
+        long busyUntil = 0;
+        while (monotonicNow < end) {
+            if (monotonicNow >= nextFrame) {
+                long timestamp = nextFrame + sensorOffset;
+                probe.onPreviewFrame(timestamp);
+                if (monotonicNow >= busyUntil) {
+                    long ready = monotonicNow + minLatencyNanos
+                            + (long) (random.nextDouble() * jitterNanos);
+                    busyUntil = ready;
+                    inFlight.add(new long[]{timestamp, ready});
+                }
+                nextFrame += FRAME_NANOS;
+            }
+            if (!inFlight.isEmpty() && inFlight.peek()[1] <= monotonicNow) {
+                long timestamp = inFlight.poll()[0];
+                // Redraws of the same bitmap must not count twice
+                probe.onOverlayFrame(timestamp);
+                probe.onOverlayFrame(timestamp);
+            }
+            monotonicNow += VSYNC_NANOS;
+        }
+    }
+
+    @Test
+    public void measuresSkewAndMotionToPhoton() {
+        simulate(10_000_000_000L, 60_000_000L, 0, false);
+
+        assertTrue(probe.getSampleCount() > 100);
+        // 60 ms of processing, rounded up to vsync: 66.7 ms behind the camera
+        assertEquals(66.7, probe.getPercentileMs(LatencyProbe.SERIES_MOTION_TO_PHOTON, 50), 0.1);
+        // The preview has moved on by two frames in that time
+        assertEquals(66.7, probe.getPercentileMs(LatencyProbe.SERIES_SKEW, 50), 0.1);
+        assertEquals(66_666_666L, probe.getSuggestedPreviewDelayNanos(), 1_000_000L);
+    }
+
+    @Test
+    public void picksTheRealtimeClockForRealtimeSensors() {
+        simulate(2_000_000_000L, 60_000_000L, 0, true);
+
+        assertTrue(probe.toString().contains("realtime"));
+        assertEquals(66.7, probe.getPercentileMs(LatencyProbe.SERIES_MOTION_TO_PHOTON, 50), 0.1);
+    }
+
+    @Test
+    public void p95SkewStaysWithinBudget() {
+        simulate(30_000_000_000L, 50_000_000L, 40_000_000L, false);
+
+        double p95 = probe.getPercentileMs(LatencyProbe.SERIES_SKEW, 95);
+        assertTrue("p95 skew " + p95 + " ms", p95 <= MAX_P95_SKEW_MS);
+        assertFalse(probe.isSkewAbove(MAX_P95_SKEW_MS));
+    }
+
+    @Test
+    public void detectsARegression() {
+        // A pipeline that got 100 ms slower
+        simulate(30_000_000_000L, 150_000_000L, 40_000_000L, false);
+
+        assertTrue(probe.isSkewAbove(MAX_P95_SKEW_MS));
+    }
+
+    @Test
+    public void ignoresOverlayFramesBeforeThePreviewStarts() {
+        probe.onOverlayFrame(monotonicNow);
+        assertEquals(0, probe.getSampleCount());
+        assertFalse(probe.isSkewAbove(0));
+    }
+}
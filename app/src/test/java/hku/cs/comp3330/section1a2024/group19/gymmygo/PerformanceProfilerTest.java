@@ -0,0 +1,181 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PerformanceProfilerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private long now = 0;
+    private File dir;
+
+    /** Advances the fake clock by a cost proportional to the pixel count of each stage. */
+    private class FakeBench implements PerformanceProfiler.Bench {
+        final double convertMsPerMegapixel;
+        final double detectMsPerMegapixel;
+        int detectCalls = 0;
+
+        FakeBench(double convertMsPerMegapixel, double detectMsPerMegapixel) {
+            this.convertMsPerMegapixel = convertMsPerMegapixel;
+            this.detectMsPerMegapixel = detectMsPerMegapixel;
+        }
+
+        @Override
+        public void convert(int width, int height, boolean nativeKernels) {
+            now += (long) (convertMsPerMegapixel * width * height / 1e6 * MS);
+        }
+
+        @Override
+        public void detect(int width, int height) {
+            detectCalls++;
+            now += (long) (detectMsPerMegapixel * width * height / 1e6 * MS);
+        }
+
+        @Override
+        public void drawOverlay(int width, int height) {
+            now += MS;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("profile").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private PerformanceProfile profile(FakeBench bench, double budgetMs) throws Exception {
+        return new PerformanceProfiler(bench, PerformanceProfiler.DEFAULT_SIZES, budgetMs, 2, 5, () -> now)
+                .run(7, "test/device", 1234);
+    }
+
+    @Test
+    public void picksTheLargestResolutionWithinTheBudget() throws Exception {
+        // 640x480 is 0.3 MP: 3 + 30 + 1 = 34 ms; 960x720 is 0.69 MP: 76 ms
+        FakeBench bench = new FakeBench(10, 100);
+        PerformanceProfile profile = profile(bench, 50);
+
+        assertEquals(640, profile.getAnalysisWidth());
+        assertEquals(480, profile.getAnalysisHeight());
+        assertEquals(30.72f, profile.getDetectMs(), 0.01f);
+        assertEquals(3.07f, profile.getConvertMs(), 0.01f);
+        assertEquals(1f, profile.getDrawMs(), 0.01f);
+        // Without the native library only the Java kernels can be chosen
+        assertFalse(profile.isNativeKernels());
+        assertEquals(7 * PerformanceProfiler.DEFAULT_SIZES.length, bench.detectCalls);
+    }
+
+    @Test
+    public void fallsBackToTheFastestResolution() throws Exception {
+        PerformanceProfile profile = profile(new FakeBench(10, 1000), 5);
+        assertEquals(320, profile.getAnalysisWidth());
+        assertEquals(240, profile.getAnalysisHeight());
+    }
+
+    @Test
+    public void roundTripsThroughTheFile() throws Exception {
+        PerformanceProfile profile = profile(new FakeBench(10, 100), 50);
+        File file = new File(dir, "profile");
+        profile.write(file);
+
+        PerformanceProfile read = PerformanceProfile.read(file);
+        assertEquals(640, read.getAnalysisWidth());
+        assertEquals(profile.getDetectMs(), read.getDetectMs(), 0f);
+        assertEquals(1234L, read.getCreatedMillis());
+        assertTrue(read.isValidFor(7, "test/device"));
+        assertFalse(read.isValidFor(8, "test/device"));
+        assertFalse(read.isValidFor(7, "other/device"));
+        assertFalse(new File(dir, "profile.tmp").exists());
+    }
+
+    @Test
+    public void rejectsOtherFormatVersions() throws IOException {
+        File file = new File(dir, "profile");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x47475050);
+            out.writeInt(99);
+        }
+        try {
+            PerformanceProfile.read(file);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+            // Treated like a missing profile
+        }
+    }
+
+    @Test
+    public void reportsEveryMeasuredSize() throws Exception {
+        PerformanceProfiler profiler = new PerformanceProfiler(new FakeBench(10, 100),
+                PerformanceProfiler.DEFAULT_SIZES, 50, 2, 5, () -> now);
+        final int[] measured = new int[1];
+        profiler.setListener((width, height, stages) -> {
+            assertEquals(PerformanceProfiler.DEFAULT_SIZES[measured[0]][0], width);
+            assertEquals(5, stages.getSampleCount(2));
+            measured[0]++;
+        });
+        profiler.run(7, "test/device", 1234);
+        assertEquals(PerformanceProfiler.DEFAULT_SIZES.length, measured[0]);
+    }
+
+    @Test
+    public void judgesDriftAgainstTheFirstLiveSession() throws IOException {
+        // The synthetic frames took 40 ms, live frames 80 ms from the start
+        PerformanceProfile profile = new PerformanceProfile(1, "d", 0, true, 640, 480, 5, 30, 5);
+        assertEquals(40, profile.getExpectedFrameMs(), 1e-6);
+        assertFalse(profile.hasLiveFrameMs());
+        assertFalse(profile.hasDrifted(80, 0.5));
+
+        profile = profile.withLiveFrameMs(80);
+        assertFalse(profile.hasDrifted(80, 0.5));
+        assertFalse(profile.hasDrifted(100, 0.5));
+        assertTrue(profile.hasDrifted(121, 0.5));
+        assertTrue(profile.hasDrifted(53, 0.5));
+
+        File file = new File(dir, "profile");
+        profile.write(file);
+        assertEquals(80f, PerformanceProfile.read(file).getLiveFrameMs(), 0f);
+    }
+
+    @Test
+    public void readsVersionOneProfilesWithoutLiveTime() throws IOException {
+        File file = new File(dir, "profile");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x47475050);
+            out.writeInt(1);
+            out.writeLong(7);
+            out.writeUTF("test/device");
+            out.writeLong(1234);
+            out.writeBoolean(false);
+            out.writeInt(640);
+            out.writeInt(480);
+            out.writeFloat(3);
+            out.writeFloat(30);
+            out.writeFloat(1);
+        }
+        PerformanceProfile profile = PerformanceProfile.read(file);
+        assertEquals(640, profile.getAnalysisWidth());
+        assertFalse(profile.hasLiveFrameMs());
+    }
+}
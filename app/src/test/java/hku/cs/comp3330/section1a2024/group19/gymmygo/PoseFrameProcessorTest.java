@@ -0,0 +1,319 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import android.graphics.Bitmap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The threading contract of {@link PoseFrameProcessor} on real scheduler lanes, with a
+ * detector that answers when the test says so. Frames are handed in on the capture lane like
+ * the camera analyzer does; the test thread plays the main thread.
+ */
+public class PoseFrameProcessorTest {
+
+    private static final int STREAMS = 2;
+
+    private AnalysisScheduler scheduler;
+    private PoseFrameProcessor processor;
+    private FakeDetector detector;
+    private boolean converterThrows = false;
+    private final List<String> events = new ArrayList<>();
+
+    /**
+     * Writes a visible nose into every frame. Detections finish at once unless held, then
+     * they finish on {@link #finish}.
+     */
+    private class FakeDetector implements PoseFrameProcessor.Detector {
+        boolean hold = false;
+        boolean usesBitmap = false;
+        boolean throwing = false;
+        final List<Runnable> held = new ArrayList<>();
+
+        @Override
+        public boolean usesBitmap() {
+            return usesBitmap;
+        }
+
+        @Override
+        public boolean tryAcquire(int stream) {
+            return true;
+        }
+
+        @Override
+        public void detect(int stream, YuvFrame frame, Bitmap upright, LandmarkFrame out,
+                           Executor executor, PoseFrameProcessor.Callback callback) {
+            if (throwing) {
+                throw new IllegalStateException("Detector failed");
+            }
+            out.clear();
+            out.timestampNanos = frame.timestampNanos;
+            out.likelihood[0] = 1f;
+            Runnable answer = () -> executor.execute(() -> callback.onDetected(null));
+            synchronized (this) {
+                if (hold) {
+                    held.add(answer);
+                    return;
+                }
+            }
+            answer.run();
+        }
+
+        synchronized void finish() {
+            for (Runnable answer : held) {
+                answer.run();
+            }
+            held.clear();
+        }
+
+        @Override
+        public void release(int stream) {
+            log("release detector " + stream);
+        }
+
+        @Override
+        public void clearStream(int stream) {
+            log("clear " + stream);
+        }
+
+        @Override
+        public void close() {
+            log("close detector");
+        }
+    }
+
+    private class LoggingStage implements PoseFrameProcessor.LandmarkStage {
+        @Override
+        public long process(int stream, YuvFrame frame, LandmarkFrame landmarks, long usableMask) {
+            log("stage " + stream + " " + landmarks.timestampNanos);
+            return usableMask;
+        }
+
+        @Override
+        public void close() {
+            log("close stage");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = AnalysisScheduler.createDefault();
+        detector = new FakeDetector();
+        PoseFrameProcessor.Builder builder = new PoseFrameProcessor.Builder(scheduler, new BufferPool(false))
+                .setDetector(detector)
+                .setConverter((frame, stream) -> {
+                    if (converterThrows) {
+                        throw new IllegalArgumentException("Unexpected row stride");
+                    }
+                    return null;
+                })
+                .addLandmarkStage(new LoggingStage());
+        for (int i = 0; i < STREAMS; i++) {
+            builder.addStream("stream " + i, new PresenceMonitor(60, 0.5f, 3, 0.02f),
+                    new LandmarkFilter(0.5f, 0.3f, 5, 0.7f, 0.2f));
+        }
+        processor = builder.build();
+        processor.addLandmarkListener((stream, frame, usableMask) ->
+                log("first " + stream + " " + frame.timestampNanos));
+        processor.addLandmarkListener((stream, frame, usableMask) ->
+                log("second " + stream + " " + frame.timestampNanos));
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(1000));
+    }
+
+    private void log(String event) {
+        synchronized (events) {
+            events.add(event);
+        }
+    }
+
+    private List<String> takeEvents() {
+        synchronized (events) {
+            List<String> taken = new ArrayList<>(events);
+            events.clear();
+            return taken;
+        }
+    }
+
+    /**
+     * Hands a 4x4 frame to the processor on the capture lane.
+     */
+    private void submit(int stream, long timestampNanos) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(16);
+        YuvFrame frame = new YuvFrame()
+                .setPlanes(plane, 4, plane, 2, 1, plane, 2, 1)
+                .setInfo(4, 4, 0, timestampNanos);
+        scheduler.getExecutor(AnalysisScheduler.LANE_CAPTURE).execute(() ->
+                processor.processFrame(stream, frame, () -> log("release frame " + stream)));
+    }
+
+    /**
+     * Waits until the tasks queued on the capture lane, then those on the inference lane,
+     * have run.
+     */
+    private void drain() throws InterruptedException {
+        for (int lane : new int[]{AnalysisScheduler.LANE_CAPTURE, AnalysisScheduler.LANE_INFERENCE}) {
+            CountDownLatch done = new CountDownLatch(1);
+            scheduler.getExecutor(lane).execute(done::countDown);
+            assertTrue(done.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void stagesThenListenersSeeEachFrameInOrder() throws InterruptedException {
+        for (long t = 1; t <= 3; t++) {
+            submit(0, t);
+            drain();
+        }
+        submit(1, 4);
+        drain();
+
+        List<String> expected = new ArrayList<>();
+        for (long t = 1; t <= 3; t++) {
+            expected.addAll(Arrays.asList("stage 0 " + t, "first 0 " + t, "second 0 " + t,
+                    "release frame 0", "release detector 0"));
+        }
+        expected.addAll(Arrays.asList("stage 1 4", "first 1 4", "second 1 4",
+                "release frame 1", "release detector 1"));
+        assertEquals(expected, takeEvents());
+        assertEquals(3, processor.getStream(0).getMetrics().getFramesProcessed());
+    }
+
+    @Test
+    public void dropsFramesOfABusyStreamOnly() throws InterruptedException {
+        detector.hold = true;
+        submit(0, 1);
+        submit(0, 2);
+        submit(1, 3);
+        drain();
+        // The second frame of stream 0 is given back right away
+        assertEquals(Arrays.asList("release frame 0"), takeEvents());
+        assertEquals(1, processor.getStream(0).getMetrics().getFramesDropped());
+        assertEquals(0, processor.getStream(1).getMetrics().getFramesDropped());
+
+        detector.finish();
+        drain();
+        List<String> delivered = takeEvents();
+        assertTrue(delivered.contains("second 0 1"));
+        assertTrue(delivered.contains("second 1 3"));
+    }
+
+    @Test
+    public void stopDropsResultsButReleasesFramesInFlight() throws InterruptedException {
+        detector.hold = true;
+        submit(0, 1);
+        drain();
+        processor.stop();
+        detector.finish();
+        drain();
+        submit(0, 2);
+        drain();
+        // The result in flight is skipped and the frame after stop dropped, both released
+        assertEquals(Arrays.asList("release frame 0", "release detector 0", "release frame 0"),
+                takeEvents());
+
+        detector.hold = false;
+        processor.start();
+        submit(0, 3);
+        drain();
+        assertEquals(Arrays.asList("stage 0 3", "first 0 3", "second 0 3",
+                "release frame 0", "release detector 0"), takeEvents());
+    }
+
+    @Test
+    public void closeWaitsForTheFramesOnTheCaptureLane() throws InterruptedException {
+        CountDownLatch capturing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        scheduler.getExecutor(AnalysisScheduler.LANE_CAPTURE).execute(() -> {
+            capturing.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        assertTrue(capturing.await(1, TimeUnit.SECONDS));
+        submit(0, 1);
+
+        processor.close();
+        assertEquals(new ArrayList<String>(), takeEvents());
+        proceed.countDown();
+        drain();
+        // The queued frame is dropped and released before the detector and stages close
+        assertEquals(Arrays.asList("release frame 0", "close detector", "close stage"),
+                takeEvents());
+    }
+
+    @Test
+    public void clearStreamsReachesEveryStreamAndKeepsFramesInFlight()
+            throws InterruptedException {
+        detector.hold = true;
+        submit(0, 1);
+        drain();
+        processor.clearStreams();
+        assertEquals(Arrays.asList("clear 0", "clear 1"), takeEvents());
+
+        detector.finish();
+        drain();
+        assertEquals(Arrays.asList("stage 0 1", "first 0 1", "second 0 1",
+                "release frame 0", "release detector 0"), takeEvents());
+    }
+
+    @Test
+    public void throwingConverterReleasesTheFrameAndTheStream() throws InterruptedException {
+        detector.usesBitmap = true;
+        converterThrows = true;
+        submit(0, 1);
+        drain();
+        assertEquals(Arrays.asList("release frame 0", "release detector 0"), takeEvents());
+        assertEquals(1, processor.getStream(0).getMetrics().getFramesFailed());
+
+        // The stream takes the next frame
+        detector.usesBitmap = false;
+        submit(0, 2);
+        drain();
+        assertEquals(Arrays.asList("stage 0 2", "first 0 2", "second 0 2",
+                "release frame 0", "release detector 0"), takeEvents());
+    }
+
+    @Test
+    public void throwingDetectorReleasesTheFrameAndTheStream() throws InterruptedException {
+        detector.throwing = true;
+        submit(0, 1);
+        drain();
+        assertEquals(Arrays.asList("release frame 0", "release detector 0"), takeEvents());
+        assertEquals(1, processor.getStream(0).getMetrics().getFramesFailed());
+
+        detector.throwing = false;
+        submit(0, 2);
+        drain();
+        assertEquals(Arrays.asList("stage 0 2", "first 0 2", "second 0 2",
+                "release frame 0", "release detector 0"), takeEvents());
+    }
+
+    @Test
+    public void resetFiltersForgetsHeldJoints() throws InterruptedException {
+        submit(0, 1);
+        drain();
+        assertTrue(processor.getStream(0).getLandmarkFilter().getUsableMask() != 0);
+
+        processor.resetFilters();
+        drain();
+        assertEquals(0, processor.getStream(0).getLandmarkFilter().getUsableMask());
+    }
+}
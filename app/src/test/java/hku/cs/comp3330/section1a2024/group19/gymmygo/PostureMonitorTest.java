@@ -0,0 +1,114 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PostureMonitorTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final int LEFT_EAR = 7;
+    private static final int RIGHT_EAR = 8;
+    private static final int LEFT_SHOULDER = 11;
+    private static final int RIGHT_SHOULDER = 12;
+    private static final long HEAD_AND_SHOULDERS = LandmarkFilter.bit(LEFT_EAR)
+            | LandmarkFilter.bit(RIGHT_EAR) | LandmarkFilter.bit(LEFT_SHOULDER)
+            | LandmarkFilter.bit(RIGHT_SHOULDER);
+
+    private PostureMonitor monitor;
+    private final LandmarkFrame frame = new LandmarkFrame();
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        monitor = new PostureMonitor(25, 0.25f, 30_000, 60_000);
+        monitor.setListener(new PostureMonitor.Listener() {
+            @Override
+            public void onSustainedBadPosture(long badForMs) {
+                events.add("bad " + badForMs);
+            }
+
+            @Override
+            public void onPostureRecovered() {
+                events.add("recovered");
+            }
+        });
+    }
+
+    /** Front view with shoulders 100 px apart and the ears the given height above them. */
+    private LandmarkFrame front(float earHeight, long timestampNanos) {
+        frame.x[LEFT_SHOULDER] = 150;
+        frame.x[RIGHT_SHOULDER] = 50;
+        frame.y[LEFT_SHOULDER] = 200;
+        frame.y[RIGHT_SHOULDER] = 200;
+        frame.x[LEFT_EAR] = 115;
+        frame.x[RIGHT_EAR] = 85;
+        frame.y[LEFT_EAR] = 200 - earHeight;
+        frame.y[RIGHT_EAR] = 200 - earHeight;
+        frame.timestampNanos = timestampNanos;
+        return frame;
+    }
+
+    @Test
+    public void judgesTheNeckAngleAndTheHeadHeight() {
+        assertEquals(PostureMonitor.POSTURE_GOOD, monitor.classify(front(40, 0), HEAD_AND_SHOULDERS));
+        // Sunk between the shoulders
+        assertEquals(PostureMonitor.POSTURE_BAD, monitor.classify(front(20, 0), HEAD_AND_SHOULDERS));
+
+        // Side view, left ear 20 px in front of the shoulder at 60 px height is about 18 degrees
+        long leftSide = LandmarkFilter.bit(LEFT_EAR) | LandmarkFilter.bit(LEFT_SHOULDER);
+        frame.x[LEFT_EAR] = frame.x[LEFT_SHOULDER] + 20;
+        frame.y[LEFT_EAR] = frame.y[LEFT_SHOULDER] - 60;
+        assertEquals(PostureMonitor.POSTURE_GOOD, monitor.classify(frame, leftSide));
+        // 40 px is about 34 degrees
+        frame.x[LEFT_EAR] = frame.x[LEFT_SHOULDER] + 40;
+        assertEquals(PostureMonitor.POSTURE_BAD, monitor.classify(frame, leftSide));
+
+        assertEquals(PostureMonitor.POSTURE_UNKNOWN, monitor.classify(frame, LandmarkFilter.bit(LEFT_EAR)));
+    }
+
+    @Test
+    public void alertsOnceBadPostureIsSustainedAndRepeats() {
+        // Bursts every five seconds
+        for (int i = 0; i <= 6; i++) {
+            monitor.onLandmarks(front(20, i * 5 * SECOND), HEAD_AND_SHOULDERS);
+        }
+        assertEquals(1, events.size());
+        assertEquals("bad 30000", events.get(0));
+
+        for (int i = 7; i <= 18; i++) {
+            monitor.onLandmarks(front(20, i * 5 * SECOND), HEAD_AND_SHOULDERS);
+        }
+        assertEquals(2, events.size());
+        assertEquals("bad 90000", events.get(1));
+
+        monitor.onLandmarks(front(40, 19 * 5 * SECOND), HEAD_AND_SHOULDERS);
+        assertEquals("recovered", events.get(2));
+        assertEquals(2, monitor.getAlertCount());
+        assertEquals(PostureMonitor.POSTURE_GOOD, monitor.getLastPosture());
+    }
+
+    @Test
+    public void goodFramesAndLongGapsEndTheStreak() {
+        monitor.onLandmarks(front(20, 0), HEAD_AND_SHOULDERS);
+        monitor.onLandmarks(front(20, 20 * SECOND), HEAD_AND_SHOULDERS);
+        monitor.onLandmarks(front(40, 25 * SECOND), HEAD_AND_SHOULDERS);
+        monitor.onLandmarks(front(20, 30 * SECOND), HEAD_AND_SHOULDERS);
+        // Unknown frames neither break nor extend the streak
+        monitor.onLandmarks(front(20, 45 * SECOND), 0);
+        monitor.onLandmarks(front(20, 55 * SECOND), HEAD_AND_SHOULDERS);
+        // Nobody judged for longer than the sustain time
+        monitor.onLandmarks(front(20, 90 * SECOND), HEAD_AND_SHOULDERS);
+        monitor.onLandmarks(front(20, 115 * SECOND), HEAD_AND_SHOULDERS);
+        assertEquals(0, events.size());
+
+        monitor.onLandmarks(front(20, 120 * SECOND), HEAD_AND_SHOULDERS);
+        assertEquals("bad 30000", events.get(0));
+        assertEquals(1, monitor.getSampleCount(PostureMonitor.POSTURE_UNKNOWN));
+        assertEquals(7, monitor.getSampleCount(PostureMonitor.POSTURE_BAD));
+    }
+}
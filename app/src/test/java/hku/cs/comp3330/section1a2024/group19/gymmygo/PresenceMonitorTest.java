@@ -0,0 +1,87 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PresenceMonitorTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private long now = 0;
+    private PresenceMonitor monitor;
+    private final LandmarkFrame empty = new LandmarkFrame();
+    private final LandmarkFrame person = new LandmarkFrame();
+
+    @Before
+    public void setUp() {
+        monitor = new PresenceMonitor(3, 0.5f, 2, 0.05f, () -> now);
+        person.likelihood[0] = 0.9f;
+    }
+
+    @Test
+    public void goesIdleAfterConsecutiveEmptyFrames() {
+        monitor.onLandmarks(empty);
+        monitor.onLandmarks(empty);
+        monitor.onLandmarks(person);
+        monitor.onLandmarks(empty);
+        monitor.onLandmarks(empty);
+        assertFalse(monitor.isIdle());
+
+        monitor.onLandmarks(empty);
+        assertTrue(monitor.isIdle());
+        assertEquals(1, monitor.getTransitionsInto(PresenceMonitor.STATE_IDLE));
+    }
+
+    @Test
+    public void wakesOnTheFirstFrameWithMotion() {
+        goIdle();
+        YuvFrame still = frame(50);
+
+        // Every second frame is checked, the first check only stores a reference
+        assertFalse(monitor.onIdleFrame(still));
+        assertFalse(monitor.onIdleFrame(still));
+        assertFalse(monitor.onIdleFrame(still));
+        assertTrue(monitor.isIdle());
+
+        // Skipped by the stride, then the next checked frame wakes the monitor
+        assertFalse(monitor.onIdleFrame(frame(200)));
+        assertTrue(monitor.onIdleFrame(frame(200)));
+        assertFalse(monitor.isIdle());
+        assertEquals(1, monitor.getTransitionsInto(PresenceMonitor.STATE_ACTIVE));
+    }
+
+    @Test
+    public void tracksTimeInEachState() {
+        now = 1_000_000_000L;
+        goIdle();
+        now = 5_000_000_000L;
+
+        assertEquals(1000, monitor.getTimeInStateMs(PresenceMonitor.STATE_ACTIVE));
+        assertEquals(4000, monitor.getTimeInStateMs(PresenceMonitor.STATE_IDLE));
+    }
+
+    private void goIdle() {
+        for (int i = 0; i < 3; i++) {
+            monitor.onLandmarks(empty);
+        }
+        assertTrue(monitor.isIdle());
+    }
+
+    private static YuvFrame frame(int luma) {
+        ByteBuffer y = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            y.put(i, (byte) luma);
+        }
+        ByteBuffer chroma = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 2);
+        return new YuvFrame()
+                .setPlanes(y, WIDTH, chroma, WIDTH, 2, chroma, WIDTH, 2)
+                .setInfo(WIDTH, HEIGHT, 0, 0);
+    }
+}
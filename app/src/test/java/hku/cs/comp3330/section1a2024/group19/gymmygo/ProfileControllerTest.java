@@ -0,0 +1,197 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The profile policy of {@link ProfileController}. Profiler runs wait in a queue until the
+ * test runs them; the main executor runs its tasks right away.
+ */
+public class ProfileControllerTest {
+
+    private static final long VERSION = 7;
+    private static final String DEVICE = "test/device";
+    private static final long MS = 1_000_000L;
+
+    private File dir;
+    private File file;
+    private final List<Runnable> profilingQueue = new ArrayList<>();
+    private final List<PerformanceProfile> ready = new ArrayList<>();
+    private int benchesCreated = 0;
+    private int benchesClosed = 0;
+    private boolean benchFails = false;
+
+    /** Costs nothing, so the profiler picks the largest size. */
+    private class FakeBench implements PerformanceProfiler.Bench, Closeable {
+        @Override
+        public void convert(int width, int height, boolean nativeKernels) {
+        }
+
+        @Override
+        public void detect(int width, int height) {
+        }
+
+        @Override
+        public void drawOverlay(int width, int height) {
+        }
+
+        @Override
+        public void close() {
+            benchesClosed++;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("profile").toFile();
+        file = new File(dir, "performance.profile");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                child.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private ProfileController controller() {
+        return new ProfileController(file, VERSION, DEVICE, () -> {
+            benchesCreated++;
+            if (benchFails) {
+                throw new IOException("No detector");
+            }
+            return new FakeBench();
+        }, profilingQueue::add, Runnable::run, ready::add);
+    }
+
+    private void runProfilingQueue() {
+        List<Runnable> tasks = new ArrayList<>(profilingQueue);
+        profilingQueue.clear();
+        for (Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    private static PerformanceProfile stored(long appVersion) {
+        return new PerformanceProfile(appVersion, DEVICE, 1234, true, 640, 480, 3, 30, 1);
+    }
+
+    /**
+     * A session whose frames each took frameMs to detect, and nothing else.
+     */
+    private static StageTimer session(int frames, double frameMs) {
+        StageTimer stages = new StageTimer(new String[]{"convert", "rotate", "detect", "draw"}, 64);
+        for (int i = 0; i < frames; i++) {
+            stages.recordDuration(StreamMetrics.STAGE_DETECT, (long) (frameMs * MS));
+        }
+        return stages;
+    }
+
+    @Test
+    public void usesAStoredProfileWithoutProfiling() throws IOException {
+        stored(VERSION).write(file);
+        ProfileController controller = controller();
+
+        assertTrue(controller.load());
+        assertFalse(controller.isWaitingForProfile());
+        assertEquals(640, controller.getProfile().getAnalysisWidth());
+        assertTrue(profilingQueue.isEmpty());
+    }
+
+    @Test
+    public void waitsForTheProfilerWhenTheStoredProfileIsStale() throws IOException {
+        stored(VERSION - 1).write(file);
+        ProfileController controller = controller();
+
+        assertFalse(controller.load());
+        assertTrue(controller.isWaitingForProfile());
+        assertNull(controller.getProfile());
+
+        runProfilingQueue();
+        assertFalse(controller.isWaitingForProfile());
+        assertEquals(1, ready.size());
+        assertSame(ready.get(0), controller.getProfile());
+        assertEquals(1, benchesClosed);
+        assertTrue(PerformanceProfile.read(file).isValidFor(VERSION, DEVICE));
+    }
+
+    @Test
+    public void failedRunStopsTheWaitWithoutAProfile() {
+        benchFails = true;
+        ProfileController controller = controller();
+
+        assertFalse(controller.load());
+        runProfilingQueue();
+        assertFalse(controller.isWaitingForProfile());
+        assertEquals(1, ready.size());
+        assertNull(ready.get(0));
+        assertNull(controller.getProfile());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void firstSessionCalibratesAndADriftedOneRevalidates() throws IOException {
+        stored(VERSION).write(file);
+        ProfileController controller = controller();
+        controller.load();
+
+        // Too short to judge
+        controller.checkDrift(session(10, 40));
+        assertFalse(controller.getProfile().hasLiveFrameMs());
+
+        controller.checkDrift(session(40, 40));
+        assertEquals(40f, controller.getProfile().getLiveFrameMs(), 1e-3f);
+        runProfilingQueue();
+        assertEquals(40f, PerformanceProfile.read(file).getLiveFrameMs(), 1e-3f);
+
+        // Within the tolerance
+        controller.checkDrift(session(40, 50));
+        controller.revalidateIfDrifted();
+        assertTrue(profilingQueue.isEmpty());
+
+        controller.checkDrift(session(40, 90));
+        assertTrue(profilingQueue.isEmpty());
+        controller.revalidateIfDrifted();
+        runProfilingQueue();
+        assertEquals(1, benchesCreated);
+        assertEquals(1, ready.size());
+
+        // The drift is handled once
+        controller.revalidateIfDrifted();
+        assertTrue(profilingQueue.isEmpty());
+    }
+
+    @Test
+    public void runsOneProfilerAtATime() throws IOException {
+        stored(VERSION).write(file);
+        ProfileController controller = controller();
+        controller.load();
+        controller.checkDrift(session(40, 40));
+        runProfilingQueue();
+
+        controller.checkDrift(session(40, 90));
+        controller.revalidateIfDrifted();
+        // Not judged while a run is going
+        controller.checkDrift(session(40, 10));
+        controller.revalidateIfDrifted();
+        assertEquals(1, profilingQueue.size());
+    }
+}
@@ -0,0 +1,118 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays synthetic recordings through the harness on the JVM.
+ */
+public class ReplayHarnessTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAMES = 30;
+    private static final long FRAME_INTERVAL_NANOS = 10_000_000L;
+
+    private File recording;
+
+    @Before
+    public void writeRecording() throws IOException {
+        recording = File.createTempFile("replay", ".yuv");
+        ByteBuffer y = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        ByteBuffer vu = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 2);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            y.put(i, (byte) 100);
+        }
+        // Semi-planar chroma: the U plane starts one byte after the V plane
+        ByteBuffer v = vu.duplicate();
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+
+        YuvFrame frame = new YuvFrame().setPlanes(y, WIDTH, u, WIDTH, 2, v, WIDTH, 2);
+        try (FrameRecording.Writer writer = new FrameRecording.Writer(recording)) {
+            for (int i = 0; i < FRAMES; i++) {
+                writer.write(frame.setInfo(WIDTH, HEIGHT, 90, 1_000_000_000L + i * FRAME_INTERVAL_NANOS));
+            }
+        }
+    }
+
+    @After
+    public void deleteRecording() {
+        recording.delete();
+    }
+
+    @Test
+    public void recordingRoundTrips() throws IOException {
+        try (FrameRecording.Reader reader = new FrameRecording.Reader(recording)) {
+            YuvFrame frame = reader.next();
+            assertEquals(WIDTH, frame.width);
+            assertEquals(HEIGHT, frame.height);
+            assertEquals(90, frame.rotationDegrees);
+            assertEquals(2, frame.uPixelStride);
+            assertEquals(1_000_000_000L, frame.timestampNanos);
+            assertEquals(WIDTH * HEIGHT, frame.y.remaining());
+            assertEquals(WIDTH * HEIGHT / 2 - 1, frame.u.remaining());
+
+            int count = 1;
+            while (reader.next() != null) {
+                count++;
+            }
+            assertEquals(FRAMES, count);
+        }
+    }
+
+    @Test
+    public void maxSpeed_processesEveryFrame() throws Exception {
+        KernelPipeline pipeline = new KernelPipeline(2, 256);
+        try (FrameRecording.Reader reader = new FrameRecording.Reader(recording)) {
+            ReplayReport report = new ReplayHarness(reader, pipeline).run(true, pipeline.getStageTimer());
+
+            assertEquals(FRAMES, report.getFramesDelivered());
+            assertEquals(FRAMES, report.getFramesCompleted());
+            assertEquals(0, report.getFramesDropped());
+            assertEquals(FRAMES, pipeline.getStageTimer().getSampleCount(KernelPipeline.STAGE_PACK));
+            assertTrue(report.getThroughputFps() > 0);
+        }
+        // Upright 48x64 luma halved to 24x32, a flat plane stays flat
+        ByteBuffer output = pipeline.getOutput();
+        for (int i = 0; i < 24 * 32; i++) {
+            assertEquals(100, output.get(i) & 0xFF);
+        }
+    }
+
+    @Test
+    public void recordedSpeed_dropsFramesWhileBusy() throws Exception {
+        // Each frame takes 2.5 frame intervals, so most arrive while the previous one is in flight
+        FrameConsumer slowConsumer = new FrameConsumer() {
+            @Override
+            public void onFrame(YuvFrame frame, final Runnable done) {
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(FRAME_INTERVAL_NANOS * 5 / 2 / 1_000_000);
+                        } catch (InterruptedException ignored) {
+                        }
+                        done.run();
+                    }
+                }).start();
+            }
+        };
+        try (FrameRecording.Reader reader = new FrameRecording.Reader(recording)) {
+            ReplayReport report = new ReplayHarness(reader, slowConsumer).run(false, null);
+
+            assertEquals(FRAMES, report.getFramesDelivered() + report.getFramesDropped());
+            assertEquals(report.getFramesDelivered(), report.getFramesCompleted());
+            assertTrue(report.getFramesDropped() > 0);
+            assertTrue(report.getLatencyMs(50) >= 20);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceMeterTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    public void reportsHourlyRates() {
+        ResourceMeter meter = new ResourceMeter();
+        assertTrue(Double.isNaN(meter.getCpuMsPerHour()));
+
+        meter.sample(1000, 500, 80, 3_000_000, false);
+        meter.sample(1000 + 30 * MINUTE, 500 + 18_000, 79, 2_950_000, false);
+
+        assertEquals(36_000, meter.getCpuMsPerHour(), 1e-6);
+        assertEquals(1.0, meter.getCpuPercent(), 1e-6);
+        assertEquals(2.0, meter.getBatteryPercentPerHour(), 1e-6);
+        assertEquals(100.0, meter.getDrainMilliamps(), 1e-6);
+    }
+
+    @Test
+    public void ignoresTimeOnTheCharger() {
+        ResourceMeter meter = new ResourceMeter();
+        meter.sample(0, 0, 50, 0, false);
+        meter.sample(60 * MINUTE, 1000, 48, 0, false);
+        meter.sample(90 * MINUTE, 1500, 60, 0, true);
+        meter.sample(120 * MINUTE, 2000, 70, 0, false);
+
+        // Only the first hour was on battery, and there is no charge counter
+        assertEquals(2.0, meter.getBatteryPercentPerHour(), 1e-6);
+        assertTrue(Double.isNaN(meter.getDrainMilliamps()));
+        assertEquals(1000, meter.getCpuMsPerHour(), 1e-6);
+        assertEquals(4, meter.getSampleCount());
+    }
+}
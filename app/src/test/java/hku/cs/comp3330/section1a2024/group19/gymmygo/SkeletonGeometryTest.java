@@ -0,0 +1,72 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SkeletonGeometryTest {
+
+    private static LandmarkFrame frame(float likelihood) {
+        LandmarkFrame frame = new LandmarkFrame();
+        for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+            frame.x[i] = i;
+            frame.y[i] = 100 + i;
+            frame.likelihood[i] = likelihood;
+        }
+        return frame;
+    }
+
+    @Test
+    public void topologiesHaveNoDuplicates() {
+        assertEquals(LandmarkFrame.LANDMARK_COUNT, SkeletonTopology.BODY.getPointCount());
+        assertEquals(12, SkeletonTopology.BODY.getConnectionCount());
+        assertEquals(LandmarkFrame.LANDMARK_COUNT, SkeletonTopology.FULL.getPointCount());
+        assertEquals(12 + 9 + 8 + 6, SkeletonTopology.FULL.getConnectionCount());
+        // Reversed pairs count as the same bone
+        SkeletonTopology hips = new SkeletonTopology(new int[]{23, 24}, new int[]{23, 24});
+        SkeletonTopology merged = hips.plus(new SkeletonTopology(new int[]{24}, new int[]{24, 23}));
+        assertEquals(2, merged.getPointCount());
+        assertEquals(1, merged.getConnectionCount());
+    }
+
+    @Test
+    public void batchesBonesAndJointsByConfidence() {
+        SkeletonGeometry geometry = new SkeletonGeometry(SkeletonTopology.BODY, 0.8f, 0.5f, 0f);
+        LandmarkFrame frame = frame(0.9f);
+        // Left knee is uncertain, left ankle missing
+        frame.likelihood[25] = 0.6f;
+        frame.likelihood[27] = 0f;
+        geometry.build(frame);
+
+        // Hip - knee is medium, knee - ankle is not drawn
+        assertEquals(4, geometry.getLineLength(SkeletonGeometry.CONFIDENCE_MEDIUM));
+        assertEquals(10 * 4, geometry.getLineLength(SkeletonGeometry.CONFIDENCE_HIGH));
+        assertEquals(0, geometry.getLineLength(SkeletonGeometry.CONFIDENCE_LOW));
+        float[] medium = geometry.getLines(SkeletonGeometry.CONFIDENCE_MEDIUM);
+        assertEquals(23f, medium[0], 0f);
+        assertEquals(123f, medium[1], 0f);
+        assertEquals(25f, medium[2], 0f);
+        assertEquals(125f, medium[3], 0f);
+
+        assertEquals(31 * 2, geometry.getPointLength(SkeletonGeometry.CONFIDENCE_HIGH));
+        assertEquals(2, geometry.getPointLength(SkeletonGeometry.CONFIDENCE_MEDIUM));
+
+        // Arrays are reused from frame to frame
+        geometry.build(frame(0.3f));
+        assertEquals(12 * 4, geometry.getLineLength(SkeletonGeometry.CONFIDENCE_LOW));
+        assertEquals(0, geometry.getLineLength(SkeletonGeometry.CONFIDENCE_HIGH));
+        assertEquals(0, geometry.getLineLength(SkeletonGeometry.CONFIDENCE_MEDIUM));
+    }
+
+    @Test
+    public void highlightedJointsAreDrawnSeparately() {
+        SkeletonGeometry geometry = new SkeletonGeometry(SkeletonTopology.BODY, 0.8f, 0.5f, 0f);
+        geometry.setHighlightedJoints((1L << 25) | (1L << 26));
+        geometry.build(frame(0.9f));
+
+        assertEquals(4, geometry.getHighlightLength());
+        assertEquals(25f, geometry.getHighlights()[0], 0f);
+        assertEquals(26f, geometry.getHighlights()[2], 0f);
+        assertEquals(31 * 2, geometry.getPointLength(SkeletonGeometry.CONFIDENCE_HIGH));
+    }
+}
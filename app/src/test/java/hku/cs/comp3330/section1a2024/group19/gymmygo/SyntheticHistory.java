@@ -0,0 +1,59 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Years of synthetic training for {@link WorkoutHistoryStore}: four exercises, about four
+ * sessions a week, three sets of twelve reps each. Shared by the store tests and the
+ * benchmark module.
+ */
+class SyntheticHistory {
+
+    static final int EXERCISES = 4;
+    static final int SESSIONS_PER_WEEK = 4;
+    static final int SETS = 3;
+    static final int REPS_PER_SET = 12;
+    static final long DAY_MS = 86_400_000L;
+    // 2020-01-01 UTC
+    static final long START_MS = 1_577_836_800_000L;
+
+    /**
+     * Appends the synthetic sessions of the given number of days.
+     *
+     * @return Timestamp just after the last rep.
+     */
+    static long fill(WorkoutHistoryStore store, int days, long seed) throws IOException {
+        Random random = new Random(seed);
+        RepRecord rep = new RepRecord();
+        int session = 0;
+        long time = START_MS;
+        for (int day = 0; day < days; day++) {
+            if (random.nextInt(7) >= SESSIONS_PER_WEEK) {
+                continue;
+            }
+            time = START_MS + day * DAY_MS + 18 * 3_600_000L;
+            session++;
+            for (int exercise = 0; exercise < EXERCISES; exercise++) {
+                for (int set = 0; set < SETS; set++) {
+                    for (int r = 0; r < REPS_PER_SET; r++) {
+                        rep.timestampMillis = time;
+                        rep.sessionId = session;
+                        rep.exercise = (short) exercise;
+                        rep.repIndex = (short) (set * REPS_PER_SET + r);
+                        rep.formScore = 60 + random.nextFloat() * 40;
+                        rep.depth = 70 + random.nextFloat() * 40;
+                        rep.violations = random.nextInt(8) == 0 ? 1 << random.nextInt(4) : 0;
+                        rep.durationMillis = 1500 + random.nextInt(1500);
+                        store.append(rep);
+                        time += rep.durationMillis;
+                    }
+                    time += 90_000;
+                }
+            }
+            // A session ends with a flush, which is what fragments the index
+            store.flush();
+        }
+        return time;
+    }
+}
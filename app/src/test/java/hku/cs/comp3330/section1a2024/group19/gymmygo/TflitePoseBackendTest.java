@@ -0,0 +1,222 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TflitePoseBackendTest {
+
+    private static final int SENSOR_WIDTH = 8;
+    private static final int SENSOR_HEIGHT = 4;
+    private static final int INPUT_SIZE = 8;
+
+    /** Remembers the last input and answers with fixed keypoints. */
+    private static class FakeModel implements PoseModel {
+        final int inputType;
+        final int outputLayout;
+        final float[] keypoints;
+        final byte[] lastInput;
+
+        FakeModel(int inputType, int outputLayout, float[] keypoints) {
+            this.inputType = inputType;
+            this.outputLayout = outputLayout;
+            this.keypoints = keypoints;
+            lastInput = new byte[INPUT_SIZE * INPUT_SIZE * 3 * (inputType == INPUT_FLOAT32 ? 4 : 1)];
+        }
+
+        @Override
+        public int getInputWidth() {
+            return INPUT_SIZE;
+        }
+
+        @Override
+        public int getInputHeight() {
+            return INPUT_SIZE;
+        }
+
+        @Override
+        public int getInputType() {
+            return inputType;
+        }
+
+        @Override
+        public int getOutputLayout() {
+            return outputLayout;
+        }
+
+        @Override
+        public int getOutputSize() {
+            return keypoints.length;
+        }
+
+        @Override
+        public void run(ByteBuffer input, float[] output) {
+            input.duplicate().get(lastInput);
+            System.arraycopy(keypoints, 0, output, 0, keypoints.length);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void rotatesAndLetterboxesTheInput() {
+        FakeModel model = new FakeModel(PoseModel.INPUT_UINT8, PoseModel.OUTPUT_MOVENET, new float[51]);
+        TflitePoseBackend backend = new TflitePoseBackend(model, 0, 255);
+
+        // Sensor pixel (1, 0) lands at upright (3, 1), shifted right by the 2 pixel letterbox
+        backend.estimate(frame(90, 1, 0), new LandmarkFrame());
+        assertEquals(255, channel(model, 5, 1, 0));
+        assertEquals(128, channel(model, 4, 1, 0));
+        assertEquals(0, channel(model, 0, 0, 0));
+
+        // Same frame upside down: the tables follow the new rotation
+        backend.estimate(frame(180, 1, 0), new LandmarkFrame());
+        int padY = (INPUT_SIZE - SENSOR_HEIGHT) / 2;
+        assertEquals(255, channel(model, SENSOR_WIDTH - 2, padY + SENSOR_HEIGHT - 1, 0));
+        assertEquals(0, channel(model, 0, padY - 1, 0));
+    }
+
+    @Test
+    public void convertsChromaToRgb() {
+        FakeModel model = new FakeModel(PoseModel.INPUT_UINT8, PoseModel.OUTPUT_MOVENET, new float[51]);
+        TflitePoseBackend backend = new TflitePoseBackend(model, 0, 255);
+        YuvFrame red = frame(0, -1, -1);
+        fill(red.y, 76);
+        fill(red.u, 85);
+        fill(red.v, 255);
+
+        backend.estimate(red, new LandmarkFrame());
+        int padY = (INPUT_SIZE - SENSOR_HEIGHT) / 2;
+        assertTrue(channel(model, 3, padY, 0) > 250);
+        assertTrue(channel(model, 3, padY, 1) < 5);
+        assertTrue(channel(model, 3, padY, 2) < 5);
+    }
+
+    @Test
+    public void encodesSignedAndFloatInputs() {
+        FakeModel signed = new FakeModel(PoseModel.INPUT_INT8, PoseModel.OUTPUT_MOVENET, new float[51]);
+        new TflitePoseBackend(signed, 0, 255).estimate(frame(90, -1, -1), new LandmarkFrame());
+        assertEquals(0, signed.lastInput[2 * 3]);
+        assertEquals(-128, signed.lastInput[0]);
+
+        FakeModel floats = new FakeModel(PoseModel.INPUT_FLOAT32, PoseModel.OUTPUT_MOVENET, new float[51]);
+        new TflitePoseBackend(floats, 0, 255).estimate(frame(90, -1, -1), new LandmarkFrame());
+        ByteBuffer input = ByteBuffer.wrap(floats.lastInput).order(ByteOrder.nativeOrder());
+        assertEquals(128 / 255f, input.getFloat(4 * (2 * 3)), 1e-6f);
+        assertEquals(0f, input.getFloat(0), 0f);
+    }
+
+    @Test
+    public void mapsMoveNetKeypointsToUprightPixels() {
+        float[] keypoints = new float[51];
+        // Nose at the input center, left hip (COCO 11) at the top left of the image area
+        keypoints[0] = 0.5f;
+        keypoints[1] = 0.5f;
+        keypoints[2] = 0.9f;
+        keypoints[3 * 11] = 0f;
+        keypoints[3 * 11 + 1] = 2f / INPUT_SIZE;
+        keypoints[3 * 11 + 2] = 0.7f;
+        FakeModel model = new FakeModel(PoseModel.INPUT_UINT8, PoseModel.OUTPUT_MOVENET, keypoints);
+        LandmarkFrame out = new TflitePoseBackend(model, 0, 255).estimate(frame(90, -1, -1), new LandmarkFrame());
+
+        assertEquals(SENSOR_HEIGHT, out.imageWidth);
+        assertEquals(SENSOR_WIDTH, out.imageHeight);
+        assertEquals(42L, out.timestampNanos);
+        assertEquals(2f, out.x[0], 1e-5f);
+        assertEquals(4f, out.y[0], 1e-5f);
+        assertEquals(0.9f, out.likelihood[0], 0f);
+        assertEquals(0f, out.x[23], 1e-5f);
+        assertEquals(0f, out.y[23], 1e-5f);
+        assertEquals(0.7f, out.likelihood[23], 0f);
+        // Landmarks MoveNet does not have
+        assertEquals(0f, out.likelihood[1], 0f);
+        assertEquals(0f, out.likelihood[31], 0f);
+    }
+
+    @Test
+    public void mapsBlazePoseLandmarks() {
+        float[] landmarks = new float[39 * 5];
+        landmarks[5 * 12] = 3f;
+        landmarks[5 * 12 + 1] = 6f;
+        landmarks[5 * 12 + 2] = -2f;
+        landmarks[5 * 12 + 3] = 0f;
+        landmarks[5 * 32 + 3] = 10f;
+        FakeModel model = new FakeModel(PoseModel.INPUT_FLOAT32, PoseModel.OUTPUT_BLAZEPOSE, landmarks);
+        LandmarkFrame out = new TflitePoseBackend(model, 0, 255).estimate(frame(90, -1, -1), new LandmarkFrame());
+
+        assertEquals(1f, out.x[12], 1e-5f);
+        assertEquals(6f, out.y[12], 1e-5f);
+        assertEquals(-2f, out.z[12], 1e-5f);
+        assertEquals(0.5f, out.likelihood[12], 1e-6f);
+        assertTrue(out.likelihood[32] > 0.99f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsKeypointModels() {
+        new TflitePoseBackend(new FakeModel(PoseModel.INPUT_UINT8, PoseModel.OUTPUT_KEYPOINTS_XYZ,
+                new float[LandmarkFrame.LANDMARK_COUNT * 5]), 0, 255);
+    }
+
+    @Test
+    public void checksTheOutputShapeAgainstTheDeclaredLayout() {
+        PoseModel.checkOutputShape(PoseModel.OUTPUT_MOVENET, new int[]{1, 1, 17, 3});
+        PoseModel.checkOutputShape(PoseModel.OUTPUT_BLAZEPOSE, new int[]{1, 195});
+        PoseModel.checkOutputShape(PoseModel.OUTPUT_KEYPOINTS_XYZ, new int[]{1, 63});
+        // Multi-pose MoveNet, and BlazePose or a hand model declared as MoveNet
+        assertRejected(PoseModel.OUTPUT_MOVENET, new int[]{1, 6, 56});
+        assertRejected(PoseModel.OUTPUT_MOVENET, new int[]{1, 195});
+        assertRejected(PoseModel.OUTPUT_BLAZEPOSE, new int[]{1, 1, 17, 3});
+        assertRejected(PoseModel.OUTPUT_BLAZEPOSE, new int[]{1, 63});
+        assertRejected(PoseModel.OUTPUT_KEYPOINTS_XYZ, new int[]{1, 64});
+    }
+
+    private static void assertRejected(int layout, int[] shape) {
+        try {
+            PoseModel.checkOutputShape(layout, shape);
+            fail("Accepted " + Arrays.toString(shape) + " for layout " + layout);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortOutputs() {
+        new TflitePoseBackend(new FakeModel(PoseModel.INPUT_UINT8, PoseModel.OUTPUT_BLAZEPOSE,
+                new float[51]), 0, 255);
+    }
+
+    /**
+     * A gray 8x4 frame, with a white luma pixel at (brightX, brightY) unless negative.
+     */
+    private static YuvFrame frame(int rotationDegrees, int brightX, int brightY) {
+        ByteBuffer y = ByteBuffer.allocateDirect(SENSOR_WIDTH * SENSOR_HEIGHT);
+        ByteBuffer u = ByteBuffer.allocateDirect(SENSOR_WIDTH * SENSOR_HEIGHT / 4);
+        ByteBuffer v = ByteBuffer.allocateDirect(SENSOR_WIDTH * SENSOR_HEIGHT / 4);
+        fill(y, 128);
+        fill(u, 128);
+        fill(v, 128);
+        if (brightX >= 0) {
+            y.put(brightY * SENSOR_WIDTH + brightX, (byte) 255);
+        }
+        return new YuvFrame()
+                .setPlanes(y, SENSOR_WIDTH, u, SENSOR_WIDTH / 2, 1, v, SENSOR_WIDTH / 2, 1)
+                .setInfo(SENSOR_WIDTH, SENSOR_HEIGHT, rotationDegrees, 42L);
+    }
+
+    private static void fill(ByteBuffer buffer, int value) {
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) value);
+        }
+    }
+
+    private static int channel(FakeModel model, int x, int y, int c) {
+        return model.lastInput[(y * INPUT_SIZE + x) * 3 + c] & 0xff;
+    }
+}
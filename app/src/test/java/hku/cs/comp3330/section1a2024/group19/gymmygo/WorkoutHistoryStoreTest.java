@@ -0,0 +1,214 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WorkoutHistoryStoreTest {
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final int SEGMENT_BYTES = 16 * 1024;
+    private static final int FLUSH_RECORDS = 32;
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("history").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private WorkoutHistoryStore open(long maxBytes) throws IOException {
+        return new WorkoutHistoryStore(dir, maxBytes, SEGMENT_BYTES, FLUSH_RECORDS);
+    }
+
+    private static RepRecord rep(long timestampMillis, int exercise, int index) {
+        RepRecord rep = new RepRecord();
+        rep.timestampMillis = timestampMillis;
+        rep.exercise = (short) exercise;
+        rep.repIndex = (short) index;
+        rep.formScore = index;
+        return rep;
+    }
+
+    private static int count(WorkoutHistoryStore store, int exercise, long from, long to)
+            throws IOException {
+        return store.query(exercise, from, to, record -> true);
+    }
+
+    @Test
+    public void queriesByExerciseAndTimeRange() throws IOException {
+        try (WorkoutHistoryStore store = open(1 << 20)) {
+            for (int day = 0; day < 10; day++) {
+                for (int r = 0; r < 5; r++) {
+                    store.append(rep(day * DAY_MS + r * 1000, day % 2, r));
+                }
+            }
+            // Half of it is still buffered
+            assertEquals(50, count(store, WorkoutHistoryStore.ALL_EXERCISES, 0, 10 * DAY_MS));
+            assertEquals(25, count(store, 0, 0, 10 * DAY_MS));
+            assertEquals(5, count(store, 1, 3 * DAY_MS, 4 * DAY_MS));
+            // Bounds inside a day
+            assertEquals(2, count(store, 0, 2 * DAY_MS + 1000, 2 * DAY_MS + 3000));
+            assertEquals(0, count(store, 1, 2 * DAY_MS, 3 * DAY_MS));
+
+            final long[] last = {-1};
+            store.query(WorkoutHistoryStore.ALL_EXERCISES, 0, 10 * DAY_MS, record -> {
+                assertTrue(record.timestampMillis > last[0]);
+                last[0] = record.timestampMillis;
+                return true;
+            });
+        }
+    }
+
+    @Test
+    public void survivesReopen() throws IOException {
+        try (WorkoutHistoryStore store = open(1 << 20)) {
+            for (int r = 0; r < 100; r++) {
+                store.append(rep(r * 60_000L, r % 3, r));
+            }
+        }
+        try (WorkoutHistoryStore store = open(1 << 20)) {
+            assertEquals(100, store.getRecordCount());
+            final RepRecord found = new RepRecord();
+            store.query(2, 5 * 60_000L, 6 * 60_000L, record -> {
+                found.set(record);
+                return false;
+            });
+            assertEquals(5, found.repIndex);
+            assertEquals(5f, found.formScore, 0f);
+        }
+    }
+
+    @Test
+    public void compactionMergesBlocksOfSealedSegments() throws IOException {
+        try (WorkoutHistoryStore store = open(1 << 20)) {
+            // One flush per rep, all on the same day and exercise
+            int reps = 2 * SEGMENT_BYTES / RepRecord.BYTES;
+            for (int r = 0; r < reps; r++) {
+                store.append(rep(r * 10L, 0, r));
+                store.flush();
+            }
+            assertTrue(store.getSegmentCount() >= 2);
+            // Sealed segments hold a single block each, only the active one is fragmented
+            assertTrue(store.getIndexEntryCount() < SEGMENT_BYTES / RepRecord.BYTES + store.getSegmentCount());
+            assertEquals(reps, count(store, 0, 0, DAY_MS));
+        }
+        try (WorkoutHistoryStore store = open(1 << 20)) {
+            assertEquals(2 * SEGMENT_BYTES / RepRecord.BYTES, count(store, 0, 0, DAY_MS));
+        }
+    }
+
+    @Test
+    public void retentionDropsOldestSegments() throws IOException {
+        long maxBytes = 4 * SEGMENT_BYTES;
+        try (WorkoutHistoryStore store = open(maxBytes)) {
+            SyntheticHistory.fill(store, 365, 1);
+            assertTrue(store.getSizeBytes() <= maxBytes);
+            // Recent history is kept, the first months are gone
+            assertTrue(count(store, 0, 335 * DAY_MS + 1_577_836_800_000L, Long.MAX_VALUE) > 0);
+            assertEquals(0, count(store, 0, 0, 30 * DAY_MS + 1_577_836_800_000L));
+        }
+    }
+
+    @Test
+    public void dropsDataWithoutIndexEntryAfterCrash() throws IOException {
+        try (WorkoutHistoryStore store = open(1 << 20)) {
+            for (int r = 0; r < 10; r++) {
+                store.append(rep(r, 0, r));
+            }
+        }
+        // A block written without its index entry, and a torn index entry
+        File segment = new File(dir, "seg-00000000.dat");
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(segment.length() + 3 * RepRecord.BYTES);
+        }
+        File index = new File(dir, "index.dat");
+        try (RandomAccessFile file = new RandomAccessFile(index, "rw")) {
+            file.setLength(index.length() + 7);
+        }
+        try (WorkoutHistoryStore store = open(1 << 20)) {
+            assertEquals(10, store.getRecordCount());
+            store.append(rep(100, 0, 10));
+            store.flush();
+            assertEquals(11, count(store, 0, 0, DAY_MS));
+        }
+    }
+
+    @Test
+    public void recoversFromACrashAtEveryCompactionStep() throws IOException {
+        int[] steps = {
+                WorkoutHistoryStore.STEP_SEGMENT_WRITTEN,
+                WorkoutHistoryStore.STEP_INDEX_WRITTEN,
+                WorkoutHistoryStore.STEP_INDEX_REPLACED,
+        };
+        for (int step : steps) {
+            tearDown();
+            setUp();
+            int reps = SEGMENT_BYTES / RepRecord.BYTES;
+            WorkoutHistoryStore store = open(1 << 20);
+            // A full segment of one-rep blocks, alternating between two exercises
+            for (int r = 0; r < reps; r++) {
+                store.append(rep(r, r % 2, r));
+                store.flush();
+            }
+            store.crashAfterStep = step;
+            store.append(rep(reps, 0, reps));
+            try {
+                store.flush();
+                fail("Expected the compaction to crash after step " + step);
+            } catch (IOException expected) {
+                // The process died here
+            }
+            try {
+                store.close();
+            } catch (IOException ignored) {
+                // The channels were left as the crash found them
+            }
+
+            try (WorkoutHistoryStore reopened = open(1 << 20)) {
+                assertEquals("step " + step, reps, reopened.getRecordCount());
+                for (int exercise = 0; exercise < 2; exercise++) {
+                    final int expected = exercise;
+                    final int[] visited = new int[1];
+                    reopened.query(exercise, 0, DAY_MS, record -> {
+                        // Index entries pointing into the wrong layout would return other reps
+                        assertEquals(expected, record.exercise);
+                        assertEquals(expected, record.repIndex % 2);
+                        assertEquals(record.repIndex, record.timestampMillis);
+                        visited[0]++;
+                        return true;
+                    });
+                    assertEquals("step " + step, reps / 2, visited[0]);
+                }
+                String[] names = dir.list();
+                for (String name : names) {
+                    assertFalse(name, name.endsWith(".tmp"));
+                }
+                reopened.append(rep(reps + 1, 1, reps + 1));
+                reopened.flush();
+                assertEquals(reps / 2 + 1, count(reopened, 1, 0, DAY_MS));
+            }
+        }
+    }
+}
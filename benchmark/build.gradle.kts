@@ -0,0 +1,106 @@
+plugins {
+    java
+}
+
+// JMH benchmarks and command line tools for the parts of the pipeline that need no device.
+// The tools live here rather than in the app so that no System.out main ships in the APK.
+// The app's plain Java classes are compiled straight from app/src/main/java into the appJvm
+// source set, so what is measured here is the code that ships.
+//
+//   ./gradlew :benchmark:jmh
+//   ./gradlew :benchmark:jmh -Pjmh.include=FrameKernels
+//
+// The native kernels are measured too when -Pgymmygo.hostKernelsDir points at a host build
+// of app/src/main/cpp, e.g. cmake -S app/src/main/cpp -B build/host && cmake --build build/host.
+//
+// Pose inference runs in the desktop TensorFlow Lite runtime for Linux x86_64, with the small
+// stub model in src/main/resources unless -Dgymmygo.poseModel names another .tflite file.
+// ./gradlew :benchmark:test runs the same model through the backend as a unit test.
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// App classes without Android dependencies that the benchmarks and tools use
+val appJvmClasses = listOf(
+    "CoachingHub", "DetailLandmarks", "DetailStage", "FrameConsumer", "FrameKernels",
+    "FrameRecording", "KernelPipeline", "LandmarkCodec", "LandmarkFilter", "LandmarkFrame",
+    "PoseModel", "RepRecord", "ReplayHarness", "ReplayReport", "SkeletonGeometry",
+    "SkeletonTopology", "StageTimer", "TflitePoseBackend", "WorkoutHistory",
+    "WorkoutHistoryStore", "YuvFrame",
+)
+
+val appJvm by sourceSets.creating {
+    java {
+        srcDir("../app/src/main/java")
+        // Test data shared with the app's unit tests
+        srcDir("../app/src/test/java")
+        include((appJvmClasses + "SyntheticHistory").map {
+            "hku/cs/comp3330/section1a2024/group19/gymmygo/$it.java"
+        })
+    }
+}
+
+// Native libraries of the desktop TensorFlow Lite runtime
+val desktopPlatform = "linux-x86_64"
+
+dependencies {
+    implementation(appJvm.output)
+    implementation(libs.jmh.core)
+    annotationProcessor(libs.jmh.generator.annprocess)
+    implementation(libs.tensorflow.lite.desktop)
+    implementation(variantOf(libs.tensorflow.lite.desktop) { classifier(desktopPlatform) })
+    implementation(variantOf(libs.javacpp) { classifier(desktopPlatform) })
+    implementation(libs.flatbuffers.java)
+    testImplementation(libs.junit)
+}
+
+val hostKernelsDir = findProperty("gymmygo.hostKernelsDir") as String?
+
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "Runs the JMH benchmarks, or those matching -Pjmh.include."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    args(
+        (findProperty("jmh.include") as String?) ?: ".*",
+        "-rf", "json",
+        "-rff", layout.buildDirectory.file("jmh-result.json").get().asFile.path,
+    )
+    if (hostKernelsDir != null) {
+        systemProperty("java.library.path", hostKernelsDir)
+    }
+}
+
+tasks.register<JavaExec>("replay") {
+    group = "benchmark"
+    description = "Replays a frame recording: --args=\"<recording> [--max-speed] [--loops N]\""
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("hku.cs.comp3330.section1a2024.group19.gymmygo.ReplayMain")
+    if (hostKernelsDir != null) {
+        systemProperty("java.library.path", hostKernelsDir)
+    }
+}
+
+tasks.register<JavaExec>("coachingHub") {
+    group = "benchmark"
+    description = "Runs a coaching hub and prints its statistics: --args=\"[port]\""
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("hku.cs.comp3330.section1a2024.group19.gymmygo.CoachingHubMain")
+}
+
+tasks.register<JavaExec>("historyBenchmark") {
+    group = "benchmark"
+    description = "Times the workout history store: --args=\"<empty dir> [--years N] [--max-kb N]\""
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("hku.cs.comp3330.section1a2024.group19.gymmygo.WorkoutHistoryBenchmark")
+}
+
+tasks.register<JavaExec>("stubPoseModel") {
+    group = "benchmark"
+    description = "Writes the stub pose model in src/main/resources again."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("hku.cs.comp3330.section1a2024.group19.gymmygo.StubPoseModelWriter")
+    args(file("src/main/resources/stub_pose_movenet.tflite").path)
+}
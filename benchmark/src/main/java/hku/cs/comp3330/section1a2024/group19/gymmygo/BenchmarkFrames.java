@@ -0,0 +1,57 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Synthetic inputs for the benchmarks: camera frames laid out like the ones CameraX delivers
+ * on most devices, and the landmarks of a standing figure.
+ */
+final class BenchmarkFrames {
+
+    private BenchmarkFrames() {
+    }
+
+    /**
+     * A frame with random pixels, padded Y rows and semi-planar chroma (pixel stride 2, the
+     * U plane one byte after the V plane), as sensor-oriented as a phone held upright.
+     */
+    static YuvFrame yuv(int width, int height, int rotationDegrees, long seed) {
+        Random random = new Random(seed);
+        int yRowStride = width + 64;
+        ByteBuffer y = randomDirect(yRowStride * height, random);
+        ByteBuffer vu = randomDirect(width * height / 2, random);
+        ByteBuffer v = vu.duplicate();
+        vu.position(1);
+        ByteBuffer u = vu.slice();
+        return new YuvFrame()
+                .setPlanes(y, yRowStride, u, width, 2, v, width, 2)
+                .setInfo(width, height, rotationDegrees, 0);
+    }
+
+    /**
+     * Landmarks of a standing figure filling an upright image of the given size, every
+     * joint visible. Each call moves the figure a little, so filters see motion.
+     */
+    static LandmarkFrame standingFigure(int imageWidth, int imageHeight, int step, LandmarkFrame out) {
+        out.clear();
+        out.imageWidth = imageWidth;
+        out.imageHeight = imageHeight;
+        out.timestampNanos = step * 33_333_333L;
+        float sway = (step % 20) - 10;
+        for (int i = 0; i < LandmarkFrame.LANDMARK_COUNT; i++) {
+            out.x[i] = imageWidth * (0.4f + 0.2f * (i % 2)) + sway;
+            out.y[i] = imageHeight * (i + 1f) / (LandmarkFrame.LANDMARK_COUNT + 1);
+            out.likelihood[i] = 0.9f;
+        }
+        return out;
+    }
+
+    static ByteBuffer randomDirect(int size, Random random) {
+        byte[] data = new byte[size];
+        random.nextBytes(data);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(data).clear();
+        return buffer;
+    }
+}
@@ -0,0 +1,20 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+/**
+ * Runs a {@link CoachingHub} on a plain JVM and prints its statistics every few seconds.
+ *
+ * Usage: ./gradlew :benchmark:coachingHub --args="[port]"
+ */
+public class CoachingHubMain {
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7330;
+        try (CoachingHub hub = new CoachingHub(port)) {
+            System.out.println("Coaching hub listening on port " + hub.getPort());
+            while (true) {
+                Thread.sleep(5000);
+                System.out.println(hub);
+            }
+        }
+    }
+}
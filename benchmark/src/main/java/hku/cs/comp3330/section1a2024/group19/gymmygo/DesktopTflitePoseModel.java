@@ -0,0 +1,179 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.tensorflowlite.BuiltinOpResolver;
+import org.bytedeco.tensorflowlite.BuiltinOpResolverWithoutDefaultDelegates;
+import org.bytedeco.tensorflowlite.FlatBufferModel;
+import org.bytedeco.tensorflowlite.Interpreter;
+import org.bytedeco.tensorflowlite.InterpreterBuilder;
+import org.bytedeco.tensorflowlite.TfLiteTensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.TfLiteTensorByteSize;
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.TfLiteTensorCopyFromBuffer;
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.TfLiteTensorDim;
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.TfLiteTensorNumDims;
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.TfLiteTensorType;
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.kTfLiteInt8;
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.kTfLiteOk;
+import static org.bytedeco.tensorflowlite.global.tensorflowlite.kTfLiteUInt8;
+
+/**
+ * The desktop counterpart of {@link TflitePoseModel}: the same model files, threads and
+ * XNNPACK choice, run by the TensorFlow Lite C++ runtime for Linux x86_64 instead of the
+ * Android interpreter, so that {@link TflitePoseBackend} can run real inference on a plain
+ * JVM. Not thread safe.
+ */
+public class DesktopTflitePoseModel implements PoseModel {
+
+    // The interpreter refers to both the model and the kernels of the resolver
+    private final FlatBufferModel model;
+    private final BuiltinOpResolver resolver;
+    private final Interpreter interpreter;
+    private final TfLiteTensor inputTensor;
+    private final long inputBytes;
+    private final FloatPointer outputFloats;
+    private final int inputWidth;
+    private final int inputHeight;
+    private final int inputType;
+    private final int outputLayout;
+    private final int outputSize;
+
+    // Wraps the backend's input tensor, which is the same buffer on every call
+    private ByteBuffer lastInput;
+    private BytePointer inputPointer;
+
+    /**
+     * @param file         The flatbuffer.
+     * @param outputLayout OUTPUT_ constant of the model file.
+     * @param threads      Interpreter threads.
+     * @param useXnnpack   Whether to delegate supported operations to XNNPACK.
+     * @throws IOException If the file is not a model the runtime can run.
+     * @throws IllegalArgumentException If the tensors do not fit an RGB input or the layout.
+     */
+    public DesktopTflitePoseModel(File file, int outputLayout, int threads, boolean useXnnpack)
+            throws IOException {
+        model = FlatBufferModel.BuildFromFile(file.getPath());
+        if (model == null || model.isNull()) {
+            throw new IOException("Not a TensorFlow Lite model: " + file);
+        }
+        resolver = useXnnpack
+                ? new BuiltinOpResolver()
+                : new BuiltinOpResolverWithoutDefaultDelegates();
+        interpreter = new Interpreter((Pointer) null);
+        try (InterpreterBuilder builder = new InterpreterBuilder(model, resolver)) {
+            if (builder.apply(interpreter, threads) != kTfLiteOk || interpreter.isNull()
+                    || interpreter.AllocateTensors() != kTfLiteOk) {
+                close();
+                throw new IOException("Could not build an interpreter for " + file);
+            }
+        }
+
+        inputTensor = interpreter.input_tensor(0);
+        int[] shape = new int[TfLiteTensorNumDims(inputTensor)];
+        for (int i = 0; i < shape.length; i++) {
+            shape[i] = TfLiteTensorDim(inputTensor, i);
+        }
+        if (shape.length != 4 || shape[3] != 3) {
+            close();
+            throw new IllegalArgumentException("Expected an NHWC RGB input, got "
+                    + Arrays.toString(shape));
+        }
+        inputHeight = shape[1];
+        inputWidth = shape[2];
+        int type = TfLiteTensorType(inputTensor);
+        if (type == kTfLiteUInt8) {
+            inputType = INPUT_UINT8;
+        } else if (type == kTfLiteInt8) {
+            inputType = INPUT_INT8;
+        } else {
+            inputType = INPUT_FLOAT32;
+        }
+        inputBytes = TfLiteTensorByteSize(inputTensor);
+
+        TfLiteTensor output = interpreter.output_tensor(0);
+        int[] outputShape = new int[TfLiteTensorNumDims(output)];
+        for (int i = 0; i < outputShape.length; i++) {
+            outputShape[i] = TfLiteTensorDim(output, i);
+        }
+        try {
+            PoseModel.checkOutputShape(outputLayout, outputShape);
+        } catch (IllegalArgumentException e) {
+            close();
+            throw e;
+        }
+        this.outputLayout = outputLayout;
+        outputSize = (int) (TfLiteTensorByteSize(output) / 4);
+        outputFloats = interpreter.typed_output_tensor_float(0);
+    }
+
+    /**
+     * Copies a model from the classpath to a temporary file, as the runtime maps models from
+     * files. The file is deleted when the JVM exits.
+     */
+    public static File extractResource(String resource) throws IOException {
+        try (InputStream in = DesktopTflitePoseModel.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("No such resource: " + resource);
+            }
+            File file = File.createTempFile("model", ".tflite");
+            file.deleteOnExit();
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        }
+    }
+
+    @Override
+    public int getInputWidth() {
+        return inputWidth;
+    }
+
+    @Override
+    public int getInputHeight() {
+        return inputHeight;
+    }
+
+    @Override
+    public int getInputType() {
+        return inputType;
+    }
+
+    @Override
+    public int getOutputLayout() {
+        return outputLayout;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    @Override
+    public void run(ByteBuffer input, float[] output) {
+        if (input != lastInput) {
+            inputPointer = new BytePointer(input);
+            lastInput = input;
+        }
+        if (TfLiteTensorCopyFromBuffer(inputTensor, inputPointer, inputBytes) != kTfLiteOk
+                || interpreter.Invoke() != kTfLiteOk) {
+            throw new IllegalStateException("Inference failed");
+        }
+        outputFloats.get(output, 0, outputSize);
+    }
+
+    @Override
+    public void close() {
+        interpreter.close();
+        resolver.close();
+        model.close();
+    }
+}
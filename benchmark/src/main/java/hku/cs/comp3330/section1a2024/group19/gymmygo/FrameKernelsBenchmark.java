@@ -0,0 +1,102 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The conversion and rotation stages at analysis resolution, on the Java fallback and, when
+ * libframekernels from a host build is on java.library.path, on the native kernels.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameKernelsBenchmark {
+
+    @Param({"640x480", "1280x720"})
+    public String size;
+
+    @Param({"java", "native"})
+    public String kernels;
+
+    private YuvFrame frame;
+    private ByteBuffer nv21;
+    private byte[] nv21Array;
+    private ByteBuffer upright;
+    private ByteBuffer small;
+    private ByteBuffer argb;
+    private ByteBuffer rotatedArgb;
+
+    @Setup
+    public void setUp() {
+        boolean useNative = "native".equals(kernels);
+        if (useNative && !FrameKernels.isLibraryLoaded()) {
+            throw new IllegalStateException("libframekernels is not on java.library.path");
+        }
+        FrameKernels.setNativeEnabled(useNative);
+
+        int separator = size.indexOf('x');
+        int width = Integer.parseInt(size.substring(0, separator));
+        int height = Integer.parseInt(size.substring(separator + 1));
+        frame = BenchmarkFrames.yuv(width, height, 90, 3330);
+        nv21 = ByteBuffer.allocateDirect(width * height * 3 / 2);
+        nv21Array = new byte[width * height * 3 / 2];
+        upright = ByteBuffer.allocateDirect(width * height);
+        small = ByteBuffer.allocateDirect(width * height / 4);
+        argb = ByteBuffer.allocateDirect(width * height * 4);
+        rotatedArgb = ByteBuffer.allocateDirect(width * height * 4);
+    }
+
+    @Benchmark
+    public ByteBuffer packNv21() {
+        FrameKernels.packNv21(frame.y, frame.yRowStride,
+                frame.u, frame.uRowStride, frame.uPixelStride,
+                frame.v, frame.vRowStride, frame.vPixelStride,
+                frame.width, frame.height, nv21);
+        return nv21;
+    }
+
+    @Benchmark
+    public byte[] packNv21IntoArray() {
+        FrameKernels.packNv21(frame.y, frame.yRowStride,
+                frame.u, frame.uRowStride, frame.uPixelStride,
+                frame.v, frame.vRowStride, frame.vPixelStride,
+                frame.width, frame.height, nv21Array);
+        return nv21Array;
+    }
+
+    @Benchmark
+    public ByteBuffer rotateLuma() {
+        FrameKernels.rotate8(frame.y, frame.yRowStride, frame.width, frame.height,
+                frame.rotationDegrees, upright);
+        return upright;
+    }
+
+    @Benchmark
+    public ByteBuffer rotateArgb() {
+        FrameKernels.rotate32(argb, frame.width, frame.width, frame.height,
+                frame.rotationDegrees, rotatedArgb);
+        return rotatedArgb;
+    }
+
+    @Benchmark
+    public ByteBuffer downscaleLuma() {
+        FrameKernels.downscaleBox(frame.y, frame.yRowStride, frame.width, frame.height,
+                1, 2, small);
+        return small;
+    }
+}
@@ -0,0 +1,68 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole {@link TflitePoseBackend#estimate} in the desktop TensorFlow Lite runtime: filling
+ * the input from the YUV planes, invoking the interpreter and mapping the keypoints back.
+ * Runs the bundled stub model unless -Dgymmygo.poseModel names another file, e.g. the
+ * MoveNet Lightning variants the app ships. A BlazePose file also needs
+ * -Dgymmygo.poseLayout=blazepose.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoseInferenceBenchmark {
+
+    @Param({"1", "2"})
+    public int threads;
+
+    @Param({"true", "false"})
+    public boolean xnnpack;
+
+    private YuvFrame frame;
+    private TflitePoseBackend backend;
+    private final LandmarkFrame out = new LandmarkFrame();
+
+    @Setup
+    public void setUp() throws IOException {
+        String path = System.getProperty("gymmygo.poseModel");
+        File file = path != null
+                ? new File(path)
+                : DesktopTflitePoseModel.extractResource(StubPoseModelWriter.RESOURCE);
+        int layout = "blazepose".equals(System.getProperty("gymmygo.poseLayout"))
+                ? PoseModel.OUTPUT_BLAZEPOSE
+                : PoseModel.OUTPUT_MOVENET;
+        backend = new TflitePoseBackend(new DesktopTflitePoseModel(file, layout, threads, xnnpack),
+                0f, 255f);
+        frame = BenchmarkFrames.yuv(640, 480, 90, 3330);
+    }
+
+    @TearDown
+    public void tearDown() {
+        backend.close();
+    }
+
+    @Benchmark
+    public LandmarkFrame estimate() {
+        return backend.estimate(frame, out);
+    }
+}
@@ -0,0 +1,153 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-frame stages around detection that run on the analysis lanes, each on its own:
+ * filling the TFLite input tensor from the YUV planes, cropping a hand region for the detail
+ * stage, filtering the landmarks, building the overlay geometry and encoding the landmarks
+ * for the coaching hub. Model inference itself is left out, see PoseInferenceBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoseStagesBenchmark {
+
+    private static final int FRAME_WIDTH = 640;
+    private static final int FRAME_HEIGHT = 480;
+    // Every joint of the synthetic figure has a position
+    private static final long ALL_USABLE = (1L << LandmarkFrame.LANDMARK_COUNT) - 1;
+
+    /** MoveNet Lightning's input, uint8 or float32. */
+    @Param({"uint8", "float32"})
+    public String inputType;
+
+    /** A model that does nothing, so that only the work around it is measured. */
+    private static class IdleModel implements PoseModel {
+        private final int size;
+        private final int type;
+        private final int layout;
+        private final int outputSize;
+
+        IdleModel(int size, int type, int layout, int outputSize) {
+            this.size = size;
+            this.type = type;
+            this.layout = layout;
+            this.outputSize = outputSize;
+        }
+
+        @Override
+        public int getInputWidth() {
+            return size;
+        }
+
+        @Override
+        public int getInputHeight() {
+            return size;
+        }
+
+        @Override
+        public int getInputType() {
+            return type;
+        }
+
+        @Override
+        public int getOutputLayout() {
+            return layout;
+        }
+
+        @Override
+        public int getOutputSize() {
+            return outputSize;
+        }
+
+        @Override
+        public void run(ByteBuffer input, float[] output) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private YuvFrame frame;
+    private TflitePoseBackend backend;
+    private DetailStage hands;
+    private LandmarkFilter filter;
+    private SkeletonGeometry geometry;
+    private LandmarkCodec codec;
+    private final LandmarkFrame[] batch = new LandmarkFrame[5];
+    private final LandmarkFrame raw = new LandmarkFrame();
+    private final LandmarkFrame filtered = new LandmarkFrame();
+    private ByteBuffer packet;
+    private int step = 0;
+
+    @Setup
+    public void setUp() {
+        int type = "float32".equals(inputType) ? PoseModel.INPUT_FLOAT32 : PoseModel.INPUT_UINT8;
+        frame = BenchmarkFrames.yuv(FRAME_WIDTH, FRAME_HEIGHT, 90, 3330);
+        backend = new TflitePoseBackend(new IdleModel(192, type, PoseModel.OUTPUT_MOVENET, 17 * 3),
+                0f, 255f);
+        hands = new DetailStage(new IdleModel(224, type, PoseModel.OUTPUT_KEYPOINTS_XYZ, 21 * 3),
+                new int[]{DetailStage.REGION_LEFT_HAND, DetailStage.REGION_RIGHT_HAND}, 0f, 255f);
+        filter = new LandmarkFilter(0.5f, 0.3f, 5, 0.7f, 0.2f);
+        geometry = new SkeletonGeometry(SkeletonTopology.FULL, 0.8f, 0.5f, 0f);
+        codec = new LandmarkCodec();
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = BenchmarkFrames.standingFigure(FRAME_HEIGHT, FRAME_WIDTH, i, new LandmarkFrame());
+        }
+        packet = ByteBuffer.allocate(LandmarkCodec.maxPacketBytes(batch.length));
+        BenchmarkFrames.standingFigure(FRAME_HEIGHT, FRAME_WIDTH, 0, raw);
+    }
+
+    @Benchmark
+    public ByteBuffer fillTfliteInput() {
+        return backend.fillInput(frame);
+    }
+
+    @Benchmark
+    public int cropHands() {
+        return hands.crop(frame, raw, ALL_USABLE, hands.getRegionMask());
+    }
+
+    @Benchmark
+    public long filterLandmarks() {
+        BenchmarkFrames.standingFigure(FRAME_HEIGHT, FRAME_WIDTH, step++, raw);
+        // Every fourth frame loses the right arm, so the hold and fill paths run too
+        if ((step & 3) == 0) {
+            raw.likelihood[14] = 0.1f;
+            raw.likelihood[16] = 0.1f;
+        }
+        filter.apply(raw, filtered);
+        return filter.getUsableMask();
+    }
+
+    @Benchmark
+    public int buildOverlayGeometry() {
+        geometry.build(raw);
+        return geometry.getLineLength(SkeletonGeometry.CONFIDENCE_HIGH);
+    }
+
+    @Benchmark
+    public int encodeLandmarkBatch() {
+        packet.clear();
+        codec.encode(1, batch, batch.length, 0, packet);
+        return packet.position();
+    }
+}
@@ -0,0 +1,43 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Replays a frame recording through the KernelPipeline on a plain JVM and prints a
+ * {@link ReplayReport} per loop.
+ *
+ * Usage: ./gradlew :benchmark:replay --args="&lt;recording&gt; [--max-speed] [--loops N]"
+ */
+public class ReplayMain {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayMain <recording> [--max-speed] [--loops N]");
+            System.exit(2);
+        }
+        boolean maxSpeed = false;
+        int loops = 1;
+        for (int i = 1; i < args.length; i++) {
+            if ("--max-speed".equals(args[i])) {
+                maxSpeed = true;
+            } else if ("--loops".equals(args[i]) && i + 1 < args.length) {
+                loops = Integer.parseInt(args[++i]);
+            }
+        }
+
+        KernelPipeline pipeline = new KernelPipeline(2, 4096);
+        try (FrameRecording.Reader reader = new FrameRecording.Reader(new File(args[0]))) {
+            ReplayHarness harness = new ReplayHarness(reader, pipeline);
+            for (int loop = 0; loop < loops; loop++) {
+                if (loop > 0) {
+                    reader.rewind();
+                }
+                ReplayReport report = harness.run(maxSpeed, pipeline.getStageTimer());
+                System.out.println(String.format(Locale.US, "Loop %d (native kernels: %b)",
+                        loop + 1, FrameKernels.isNativeAvailable()));
+                System.out.println(report);
+            }
+        }
+    }
+}
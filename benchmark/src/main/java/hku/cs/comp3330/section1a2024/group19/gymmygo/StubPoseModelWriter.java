@@ -0,0 +1,218 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Writes the small stand-in pose model the JVM tests and benchmarks run through the real
+ * TensorFlow Lite interpreter, as the MoveNet and BlazePose files cannot be shipped with the
+ * sources. It has MoveNet Lightning's tensors, a 192x192 uint8 RGB image in and 17 (y, x,
+ * score) keypoints out, but only a few operations: the keypoints stand in a fixed upright
+ * pose and every score is the mean blue channel of the input, from 0 to 1.
+ *
+ *   CAST uint8 to float32, MEAN over height and width, MUL by (0, 0, 1/255), ADD the pose
+ *
+ * The flatbuffer follows tensorflow/lite/schema/schema.fbs; fields are set by their slot.
+ *
+ * Usage: ./gradlew :benchmark:stubPoseModel
+ */
+public class StubPoseModelWriter {
+
+    public static final String RESOURCE = "/stub_pose_movenet.tflite";
+    public static final int INPUT_SIZE = 192;
+    public static final int KEYPOINTS = 17;
+
+    /** The fixed pose in COCO order, as (y, x) normalized to the input. */
+    static final float[] POSE = {
+            0.15f, 0.50f,                   // nose
+            0.13f, 0.52f, 0.13f, 0.48f,     // eyes
+            0.14f, 0.54f, 0.14f, 0.46f,     // ears
+            0.25f, 0.58f, 0.25f, 0.42f,     // shoulders
+            0.38f, 0.62f, 0.38f, 0.38f,     // elbows
+            0.50f, 0.63f, 0.50f, 0.37f,     // wrists
+            0.52f, 0.55f, 0.52f, 0.45f,     // hips
+            0.70f, 0.56f, 0.70f, 0.44f,     // knees
+            0.88f, 0.56f, 0.88f, 0.44f,     // ankles
+    };
+
+    // schema.fbs enums
+    private static final byte TYPE_FLOAT32 = 0;
+    private static final byte TYPE_INT32 = 2;
+    private static final byte TYPE_UINT8 = 3;
+    private static final int OP_ADD = 0;
+    private static final int OP_MUL = 18;
+    private static final int OP_MEAN = 40;
+    private static final int OP_CAST = 53;
+    private static final int SCHEMA_VERSION = 3;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: StubPoseModelWriter <output.tflite>");
+            System.exit(2);
+        }
+        File file = new File(args[0]);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(build());
+        }
+        System.out.println("Wrote " + file + " (" + file.length() + " bytes)");
+    }
+
+    /**
+     * @return The model flatbuffer.
+     */
+    public static byte[] build() {
+        FlatBufferBuilder builder = new FlatBufferBuilder(4096);
+
+        // Buffer 0 is the empty buffer of every tensor without constant data
+        float[] pose = new float[KEYPOINTS * 3];
+        for (int k = 0; k < KEYPOINTS; k++) {
+            pose[3 * k] = POSE[2 * k];
+            pose[3 * k + 1] = POSE[2 * k + 1];
+        }
+        int[] buffers = {
+                buffer(builder, null),
+                buffer(builder, ints(1, 2)),
+                buffer(builder, floats(0, 0, 1 / 255f)),
+                buffer(builder, floats(pose)),
+        };
+
+        int[] tensors = {
+                tensor(builder, "input", TYPE_UINT8, 0, 1, INPUT_SIZE, INPUT_SIZE, 3),
+                tensor(builder, "rgb", TYPE_FLOAT32, 0, 1, INPUT_SIZE, INPUT_SIZE, 3),
+                tensor(builder, "axes", TYPE_INT32, 1, 2),
+                tensor(builder, "mean", TYPE_FLOAT32, 0, 1, 3),
+                tensor(builder, "channel_weights", TYPE_FLOAT32, 2, 3),
+                tensor(builder, "scores", TYPE_FLOAT32, 0, 1, 3),
+                tensor(builder, "pose", TYPE_FLOAT32, 3, 1, 1, KEYPOINTS, 3),
+                tensor(builder, "keypoints", TYPE_FLOAT32, 0, 1, 1, KEYPOINTS, 3),
+        };
+
+        int[] codes = {OP_CAST, OP_MEAN, OP_MUL, OP_ADD};
+        int[] operatorCodes = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            // OperatorCode: deprecated_builtin_code, custom_code, version, builtin_code
+            builder.startTable(4);
+            builder.addInt(3, codes[i], 0);
+            builder.addInt(2, 1, 1);
+            builder.addByte(0, (byte) codes[i], 0);
+            operatorCodes[i] = builder.endTable();
+        }
+
+        int[] operators = {
+                operator(builder, 0, new int[]{0}, new int[]{1}),
+                operator(builder, 1, new int[]{1, 2}, new int[]{3}),
+                operator(builder, 2, new int[]{3, 4}, new int[]{5}),
+                operator(builder, 3, new int[]{6, 5}, new int[]{7}),
+        };
+
+        int tensorsVector = offsets(builder, tensors);
+        int inputsVector = intVector(builder, 0);
+        int outputsVector = intVector(builder, 7);
+        int operatorsVector = offsets(builder, operators);
+        int subgraphName = builder.createString("main");
+        // SubGraph: tensors, inputs, outputs, operators, name
+        builder.startTable(5);
+        builder.addOffset(0, tensorsVector, 0);
+        builder.addOffset(1, inputsVector, 0);
+        builder.addOffset(2, outputsVector, 0);
+        builder.addOffset(3, operatorsVector, 0);
+        builder.addOffset(4, subgraphName, 0);
+        int subgraph = builder.endTable();
+
+        int operatorCodesVector = offsets(builder, operatorCodes);
+        int subgraphsVector = offsets(builder, new int[]{subgraph});
+        int description = builder.createString("GymmyGo stub pose model, MoveNet tensors");
+        int buffersVector = offsets(builder, buffers);
+        // Model: version, operator_codes, subgraphs, description, buffers
+        builder.startTable(5);
+        builder.addInt(0, SCHEMA_VERSION, 0);
+        builder.addOffset(1, operatorCodesVector, 0);
+        builder.addOffset(2, subgraphsVector, 0);
+        builder.addOffset(3, description, 0);
+        builder.addOffset(4, buffersVector, 0);
+        int model = builder.endTable();
+        builder.finish(model, "TFL3");
+        return builder.sizedByteArray();
+    }
+
+    private static int buffer(FlatBufferBuilder builder, byte[] data) {
+        int dataVector = 0;
+        if (data != null) {
+            // Constant data is read in place, so it is aligned like the schema asks
+            builder.startVector(1, data.length, 16);
+            for (int i = data.length - 1; i >= 0; i--) {
+                builder.addByte(data[i]);
+            }
+            dataVector = builder.endVector();
+        }
+        // Buffer: data
+        builder.startTable(1);
+        if (data != null) {
+            builder.addOffset(0, dataVector, 0);
+        }
+        return builder.endTable();
+    }
+
+    private static int tensor(FlatBufferBuilder builder, String name, byte type, int buffer,
+                              int... shape) {
+        int shapeVector = intVector(builder, shape);
+        int nameString = builder.createString(name);
+        // Tensor: shape, type, buffer, name
+        builder.startTable(4);
+        builder.addOffset(0, shapeVector, 0);
+        builder.addInt(2, buffer, 0);
+        builder.addOffset(3, nameString, 0);
+        builder.addByte(1, type, 0);
+        return builder.endTable();
+    }
+
+    private static int operator(FlatBufferBuilder builder, int opcodeIndex, int[] inputs,
+                                int[] outputs) {
+        int inputsVector = intVector(builder, inputs);
+        int outputsVector = intVector(builder, outputs);
+        // Operator: opcode_index, inputs, outputs; every option keeps its default
+        builder.startTable(3);
+        builder.addInt(0, opcodeIndex, 0);
+        builder.addOffset(1, inputsVector, 0);
+        builder.addOffset(2, outputsVector, 0);
+        return builder.endTable();
+    }
+
+    private static int intVector(FlatBufferBuilder builder, int... values) {
+        builder.startVector(4, values.length, 4);
+        for (int i = values.length - 1; i >= 0; i--) {
+            builder.addInt(values[i]);
+        }
+        return builder.endVector();
+    }
+
+    private static int offsets(FlatBufferBuilder builder, int[] tables) {
+        builder.startVector(4, tables.length, 4);
+        for (int i = tables.length - 1; i >= 0; i--) {
+            builder.addOffset(tables[i]);
+        }
+        return builder.endVector();
+    }
+
+    private static byte[] ints(int... values) {
+        ByteBuffer bytes = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (int value : values) {
+            bytes.putInt(value);
+        }
+        return bytes.array();
+    }
+
+    private static byte[] floats(float... values) {
+        ByteBuffer bytes = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (float value : values) {
+            bytes.putFloat(value);
+        }
+        return bytes.array();
+    }
+}
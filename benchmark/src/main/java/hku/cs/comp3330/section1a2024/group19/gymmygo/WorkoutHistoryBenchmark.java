@@ -0,0 +1,72 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Fills a {@link WorkoutHistoryStore} with years of synthetic training and times appends and
+ * typical history queries on the JVM.
+ *
+ * Usage: ./gradlew :benchmark:historyBenchmark --args="&lt;empty dir&gt; [--years N] [--max-kb N]"
+ */
+public class WorkoutHistoryBenchmark {
+
+    private static final long DAY_MS = SyntheticHistory.DAY_MS;
+    private static final long START_MS = SyntheticHistory.START_MS;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: WorkoutHistoryBenchmark <empty dir> [--years N] [--max-kb N]");
+            System.exit(2);
+        }
+        int years = 3;
+        long maxBytes = 4 * WorkoutHistory.DEFAULT_MAX_BYTES;
+        for (int i = 1; i < args.length; i++) {
+            if ("--years".equals(args[i]) && i + 1 < args.length) {
+                years = Integer.parseInt(args[++i]);
+            } else if ("--max-kb".equals(args[i]) && i + 1 < args.length) {
+                maxBytes = Long.parseLong(args[++i]) * 1024;
+            }
+        }
+        File dir = new File(args[0]);
+
+        long start = System.nanoTime();
+        long end;
+        try (WorkoutHistoryStore store = new WorkoutHistoryStore(dir, maxBytes,
+                WorkoutHistory.DEFAULT_SEGMENT_BYTES, WorkoutHistory.DEFAULT_FLUSH_RECORDS)) {
+            end = SyntheticHistory.fill(store, years * 365, 42);
+            double fillMs = (System.nanoTime() - start) / 1e6;
+            System.out.println(String.format(Locale.US, "Filled %d years in %.1f ms: %s, %d KB",
+                    years, fillMs, store, store.getSizeBytes() / 1024));
+        }
+
+        start = System.nanoTime();
+        WorkoutHistoryStore store = new WorkoutHistoryStore(dir, maxBytes,
+                WorkoutHistory.DEFAULT_SEGMENT_BYTES, WorkoutHistory.DEFAULT_FLUSH_RECORDS);
+        System.out.println(String.format(Locale.US, "Opened in %.2f ms",
+                (System.nanoTime() - start) / 1e6));
+        try {
+            final float[] sum = new float[1];
+            WorkoutHistoryStore.Visitor visitor = record -> {
+                sum[0] += record.formScore;
+                return true;
+            };
+            long[] ranges = {7 * DAY_MS, 30 * DAY_MS, 365 * DAY_MS, end - START_MS};
+            String[] names = {"week", "month", "year", "all"};
+            for (int r = 0; r < ranges.length; r++) {
+                int iterations = 50;
+                int found = 0;
+                start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    found = store.query(1, end - ranges[r], end, visitor);
+                }
+                double ms = (System.nanoTime() - start) / 1e6 / iterations;
+                System.out.println(String.format(Locale.US,
+                        "Query one exercise, last %-5s: %6d reps in %.3f ms", names[r], found, ms));
+            }
+        } finally {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package hku.cs.comp3330.section1a2024.group19.gymmygo;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs {@link TflitePoseBackend} with the bundled stub model in the desktop TensorFlow Lite
+ * runtime: every score is the mean blue channel of the input tensor, and the keypoints stand
+ * in {@link StubPoseModelWriter#POSE}.
+ */
+public class TflitePoseInferenceTest {
+
+    private static final float GRAY = 128 / 255f;
+
+    private static File modelFile;
+
+    @BeforeClass
+    public static void extractModel() throws IOException {
+        modelFile = DesktopTflitePoseModel.extractResource(StubPoseModelWriter.RESOURCE);
+    }
+
+    @Test
+    public void bundledModelMatchesTheWriter() throws IOException {
+        byte[] bundled = Files.readAllBytes(modelFile.toPath());
+        assertEquals(ByteBuffer.wrap(StubPoseModelWriter.build()), ByteBuffer.wrap(bundled));
+    }
+
+    @Test
+    public void runsTheModelOnAFrame() throws IOException {
+        try (TflitePoseBackend backend = new TflitePoseBackend(
+                new DesktopTflitePoseModel(modelFile, PoseModel.OUTPUT_MOVENET, 2, true), 0, 255)) {
+            // Fills the input exactly, no letterbox
+            LandmarkFrame out = backend.estimate(grayFrame(240, 240, 0), new LandmarkFrame());
+
+            assertEquals(240, out.imageWidth);
+            assertEquals(7L, out.timestampNanos);
+            assertEquals(0.50f * 240, out.x[0], 1e-3f);
+            assertEquals(0.15f * 240, out.y[0], 1e-3f);
+            assertEquals(GRAY, out.likelihood[0], 1e-4f);
+            // Right ankle, the last MoveNet keypoint
+            assertEquals(0.44f * 240, out.x[28], 1e-3f);
+            assertEquals(0.88f * 240, out.y[28], 1e-3f);
+            assertEquals(GRAY, out.likelihood[28], 1e-4f);
+            // Not a MoveNet keypoint
+            assertEquals(0f, out.likelihood[1], 0f);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsALayoutTheOutputDoesNotFit() throws IOException {
+        new DesktopTflitePoseModel(modelFile, PoseModel.OUTPUT_BLAZEPOSE, 1, false);
+    }
+
+    @Test
+    public void letterboxReachesTheModelAndIsUndone() throws IOException {
+        try (TflitePoseBackend backend = new TflitePoseBackend(
+                new DesktopTflitePoseModel(modelFile, PoseModel.OUTPUT_MOVENET, 1, false), 0, 255)) {
+            // Upright 240x320 scaled by 0.6 into 144x192, 24 black columns on either side
+            LandmarkFrame out = backend.estimate(grayFrame(320, 240, 90), new LandmarkFrame());
+
+            assertEquals(240, out.imageWidth);
+            assertEquals(320, out.imageHeight);
+            assertEquals(GRAY * 144 / 192, out.likelihood[0], 1e-4f);
+            assertEquals((0.50f * 192 - 24) / 0.6f, out.x[0], 1e-2f);
+            assertEquals(0.15f * 192 / 0.6f, out.y[0], 1e-2f);
+        }
+    }
+
+    @Test
+    public void xnnpackAndTheBuiltinKernelsAgree() throws IOException {
+        YuvFrame frame = BenchmarkFrames.yuv(640, 480, 90, 3330);
+        LandmarkFrame withXnnpack;
+        LandmarkFrame without;
+        try (TflitePoseBackend backend = new TflitePoseBackend(
+                new DesktopTflitePoseModel(modelFile, PoseModel.OUTPUT_MOVENET, 2, true), 0, 255)) {
+            withXnnpack = backend.estimate(frame, new LandmarkFrame());
+        }
+        try (TflitePoseBackend backend = new TflitePoseBackend(
+                new DesktopTflitePoseModel(modelFile, PoseModel.OUTPUT_MOVENET, 1, false), 0, 255)) {
+            without = backend.estimate(frame, new LandmarkFrame());
+        }
+        for (int type = 0; type < LandmarkFrame.LANDMARK_COUNT; type++) {
+            assertEquals(without.x[type], withXnnpack.x[type], 1e-3f);
+            assertEquals(without.y[type], withXnnpack.y[type], 1e-3f);
+            assertEquals(without.likelihood[type], withXnnpack.likelihood[type], 1e-4f);
+        }
+    }
+
+    /**
+     * A mid gray frame, which converts to 128 in every RGB channel.
+     */
+    private static YuvFrame grayFrame(int width, int height, int rotationDegrees) {
+        ByteBuffer y = filled(width * height);
+        ByteBuffer u = filled(width * height / 4);
+        ByteBuffer v = filled(width * height / 4);
+        return new YuvFrame()
+                .setPlanes(y, width, u, width / 2, 1, v, width / 2, 1)
+                .setInfo(width, height, rotationDegrees, 7L);
+    }
+
+    private static ByteBuffer filled(int size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        for (int i = 0; i < size; i++) {
+            buffer.put(i, (byte) 128);
+        }
+        return buffer;
+    }
+}
@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "GymmyGo Tutorial Posture Tracking"
 include(":app")
+include(":benchmark")
  
\ No newline at end of file